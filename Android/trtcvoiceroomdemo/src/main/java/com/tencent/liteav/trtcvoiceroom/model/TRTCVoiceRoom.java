@@ -95,6 +95,8 @@ public abstract class TRTCVoiceRoom {
      *
      * @param roomId Room ID. You need to assign and manage the IDs in a centralized manner.
      * @param roomParam Room description information, such as room name and cover information. If both the room list and room information are managed on your server, you can ignore this parameter.
+     *                  The number of seats is up to {@link TRTCVoiceRoomDef#MAX_SEAT_COUNT_LEGACY},
+     *                  or {@link TRTCVoiceRoomDef#MAX_SEAT_COUNT} after {@link #setCompactSeatProtocol(boolean)}.
      * @param callback Callback for room creation result. The `code` will be 0 if the operation succeeds.
      */
     public abstract void createRoom(int roomId, TRTCVoiceRoomDef.RoomParam roomParam, TRTCVoiceRoomCallback.ActionCallback callback);
@@ -121,6 +123,18 @@ public abstract class TRTCVoiceRoom {
      */
     public abstract void enterRoom(int roomId, TRTCVoiceRoomCallback.ActionCallback callback);
 
+    /**
+     * Set whether re-entering a room renders it from the last saved snapshot first
+     *
+     * When enabled, the room information and seat list from the last visit are saved on the device, and `enterRoom` calls back
+     * `onRoomInfoChange` and `onSeatListChange` with them right away, before the IM group is joined. The latest state is fetched
+     * at the same time, and the two callbacks are triggered again only if it differs from the snapshot.
+     * Snapshots are kept for 24 hours and removed when the room is terminated. Off by default.
+     *
+     * @param enable true: render from the snapshot first; false: wait for the server
+     */
+    public abstract void setRoomSnapshotEnabled(boolean enable);
+
     /**
      * Exit room
      *
@@ -132,12 +146,25 @@ public abstract class TRTCVoiceRoom {
      * Get room list details
      *
      * The details are set through `roomParam` by the anchor during `createRoom()`. If both the room list and room information are managed on your server, you can ignore this function.
+     * Details fetched within the last 30 seconds are served from the local cache, and only new or expired rooms are requested from the server,
+     * so the `memberCount` of a cached room may lag behind by up to that interval.
+     * If the request fails, the callback still carries the cached details of the requested rooms (possibly empty) along with the error code.
      *
      * @param roomIdList Room ID list
      * @param callback Callback for room details
      */
     public abstract void getRoomInfoList(List<Integer> roomIdList, TRTCVoiceRoomCallback.RoomInfoCallback callback);
 
+    /**
+     * Get the room list details returned by the last `getRoomInfoList` call without any network request
+     *
+     * The list is saved on the device, so it can be displayed right away when the room list page opens, even after the app restarts,
+     * and then refreshed with `getRoomInfoList`. The details may be out of date. The list is empty if nothing has been fetched yet.
+     *
+     * @param callback Callback for room details
+     */
+    public abstract void getCachedRoomInfoList(TRTCVoiceRoomCallback.RoomInfoCallback callback);
+
     /**
      * Get the user information of the specified `userId`. If the value is `null`, the information of all users in the room will be obtained
      *
@@ -146,6 +173,29 @@ public abstract class TRTCVoiceRoom {
      */
     public abstract void getUserInfoList(List<String> userIdList, TRTCVoiceRoomCallback.UserListCallback userlistcallback);
 
+    /**
+     * Get the user information of the specified `userId` from the local cache
+     *
+     * The cache is filled with room members, message senders and the results of `getUserInfoList`. This method returns immediately
+     * and can be called on any thread, so the UI can show a nickname without waiting for `getUserInfoList`.
+     *
+     * @param userId User ID
+     * @return The cached user information, or `null` if the user is not cached or the cached information has expired
+     */
+    public abstract TRTCVoiceRoomDef.UserInfo getCachedUserInfo(String userId);
+
+    /**
+     * Get the audience list page by page
+     *
+     * The first page is requested immediately. Call `loadNextPage()` on the returned pager to walk the member cursor,
+     * so that hosts of large rooms can render the first screen without loading every member.
+     *
+     * @param pageSize Number of members per page delivered to the callback. It is a hint, IM may return fewer members.
+     * @param callback Called on the delegate thread for every page
+     * @return Pager used to load more pages or cancel loading
+     */
+    public abstract TRTCVoiceRoomDef.AudiencePager getAudienceListPaged(int pageSize, TRTCVoiceRoomCallback.AudiencePageCallback callback);
+
     //////////////////////////////////////////////////////////
     //
     //                 seat management APIs
@@ -156,6 +206,8 @@ public abstract class TRTCVoiceRoom {
      * Actively mic on (called by anchor or viewer)
      *
      * After successful mic-on, all members in the room will receive the event notifications of `onSeatListChange` and `onAnchorEnterSeat`.
+     * When several users take the same seat at the same time, only one of them succeeds and the others receive
+     * {@link TRTCVoiceRoomDef#ERR_SEAT_LOST_RACE}.
      *
      * @param seatIndex Seat number for mic-on
      * @param callback Operation callback
@@ -175,6 +227,7 @@ public abstract class TRTCVoiceRoom {
      * Pick a viewer for mic-on (called by anchor)
      *
      * After the anchor picks the viewer for mic-on, all members in the room will receive event notifications of `onSeatListChange` and `onAnchorEnterSeat`.
+     * If another user takes the seat at the same time, the callback returns {@link TRTCVoiceRoomDef#ERR_SEAT_LOST_RACE}.
      *
      * - parameter seatIndex    Seat number for picked mic-on
      * - parameter userId       User ID
@@ -213,6 +266,42 @@ public abstract class TRTCVoiceRoom {
      */
     public abstract void closeSeat(int seatIndex, boolean isClose, TRTCVoiceRoomCallback.ActionCallback callback);
 
+    /**
+     * Change several seats at once (called by anchor)
+     *
+     * The changes are applied in order and written to the room in a single update, so every member receives
+     * one {@link TRTCVoiceRoomDelegate#onSeatBatchChange(List)} instead of one callback per seat.
+     * Only {@link TRTCVoiceRoomDef.SeatChange#kick}, {@link TRTCVoiceRoomDef.SeatChange#close} and
+     * {@link TRTCVoiceRoomDef.SeatChange#mute} are supported; use `enterSeat`/`pickSeat` to take a seat.
+     *
+     * @param changeList Seat changes
+     * @param callback   Operation callback
+     */
+    public abstract void updateSeats(List<TRTCVoiceRoomDef.SeatChange> changeList, TRTCVoiceRoomCallback.ActionCallback callback);
+
+    /**
+     * Set whether seat changes made by yourself take effect locally before the server confirms them
+     *
+     * In optimistic mode, `enterSeat`, `leaveSeat`, `pickSeat`, `kickSeat`, `muteSeat`, `closeSeat` and `updateSeats` update the seat list
+     * and trigger the seat callbacks right away. If the change fails, the seat is restored and
+     * {@link TRTCVoiceRoomDelegate#onSeatRollback(int, int, String)} is called. Off by default.
+     *
+     * @param enable true: optimistic; false: wait for the server
+     */
+    public abstract void setOptimisticSeatUpdate(boolean enable);
+
+    /**
+     * Set whether rooms created afterwards store seats in the compact format
+     *
+     * Compact seats take less attribute space, and rooms with more than 10 seats (up to 100) are only possible in this format.
+     * Clients released before this version cannot read compact seats: they see every seat as empty and overwrite seats in the old format.
+     * Only enable it when every client that may enter the room supports it. Off by default, rooms keep the old format and at most 10 seats.
+     * Entering a room always follows the format the room was created with.
+     *
+     * @param enable true: compact format; false: old format
+     */
+    public abstract void setCompactSeatProtocol(boolean enable);
+
     //////////////////////////////////////////////////////////
     //
     //                 本地音频操作接口
@@ -261,6 +350,16 @@ public abstract class TRTCVoiceRoom {
      */
     public abstract void setAudioPlayoutVolume(int volume);
 
+    /**
+     * Set the interval of volume callbacks
+     *
+     * Volume frames that arrive while the previous one is still being delivered are dropped, and
+     * {@link TRTCVoiceRoomDelegate#onSeatTalkingChange(int, boolean)} is only called when a seat crosses the talking threshold.
+     *
+     * @param intervalMs Callback interval in ms, 300 by default; 0 disables volume callbacks
+     */
+    public abstract void setAudioEvaluationInterval(int intervalMs);
+
     //////////////////////////////////////////////////////////
     //
     //                 remote user APIs
@@ -300,6 +399,17 @@ public abstract class TRTCVoiceRoom {
      */
     public abstract void sendRoomTextMsg(String message, TRTCVoiceRoomCallback.ActionCallback callback);
 
+    /**
+     * Set the send rate of text and custom messages
+     *
+     * Messages beyond the rate are queued, and queued custom messages are merged into one IM message when possible.
+     * When the queue is full, the callback of the new message returns an error directly.
+     *
+     * - parameter rate  Maximum number of messages sent per second, 5 by default
+     * - parameter burst Maximum number of messages that can be sent at once, 10 by default
+     */
+    public abstract void setRoomMsgSendRate(int rate, int burst);
+
     /**
      * Broadcast a custom (command) message in the room, which is generally used to broadcast liking and gifting messages
      *
@@ -309,11 +419,61 @@ public abstract class TRTCVoiceRoom {
      */
     public abstract void sendRoomCustomMsg(String cmd, String message, TRTCVoiceRoomCallback.ActionCallback callback);
 
+    /**
+     * Increase a room counter, which is generally used for high-frequency liking and gifting
+     *
+     * Counts are accumulated locally and broadcast as one aggregated message per flush interval.
+     * Running totals are delivered through {@link TRTCVoiceRoomDelegate#onRoomCounterChange}, including your own counts once they are sent.
+     * Counts that have not been sent are dropped when you exit the room.
+     *
+     * - parameter type  Counter type, such as "like" or a gift ID
+     * - parameter count Count to add, must be positive
+     */
+    public abstract void increaseRoomCounter(String type, int count);
+
+    /**
+     * Set the flush interval of room counters
+     *
+     * - parameter intervalMs Interval in ms, 1000 by default; 0 sends every increase immediately
+     */
+    public abstract void setRoomCounterFlushInterval(int intervalMs);
+
     //////////////////////////////////////////////////////////
     //
     //                 invitation command message APIs
     //
     //////////////////////////////////////////////////////////
+    /**
+     * Register a room event, which is generally used for high-frequency business events such as liking and gifting
+     *
+     * Events are dispatched by code and decoded by the codec, no string matching of command words is needed.
+     * Registering the same code again replaces the previous codec and handler.
+     * A code out of the range is not registered and is reported by {@link TRTCVoiceRoomDelegate#onError(int, String)}.
+     *
+     * - parameter code    Event code in [{@link TRTCVoiceRoomDef#ROOM_EVENT_CODE_MIN}, {@link TRTCVoiceRoomDef#ROOM_EVENT_CODE_MAX}]
+     * - parameter codec   Codec of the event, such as {@link TRTCVoiceRoomDef.JsonEventCodec}
+     * - parameter handler Handler called on the delegate thread when the event is received
+     */
+    public abstract <T> void registerRoomEvent(int code, TRTCVoiceRoomDef.RoomEventCodec<T> codec, TRTCVoiceRoomCallback.RoomEventHandler<T> handler);
+
+    /**
+     * Unregister a room event
+     *
+     * - parameter code Event code
+     */
+    public abstract void unregisterRoomEvent(int code);
+
+    /**
+     * Broadcast a registered room event in the room
+     *
+     * Events share the send rate of text and custom messages, see {@link #setRoomMsgSendRate(int, int)}.
+     *
+     * - parameter code     Event code, which must have been registered
+     * - parameter event    Event encoded by the registered codec
+     * - parameter callback Callback for sending result
+     */
+    public abstract <T> void sendRoomEvent(int code, T event, TRTCVoiceRoomCallback.ActionCallback callback);
+
     /**
      * Send invitation to user
      *
@@ -23,4 +23,22 @@ public class TRTCVoiceRoomCallback {
     public interface UserListCallback {
         void onCallback(int code, String msg, List<TRTCVoiceRoomDef.UserInfo> list);
     }
+
+    /**
+     * audience page callback
+     */
+    public interface AudiencePageCallback {
+        /**
+         * @param list    members of this page
+         * @param hasMore whether there are more pages, call {@link TRTCVoiceRoomDef.AudiencePager#loadNextPage()} to get them
+         */
+        void onPage(int code, String msg, List<TRTCVoiceRoomDef.UserInfo> list, boolean hasMore);
+    }
+
+    /**
+     * room event handler, see {@link TRTCVoiceRoom#registerRoomEvent}
+     */
+    public interface RoomEventHandler<T> {
+        void onRoomEvent(int code, T event, TRTCVoiceRoomDef.UserInfo userInfo);
+    }
 }
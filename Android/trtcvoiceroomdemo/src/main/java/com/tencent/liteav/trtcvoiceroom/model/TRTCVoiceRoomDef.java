@@ -1,5 +1,12 @@
 package com.tencent.liteav.trtcvoiceroom.model;
 
+import com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMCodec;
+import com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol;
+import com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.TXRoomService;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.List;
 
 public class TRTCVoiceRoomDef {
@@ -33,7 +40,7 @@ public class TRTCVoiceRoomDef {
         public String         coverUrl;
         /// 【字段含义】是否需要房主确认上麦
         public boolean        needRequest;
-        /// 【字段含义】座位数
+        /// 【字段含义】座位数，最多 MAX_SEAT_COUNT_LEGACY 个，使用紧凑格式时最多 MAX_SEAT_COUNT 个
         public int            seatCount;
         /// 【字段含义】初始化的座位表，可以为null
         public List<SeatInfo> seatInfoList;
@@ -95,4 +102,117 @@ public class TRTCVoiceRoomDef {
                     '}';
         }
     }
+
+    /**
+     * A seat change, used by {@link TRTCVoiceRoom#updateSeats} and {@link TRTCVoiceRoomDelegate#onSeatBatchChange}
+     */
+    public static class SeatChange {
+        public static final int TYPE_TAKE  = 0;
+        public static final int TYPE_LEAVE = 1;
+        public static final int TYPE_CLOSE = 2;
+        public static final int TYPE_MUTE  = 3;
+
+        /// 【字段含义】座位号
+        public int      index;
+        /// 【字段含义】变化类型，TYPE_TAKE/TYPE_LEAVE/TYPE_CLOSE/TYPE_MUTE
+        public int      type;
+        /// 【字段含义】TYPE_CLOSE 时表示是否封麦，TYPE_MUTE 时表示是否禁言
+        public boolean  value;
+        /// 【字段含义】TYPE_TAKE/TYPE_LEAVE 时的用户，只在回调中填充
+        public UserInfo userInfo;
+
+        /// remove the user on the seat, the same as kickSeat
+        public static SeatChange kick(int index) {
+            return create(index, TYPE_LEAVE, true);
+        }
+
+        /// block/unblock the seat, the same as closeSeat
+        public static SeatChange close(int index, boolean isClose) {
+            return create(index, TYPE_CLOSE, isClose);
+        }
+
+        /// mute/unmute the seat, the same as muteSeat
+        public static SeatChange mute(int index, boolean isMute) {
+            return create(index, TYPE_MUTE, isMute);
+        }
+
+        private static SeatChange create(int index, int type, boolean value) {
+            SeatChange change = new SeatChange();
+            change.index = index;
+            change.type = type;
+            change.value = value;
+            return change;
+        }
+
+        @Override
+        public String toString() {
+            return "SeatChange{" +
+                    "index=" + index +
+                    ", type=" + type +
+                    ", value=" + value +
+                    ", userInfo=" + userInfo +
+                    '}';
+        }
+    }
+
+    /// maximum seat count of a room in the compact format, rooms with more than 10 seats store the seats in sharded attributes
+    public static final int MAX_SEAT_COUNT = IMProtocol.Define.MAX_SEAT_SIZE;
+
+    /// maximum seat count of a room in the old format, see {@link TRTCVoiceRoom#setCompactSeatProtocol(boolean)}
+    public static final int MAX_SEAT_COUNT_LEGACY = IMProtocol.Define.MAX_SEAT_KEYS;
+
+    /// error code of enterSeat and pickSeat when another user took the seat at the same time
+    public static final int ERR_SEAT_LOST_RACE = TXRoomService.CODE_SEAT_LOST_RACE;
+
+    /// range of the codes that can be passed to {@link TRTCVoiceRoom#registerRoomEvent}
+    public static final int ROOM_EVENT_CODE_MIN = IMProtocol.Define.CODE_ROOM_EVENT_MIN;
+    public static final int ROOM_EVENT_CODE_MAX = IMProtocol.Define.CODE_ROOM_EVENT_MAX;
+
+    /**
+     * Codec of a room event registered with {@link TRTCVoiceRoom#registerRoomEvent}
+     */
+    public interface RoomEventCodec<T> {
+        /// encode the event, keep it small since the size of an IM custom message is limited
+        byte[] encode(T event);
+
+        /// decode the event from data[offset, offset + length)
+        T decode(byte[] data, int offset, int length);
+    }
+
+    /**
+     * Codec which encodes the event as UTF-8 JSON
+     */
+    public static class JsonEventCodec<T> implements RoomEventCodec<T> {
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+        private final Class<T> mClass;
+
+        public JsonEventCodec(Class<T> clazz) {
+            mClass = clazz;
+        }
+
+        @Override
+        public byte[] encode(T event) {
+            return IMCodec.gson().toJson(event, mClass).getBytes(UTF_8);
+        }
+
+        @Override
+        public T decode(byte[] data, int offset, int length) {
+            return IMCodec.gson().fromJson(new InputStreamReader(new ByteArrayInputStream(data, offset, length), UTF_8), mClass);
+        }
+    }
+
+    /**
+     * Pager returned by {@link TRTCVoiceRoom#getAudienceListPaged(int, TRTCVoiceRoomCallback.AudiencePageCallback)}
+     */
+    public interface AudiencePager {
+        /// load the next page, the result is delivered through AudiencePageCallback
+        void loadNextPage();
+
+        /// whether there are more members to load
+        boolean hasMore();
+
+        /// stop loading, no more pages will be delivered
+        void cancel();
+    }
 }
@@ -73,6 +73,24 @@ public interface TRTCVoiceRoomDelegate {
      */
     void onSeatClose(int index, boolean isClose);
 
+    /**
+     * Callback for several seats changed in one update, e.g. by {@link TRTCVoiceRoom#updateSeats}
+     * Called instead of `onAnchorEnterSeat`, `onAnchorLeaveSeat`, `onSeatMute` and `onSeatClose`,
+     * the new seat list is delivered through `onSeatListChange` before this one.
+     * @param changeList Seat changes in seat order
+     */
+    void onSeatBatchChange(List<TRTCVoiceRoomDef.SeatChange> changeList);
+
+    /**
+     * Callback for seat rollback, only called in optimistic mode, see {@link TRTCVoiceRoom#setOptimisticSeatUpdate(boolean)}
+     * The local change of the seat failed and the seat has been restored to the state in the room,
+     * the restored state is delivered through `onSeatListChange` and the other seat callbacks before this one.
+     * @param index Seat number
+     * @param code Error code
+     * @param message Error message
+     */
+    void onSeatRollback(int index, int code, String message);
+
     /**
      * Callback for viewer's room entry
      * @param userInfo Viewer information
@@ -92,6 +110,13 @@ public interface TRTCVoiceRoomDelegate {
      */
     void onUserVolumeUpdate(ArrayList<TRTCCloudDef.TRTCVolumeInfo> userVolumes, int totalVolume);
 
+    /**
+     * Callback for seat talking status change, only called when the volume crosses the talking threshold
+     * @param index Seat number
+     * @param isTalking Whether the user on the seat is talking
+     */
+    void onSeatTalkingChange(int index, boolean isTalking);
+
     /**
      * Callback for text message receipt
      * @param message Message content
@@ -107,6 +132,15 @@ public interface TRTCVoiceRoomDelegate {
      */
     void onRecvRoomCustomMsg(String cmd, String message, TRTCVoiceRoomDef.UserInfo userInfo);
 
+    /**
+     * Callback for room counter change, see {@link TRTCVoiceRoom#increaseRoomCounter(String, int)}
+     * @param type Counter type
+     * @param total Running total of the counter since you entered the room
+     * @param increment Count added by this update
+     * @param userInfo Information of the user who added the count
+     */
+    void onRoomCounterChange(String type, long total, long increment, TRTCVoiceRoomDef.UserInfo userInfo);
+
     /**
      * Callback for invitation message receipt
      * @param inviteID invite ID
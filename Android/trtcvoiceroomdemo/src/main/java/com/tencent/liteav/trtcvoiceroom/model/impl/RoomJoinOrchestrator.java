@@ -0,0 +1,143 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.RoomMetrics;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+
+/**
+ * 同时发起 IM 和 TRTC 两路进房，两路都成功后才回调成功，总耗时接近较慢的一路
+ * <p>
+ * 任意一路失败时立即回调这一路的错误，并撤销另一路：已经成功的马上撤销，还没返回的等它成功后再撤销。
+ * 结束时输出两路和总的耗时，同时上报给 {@link RoomMetrics}。
+ * 两路的结果都需要在房间线程回调，一个实例只用于一次进房。
+ * 进房还没结束时退房或者重新进房，调用 {@link #cancel()} 放弃这次进房，已经成功和之后成功的每一路都会撤销；
+ * 撤销时如果已经重新进入了同一个房间，需要由 {@link Leg#rollback()} 自己跳过，避免把新的房间也退掉。
+ */
+public class RoomJoinOrchestrator {
+    private static final String TAG = "RoomJoinOrchestrator";
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SUCCESS = 1;
+    private static final int STATE_FAIL    = 2;
+
+    // 进房被 cancel 时回调的错误码
+    public static final int CODE_CANCELED = -4;
+
+    /**
+     * 进房的一路
+     */
+    public interface Leg {
+        void start(TXCallback callback);
+
+        /**
+         * 撤销已经成功的进房，结果不关心；每一路最多撤销一次
+         */
+        void rollback();
+    }
+
+    private final String     mName;
+    private final Leg        mIMLeg;
+    private final Leg        mTRTCLeg;
+    private       TXCallback mCallback;
+    private       long       mStartTime;
+    private       long       mIMCostNs   = -1;
+    private       long       mTRTCCostNs = -1;
+    private       int        mIMState   = STATE_PENDING;
+    private       int        mTRTCState = STATE_PENDING;
+    private       boolean    mFinished;
+
+    /**
+     * @param name 用于日志，例如 "enter room 1234"
+     */
+    public RoomJoinOrchestrator(String name, Leg imLeg, Leg trtcLeg) {
+        mName = name;
+        mIMLeg = imLeg;
+        mTRTCLeg = trtcLeg;
+    }
+
+    public void start(TXCallback callback) {
+        mCallback = callback;
+        mStartTime = System.nanoTime();
+        mIMLeg.start(new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                mIMCostNs = System.nanoTime() - mStartTime;
+                mIMState = (code == 0 ? STATE_SUCCESS : STATE_FAIL);
+                onLegResult(mIMLeg, mTRTCState, mTRTCLeg, "im", code, msg);
+            }
+        });
+        if (mFinished) {
+            // IM 一路同步返回了失败，例如还没有登录，不用再进 TRTC 房间
+            return;
+        }
+        mTRTCLeg.start(new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                mTRTCCostNs = System.nanoTime() - mStartTime;
+                mTRTCState = (code == 0 ? STATE_SUCCESS : STATE_FAIL);
+                onLegResult(mTRTCLeg, mIMState, mIMLeg, "trtc", code, msg);
+            }
+        });
+    }
+
+    /**
+     * 放弃还没结束的进房：已经成功的一路马上撤销，还没返回的等它成功后再撤销，并回调 {@link #CODE_CANCELED}。
+     * 已经结束时不做任何事，失败时的撤销在结束时已经处理。
+     */
+    public void cancel() {
+        if (mFinished) {
+            return;
+        }
+        TRTCLogger.i(TAG, "{} canceled, im:{} trtc:{}", mName, mIMState, mTRTCState);
+        if (mIMState == STATE_SUCCESS) {
+            mIMLeg.rollback();
+        }
+        if (mTRTCState == STATE_SUCCESS) {
+            mTRTCLeg.rollback();
+        }
+        finish(CODE_CANCELED, "enter room canceled.");
+    }
+
+    private void onLegResult(Leg leg, int otherState, Leg otherLeg, String legName, int code, String msg) {
+        if (code == 0) {
+            if (mFinished) {
+                // 另一路已经失败或者进房已经取消，撤销这一路
+                TRTCLogger.i(TAG, "{} {} joined after finish, rollback", mName, legName);
+                leg.rollback();
+            } else if (otherState == STATE_SUCCESS) {
+                finish(0, "enter room success.");
+            }
+            return;
+        }
+        if (mFinished) {
+            return;
+        }
+        TRTCLogger.e(TAG, mName + " " + legName + " fail, code:" + code + " msg:" + msg);
+        if (otherState == STATE_SUCCESS) {
+            otherLeg.rollback();
+        }
+        finish(code, msg);
+    }
+
+    private void finish(int code, String msg) {
+        mFinished = true;
+        long totalNs = System.nanoTime() - mStartTime;
+        TRTCLogger.i(TAG, "{} finish, code:{} cost(ms) {}", mName, code,
+                "im:" + toMs(mIMCostNs) + " trtc:" + toMs(mTRTCCostNs) + " total:" + toMs(totalNs));
+        if (mIMCostNs >= 0) {
+            RoomMetrics.record(RoomMetrics.STAGE_JOIN_IM, mName, mIMCostNs);
+        }
+        if (mTRTCCostNs >= 0) {
+            RoomMetrics.record(RoomMetrics.STAGE_JOIN_TRTC, mName, mTRTCCostNs);
+        }
+        RoomMetrics.record(RoomMetrics.STAGE_JOIN, mName, totalNs);
+        if (mCallback != null) {
+            mCallback.onCallback(code, msg);
+        }
+    }
+
+    private static long toMs(long ns) {
+        // 还没返回的一路输出 -1
+        return ns < 0 ? -1 : ns / 1000000;
+    }
+}
@@ -2,23 +2,31 @@ package com.tencent.liteav.trtcvoiceroom.model.impl;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.text.TextUtils;
+import android.util.SparseArray;
 
 import com.tencent.liteav.audio.TXAudioEffectManager;
 import com.tencent.liteav.trtcvoiceroom.model.TRTCVoiceRoom;
 import com.tencent.liteav.trtcvoiceroom.model.TRTCVoiceRoomCallback;
 import com.tencent.liteav.trtcvoiceroom.model.TRTCVoiceRoomDef;
 import com.tencent.liteav.trtcvoiceroom.model.TRTCVoiceRoomDelegate;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.RoomMetrics;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomEventHandler;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfoListCallback;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatChange;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserListCallback;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserPageCallback;
 import com.tencent.liteav.trtcvoiceroom.model.impl.room.ITXRoomServiceDelegate;
 import com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.TXRoomService;
+import com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.UserInfoCache;
+import com.tencent.liteav.trtcvoiceroom.model.impl.trtc.SeatVolumeTracker;
 import com.tencent.liteav.trtcvoiceroom.model.impl.trtc.VoiceRoomTRTCService;
 import com.tencent.liteav.trtcvoiceroom.model.impl.trtc.VoiceRoomTRTCServiceDelegate;
 import com.tencent.trtc.TRTCCloudDef;
@@ -34,14 +42,19 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
     private static TRTCVoiceRoomImpl     sInstance;
     private final  Context               mContext;
     private        TRTCVoiceRoomDelegate mDelegate;
-    // 所有调用都切到主线程使用，保证内部多线程安全问题
-    private        Handler               mMainHandler;
+    // 所有调用都切到房间线程串行执行，保证内部多线程安全问题，且不占用 UI 线程
+    private        HandlerThread         mRoomThread;
+    private        Handler               mRoomHandler;
     // 外部可指定的回调线程
     private        Handler               mDelegateHandler;
     private        int                   mSdkAppId;
     private        String                mUserId;
     private        String                mUserSig;
     private        String                mRoomId;
+    // 正在进行的进房，IM 和 TRTC 两路同时进行
+    private        RoomJoinOrchestrator  mRoomJoin;
+    // 每次进房加一，撤销时用来判断之后是否又进入了同一个房间
+    private        int                   mJoinId;
 
     private TXRoomInfo                           mTXRoomInfo;
     // 主播列表
@@ -49,11 +62,15 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
     // 已抛出的观众列表
     private Set<String>                          mAudienceList;
     private List<TRTCVoiceRoomDef.SeatInfo>      mSeatInfoList;
-    private TRTCVoiceRoomCallback.ActionCallback mEnterSeatCallback;
     private TRTCVoiceRoomCallback.ActionCallback mLeaveSeatCallback;
-    private TRTCVoiceRoomCallback.ActionCallback mPickSeatCallback;
     private TRTCVoiceRoomCallback.ActionCallback mKickSeatCallback;
     private int                                  mTakeSeatIndex;
+    // 合并音量回调，只把说话状态变化的座位回调出去
+    private SeatVolumeTracker                    mVolumeTracker;
+    private SeatVolumeTracker.Listener           mVolumeListener;
+    private Runnable                             mVolumeDrainRunnable;
+    // 已注册的房间事件编解码，只在房间线程访问
+    private SparseArray<TRTCVoiceRoomDef.RoomEventCodec<?>> mRoomEventCodecs;
 
     public static synchronized TRTCVoiceRoom sharedInstance(Context context) {
         if (sInstance == null) {
@@ -70,20 +87,61 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
     }
 
     private void destroy() {
+        // 房间线程 quitSafely 前会执行完已经投递的任务
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < mRoomEventCodecs.size(); i++) {
+                    TXRoomService.getInstance().unregisterRoomEvent(mRoomEventCodecs.keyAt(i));
+                }
+                mRoomEventCodecs.clear();
+            }
+        });
         TXRoomService.getInstance().destroy();
+        // 房间线程退出后，回调切回主线程
+        VoiceRoomTRTCService.getInstance().setListenerHandler(mDelegateHandler);
+        TXRoomService.getInstance().setRoomHandler(mDelegateHandler);
+        mRoomThread.quitSafely();
     }
 
     private TRTCVoiceRoomImpl(Context context) {
         mContext = context;
-        mMainHandler = new Handler(Looper.getMainLooper());
+        mRoomThread = new HandlerThread("TRTCVoiceRoom");
+        mRoomThread.start();
+        mRoomHandler = new Handler(mRoomThread.getLooper());
         mDelegateHandler = new Handler(Looper.getMainLooper());
         mSeatInfoList = new ArrayList<>();
         mAnchorList = new HashSet<>();
         mAudienceList = new HashSet<>();
         mTakeSeatIndex = -1;
+        mRoomEventCodecs = new SparseArray<>();
+        mVolumeTracker = new SeatVolumeTracker();
+        mVolumeListener = new SeatVolumeTracker.Listener() {
+            @Override
+            public void onUserVolumeUpdate(ArrayList<TRTCCloudDef.TRTCVolumeInfo> userVolumes, int totalVolume) {
+                if (mDelegate != null) {
+                    mDelegate.onUserVolumeUpdate(userVolumes, totalVolume);
+                }
+            }
+
+            @Override
+            public void onSeatTalkingChange(int index, boolean isTalking) {
+                if (mDelegate != null) {
+                    mDelegate.onSeatTalkingChange(index, isTalking);
+                }
+            }
+        };
+        mVolumeDrainRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mVolumeTracker.drain(mVolumeListener);
+            }
+        };
         VoiceRoomTRTCService.getInstance().setDelegate(this);
         VoiceRoomTRTCService.getInstance().init(context);
+        VoiceRoomTRTCService.getInstance().setListenerHandler(mRoomHandler);
         TXRoomService.getInstance().init(context);
+        TXRoomService.getInstance().setRoomHandler(mRoomHandler);
         TXRoomService.getInstance().setDelegate(this);
     }
 
@@ -91,15 +149,24 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         mSeatInfoList.clear();
         mAnchorList.clear();
         mAudienceList.clear();
+        mVolumeTracker.reset();
+    }
+
+    private void updateVolumeSeats() {
+        List<String> userIdList = new ArrayList<>(mSeatInfoList.size());
+        for (TRTCVoiceRoomDef.SeatInfo seatInfo : mSeatInfoList) {
+            userIdList.add(seatInfo.status == TRTCVoiceRoomDef.SeatInfo.STATUS_USED ? seatInfo.userId : null);
+        }
+        mVolumeTracker.setSeatUsers(userIdList);
     }
 
-    private void runOnMainThread(Runnable runnable) {
-        Handler handler = mMainHandler;
+    private void runOnRoomThread(Runnable runnable) {
+        Handler handler = mRoomHandler;
         if (handler != null) {
             if (handler.getLooper() == Looper.myLooper()) {
                 runnable.run();
             } else {
-                handler.post(runnable);
+                handler.post(RoomMetrics.queued("room", runnable));
             }
         } else {
             runnable.run();
@@ -107,6 +174,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
     }
 
     private void runOnDelegateThread(Runnable runnable) {
+        runnable = RoomMetrics.dispatched("delegate", runnable);
         Handler handler = mDelegateHandler;
         if (handler != null) {
             if (handler.getLooper() == Looper.myLooper()) {
@@ -131,20 +199,26 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void login(final int sdkAppId, final String userId, final String userSig, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "start login, sdkAppId:" + sdkAppId + " userId:" + userId + " sign is empty:" + TextUtils.isEmpty(userSig));
                 if (sdkAppId == 0 || TextUtils.isEmpty(userId) || TextUtils.isEmpty(userSig)) {
                     TRTCLogger.e(TAG, "start login fail. params invalid.");
-                    if (callback != null) {
-                        callback.onCallback(-1, "登录失败，参数有误");
-                    }
+                    runOnDelegateThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (callback != null) {
+                                callback.onCallback(-1, "登录失败，参数有误");
+                            }
+                        }
+                    });
                     return;
                 }
                 mSdkAppId = sdkAppId;
                 mUserId = userId;
                 mUserSig = userSig;
+                mVolumeTracker.setSelfUserId(userId);
                 TRTCLogger.i(TAG, "start login room service");
                 TXRoomService.getInstance().login(sdkAppId, userId, userSig, new TXCallback() {
                     @Override
@@ -165,13 +239,14 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void logout(final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "start logout");
                 mSdkAppId = 0;
                 mUserId = "";
                 mUserSig = "";
+                mVolumeTracker.setSelfUserId(null);
                 TRTCLogger.i(TAG, "start logout room service");
                 TXRoomService.getInstance().logout(new TXCallback() {
                     @Override
@@ -193,7 +268,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void setSelfProfile(final String userName, final String avatarURL, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "set profile, user name:" + userName + " avatar url:" + avatarURL);
@@ -217,7 +292,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void createRoom(final int roomId, final TRTCVoiceRoomDef.RoomParam roomParam, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "create room, room id:" + roomId + " info:" + roomParam);
@@ -250,44 +325,66 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                         mSeatInfoList.add(new TRTCVoiceRoomDef.SeatInfo());
                     }
                 }
-                // 创建房间
-                TXRoomService.getInstance().createRoom(mRoomId, roomName, roomCover, isNeedRequest, txSeatInfoList, new TXCallback() {
+                updateVolumeSeats();
+                final String groupId = mRoomId;
+                // 建群和进入 TRTC 房间同时进行，任意一路失败都撤销另一路
+                RoomJoinOrchestrator.Leg imLeg = new RoomJoinOrchestrator.Leg() {
+                    // 群是这次创建的才解散，已经存在的群只退出
+                    private boolean mGroupCreated;
+
                     @Override
-                    public void onCallback(final int code, final String msg) {
-                        TRTCLogger.i(TAG, "create room in service, code:" + code + " msg:" + msg);
-                        if (code == 0) {
-                            enterTRTCRoomInner(mRoomId, mUserId, mUserSig, TRTCCloudDef.TRTCRoleAnchor, callback);
-                            return;
-                        } else {
-                            runOnDelegateThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    if (mDelegate != null) {
-                                        mDelegate.onError(code, msg);
-                                    }
-                                }
-                            });
-                        }
-                        runOnDelegateThread(new Runnable() {
+                    public void start(final TXCallback legCallback) {
+                        TXRoomService.getInstance().createRoom(groupId, roomName, roomCover, isNeedRequest, txSeatInfoList, new TXCallback() {
                             @Override
-                            public void run() {
-                                if (callback != null) {
-                                    callback.onCallback(code, msg);
+                            public void onCallback(final int code, final String msg) {
+                                TRTCLogger.i(TAG, "create room in service, code:" + code + " msg:" + msg);
+                                if (code == 0) {
+                                    mGroupCreated = TXRoomService.getInstance().isGroupCreated(groupId);
+                                } else {
+                                    runOnDelegateThread(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            if (mDelegate != null) {
+                                                mDelegate.onError(code, msg);
+                                            }
+                                        }
+                                    });
                                 }
+                                legCallback.onCallback(code, msg);
                             }
                         });
                     }
-                });
+
+                    @Override
+                    public void rollback() {
+                        TXRoomService.getInstance().rollbackCreateRoom(groupId, mGroupCreated);
+                    }
+                };
+                startRoomJoin("create room " + roomId, imLeg, TRTCCloudDef.TRTCRoleAnchor, callback);
             }
         });
     }
 
     @Override
     public void destroyRoom(final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "start destroy room.");
+                if (cancelRoomJoin()) {
+                    // 创建房间还没结束，已经建的群和进入的 TRTC 房间都由撤销处理
+                    clearList();
+                    mRoomId = "";
+                    runOnDelegateThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (callback != null) {
+                                callback.onCallback(0, "destroy success.");
+                            }
+                        }
+                    });
+                    return;
+                }
                 // TRTC 房间退房结果不关心
                 TRTCLogger.i(TAG, "start exit trtc room.");
                 VoiceRoomTRTCService.getInstance().exitRoom(new TXCallback() {
@@ -332,41 +429,22 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void enterRoom(final int roomId, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 // 恢复设定
                 clearList();
                 mRoomId = String.valueOf(roomId);
+                final String groupId = mRoomId;
                 TRTCLogger.i(TAG, "start enter room, room id:" + roomId);
-                enterTRTCRoomInner(mRoomId, mUserId, mUserSig, TRTCCloudDef.TRTCRoleAudience, new TRTCVoiceRoomCallback.ActionCallback() {
+                // 进群和进入 TRTC 房间同时进行，任意一路失败都撤销另一路
+                RoomJoinOrchestrator.Leg imLeg = new RoomJoinOrchestrator.Leg() {
                     @Override
-                    public void onCallback(final int code, final String msg) {
-                        TRTCLogger.i(TAG, "trtc enter room finish, room id:" + roomId + " code:" + code + " msg:" + msg);
-                        //                        runOnMainThread(new Runnable() {
-                        //                            @Override
-                        //                            public void run() {
-                        //                                if (code == 0) {
-                        //                                }
-                        //                            }
-                        //                        });
-                        runOnDelegateThread(new Runnable() {
+                    public void start(final TXCallback legCallback) {
+                        TXRoomService.getInstance().enterRoom(groupId, new TXCallback() {
                             @Override
-                            public void run() {
-                                if (callback != null) {
-                                    callback.onCallback(code, msg);
-                                }
-                            }
-                        });
-                    }
-                });
-                TXRoomService.getInstance().enterRoom(mRoomId, new TXCallback() {
-                    @Override
-                    public void onCallback(final int code, final String msg) {
-                        TRTCLogger.i(TAG, "enter room service finish, room id:" + roomId + " code:" + code + " msg:" + msg);
-                        runOnMainThread(new Runnable() {
-                            @Override
-                            public void run() {
+                            public void onCallback(final int code, final String msg) {
+                                TRTCLogger.i(TAG, "enter room service finish, room id:" + roomId + " code:" + code + " msg:" + msg);
                                 if (code != 0) {
                                     runOnDelegateThread(new Runnable() {
                                         @Override
@@ -377,20 +455,51 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                                         }
                                     });
                                 }
+                                legCallback.onCallback(code, msg);
                             }
                         });
                     }
-                });
+
+                    @Override
+                    public void rollback() {
+                        TXRoomService.getInstance().rollbackEnterRoom(groupId);
+                    }
+                };
+                startRoomJoin("enter room " + roomId, imLeg, TRTCCloudDef.TRTCRoleAudience, callback);
+            }
+        });
+    }
+
+    @Override
+    public void setRoomSnapshotEnabled(final boolean enable) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                TXRoomService.getInstance().setRoomSnapshotEnabled(enable);
             }
         });
     }
 
     @Override
     public void exitRoom(final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "start exit room.");
+                if (cancelRoomJoin()) {
+                    // 进房还没结束，已经进入的群和 TRTC 房间都由撤销处理
+                    clearList();
+                    mRoomId = "";
+                    runOnDelegateThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (callback != null) {
+                                callback.onCallback(0, "exit room success.");
+                            }
+                        }
+                    });
+                    return;
+                }
                 // 退房的时候需要判断主播是否在座位，如果是麦上主播，需要先清空座位列表
                 if (isOnSeat(mUserId)) {
                     leaveSeat(new TRTCVoiceRoomCallback.ActionCallback() {
@@ -456,14 +565,13 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void getRoomInfoList(final List<Integer> roomIdList, final TRTCVoiceRoomCallback.RoomInfoCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 if (roomIdList == null) {
                     TRTCLogger.e(TAG, "getRoomInfoList room id list is empty.");
                     return;
                 }
-                final List<TRTCVoiceRoomDef.RoomInfo> trtcLiveRoomInfoList = new ArrayList<>();
                 TRTCLogger.i(TAG, "start getRoomInfoList: " + roomIdList);
                 List<String> strings = new ArrayList<>();
 
@@ -472,28 +580,35 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                 }
                 TXRoomService.getInstance().getRoomInfoList(strings, new TXRoomInfoListCallback() {
                     @Override
-                    public void onCallback(int code, String msg, List<TXRoomInfo> list) {
-                        if (code == 0) {
-                            for (TXRoomInfo info : list) {
-                                TRTCLogger.i(TAG, info.toString());
-                                TRTCVoiceRoomDef.RoomInfo roomInfo = new TRTCVoiceRoomDef.RoomInfo();
-                                int                       translateRoomId;
-                                try {
-                                    translateRoomId = Integer.valueOf(info.roomId);
-                                } catch (NumberFormatException e) {
-                                    continue;
+                    public void onCallback(final int code, final String msg, List<TXRoomInfo> list) {
+                        // 失败时 list 为缓存里的房间资料，同样回调出去，由上层决定是否使用
+                        final List<TRTCVoiceRoomDef.RoomInfo> trtcLiveRoomInfoList = (list == null ? new ArrayList<TRTCVoiceRoomDef.RoomInfo>() : toRoomInfoList(list));
+                        runOnDelegateThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (callback != null) {
+                                    callback.onCallback(code, msg, trtcLiveRoomInfoList);
                                 }
-                                roomInfo.roomId = translateRoomId;
-                                roomInfo.memberCount = info.memberCount;
-                                roomInfo.roomName = info.roomName;
-                                roomInfo.ownerId = info.ownerId;
-                                roomInfo.coverUrl = info.cover;
-                                roomInfo.ownerName = info.ownerName;
-                                trtcLiveRoomInfoList.add(roomInfo);
                             }
-                        }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void getCachedRoomInfoList(final TRTCVoiceRoomCallback.RoomInfoCallback callback) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                final List<TRTCVoiceRoomDef.RoomInfo> trtcLiveRoomInfoList = toRoomInfoList(TXRoomService.getInstance().getCachedRoomInfoList());
+                TRTCLogger.i(TAG, "getCachedRoomInfoList size:{}", trtcLiveRoomInfoList.size());
+                runOnDelegateThread(new Runnable() {
+                    @Override
+                    public void run() {
                         if (callback != null) {
-                            callback.onCallback(code, msg, trtcLiveRoomInfoList);
+                            callback.onCallback(0, "", trtcLiveRoomInfoList);
                         }
                     }
                 });
@@ -501,9 +616,50 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         });
     }
 
+    private List<TRTCVoiceRoomDef.RoomInfo> toRoomInfoList(List<TXRoomInfo> list) {
+        List<TRTCVoiceRoomDef.RoomInfo> trtcLiveRoomInfoList = new ArrayList<>();
+        for (TXRoomInfo info : list) {
+            if (TRTCLogger.isLoggable(TAG, TRTCLogger.LEVEL_DEBUG)) {
+                TRTCLogger.d(TAG, info.toString());
+            }
+            TRTCVoiceRoomDef.RoomInfo roomInfo = new TRTCVoiceRoomDef.RoomInfo();
+            int                       translateRoomId;
+            try {
+                translateRoomId = Integer.valueOf(info.roomId);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            roomInfo.roomId = translateRoomId;
+            roomInfo.memberCount = info.memberCount;
+            roomInfo.roomName = info.roomName;
+            roomInfo.ownerId = info.ownerId;
+            roomInfo.coverUrl = info.cover;
+            roomInfo.ownerName = info.ownerName;
+            trtcLiveRoomInfoList.add(roomInfo);
+        }
+        return trtcLiveRoomInfoList;
+    }
+
+    @Override
+    public TRTCVoiceRoomDef.UserInfo getCachedUserInfo(String userId) {
+        if (TextUtils.isEmpty(userId)) {
+            return null;
+        }
+        // 缓存本身是线程安全的，直接在调用线程读取
+        TXUserInfo info = UserInfoCache.getInstance().get(userId);
+        if (info == null) {
+            return null;
+        }
+        TRTCVoiceRoomDef.UserInfo userInfo = new TRTCVoiceRoomDef.UserInfo();
+        userInfo.userId = info.userId;
+        userInfo.userName = info.userName;
+        userInfo.userAvatar = info.avatarURL;
+        return userInfo;
+    }
+
     @Override
     public void getUserInfoList(final List<String> userIdList, final TRTCVoiceRoomCallback.UserListCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 if (userIdList == null) {
@@ -540,7 +696,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
     }
 
     private void getAudienceList(final TRTCVoiceRoomCallback.UserListCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TXRoomService.getInstance().getAudienceList(new TXUserListCallback() {
@@ -572,9 +728,118 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         });
     }
 
+    @Override
+    public TRTCVoiceRoomDef.AudiencePager getAudienceListPaged(int pageSize, TRTCVoiceRoomCallback.AudiencePageCallback callback) {
+        final AudiencePagerImpl pager = new AudiencePagerImpl(pageSize, callback);
+        pager.loadNextPage();
+        return pager;
+    }
+
+    /**
+     * 按游标分页拉取观众列表，IM 返回的一页会按 pageSize 拆开分批回调
+     */
+    private class AudiencePagerImpl implements TRTCVoiceRoomDef.AudiencePager {
+        private static final int DEFAULT_PAGE_SIZE = 20;
+
+        private final int                                         mPageSize;
+        private final TRTCVoiceRoomCallback.AudiencePageCallback mCallback;
+        // IM 已返回但还未回调出去的成员
+        private final List<TXUserInfo>                            mBuffer;
+        private       long                                        mNextSeq;
+        private       boolean                                     mIsFinished;
+        private       boolean                                     mIsLoading;
+        private volatile boolean                                  mIsCanceled;
+
+        AudiencePagerImpl(int pageSize, TRTCVoiceRoomCallback.AudiencePageCallback callback) {
+            mPageSize = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+            mCallback = callback;
+            mBuffer = new ArrayList<>();
+        }
+
+        @Override
+        public void loadNextPage() {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (mIsCanceled || mIsLoading) {
+                        return;
+                    }
+                    if (mBuffer.size() >= mPageSize || (mIsFinished && !mBuffer.isEmpty())) {
+                        deliverPage(0, "");
+                        return;
+                    }
+                    if (mIsFinished) {
+                        return;
+                    }
+                    mIsLoading = true;
+                    TXRoomService.getInstance().getAudienceListPage(mNextSeq, new TXUserPageCallback() {
+                        @Override
+                        public void onCallback(final int code, final String msg, final List<TXUserInfo> list, final long nextSeq) {
+                            runOnRoomThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    mIsLoading = false;
+                                    if (mIsCanceled) {
+                                        return;
+                                    }
+                                    TRTCLogger.i(TAG, "get audience page finish, code:" + code + " size:" + (list != null ? list.size() : 0) + " nextSeq:" + nextSeq);
+                                    if (code != 0) {
+                                        deliverPage(code, msg);
+                                        return;
+                                    }
+                                    if (list != null) {
+                                        mBuffer.addAll(list);
+                                    }
+                                    mNextSeq = nextSeq;
+                                    mIsFinished = (nextSeq == 0);
+                                    deliverPage(0, msg);
+                                }
+                            });
+                        }
+                    });
+                }
+            });
+        }
+
+        @Override
+        public boolean hasMore() {
+            return !mIsCanceled && (!mIsFinished || !mBuffer.isEmpty());
+        }
+
+        @Override
+        public void cancel() {
+            mIsCanceled = true;
+        }
+
+        private void deliverPage(final int code, final String msg) {
+            final List<TRTCVoiceRoomDef.UserInfo> userList = new ArrayList<>();
+            if (code == 0) {
+                int count = Math.min(mPageSize, mBuffer.size());
+                for (int i = 0; i < count; i++) {
+                    TXUserInfo                info         = mBuffer.get(i);
+                    TRTCVoiceRoomDef.UserInfo trtcUserInfo = new TRTCVoiceRoomDef.UserInfo();
+                    trtcUserInfo.userId = info.userId;
+                    trtcUserInfo.userAvatar = info.avatarURL;
+                    trtcUserInfo.userName = info.userName;
+                    userList.add(trtcUserInfo);
+                }
+                mBuffer.subList(0, count).clear();
+            }
+            final boolean hasMore = hasMore();
+            runOnDelegateThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCallback != null && !mIsCanceled) {
+                        mCallback.onPage(code, msg, userList, hasMore);
+                    }
+                }
+            });
+        }
+    }
+
     @Override
     public void enterSeat(final int seatIndex, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "enterSeat " + seatIndex);
@@ -589,20 +854,18 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                     });
                     return;
                 }
-                mEnterSeatCallback = callback;
+                // 抢麦结果以读回的座位为准，座位列表的变化通过 onSeatTake/onSeatLeave 单独回调
                 TXRoomService.getInstance().takeSeat(seatIndex, new TXCallback() {
                     @Override
-                    public void onCallback(int code, String msg) {
-                        if (code != 0) {
-                            //出错了，恢复callback
-                            mEnterSeatCallback = null;
-                            mTakeSeatIndex = -1;
-                            if (callback != null) {
-                                callback.onCallback(code, msg);
+                    public void onCallback(final int code, final String msg) {
+                        runOnDelegateThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (callback != null) {
+                                    callback.onCallback(code, code == 0 ? "enter seat success" : msg);
+                                }
                             }
-                        } else {
-                            TRTCLogger.i(TAG, "take seat callback success, and wait attrs changed.");
-                        }
+                        });
                     }
                 });
             }
@@ -611,7 +874,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void leaveSeat(final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "leaveSeat " + mTakeSeatIndex);
@@ -632,6 +895,10 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                     @Override
                     public void onCallback(final int code, final String msg) {
                         if (code != 0) {
+                            if (mLeaveSeatCallback != callback) {
+                                // 乐观模式下已经回调过成功，失败通过 onSeatRollback 通知
+                                return;
+                            }
                             //出错了，恢复callback
                             mLeaveSeatCallback = null;
                             runOnDelegateThread(new Runnable() {
@@ -651,7 +918,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void pickSeat(final int seatIndex, final String userId, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 //判断该用户是否已经在麦上
@@ -667,22 +934,17 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                     });
                     return;
                 }
-                mPickSeatCallback = callback;
                 TXRoomService.getInstance().pickSeat(seatIndex, userId, new TXCallback() {
                     @Override
                     public void onCallback(final int code, final String msg) {
-                        if (code != 0) {
-                            //出错了，恢复callback
-                            mPickSeatCallback = null;
-                            runOnDelegateThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    if (callback != null) {
-                                        callback.onCallback(code, msg);
-                                    }
+                        runOnDelegateThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (callback != null) {
+                                    callback.onCallback(code, code == 0 ? "pick seat success" : msg);
                                 }
-                            });
-                        }
+                            }
+                        });
                     }
                 });
             }
@@ -691,7 +953,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void kickSeat(final int index, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "kickSeat " + index);
@@ -700,6 +962,10 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                     @Override
                     public void onCallback(final int code, final String msg) {
                         if (code != 0) {
+                            if (mKickSeatCallback != callback) {
+                                // 乐观模式下已经回调过成功，失败通过 onSeatRollback 通知
+                                return;
+                            }
                             //出错了，恢复callback
                             mKickSeatCallback = null;
                             runOnDelegateThread(new Runnable() {
@@ -719,7 +985,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void muteSeat(final int seatIndex, final boolean isMute, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "muteSeat " + seatIndex + " " + isMute);
@@ -742,7 +1008,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void closeSeat(final int seatIndex, final boolean isClose, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "closeSeat " + seatIndex + " " + isClose);
@@ -763,9 +1029,59 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         });
     }
 
+    @Override
+    public void updateSeats(final List<TRTCVoiceRoomDef.SeatChange> changeList, final TRTCVoiceRoomCallback.ActionCallback callback) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                TRTCLogger.i(TAG, "updateSeats " + changeList);
+                List<TXSeatChange> txChangeList = null;
+                if (changeList != null) {
+                    txChangeList = new ArrayList<>(changeList.size());
+                    for (TRTCVoiceRoomDef.SeatChange change : changeList) {
+                        txChangeList.add(change == null ? null : new TXSeatChange(change.index, change.type, change.value, null));
+                    }
+                }
+                TXRoomService.getInstance().modifySeats(txChangeList, new TXCallback() {
+                    @Override
+                    public void onCallback(final int code, final String msg) {
+                        runOnDelegateThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (callback != null) {
+                                    callback.onCallback(code, msg);
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void setOptimisticSeatUpdate(final boolean enable) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                TXRoomService.getInstance().setOptimisticSeat(enable);
+            }
+        });
+    }
+
+    @Override
+    public void setCompactSeatProtocol(final boolean enable) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                TXRoomService.getInstance().setCompactSeatAttr(enable);
+            }
+        });
+    }
+
     @Override
     public void startMicrophone() {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 VoiceRoomTRTCService.getInstance().startMicrophone();
@@ -775,7 +1091,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void stopMicrophone() {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 VoiceRoomTRTCService.getInstance().stopMicrophone();
@@ -785,7 +1101,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void setAudioQuality(final int quality) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 VoiceRoomTRTCService.getInstance().setAudioQuality(quality);
@@ -802,7 +1118,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
      */
     @Override
     public void muteLocalAudio(final boolean mute) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "mute local audio, mute:" + mute);
@@ -813,7 +1129,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void setSpeaker(final boolean useSpeaker) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 VoiceRoomTRTCService.getInstance().setSpeaker(useSpeaker);
@@ -823,7 +1139,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void setAudioCaptureVolume(final int volume) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 VoiceRoomTRTCService.getInstance().setAudioCaptureVolume(volume);
@@ -833,7 +1149,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void setAudioPlayoutVolume(final int volume) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 VoiceRoomTRTCService.getInstance().setAudioPlayoutVolume(volume);
@@ -841,6 +1157,16 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         });
     }
 
+    @Override
+    public void setAudioEvaluationInterval(final int intervalMs) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                VoiceRoomTRTCService.getInstance().setAudioEvaluationInterval(intervalMs);
+            }
+        });
+    }
+
     /**
      * 静音音频
      *
@@ -849,7 +1175,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
      */
     @Override
     public void muteRemoteAudio(final String userId, final boolean mute) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "mute trtc audio, user id:" + userId);
@@ -865,7 +1191,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
      */
     @Override
     public void muteAllRemoteAudio(final boolean mute) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "mute all trtc remote audio success, mute:" + mute);
@@ -882,7 +1208,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void sendRoomTextMsg(final String message, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "sendRoomTextMsg");
@@ -903,9 +1229,19 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         });
     }
 
+    @Override
+    public void setRoomMsgSendRate(final int rate, final int burst) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                TXRoomService.getInstance().setMsgSendRate(rate, burst);
+            }
+        });
+    }
+
     @Override
     public void sendRoomCustomMsg(final String cmd, final String message, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "sendRoomCustomMsg");
@@ -926,9 +1262,138 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         });
     }
 
+    @Override
+    public void increaseRoomCounter(final String type, final int count) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                TXRoomService.getInstance().increaseRoomCounter(type, count);
+            }
+        });
+    }
+
+    @Override
+    public void setRoomCounterFlushInterval(final int intervalMs) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                TXRoomService.getInstance().setCounterFlushInterval(intervalMs);
+            }
+        });
+    }
+
+    @Override
+    public <T> void registerRoomEvent(final int code, final TRTCVoiceRoomDef.RoomEventCodec<T> codec, final TRTCVoiceRoomCallback.RoomEventHandler<T> handler) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                TRTCLogger.i(TAG, "registerRoomEvent " + code);
+                boolean success = TXRoomService.getInstance().registerRoomEvent(code, new TXRoomEventHandler() {
+                    @Override
+                    public void onRoomEvent(final int code, byte[] data, int offset, int length, TXUserInfo userInfo) {
+                        final T event;
+                        try {
+                            event = codec.decode(data, offset, length);
+                        } catch (RuntimeException e) {
+                            TRTCLogger.e(TAG, "decode room event " + code + " error: " + e.getMessage());
+                            return;
+                        }
+                        final TRTCVoiceRoomDef.UserInfo sender = new TRTCVoiceRoomDef.UserInfo();
+                        sender.userId = userInfo.userId;
+                        sender.userName = userInfo.userName;
+                        sender.userAvatar = userInfo.avatarURL;
+                        runOnDelegateThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (handler != null) {
+                                    handler.onRoomEvent(code, event, sender);
+                                }
+                            }
+                        });
+                    }
+                });
+                if (success) {
+                    mRoomEventCodecs.put(code, codec);
+                    return;
+                }
+                runOnDelegateThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mDelegate != null) {
+                            mDelegate.onError(-1, "register room event fail, code out of range: " + code);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void unregisterRoomEvent(final int code) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                TXRoomService.getInstance().unregisterRoomEvent(code);
+                mRoomEventCodecs.remove(code);
+            }
+        });
+    }
+
+    @Override
+    public <T> void sendRoomEvent(final int code, final T event, final TRTCVoiceRoomCallback.ActionCallback callback) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                @SuppressWarnings("unchecked")
+                TRTCVoiceRoomDef.RoomEventCodec<T> codec = (TRTCVoiceRoomDef.RoomEventCodec<T>) mRoomEventCodecs.get(code);
+                byte[] payload = null;
+                String error   = null;
+                if (codec == null) {
+                    error = "room event is not registered: " + code;
+                } else {
+                    try {
+                        payload = codec.encode(event);
+                    } catch (RuntimeException e) {
+                        error = "encode room event " + code + " error: " + e.getMessage();
+                    }
+                }
+                if (error != null) {
+                    TRTCLogger.e(TAG, error);
+                    final String msg = error;
+                    runOnDelegateThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (callback != null) {
+                                callback.onCallback(-1, msg);
+                            }
+                        }
+                    });
+                    return;
+                }
+                TXRoomService.getInstance().sendRoomEvent(code, payload, new TXCallback() {
+                    @Override
+                    public void onCallback(final int code, final String msg) {
+                        runOnDelegateThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (callback != null) {
+                                    callback.onCallback(code, msg);
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 唯一不切到房间线程的调用：邀请 id 由 IM SDK 在 invite 时生成，需要同步返回给调用方。
+     * 这里只读取 TXRoomService 中跨线程可见的字段，结果仍然在房间线程回调，见 {@link TXRoomService#sendInvitation}
+     */
     @Override
     public String sendInvitation(final String cmd, final String userId, final String content, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        TRTCLogger.i(TAG, "sendInvitation to " + userId + " cmd:" + cmd + " content:" + content);
+        TRTCLogger.i(TAG, "sendInvitation to {} cmd:{} content:{}", userId, cmd, content);
         return TXRoomService.getInstance().sendInvitation(cmd, userId, content, new TXCallback() {
             @Override
             public void onCallback(final int code, final String msg) {
@@ -946,7 +1411,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void acceptInvitation(final String id, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "acceptInvitation " + id);
@@ -969,7 +1434,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void rejectInvitation(final String id, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "rejectInvitation " + id);
@@ -992,7 +1457,7 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void cancelInvitation(final String id, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 TRTCLogger.i(TAG, "cancelInvitation " + id);
@@ -1013,13 +1478,50 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         });
     }
 
-    private void enterTRTCRoomInner(final String roomId, final String userId, final String userSig, final int role, final TRTCVoiceRoomCallback.ActionCallback callback) {
-        // 进入 TRTC 房间
-        TRTCLogger.i(TAG, "enter trtc room.");
-        VoiceRoomTRTCService.getInstance().enterRoom(mSdkAppId, roomId, userId, userSig, role, new TXCallback() {
+    /**
+     * 同时进行 IM 和 TRTC 两路进房，两路都完成后在 delegate 线程回调 callback
+     * <p>
+     * TXRoomService 和 VoiceRoomTRTCService 都在房间线程回调，两路的结果不需要再切线程。
+     */
+    private void startRoomJoin(String name, RoomJoinOrchestrator.Leg imLeg, final int role, final TRTCVoiceRoomCallback.ActionCallback callback) {
+        // 先更新 mJoinId，上一次进房撤销时才能知道又进入了同一个房间
+        final int joinId = ++mJoinId;
+        cancelRoomJoin();
+        final String roomId  = mRoomId;
+        final String userId  = mUserId;
+        final String userSig = mUserSig;
+        RoomJoinOrchestrator.Leg trtcLeg = new RoomJoinOrchestrator.Leg() {
+            @Override
+            public void start(final TXCallback legCallback) {
+                // 进入 TRTC 房间
+                TRTCLogger.i(TAG, "enter trtc room.");
+                VoiceRoomTRTCService.getInstance().enterRoom(mSdkAppId, roomId, userId, userSig, role, new TXCallback() {
+                    @Override
+                    public void onCallback(int code, String msg) {
+                        TRTCLogger.i(TAG, "enter trtc room finish, code:" + code + " msg:" + msg);
+                        legCallback.onCallback(code, msg);
+                    }
+                });
+            }
+
+            @Override
+            public void rollback() {
+                if (!TextUtils.isEmpty(mRoomId) && !roomId.equals(mRoomId)) {
+                    // 已经开始进入其他房间，TRTC 进新房间时会自动离开这个房间
+                    return;
+                }
+                VoiceRoomTRTCService.getInstance().exitRoom(null);
+            }
+        };
+        final RoomJoinOrchestrator join = new RoomJoinOrchestrator(name, guardRollback(imLeg, roomId, joinId),
+                guardRollback(trtcLeg, roomId, joinId));
+        mRoomJoin = join;
+        join.start(new TXCallback() {
             @Override
             public void onCallback(final int code, final String msg) {
-                TRTCLogger.i(TAG, "enter trtc room finish, code:" + code + " msg:" + msg);
+                if (mRoomJoin == join) {
+                    mRoomJoin = null;
+                }
                 runOnDelegateThread(new Runnable() {
                     @Override
                     public void run() {
@@ -1032,9 +1534,45 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         });
     }
 
+    /**
+     * 撤销时如果之后又进入了同一个房间就跳过，避免把新的进房也退掉；进入的是其他房间或者已经退房时正常撤销
+     */
+    private RoomJoinOrchestrator.Leg guardRollback(final RoomJoinOrchestrator.Leg leg, final String roomId, final int joinId) {
+        return new RoomJoinOrchestrator.Leg() {
+            @Override
+            public void start(TXCallback callback) {
+                leg.start(callback);
+            }
+
+            @Override
+            public void rollback() {
+                if (joinId != mJoinId && roomId.equals(mRoomId)) {
+                    TRTCLogger.i(TAG, "room " + roomId + " joined again, skip rollback");
+                    return;
+                }
+                leg.rollback();
+            }
+        };
+    }
+
+    /**
+     * 退房或者重新进房时调用，放弃还没结束的进房，已经成功和之后成功的每一路都会撤销
+     *
+     * @return 是否有还没结束的进房
+     */
+    private boolean cancelRoomJoin() {
+        if (mRoomJoin == null) {
+            return false;
+        }
+        RoomJoinOrchestrator join = mRoomJoin;
+        mRoomJoin = null;
+        join.cancel();
+        return true;
+    }
+
     @Override
     public void onRoomDestroy(final String roomId) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
                 exitRoom(null);
@@ -1066,6 +1604,22 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
         });
     }
 
+    @Override
+    public void onRoomCounterChange(String roomId, final String type, final long total, final long increment, final TXUserInfo userInfo) {
+        runOnDelegateThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mDelegate != null) {
+                    TRTCVoiceRoomDef.UserInfo throwUser = new TRTCVoiceRoomDef.UserInfo();
+                    throwUser.userId = userInfo.userId;
+                    throwUser.userName = userInfo.userName;
+                    throwUser.userAvatar = userInfo.avatarURL;
+                    mDelegate.onRoomCounterChange(type, total, increment, throwUser);
+                }
+            }
+        });
+    }
+
     @Override
     public void onRoomRecvRoomCustomMsg(final String roomId, final String cmd, final String message, final TXUserInfo userInfo) {
         runOnDelegateThread(new Runnable() {
@@ -1084,30 +1638,41 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void onRoomInfoChange(final TXRoomInfo tXRoomInfo) {
-        runOnDelegateThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
-                TRTCVoiceRoomDef.RoomInfo roomInfo = new TRTCVoiceRoomDef.RoomInfo();
+                // mRoomId 只在房间线程读写，退房后为空
+                final TRTCVoiceRoomDef.RoomInfo roomInfo = new TRTCVoiceRoomDef.RoomInfo();
+                try {
+                    roomInfo.roomId = Integer.valueOf(mRoomId);
+                } catch (NumberFormatException e) {
+                    TRTCLogger.w(TAG, "room info change after exit room, roomId:{}", mRoomId);
+                    return;
+                }
                 roomInfo.roomName = tXRoomInfo.roomName;
-                roomInfo.roomId = Integer.valueOf(mRoomId);
                 roomInfo.ownerId = tXRoomInfo.ownerId;
                 roomInfo.ownerName = tXRoomInfo.ownerName;
                 roomInfo.coverUrl = tXRoomInfo.cover;
                 roomInfo.memberCount = tXRoomInfo.memberCount;
                 roomInfo.needRequest = (tXRoomInfo.needRequest == 1);
-                if (mDelegate != null) {
-                    mDelegate.onRoomInfoChange(roomInfo);
-                }
+                runOnDelegateThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mDelegate != null) {
+                            mDelegate.onRoomInfoChange(roomInfo);
+                        }
+                    }
+                });
             }
         });
     }
 
     @Override
     public void onSeatInfoListChange(final List<TXSeatInfo> tXSeatInfoList) {
-        runOnDelegateThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
-                List<TRTCVoiceRoomDef.SeatInfo> seatInfoList = new ArrayList<>();
+                final List<TRTCVoiceRoomDef.SeatInfo> seatInfoList = new ArrayList<>();
                 for (TXSeatInfo seatInfo : tXSeatInfoList) {
                     TRTCVoiceRoomDef.SeatInfo info = new TRTCVoiceRoomDef.SeatInfo();
                     info.userId = seatInfo.user;
@@ -1116,9 +1681,15 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                     seatInfoList.add(info);
                 }
                 mSeatInfoList = seatInfoList;
-                if (mDelegate != null) {
-                    mDelegate.onSeatListChange(seatInfoList);
-                }
+                updateVolumeSeats();
+                runOnDelegateThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mDelegate != null) {
+                            mDelegate.onSeatListChange(seatInfoList);
+                        }
+                    }
+                });
             }
         });
     }
@@ -1157,15 +1728,10 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void onSeatTake(final int index, final TXUserInfo userInfo) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
-                if (userInfo.userId.equals(mUserId)) {
-                    //是自己上线了, 切换角色
-                    mTakeSeatIndex = index;
-                    VoiceRoomTRTCService.getInstance().switchToAnchor();
-                    VoiceRoomTRTCService.getInstance().muteLocalAudio(mSeatInfoList.get(index).mute);
-                }
+                handleSeatTake(index, userInfo.userId);
                 runOnDelegateThread(new Runnable() {
                     @Override
                     public void run() {
@@ -1176,37 +1742,18 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                             info.userName = userInfo.userName;
                             mDelegate.onAnchorEnterSeat(index, info);
                         }
-                        if (mPickSeatCallback != null) {
-                            mPickSeatCallback.onCallback(0, "pick seat success");
-                            mPickSeatCallback = null;
-                        }
                     }
                 });
-                if (userInfo.userId.equals(mUserId)) {
-                    //在回调出去
-                    runOnDelegateThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (mEnterSeatCallback != null) {
-                                mEnterSeatCallback.onCallback(0, "enter seat success");
-                                mEnterSeatCallback = null;
-                            }
-                        }
-                    });
-                }
             }
         });
     }
 
     @Override
     public void onSeatClose(final int index, final boolean isClose) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
-                if (mTakeSeatIndex == index && isClose) {
-                    VoiceRoomTRTCService.getInstance().switchToAudience();
-                    mTakeSeatIndex = -1;
-                }
+                handleSeatClose(index, isClose);
                 runOnDelegateThread(new Runnable() {
                     @Override
                     public void run() {
@@ -1221,14 +1768,12 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void onSeatLeave(final int index, final TXUserInfo userInfo) {
-        runOnMainThread(new Runnable() {
+        runOnRoomThread(new Runnable() {
             @Override
             public void run() {
-                if (userInfo.userId.equals(mUserId)) {
-                    //自己下线了~
-                    mTakeSeatIndex = -1;
-                    VoiceRoomTRTCService.getInstance().switchToAudience();
-                }
+                handleSeatLeave(userInfo.userId);
+                final TRTCVoiceRoomCallback.ActionCallback kickSeatCallback = mKickSeatCallback;
+                mKickSeatCallback = null;
                 runOnDelegateThread(new Runnable() {
                     @Override
                     public void run() {
@@ -1239,19 +1784,19 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
                             info.userName = userInfo.userName;
                             mDelegate.onAnchorLeaveSeat(index, info);
                         }
-                        if (mKickSeatCallback != null) {
-                            mKickSeatCallback.onCallback(0, "kick seat success");
-                            mKickSeatCallback = null;
+                        if (kickSeatCallback != null) {
+                            kickSeatCallback.onCallback(0, "kick seat success");
                         }
                     }
                 });
                 if (userInfo.userId.equals(mUserId)) {
+                    final TRTCVoiceRoomCallback.ActionCallback leaveSeatCallback = mLeaveSeatCallback;
+                    mLeaveSeatCallback = null;
                     runOnDelegateThread(new Runnable() {
                         @Override
                         public void run() {
-                            if (mLeaveSeatCallback != null) {
-                                mLeaveSeatCallback.onCallback(0, "enter seat success");
-                                mLeaveSeatCallback = null;
+                            if (leaveSeatCallback != null) {
+                                leaveSeatCallback.onCallback(0, "enter seat success");
                             }
                         }
                     });
@@ -1262,14 +1807,125 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void onSeatMute(final int index, final boolean mute) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                handleSeatMute(index, mute);
+                runOnDelegateThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mDelegate != null) {
+                            mDelegate.onSeatMute(index, mute);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onSeatBatchChange(final List<TXSeatChange> changeList) {
+        runOnRoomThread(new Runnable() {
+            @Override
+            public void run() {
+                final List<TRTCVoiceRoomDef.SeatChange> seatChangeList = new ArrayList<>(changeList.size());
+                boolean                                 hasLeave       = false;
+                boolean                                 selfLeave      = false;
+                for (TXSeatChange change : changeList) {
+                    TRTCVoiceRoomDef.SeatChange seatChange = new TRTCVoiceRoomDef.SeatChange();
+                    seatChange.index = change.index;
+                    seatChange.type = change.type;
+                    seatChange.value = change.value;
+                    if (change.userInfo != null) {
+                        TRTCVoiceRoomDef.UserInfo info = new TRTCVoiceRoomDef.UserInfo();
+                        info.userId = change.userInfo.userId;
+                        info.userAvatar = change.userInfo.avatarURL;
+                        info.userName = change.userInfo.userName;
+                        seatChange.userInfo = info;
+                    }
+                    seatChangeList.add(seatChange);
+                    switch (change.type) {
+                        case TXSeatChange.TYPE_TAKE:
+                            handleSeatTake(change.index, change.user);
+                            break;
+                        case TXSeatChange.TYPE_LEAVE:
+                            handleSeatLeave(change.user);
+                            hasLeave = true;
+                            selfLeave |= mUserId.equals(change.user);
+                            break;
+                        case TXSeatChange.TYPE_CLOSE:
+                            handleSeatClose(change.index, change.value);
+                            break;
+                        case TXSeatChange.TYPE_MUTE:
+                            handleSeatMute(change.index, change.value);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                final TRTCVoiceRoomCallback.ActionCallback kickSeatCallback  = hasLeave ? mKickSeatCallback : null;
+                final TRTCVoiceRoomCallback.ActionCallback leaveSeatCallback = selfLeave ? mLeaveSeatCallback : null;
+                if (hasLeave) {
+                    mKickSeatCallback = null;
+                }
+                if (selfLeave) {
+                    mLeaveSeatCallback = null;
+                }
+                runOnDelegateThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mDelegate != null) {
+                            mDelegate.onSeatBatchChange(seatChangeList);
+                        }
+                        if (kickSeatCallback != null) {
+                            kickSeatCallback.onCallback(0, "kick seat success");
+                        }
+                        if (leaveSeatCallback != null) {
+                            leaveSeatCallback.onCallback(0, "enter seat success");
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void handleSeatTake(int index, String userId) {
+        if (mUserId.equals(userId)) {
+            //是自己上线了, 切换角色
+            mTakeSeatIndex = index;
+            VoiceRoomTRTCService.getInstance().switchToAnchor();
+            VoiceRoomTRTCService.getInstance().muteLocalAudio(mSeatInfoList.get(index).mute);
+        }
+    }
+
+    private void handleSeatClose(int index, boolean isClose) {
+        if (mTakeSeatIndex == index && isClose) {
+            VoiceRoomTRTCService.getInstance().switchToAudience();
+            mTakeSeatIndex = -1;
+        }
+    }
+
+    private void handleSeatLeave(String userId) {
+        if (mUserId.equals(userId)) {
+            //自己下线了~
+            mTakeSeatIndex = -1;
+            VoiceRoomTRTCService.getInstance().switchToAudience();
+        }
+    }
+
+    private void handleSeatMute(int index, boolean mute) {
+        if (mTakeSeatIndex == index) {
+            VoiceRoomTRTCService.getInstance().muteLocalAudio(mute);
+        }
+    }
+
+    @Override
+    public void onSeatRollback(final int index, final int code, final String msg) {
         runOnDelegateThread(new Runnable() {
             @Override
             public void run() {
                 if (mDelegate != null) {
-                    if (mTakeSeatIndex == index) {
-                        VoiceRoomTRTCService.getInstance().muteLocalAudio(mute);
-                    }
-                    mDelegate.onSeatMute(index, mute);
+                    mDelegate.onSeatRollback(index, code, msg);
                 }
             }
         });
@@ -1372,13 +2028,12 @@ public class TRTCVoiceRoomImpl extends TRTCVoiceRoom implements ITXRoomServiceDe
 
     @Override
     public void onUserVoiceVolume(final ArrayList<TRTCCloudDef.TRTCVolumeInfo> userVolumes, final int totalVolume) {
-        runOnDelegateThread(new Runnable() {
-            @Override
-            public void run() {
-                if (mDelegate != null && userVolumes != null) {
-                    mDelegate.onUserVolumeUpdate(userVolumes, totalVolume);
-                }
-            }
-        });
+        if (userVolumes == null) {
+            return;
+        }
+        // 回调线程还没处理完上一帧时只更新数据，不再重复 post
+        if (mVolumeTracker.offer(userVolumes, totalVolume)) {
+            runOnDelegateThread(mVolumeDrainRunnable);
+        }
     }
 }
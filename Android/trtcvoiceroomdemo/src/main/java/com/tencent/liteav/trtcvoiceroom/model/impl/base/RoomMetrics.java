@@ -0,0 +1,205 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.base;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 房间操作各阶段的耗时统计
+ * <p>
+ * 一次操作（例如 enterSeat 到 onAnchorEnterSeat）会经过几个阶段：切到房间线程的排队、IM 往返、查询用户资料、回调 delegate，
+ * 进房时 IM 和 TRTC 两路的耗时也在这里上报。每个阶段结束时把耗时交给 {@link Sink}。没有设置 Sink 时只多一次判空，不取时间也不分配对象，可以留在正式版本中。
+ * 耗时统计本身不加锁，Sink 会在记录的线程上同步调用。
+ */
+public class RoomMetrics {
+    // 从 post 到房间线程开始执行的等待时间
+    public static final int STAGE_QUEUE_WAIT        = 0;
+    // 从调用 IM 到收到 IM 回调，name 为 IM 接口名
+    public static final int STAGE_IM_ROUND_TRIP     = 1;
+    // 从请求用户资料到拿到结果，包括合并查询的等待时间
+    public static final int STAGE_PROFILE_LOOKUP    = 2;
+    // 从 post 到 delegate 线程到回调执行完毕，包括业务层回调本身的耗时
+    public static final int STAGE_DELEGATE_DISPATCH = 3;
+    // 进房时 IM 一路（进群并拉取群属性，或者建群）的耗时
+    public static final int STAGE_JOIN_IM           = 4;
+    // 进房时 TRTC 一路的耗时
+    public static final int STAGE_JOIN_TRTC         = 5;
+    // 从开始进房到两路都完成的耗时
+    public static final int STAGE_JOIN              = 6;
+    public static final int STAGE_COUNT             = 7;
+
+    private static final String[] STAGE_NAMES = {"queue wait", "im round trip", "profile lookup", "delegate dispatch",
+            "join im", "join trtc", "join"};
+
+    public interface Sink {
+        /**
+         * 在记录耗时的线程上同步调用，不要做耗时操作
+         *
+         * @param name 阶段内的具体操作，可能为 null
+         */
+        void onTiming(int stage, String name, long durationNs);
+    }
+
+    private static volatile Sink sSink;
+
+    /**
+     * @param sink 传 null 关闭统计
+     */
+    public static void setSink(Sink sink) {
+        sSink = sink;
+    }
+
+    public static boolean isEnabled() {
+        return sSink != null;
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * @return 阶段的开始时间，没有开启统计时返回 0
+     */
+    public static long start() {
+        return sSink == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @param startNs {@link #start()} 的返回值，为 0 时不记录
+     */
+    public static void end(int stage, String name, long startNs) {
+        if (startNs == 0) {
+            return;
+        }
+        Sink sink = sSink;
+        if (sink != null) {
+            sink.onTiming(stage, name, System.nanoTime() - startNs);
+        }
+    }
+
+    /**
+     * 记录已经算好的耗时，没有开启统计时直接返回
+     */
+    public static void record(int stage, String name, long durationNs) {
+        Sink sink = sSink;
+        if (sink != null) {
+            sink.onTiming(stage, name, durationNs);
+        }
+    }
+
+    /**
+     * 记录 runnable 从现在到开始执行的排队时间，没有开启统计时原样返回
+     */
+    public static Runnable queued(final String name, final Runnable runnable) {
+        final long startNs = start();
+        if (startNs == 0) {
+            return runnable;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                end(STAGE_QUEUE_WAIT, name, startNs);
+                runnable.run();
+            }
+        };
+    }
+
+    /**
+     * 记录 runnable 从现在到执行完毕的时间，没有开启统计时原样返回
+     */
+    public static Runnable dispatched(final String name, final Runnable runnable) {
+        final long startNs = start();
+        if (startNs == 0) {
+            return runnable;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                end(STAGE_DELEGATE_DISPATCH, name, startNs);
+            }
+        };
+    }
+
+    /**
+     * 按阶段汇总的直方图，桶按微秒以 2 的幂划分，记录时不分配对象，可以在多个线程同时记录
+     */
+    public static class HistogramSink implements Sink {
+        private static final int BUCKET_COUNT = 32;
+
+        // 下标为 stage * BUCKET_COUNT + 桶序号
+        private final AtomicLongArray mBuckets = new AtomicLongArray(STAGE_COUNT * BUCKET_COUNT);
+        private final AtomicLongArray mCounts  = new AtomicLongArray(STAGE_COUNT);
+        private final AtomicLongArray mSumNs   = new AtomicLongArray(STAGE_COUNT);
+        private final AtomicLongArray mMaxNs   = new AtomicLongArray(STAGE_COUNT);
+
+        @Override
+        public void onTiming(int stage, String name, long durationNs) {
+            if (durationNs < 0) {
+                durationNs = 0;
+            }
+            // 桶 0 小于 1us，桶 i 为 [2^(i-1), 2^i) us
+            int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(durationNs >> 10));
+            mBuckets.incrementAndGet(stage * BUCKET_COUNT + bucket);
+            mCounts.incrementAndGet(stage);
+            mSumNs.addAndGet(stage, durationNs);
+            long max = mMaxNs.get(stage);
+            while (durationNs > max && !mMaxNs.compareAndSet(stage, max, durationNs)) {
+                max = mMaxNs.get(stage);
+            }
+        }
+
+        public long getCount(int stage) {
+            return mCounts.get(stage);
+        }
+
+        public long getMeanNs(int stage) {
+            long count = mCounts.get(stage);
+            return count == 0 ? 0 : mSumNs.get(stage) / count;
+        }
+
+        public long getMaxNs(int stage) {
+            return mMaxNs.get(stage);
+        }
+
+        /**
+         * @return 百分位所在桶的上界，不超过最大值，精度为一个桶
+         */
+        public long getPercentileNs(int stage, int percent) {
+            long count = mCounts.get(stage);
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (count * percent + 99) / 100);
+            long seen   = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += mBuckets.get(stage * BUCKET_COUNT + i);
+                if (seen >= target) {
+                    return Math.min((1L << i) << 10, mMaxNs.get(stage));
+                }
+            }
+            return mMaxNs.get(stage);
+        }
+
+        public void reset() {
+            for (int i = 0; i < mBuckets.length(); i++) {
+                mBuckets.set(i, 0);
+            }
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                mCounts.set(stage, 0);
+                mSumNs.set(stage, 0);
+                mMaxNs.set(stage, 0);
+            }
+        }
+
+        /**
+         * 把各阶段的统计输出到日志
+         */
+        public void dump(String tag) {
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                TRTCLogger.i(tag, String.format(Locale.US, "%s: count %d, mean %.2fms, p50 %.2fms, p99 %.2fms, max %.2fms",
+                        getStageName(stage), getCount(stage), getMeanNs(stage) / 1e6, getPercentileNs(stage, 50) / 1e6,
+                        getPercentileNs(stage, 99) / 1e6, getMaxNs(stage) / 1e6));
+            }
+        }
+    }
+}
@@ -2,26 +2,375 @@ package com.tencent.liteav.trtcvoiceroom.model.impl.base;
 
 import com.tencent.liteav.basic.log.TXCLog;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步日志
+ * <p>
+ * 调用方只判断级别并把日志放进一个无锁的环形缓冲区，格式化和写入 TXCLog 都在后台线程完成。
+ * 带参数的接口用 {} 作为占位符，参数在后台线程才转成字符串，传入后不要再修改，可变的集合和对象需要传入副本；
+ * 级别不够时不会拼接字符串，也不分配对象。参数的 toString 抛出异常时只影响这一条日志。
+ * 缓冲区保留最近的 {@link #RING_SIZE} 条日志，低于输出级别的日志只保存在缓冲区里，可以在出错时一起输出，见 {@link #setDumpOnError(int)}。
+ */
 public class TRTCLogger {
+    public static final int LEVEL_DEBUG = 0;
+    public static final int LEVEL_INFO  = 1;
+    public static final int LEVEL_WARN  = 2;
+    public static final int LEVEL_ERROR = 3;
+    public static final int LEVEL_NONE  = 4;
+
+    public static final int RING_SIZE = 1024;
+
+    private static final int    RING_MASK         = RING_SIZE - 1;
+    private static final long   DRAIN_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final char[] LEVEL_CHARS       = {'D', 'I', 'W', 'E'};
+
+    private static class Entry {
+        final long     seq;
+        final long     timeMs;
+        final int      level;
+        final String   tag;
+        final String   format;
+        final Object[] args;
+
+        Entry(long seq, int level, String tag, String format, Object[] args) {
+            this.seq = seq;
+            this.timeMs = System.currentTimeMillis();
+            this.level = level;
+            this.tag = tag;
+            this.format = format;
+            this.args = args;
+        }
+    }
+
+    private static final AtomicReferenceArray<Entry> sRing      = new AtomicReferenceArray<>(RING_SIZE);
+    // 下一条日志的序号
+    private static final AtomicLong                  sWriteSeq  = new AtomicLong();
+    // 后台线程和 flush 都会消费缓冲区，消费时持有这个锁
+    private static final Object                      sDrainLock = new Object();
+    // 下一条要写入 TXCLog 的序号，只在持有 sDrainLock 时访问
+    private static       long                        sReadSeq;
+    private static       long                        sDroppedCount;
+    // 出错时已经输出过的日志不再重复输出，只在持有 sDrainLock 时访问
+    private static       long                        sDumpedSeq;
+
+    private static volatile int                  sLevel          = LEVEL_DEBUG;
+    // 按 tag 设置的级别，修改时整体替换
+    private static volatile Map<String, Integer> sTagLevels      = Collections.emptyMap();
+    private static volatile int                  sOutputLevel    = LEVEL_DEBUG;
+    private static volatile int                  sDumpOnErrorCount;
+    private static volatile Thread               sWriter;
+
+    /**
+     * 设置记录日志的最低级别，低于这个级别的日志直接丢弃
+     */
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    /**
+     * 单独设置某个 tag 的最低级别，优先于 {@link #setLevel(int)}
+     */
+    public static synchronized void setLevel(String tag, int level) {
+        Map<String, Integer> tagLevels = new HashMap<>(sTagLevels);
+        tagLevels.put(tag, level);
+        sTagLevels = tagLevels;
+    }
+
+    /**
+     * 设置写入 TXCLog 的最低级别，低于这个级别但已记录的日志只保存在缓冲区里
+     */
+    public static void setOutputLevel(int level) {
+        sOutputLevel = level;
+    }
+
+    /**
+     * @param count 写入错误日志时，先输出缓冲区里它前面最多 count 条只保存在缓冲区里的日志，0 表示不输出
+     */
+    public static void setDumpOnError(int count) {
+        sDumpOnErrorCount = Math.min(count, RING_SIZE);
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        int                  threshold = sLevel;
+        Map<String, Integer> tagLevels = sTagLevels;
+        if (!tagLevels.isEmpty()) {
+            Integer tagLevel = tagLevels.get(tag);
+            if (tagLevel != null) {
+                threshold = tagLevel;
+            }
+        }
+        return level >= threshold;
+    }
 
     public static void e(String tag, String message) {
-        TXCLog.e(tag, message);
-        callback("e", tag, message);
+        if (isLoggable(tag, LEVEL_ERROR)) {
+            log(LEVEL_ERROR, tag, message, null);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg) {
+        if (isLoggable(tag, LEVEL_ERROR)) {
+            log(LEVEL_ERROR, tag, format, new Object[]{arg});
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(tag, LEVEL_ERROR)) {
+            log(LEVEL_ERROR, tag, format, new Object[]{arg1, arg2});
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(tag, LEVEL_ERROR)) {
+            log(LEVEL_ERROR, tag, format, new Object[]{arg1, arg2, arg3});
+        }
     }
 
     public static void w(String tag, String message) {
-        TXCLog.w(tag, message);
-        callback("w", tag, message);
+        if (isLoggable(tag, LEVEL_WARN)) {
+            log(LEVEL_WARN, tag, message, null);
+        }
+    }
+
+    public static void w(String tag, String format, Object arg) {
+        if (isLoggable(tag, LEVEL_WARN)) {
+            log(LEVEL_WARN, tag, format, new Object[]{arg});
+        }
+    }
+
+    public static void w(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(tag, LEVEL_WARN)) {
+            log(LEVEL_WARN, tag, format, new Object[]{arg1, arg2});
+        }
+    }
+
+    public static void w(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(tag, LEVEL_WARN)) {
+            log(LEVEL_WARN, tag, format, new Object[]{arg1, arg2, arg3});
+        }
     }
 
     public static void i(String tag, String message) {
-        TXCLog.i(tag, message);
-        callback("i", tag, message);
+        if (isLoggable(tag, LEVEL_INFO)) {
+            log(LEVEL_INFO, tag, message, null);
+        }
+    }
+
+    public static void i(String tag, String format, Object arg) {
+        if (isLoggable(tag, LEVEL_INFO)) {
+            log(LEVEL_INFO, tag, format, new Object[]{arg});
+        }
+    }
+
+    public static void i(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(tag, LEVEL_INFO)) {
+            log(LEVEL_INFO, tag, format, new Object[]{arg1, arg2});
+        }
+    }
+
+    public static void i(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(tag, LEVEL_INFO)) {
+            log(LEVEL_INFO, tag, format, new Object[]{arg1, arg2, arg3});
+        }
     }
 
     public static void d(String tag, String message) {
-        TXCLog.d(tag, message);
-        callback("d", tag, message);
+        if (isLoggable(tag, LEVEL_DEBUG)) {
+            log(LEVEL_DEBUG, tag, message, null);
+        }
+    }
+
+    public static void d(String tag, String format, Object arg) {
+        if (isLoggable(tag, LEVEL_DEBUG)) {
+            log(LEVEL_DEBUG, tag, format, new Object[]{arg});
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2) {
+        if (isLoggable(tag, LEVEL_DEBUG)) {
+            log(LEVEL_DEBUG, tag, format, new Object[]{arg1, arg2});
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isLoggable(tag, LEVEL_DEBUG)) {
+            log(LEVEL_DEBUG, tag, format, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    /**
+     * 把缓冲区里还没写入的日志立即写入 TXCLog，例如崩溃或退出前调用
+     */
+    public static void flush() {
+        drain();
+    }
+
+    /**
+     * @return 最近的最多 count 条日志，包括只保存在缓冲区里的，按时间排列
+     */
+    public static List<String> getRecentLogs(int count) {
+        long         end   = sWriteSeq.get();
+        long         begin = Math.max(0, end - Math.min(count, RING_SIZE));
+        List<String> list  = new ArrayList<>();
+        for (long seq = begin; seq < end; seq++) {
+            Entry entry = sRing.get((int) (seq & RING_MASK));
+            // 还没写完或者已经被覆盖
+            if (entry != null && entry.seq == seq) {
+                list.add(formatEntry(entry));
+            }
+        }
+        return list;
+    }
+
+    private static void log(int level, String tag, String format, Object[] args) {
+        long seq = sWriteSeq.getAndIncrement();
+        sRing.lazySet((int) (seq & RING_MASK), new Entry(seq, level, tag, format, args));
+        Thread writer = sWriter;
+        if (writer == null) {
+            writer = startWriter();
+        }
+        if (level >= LEVEL_ERROR) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private static synchronized Thread startWriter() {
+        if (sWriter == null) {
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        LockSupport.parkNanos(DRAIN_INTERVAL_NS);
+                        drain();
+                    }
+                }
+            }, "TRTCLogger");
+            writer.setDaemon(true);
+            writer.start();
+            sWriter = writer;
+        }
+        return sWriter;
+    }
+
+    private static void drain() {
+        synchronized (sDrainLock) {
+            long end = sWriteSeq.get();
+            while (sReadSeq < end) {
+                Entry entry = sRing.get((int) (sReadSeq & RING_MASK));
+                if (entry == null || entry.seq < sReadSeq) {
+                    // 序号已经分配但还没写入缓冲区，下次再处理
+                    break;
+                }
+                if (entry.seq > sReadSeq) {
+                    // 写入太快，中间的日志已经被覆盖
+                    sDroppedCount += entry.seq - sReadSeq;
+                    sReadSeq = entry.seq;
+                }
+                try {
+                    if (sDroppedCount > 0) {
+                        long droppedCount = sDroppedCount;
+                        sDroppedCount = 0;
+                        write(LEVEL_WARN, "TRTCLogger", "drop " + droppedCount + " logs, log too fast");
+                    }
+                    if (entry.level >= LEVEL_ERROR && sDumpOnErrorCount > 0) {
+                        dumpBefore(entry.seq, sDumpOnErrorCount);
+                    }
+                    if (entry.level >= sOutputLevel) {
+                        write(entry.level, entry.tag, format(entry.format, entry.args));
+                    }
+                } catch (Throwable e) {
+                    // 跳过这一条，不能让后台线程退出或者卡在同一条日志上
+                    writeQuietly(LEVEL_WARN, "TRTCLogger", "drop a log of " + entry.tag + ": " + e);
+                }
+                sReadSeq++;
+            }
+        }
+    }
+
+    /**
+     * 输出 seq 之前最多 count 条没有写入 TXCLog 的日志
+     */
+    private static void dumpBefore(long seq, int count) {
+        int  outputLevel = sOutputLevel;
+        long begin       = Math.max(sDumpedSeq, seq - count);
+        sDumpedSeq = seq;
+        for (long i = begin; i < seq; i++) {
+            Entry entry = sRing.get((int) (i & RING_MASK));
+            if (entry != null && entry.seq == i && entry.level < outputLevel) {
+                write(LEVEL_ERROR, entry.tag, "[dump] " + formatEntry(entry));
+            }
+        }
+    }
+
+    private static void write(int level, String tag, String message) {
+        switch (level) {
+            case LEVEL_ERROR:
+                TXCLog.e(tag, message);
+                callback("e", tag, message);
+                break;
+            case LEVEL_WARN:
+                TXCLog.w(tag, message);
+                callback("w", tag, message);
+                break;
+            case LEVEL_INFO:
+                TXCLog.i(tag, message);
+                callback("i", tag, message);
+                break;
+            default:
+                TXCLog.d(tag, message);
+                callback("d", tag, message);
+                break;
+        }
+    }
+
+    private static void writeQuietly(int level, String tag, String message) {
+        try {
+            write(level, tag, message);
+        } catch (Throwable ignored) {
+        }
+    }
+
+    private static String formatEntry(Entry entry) {
+        return String.format(Locale.US, "%tT.%tL %c/%s: %s", entry.timeMs, entry.timeMs,
+                LEVEL_CHARS[entry.level], entry.tag, format(entry.format, entry.args));
+    }
+
+    private static String format(String format, Object[] args) {
+        if (args == null) {
+            return format;
+        }
+        StringBuilder builder = new StringBuilder(format.length() + 16 * args.length);
+        int           from    = 0;
+        for (Object arg : args) {
+            int index = format.indexOf("{}", from);
+            if (index < 0) {
+                break;
+            }
+            builder.append(format, from, index);
+            appendArg(builder, arg);
+            from = index + 2;
+        }
+        builder.append(format, from, format.length());
+        return builder.toString();
+    }
+
+    private static void appendArg(StringBuilder builder, Object arg) {
+        try {
+            builder.append(arg);
+        } catch (Throwable e) {
+            // 例如参数在格式化时被其他线程修改，抛出 ConcurrentModificationException
+            builder.append('[').append(arg.getClass().getName()).append(" toString fail: ").append(e).append(']');
+        }
     }
 
     private static void callback(String level, String tag, String message) {
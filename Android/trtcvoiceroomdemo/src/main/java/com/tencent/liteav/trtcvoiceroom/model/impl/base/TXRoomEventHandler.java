@@ -0,0 +1,8 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.base;
+
+public interface TXRoomEventHandler {
+    /**
+     * @param data   事件帧，业务数据从 offset 开始，长度为 length
+     */
+    void onRoomEvent(int code, byte[] data, int offset, int length, TXUserInfo userInfo);
+}
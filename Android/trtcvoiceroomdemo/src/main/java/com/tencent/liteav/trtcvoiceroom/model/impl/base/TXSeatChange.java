@@ -0,0 +1,39 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.base;
+
+public class TXSeatChange {
+    public static final int TYPE_TAKE  = 0;
+    public static final int TYPE_LEAVE = 1;
+    public static final int TYPE_CLOSE = 2;
+    public static final int TYPE_MUTE  = 3;
+
+    /// 【字段含义】座位号
+    public int        index;
+    /// 【字段含义】变化类型，上麦/下麦/封麦/禁言
+    public int        type;
+    /// 【字段含义】封麦和禁言时表示 封/解封、禁言/解禁
+    public boolean    value;
+    /// 【字段含义】上麦和下麦的用户
+    public String     user;
+    /// 【字段含义】上麦和下麦用户的资料，回调时填充
+    public TXUserInfo userInfo;
+
+    public TXSeatChange() {
+    }
+
+    public TXSeatChange(int index, int type, boolean value, String user) {
+        this.index = index;
+        this.type = type;
+        this.value = value;
+        this.user = user;
+    }
+
+    @Override
+    public String toString() {
+        return "TXSeatChange{" +
+                "index=" + index +
+                ", type=" + type +
+                ", value=" + value +
+                ", user=" + user +
+                '}';
+    }
+}
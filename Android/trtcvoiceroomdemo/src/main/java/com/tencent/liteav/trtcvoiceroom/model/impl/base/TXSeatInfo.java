@@ -13,6 +13,8 @@ public class TXSeatInfo implements Serializable {
     public boolean mute;
     /// 【字段含义】座位状态为1，存储user
     public String  user;
+    /// 【字段含义】座位的修改版本，每次修改加一，用于检测同时抢麦和丢弃乱序推送里的旧值
+    public int     version;
 
     @Override
     public String toString() {
@@ -20,6 +22,7 @@ public class TXSeatInfo implements Serializable {
                 "status=" + status +
                 ", mute=" + mute +
                 ", userInfo=" + user +
+                ", version=" + version +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.base;
+
+import java.util.List;
+
+public interface TXUserPageCallback {
+    void onCallback(int code, String msg, List<TXUserInfo> list, long nextSeq);
+}
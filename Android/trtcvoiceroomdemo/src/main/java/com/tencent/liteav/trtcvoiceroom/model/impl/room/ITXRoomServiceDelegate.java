@@ -2,6 +2,7 @@ package com.tencent.liteav.trtcvoiceroom.model.impl.room;
 
 
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatChange;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
 
@@ -14,6 +15,8 @@ public interface ITXRoomServiceDelegate {
 
     void onRoomRecvRoomCustomMsg(String roomId, String cmd, String message, TXUserInfo userInfo);
 
+    void onRoomCounterChange(String roomId, String type, long total, long increment, TXUserInfo userInfo);
+
     void onRoomInfoChange(TXRoomInfo TXRoomInfo);
 
     void onSeatInfoListChange(List<TXSeatInfo> TXSeatInfoList);
@@ -30,6 +33,10 @@ public interface ITXRoomServiceDelegate {
 
     void onSeatMute(int index, boolean mute);
 
+    void onSeatBatchChange(List<TXSeatChange> changeList);
+
+    void onSeatRollback(int index, int code, String msg);
+
     void onReceiveNewInvitation(String id, String inviter, String cmd, String content);
 
     void onInviteeAccepted(String id, String invitee);
@@ -0,0 +1,196 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.os.Handler;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 点赞、礼物等计数的本地聚合
+ * <p>
+ * 本地的计数先累加到待发送表里，每隔一个周期合并成一条消息发出去；收到的聚合消息合并到房间的累计值里。
+ * 自己发出的计数在发送成功后才计入累计值，失败时放回待发送表，下个周期重发。
+ * 所有方法都需要在创建时指定的 looper 线程调用。
+ */
+public class CounterAggregator {
+    private static final String TAG = "CounterAggregator";
+
+    private static final int DEFAULT_FLUSH_INTERVAL = 1000;
+    // 单条聚合消息最多携带的计数类型数，IM 自定义消息有大小限制
+    private static final int MAX_TYPES_PER_MSG      = 50;
+
+    public interface Sender {
+        void sendCounters(Map<String, Long> counters, TXCallback callback);
+    }
+
+    public interface Listener {
+        /**
+         * 自己的计数发送成功后回调
+         */
+        void onCountersSent(Map<String, Long> counters);
+    }
+
+    private final Sender                      mSender;
+    private       Listener                    mListener;
+    private       Handler                     mHandler;
+    private final Runnable                    mFlushRunnable;
+    private final LinkedHashMap<String, Long> mPending;
+    private final Map<String, Long>           mTotals;
+    private       int                         mFlushInterval;
+    private       boolean                     mFlushScheduled;
+    // 每次 clear 加一，丢弃退房前发出的消息的回调
+    private       int                         mGeneration;
+    private       long                        mIncreaseCount;
+    private       long                        mSentMsgCount;
+
+    public CounterAggregator(Sender sender, Handler handler) {
+        mSender = sender;
+        mHandler = handler;
+        mPending = new LinkedHashMap<>();
+        mTotals = new HashMap<>();
+        mFlushInterval = DEFAULT_FLUSH_INTERVAL;
+        mFlushRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mFlushScheduled = false;
+                flush();
+            }
+        };
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public void setHandler(Handler handler) {
+        mHandler.removeCallbacks(mFlushRunnable);
+        mHandler = handler;
+        if (mFlushScheduled) {
+            mHandler.postDelayed(mFlushRunnable, mFlushInterval);
+        }
+    }
+
+    /**
+     * @param intervalMs 发送聚合消息的周期，小于等于 0 时每次累加都立即发送
+     */
+    public void setFlushInterval(int intervalMs) {
+        mFlushInterval = Math.max(intervalMs, 0);
+    }
+
+    public void increase(String type, long count) {
+        if (type == null || count <= 0) {
+            return;
+        }
+        mIncreaseCount++;
+        addPending(type, count);
+        if (mFlushInterval == 0) {
+            flush();
+        } else if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mHandler.postDelayed(mFlushRunnable, mFlushInterval);
+        }
+    }
+
+    /**
+     * 合并一个计数到累计值
+     *
+     * @return 合并后的累计值
+     */
+    public long merge(String type, long count) {
+        Long total = mTotals.get(type);
+        long value = (total == null ? 0 : total) + count;
+        mTotals.put(type, value);
+        return value;
+    }
+
+    public long getTotal(String type) {
+        Long total = mTotals.get(type);
+        return total == null ? 0 : total;
+    }
+
+    /**
+     * 立即发送所有待发送的计数
+     */
+    public void flush() {
+        if (mFlushScheduled) {
+            mHandler.removeCallbacks(mFlushRunnable);
+            mFlushScheduled = false;
+        }
+        // 先全部取出再发送，发送失败的回调可能同步执行并把计数放回待发送表
+        List<Map<String, Long>> batchList = new ArrayList<>();
+        Map<String, Long>       batch     = null;
+        for (Map.Entry<String, Long> entry : mPending.entrySet()) {
+            if (batch == null || batch.size() >= MAX_TYPES_PER_MSG) {
+                batch = new LinkedHashMap<>();
+                batchList.add(batch);
+            }
+            batch.put(entry.getKey(), entry.getValue());
+        }
+        mPending.clear();
+        for (final Map<String, Long> counters : batchList) {
+            mSentMsgCount++;
+            final int generation = mGeneration;
+            mSender.sendCounters(counters, new TXCallback() {
+                @Override
+                public void onCallback(int code, String msg) {
+                    if (generation != mGeneration) {
+                        return;
+                    }
+                    if (code != 0) {
+                        TRTCLogger.e(TAG, "send counters fail, retry next time. code:" + code + " msg:" + msg);
+                        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                            addPending(entry.getKey(), entry.getValue());
+                        }
+                        if (!mFlushScheduled) {
+                            mFlushScheduled = true;
+                            mHandler.postDelayed(mFlushRunnable, Math.max(mFlushInterval, DEFAULT_FLUSH_INTERVAL));
+                        }
+                        return;
+                    }
+                    if (mListener != null) {
+                        mListener.onCountersSent(counters);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 退房时调用，丢弃待发送的计数并清空累计值
+     */
+    public void clear() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        mFlushScheduled = false;
+        mGeneration++;
+        mPending.clear();
+        mTotals.clear();
+    }
+
+    public long getIncreaseCount() {
+        return mIncreaseCount;
+    }
+
+    public long getSentMsgCount() {
+        return mSentMsgCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CounterAggregator{" +
+                "increase=" + mIncreaseCount +
+                ", sentMsg=" + mSentMsgCount +
+                ", pendingTypes=" + mPending.size() +
+                '}';
+    }
+
+    private void addPending(String type, long count) {
+        Long pending = mPending.get(type);
+        mPending.put(type, (pending == null ? 0 : pending) + count);
+    }
+}
@@ -0,0 +1,293 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
+
+import java.nio.charset.Charset;
+
+/**
+ * 群自定义消息分发
+ * <p>
+ * 直接在 UTF-8 字节上扫描最外层的 version / action 字段，不构建 JSONObject，再按 action 交给注册的 handler 解析消息体。
+ * 业务注册的房间事件使用二进制帧，action 直接从帧头读取，见 {@link IMProtocol#getRoomEventFrame(int, byte[])}。
+ * 二进制帧只能携带房间事件范围内的 action，JSON 消息只能携带这个范围以外的内置 action，避免伪造房间解散等内置消息。
+ * 非本协议的消息（非 JSON、没有 version、action 未注册）在扫描阶段直接返回，不会抛出异常。
+ * handler 按 action 存放在数组里，分发时直接下标查找。
+ * 只能在同一个线程调用。
+ */
+public class CustomMsgDispatcher<T> {
+    private static final String TAG = "CustomMsgDispatcher";
+
+    public static final int ACTION_INVALID = -1;
+    public static final int ACTION_MAX     = IMProtocol.Define.CODE_ROOM_EVENT_MAX;
+
+    private static final Charset UTF_8         = Charset.forName("UTF-8");
+    private static final byte[]  KEY_ACTION    = IMProtocol.Define.KEY_CMD_ACTION.getBytes(UTF_8);
+    private static final byte[]  KEY_VERSION   = IMProtocol.Define.KEY_CMD_VERSION.getBytes(UTF_8);
+    private static final byte[]  VALUE_VERSION = IMProtocol.Define.VALUE_CMD_VERSION.getBytes(UTF_8);
+    // 嵌套太深的消息直接认为不是本协议
+    private static final int     MAX_DEPTH     = 32;
+
+    public interface ActionHandler<T> {
+        /**
+         * @param data  消息的原始字节
+         * @param extra 分发时传入的附加信息，例如发送者
+         */
+        void onAction(byte[] data, T extra);
+    }
+
+    // 下标为 action，按注册的最大 action 扩容
+    private ActionHandler<T>[] mHandlers;
+    // 扫描状态，复用避免每条消息分配
+    private byte[]             mData;
+    private int                mPos;
+    private boolean            mHasVersion;
+    private boolean            mVersionMatch;
+
+    public CustomMsgDispatcher() {
+        mHandlers = newTable(IMProtocol.Define.CODE_ROOM_CUSTOM_MSG_BATCH + 1);
+    }
+
+    /**
+     * @param action 取值范围 [0, {@link #ACTION_MAX}]
+     * @return action 超出范围时返回 false
+     */
+    public boolean register(int action, ActionHandler<T> handler) {
+        if (action < 0 || action > ACTION_MAX) {
+            TRTCLogger.e(TAG, "register action out of range: " + action);
+            return false;
+        }
+        if (action >= mHandlers.length) {
+            ActionHandler<T>[] handlers = newTable(Math.min(Math.max(action + 1, mHandlers.length * 2), ACTION_MAX + 1));
+            System.arraycopy(mHandlers, 0, handlers, 0, mHandlers.length);
+            mHandlers = handlers;
+        }
+        mHandlers[action] = handler;
+        return true;
+    }
+
+    public void unregister(int action) {
+        if (action >= 0 && action < mHandlers.length) {
+            mHandlers[action] = null;
+        }
+    }
+
+    public boolean isRegistered(int action) {
+        return action >= 0 && action < mHandlers.length && mHandlers[action] != null;
+    }
+
+    /**
+     * @return 消息被某个 handler 处理时返回 true
+     */
+    public boolean dispatch(byte[] data, T extra) {
+        int action = peekAction(data);
+        if (action == ACTION_INVALID) {
+            return false;
+        }
+        ActionHandler<T> handler = action < mHandlers.length ? mHandlers[action] : null;
+        if (handler == null) {
+            return false;
+        }
+        handler.onAction(data, extra);
+        return true;
+    }
+
+    /**
+     * 扫描最外层对象的 action 字段
+     *
+     * @return 不是本协议的消息或没有 action 时返回 {@link #ACTION_INVALID}
+     */
+    public int peekAction(byte[] data) {
+        if (data == null || data.length == 0) {
+            return ACTION_INVALID;
+        }
+        if (IMProtocol.isRoomEventFrame(data)) {
+            int action = IMProtocol.getRoomEventAction(data);
+            return isRoomEventAction(action) ? action : ACTION_INVALID;
+        }
+        mData = data;
+        mPos = 0;
+        mHasVersion = false;
+        mVersionMatch = false;
+        int action = scanHeader();
+        mData = null;
+        if (action == ACTION_INVALID || !mHasVersion || isRoomEventAction(action)) {
+            return ACTION_INVALID;
+        }
+        if (!mVersionMatch) {
+            TRTCLogger.e(TAG, "protocol version is not match, action: " + action);
+        }
+        return action;
+    }
+
+    private static boolean isRoomEventAction(int action) {
+        return action >= IMProtocol.Define.CODE_ROOM_EVENT_MIN && action <= IMProtocol.Define.CODE_ROOM_EVENT_MAX;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ActionHandler<T>[] newTable(int size) {
+        return (ActionHandler<T>[]) new ActionHandler[size];
+    }
+
+    private int scanHeader() {
+        skipWhitespace();
+        if (!consume('{')) {
+            return ACTION_INVALID;
+        }
+        int action = ACTION_INVALID;
+        skipWhitespace();
+        if (consume('}')) {
+            return ACTION_INVALID;
+        }
+        while (true) {
+            skipWhitespace();
+            int keyStart = mPos + 1;
+            if (!skipString()) {
+                return ACTION_INVALID;
+            }
+            int keyEnd = mPos - 1;
+            skipWhitespace();
+            if (!consume(':')) {
+                return ACTION_INVALID;
+            }
+            skipWhitespace();
+            if (regionEquals(keyStart, keyEnd, KEY_ACTION)) {
+                action = readInt();
+                if (action == ACTION_INVALID) {
+                    return ACTION_INVALID;
+                }
+            } else if (regionEquals(keyStart, keyEnd, KEY_VERSION)) {
+                int valueStart = mPos + 1;
+                if (!skipString()) {
+                    return ACTION_INVALID;
+                }
+                mHasVersion = true;
+                mVersionMatch = regionEquals(valueStart, mPos - 1, VALUE_VERSION);
+            } else if (!skipValue(0)) {
+                return ACTION_INVALID;
+            }
+            skipWhitespace();
+            if (consume(',')) {
+                continue;
+            }
+            return consume('}') ? action : ACTION_INVALID;
+        }
+    }
+
+    private boolean skipValue(int depth) {
+        if (depth > MAX_DEPTH || mPos >= mData.length) {
+            return false;
+        }
+        byte b = mData[mPos];
+        if (b == '"') {
+            return skipString();
+        }
+        if (b == '{' || b == '[') {
+            byte end = (byte) (b == '{' ? '}' : ']');
+            mPos++;
+            skipWhitespace();
+            if (consume(end)) {
+                return true;
+            }
+            while (true) {
+                skipWhitespace();
+                if (b == '{') {
+                    if (!skipString()) {
+                        return false;
+                    }
+                    skipWhitespace();
+                    if (!consume(':')) {
+                        return false;
+                    }
+                    skipWhitespace();
+                }
+                if (!skipValue(depth + 1)) {
+                    return false;
+                }
+                skipWhitespace();
+                if (consume(',')) {
+                    continue;
+                }
+                return consume(end);
+            }
+        }
+        // 数字、true、false、null
+        int start = mPos;
+        while (mPos < mData.length) {
+            b = mData[mPos];
+            if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                break;
+            }
+            mPos++;
+        }
+        return mPos > start;
+    }
+
+    /**
+     * 跳过一个字符串，结束时 mPos 指向结束引号之后
+     */
+    private boolean skipString() {
+        if (!consume('"')) {
+            return false;
+        }
+        while (mPos < mData.length) {
+            byte b = mData[mPos++];
+            if (b == '\\') {
+                mPos++;
+            } else if (b == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int readInt() {
+        int value  = 0;
+        int digits = 0;
+        while (mPos < mData.length) {
+            byte b = mData[mPos];
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            mPos++;
+            if (++digits > 9) {
+                return ACTION_INVALID;
+            }
+        }
+        return digits == 0 ? ACTION_INVALID : value;
+    }
+
+    private boolean regionEquals(int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (mData[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean consume(char c) {
+        if (mPos < mData.length && mData[mPos] == c) {
+            mPos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consume(byte c) {
+        return consume((char) c);
+    }
+
+    private void skipWhitespace() {
+        while (mPos < mData.length && isWhitespace(mData[mPos])) {
+            mPos++;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
@@ -0,0 +1,157 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TXRoomService 使用的 IM 能力：登录、群组、群属性、群消息、群成员、信令和用户资料
+ * <p>
+ * 接口只使用本模块的类型，不依赖 IM SDK，默认实现是 {@link V2TIMBackend}。
+ * 回调所在的线程由实现决定，TXRoomService 会再切到房间线程。
+ */
+public interface IMBackend {
+    // 以下错误码与 IM SDK 一致
+    // 没有权限，例如非群主解散群
+    int ERR_PERMISSION_DENIED   = 10007;
+    // 群不存在
+    int ERR_GROUP_NOT_FOUND     = 10010;
+    // 已经是群成员
+    int ERR_ALREADY_MEMBER      = 10013;
+    // 群 ID 已被其他人使用
+    int ERR_GROUP_ID_IN_USE     = 10021;
+    // 群 ID 已被自己使用
+    int ERR_GROUP_OWNED_BY_SELF = 10025;
+
+    interface Callback {
+        void onError(int code, String desc);
+
+        void onSuccess();
+    }
+
+    interface ValueCallback<T> {
+        void onError(int code, String desc);
+
+        void onSuccess(T t);
+    }
+
+    /**
+     * 群成员分页结果
+     */
+    class MemberPage {
+        public List<TXUserInfo> memberList;
+        // 为 0 表示已经拉取完毕
+        public long             nextSeq;
+    }
+
+    interface Listener {
+        void onRecvGroupTextMessage(String groupId, TXUserInfo sender, String text);
+
+        void onRecvGroupCustomMessage(String groupId, TXUserInfo sender, byte[] data);
+
+        void onMemberEnter(String groupId, List<TXUserInfo> memberList);
+
+        void onMemberLeave(String groupId, TXUserInfo member);
+
+        void onGroupDismissed(String groupId);
+
+        /**
+         * @param attrMap 变化后完整的群属性
+         */
+        void onGroupAttributeChanged(String groupId, Map<String, String> attrMap);
+
+        void onReceiveNewInvitation(String inviteId, String inviter, String groupId, List<String> inviteeList, String data);
+
+        void onInviteeAccepted(String inviteId, String invitee, String data);
+
+        void onInviteeRejected(String inviteId, String invitee, String data);
+
+        void onInvitationCancelled(String inviteId, String inviter, String data);
+    }
+
+    /**
+     * 初始化 IM，重复调用时直接返回上一次的结果
+     *
+     * @return 初始化是否成功
+     */
+    boolean initSDK(int sdkAppId);
+
+    /**
+     * @return 当前登录的 userId，未登录时返回 null
+     */
+    String getLoginUser();
+
+    void login(String userId, String userSig, Callback callback);
+
+    void logout(Callback callback);
+
+    /**
+     * @param listener 传 null 取消监听
+     */
+    void setListener(Listener listener);
+
+    void getUsersInfo(List<String> userIdList, ValueCallback<List<TXUserInfo>> callback);
+
+    void setSelfInfo(String userName, String avatarUrl, Callback callback);
+
+    /**
+     * 创建直播群（AVChatRoom），创建者自动入群
+     */
+    void createGroup(String groupId, String groupName, ValueCallback<String> callback);
+
+    void setGroupInfo(String groupId, String groupName, String faceUrl, String introduction, Callback callback);
+
+    /**
+     * 群资料转换成房间信息，其中 ownerName 取自群简介
+     */
+    void getGroupsInfo(List<String> groupIdList, ValueCallback<List<TXRoomInfo>> callback);
+
+    void joinGroup(String groupId, Callback callback);
+
+    void quitGroup(String groupId, Callback callback);
+
+    void dismissGroup(String groupId, Callback callback);
+
+    /**
+     * 覆盖群的全部属性
+     */
+    void initGroupAttributes(String groupId, HashMap<String, String> attrMap, Callback callback);
+
+    /**
+     * 修改或新增部分群属性
+     */
+    void setGroupAttributes(String groupId, HashMap<String, String> attrMap, Callback callback);
+
+    /**
+     * @param keyList 传 null 删除全部属性
+     */
+    void deleteGroupAttributes(String groupId, List<String> keyList, Callback callback);
+
+    /**
+     * @param keyList 传 null 获取全部属性
+     */
+    void getGroupAttributes(String groupId, List<String> keyList, ValueCallback<Map<String, String>> callback);
+
+    void sendGroupTextMessage(String groupId, String text, Callback callback);
+
+    void sendGroupCustomMessage(String groupId, byte[] data, Callback callback);
+
+    /**
+     * @param nextSeq 分页游标，第一页传 0
+     */
+    void getGroupMemberList(String groupId, long nextSeq, ValueCallback<MemberPage> callback);
+
+    /**
+     * @return 邀请 ID
+     */
+    String invite(String invitee, String data, int timeout, Callback callback);
+
+    void accept(String inviteId, String data, Callback callback);
+
+    void reject(String inviteId, String data, Callback callback);
+
+    void cancel(String inviteId, String data, Callback callback);
+}
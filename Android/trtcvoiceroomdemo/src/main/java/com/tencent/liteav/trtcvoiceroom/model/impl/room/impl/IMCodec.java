@@ -0,0 +1,234 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXInviteData;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+
+import java.io.IOException;
+
+/**
+ * IM 协议使用的 JSON 编解码
+ * <p>
+ * 全局共用一个 Gson 实例，TXSeatInfo / TXRoomInfo / TXInviteData 使用手写的 TypeAdapter，不走反射。
+ * 输出的 JSON 与默认 Gson 一致（字段顺序相同、null 字段不输出），新老版本可以互通。
+ */
+public class IMCodec {
+    private static final Gson sGson = new GsonBuilder()
+            .registerTypeAdapter(TXSeatInfo.class, new SeatInfoAdapter())
+            .registerTypeAdapter(TXRoomInfo.class, new RoomInfoAdapter())
+            .registerTypeAdapter(TXInviteData.class, new InviteDataAdapter())
+            .create();
+
+    public static Gson gson() {
+        return sGson;
+    }
+
+    public static String toJson(TXSeatInfo info) {
+        return sGson.toJson(info, TXSeatInfo.class);
+    }
+
+    public static TXSeatInfo seatInfoFromJson(String json) {
+        return sGson.fromJson(json, TXSeatInfo.class);
+    }
+
+    public static String toJson(TXRoomInfo info) {
+        return sGson.toJson(info, TXRoomInfo.class);
+    }
+
+    public static TXRoomInfo roomInfoFromJson(String json) {
+        return sGson.fromJson(json, TXRoomInfo.class);
+    }
+
+    public static String toJson(TXInviteData data) {
+        return sGson.toJson(data, TXInviteData.class);
+    }
+
+    public static TXInviteData inviteDataFromJson(String json) {
+        return sGson.fromJson(json, TXInviteData.class);
+    }
+
+    static class SeatInfoAdapter extends TypeAdapter<TXSeatInfo> {
+        @Override
+        public void write(JsonWriter out, TXSeatInfo value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("status").value(value.status);
+            out.name("mute").value(value.mute);
+            writeString(out, "user", value.user);
+            out.name("version").value(value.version);
+            out.endObject();
+        }
+
+        @Override
+        public TXSeatInfo read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            TXSeatInfo info = new TXSeatInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "status":
+                        info.status = in.nextInt();
+                        break;
+                    case "mute":
+                        info.mute = readBoolean(in);
+                        break;
+                    case "user":
+                        info.user = in.nextString();
+                        break;
+                    case "version":
+                        info.version = in.nextInt();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return info;
+        }
+    }
+
+    static class RoomInfoAdapter extends TypeAdapter<TXRoomInfo> {
+        @Override
+        public void write(JsonWriter out, TXRoomInfo value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            // roomId 和 memberCount 只在本地使用，不写入群属性
+            out.beginObject();
+            writeString(out, "ownerId", value.ownerId);
+            writeString(out, "ownerName", value.ownerName);
+            writeString(out, "roomName", value.roomName);
+            writeString(out, "cover", value.cover);
+            if (value.seatSize != null) {
+                out.name("seatSize").value(value.seatSize);
+            }
+            if (value.needRequest != null) {
+                out.name("needRequest").value(value.needRequest);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public TXRoomInfo read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            TXRoomInfo info = new TXRoomInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "ownerId":
+                        info.ownerId = in.nextString();
+                        break;
+                    case "ownerName":
+                        info.ownerName = in.nextString();
+                        break;
+                    case "roomName":
+                        info.roomName = in.nextString();
+                        break;
+                    case "cover":
+                        info.cover = in.nextString();
+                        break;
+                    case "seatSize":
+                        info.seatSize = in.nextInt();
+                        break;
+                    case "needRequest":
+                        info.needRequest = in.nextInt();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return info;
+        }
+    }
+
+    static class InviteDataAdapter extends TypeAdapter<TXInviteData> {
+        @Override
+        public void write(JsonWriter out, TXInviteData value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "roomId", value.roomId);
+            writeString(out, "command", value.command);
+            writeString(out, "message", value.message);
+            out.endObject();
+        }
+
+        @Override
+        public TXInviteData read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            TXInviteData data = new TXInviteData();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "roomId":
+                        data.roomId = in.nextString();
+                        break;
+                    case "command":
+                        data.command = in.nextString();
+                        break;
+                    case "message":
+                        data.message = in.nextString();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return data;
+        }
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static boolean readBoolean(JsonReader in) throws IOException {
+        // 和 Gson 默认行为一致，兼容字符串形式的 "true"
+        if (in.peek() == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        return in.nextBoolean();
+    }
+}
@@ -1,41 +1,68 @@
 package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
 
-import android.text.TextUtils;
-import android.util.Pair;
-
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXInviteData;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.CODE_ROOM_COUNTER;
 import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.CODE_ROOM_CUSTOM_MSG;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.CODE_ROOM_CUSTOM_MSG_BATCH;
 import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.CODE_ROOM_DESTROY;
 import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_ATTR_VERSION;
 import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_CMD_ACTION;
 import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_CMD_VERSION;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_COUNTERS;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_CUS_MSG_BODY;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_CUS_MSG_CMD;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_CUS_MSG_LIST;
 import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_ROOM_INFO;
 import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_SEAT;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_SEAT_SHARD;
 import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.VALUE_ATTR_VERSION;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.VALUE_ATTR_VERSION_COMPACT;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.VALUE_ATTR_VERSION_SHARDED;
 import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.VALUE_CMD_VERSION;
 
 public class IMProtocol {
-    private static final String TAG = IMProtocol.class.getName();
+    private static final String  TAG   = IMProtocol.class.getName();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
 
     public static class Define {
         public static final String KEY_ATTR_VERSION   = "version";
         public static final String VALUE_ATTR_VERSION = "1.0";
+        // 紧凑座位格式：一个字符保存 status/mute，后面紧跟 userId
+        public static final String VALUE_ATTR_VERSION_COMPACT = "2.0";
+        // 分片座位格式：每个 seatsN 属性按顺序保存 SEATS_PER_SHARD 个紧凑格式的座位，用 SHARD_SEPARATOR 分隔
+        public static final String VALUE_ATTR_VERSION_SHARDED = "3.0";
         public static final String KEY_ROOM_INFO      = "roomInfo";
         public static final String KEY_SEAT           = "seat";
+        public static final String KEY_SEAT_SHARD     = "seats";
+
+        // 每个座位占一个群属性时最多的座位数；IM 每个群最多 16 个属性，除去 version、roomInfo 后留出余量，超过这个座位数的房间使用分片格式
+        public static final int  MAX_SEAT_KEYS   = 10;
+        // 每个座位最长约 40 字节（标志位 + 版本号 + 32 字节的 userId），一个分片远小于单个属性 4KB 的限制
+        public static final int  SEATS_PER_SHARD = 10;
+        public static final int  MAX_SEAT_SIZE   = 100;
+        // userId 不会包含换行
+        public static final char SHARD_SEPARATOR = '\n';
 
         public static final String KEY_CMD_VERSION   = "version";
         public static final String VALUE_CMD_VERSION = "1.0";
@@ -50,48 +77,273 @@ public class IMProtocol {
         public static final int CODE_UNKNOWN      = 0;
         public static final int CODE_ROOM_DESTROY = 200;
 
-        public static final int CODE_ROOM_CUSTOM_MSG = 301;
+        public static final int CODE_ROOM_CUSTOM_MSG       = 301;
+        // 多条自定义消息合并后的批量消息，旧客户端不能解析，只在 {@link #isBatchMsgSupported} 的房间发送
+        public static final int CODE_ROOM_CUSTOM_MSG_BATCH = 302;
+        // 点赞、礼物等计数的聚合消息
+        public static final int CODE_ROOM_COUNTER          = 303;
+
+        // 业务注册的房间事件使用的 action 范围，不能与上面的内置 action 冲突
+        public static final int CODE_ROOM_EVENT_MIN = 1000;
+        public static final int CODE_ROOM_EVENT_MAX = 4095;
+
+        // 房间事件的二进制帧：2 字节 magic + 1 字节版本 + 2 字节 action（大端） + 业务编码的数据
+        public static final byte EVENT_FRAME_MAGIC_0     = 0x00;
+        public static final byte EVENT_FRAME_MAGIC_1     = 'T';
+        public static final byte EVENT_FRAME_VERSION     = 1;
+        public static final int  EVENT_FRAME_HEADER_SIZE = 5;
+
+        public static final String KEY_CUS_MSG_CMD  = "command";
+        public static final String KEY_CUS_MSG_BODY = "message";
+        public static final String KEY_CUS_MSG_LIST = "messages";
+
+        public static final String KEY_COUNTERS = "counters";
     }
 
-    public static HashMap<String, String> getInitRoomMap(TXRoomInfo TXRoomInfo, List<TXSeatInfo> TXSeatInfoList) {
-        Gson                    gson    = new Gson();
-        HashMap<String, String> jsonMap = new HashMap<>();
-        jsonMap.put(KEY_ATTR_VERSION, VALUE_ATTR_VERSION);
-        jsonMap.put(KEY_ROOM_INFO, gson.toJson(TXRoomInfo));
-        for (int i = 0; i < TXSeatInfoList.size(); i++) {
-            String json = gson.toJson(TXSeatInfoList.get(i), TXSeatInfo.class);
-            jsonMap.put(KEY_SEAT + i, json);
+    /**
+     * 一条自定义消息
+     */
+    public static class CusMsg {
+        public final String cmd;
+        public final String message;
+
+        public CusMsg(String cmd, String message) {
+            this.cmd = cmd;
+            this.message = message;
         }
+    }
+
+    public static HashMap<String, String> getInitRoomMap(TXRoomInfo TXRoomInfo, List<TXSeatInfo> TXSeatInfoList) {
+        return getInitRoomMap(TXRoomInfo, TXSeatInfoList, VALUE_ATTR_VERSION);
+    }
+
+    public static HashMap<String, String> getInitRoomMap(TXRoomInfo TXRoomInfo, List<TXSeatInfo> TXSeatInfoList, String attrVersion) {
+        HashMap<String, String> jsonMap = getSeatInfoListJsonStr(TXSeatInfoList, attrVersion);
+        jsonMap.put(KEY_ATTR_VERSION, attrVersion);
+        jsonMap.put(KEY_ROOM_INFO, IMCodec.toJson(TXRoomInfo));
         return jsonMap;
     }
 
     public static HashMap<String, String> getSeatInfoListJsonStr(List<TXSeatInfo> TXSeatInfoList) {
-        Gson                    gson    = new Gson();
+        return getSeatInfoListJsonStr(TXSeatInfoList, VALUE_ATTR_VERSION);
+    }
+
+    public static HashMap<String, String> getSeatInfoListJsonStr(List<TXSeatInfo> TXSeatInfoList, String attrVersion) {
         HashMap<String, String> jsonMap = new HashMap<>();
-        for (int i = 0; i < TXSeatInfoList.size(); i++) {
-            String json = gson.toJson(TXSeatInfoList.get(i), TXSeatInfo.class);
-            jsonMap.put(KEY_SEAT + i, json);
+        int                     size    = TXSeatInfoList.size();
+        if (isShardedVersion(attrVersion)) {
+            String[] raws = new String[size];
+            for (int i = 0; i < size; i++) {
+                raws[i] = encodeSeatInfo(TXSeatInfoList.get(i), attrVersion);
+            }
+            for (int shard = 0; shard < getShardCount(size); shard++) {
+                jsonMap.put(KEY_SEAT_SHARD + shard, encodeSeatShard(raws, shard));
+            }
+            return jsonMap;
+        }
+        for (int i = 0; i < size; i++) {
+            jsonMap.put(KEY_SEAT + i, encodeSeatInfo(TXSeatInfoList.get(i), attrVersion));
         }
         return jsonMap;
     }
 
     public static HashMap<String, String> getSeatInfoJsonStr(int index, TXSeatInfo info) {
-        Gson                    gson = new Gson();
-        String                  json = gson.toJson(info, TXSeatInfo.class);
-        HashMap<String, String> map  = new HashMap<>();
-        map.put(KEY_SEAT + index, json);
+        return getSeatInfoJsonStr(index, info, VALUE_ATTR_VERSION);
+    }
+
+    /**
+     * 只适用于每个座位一个属性的格式，分片格式需要通过 {@link SeatStateEngine#encodeSeats} 拼出整个分片
+     */
+    public static HashMap<String, String> getSeatInfoJsonStr(int index, TXSeatInfo info, String attrVersion) {
+        HashMap<String, String> map = new HashMap<>();
+        map.put(KEY_SEAT + index, encodeSeatInfo(info, attrVersion));
         return map;
     }
 
+    /**
+     * 新建房间使用的座位协议版本
+     * <p>
+     * 2.0/3.0 的座位只有这个版本之后的客户端能解析，旧客户端进房会把座位全部当成空位，写座位时还会写回 1.0 的 JSON。
+     * 因此只有确认房间里所有成员都支持时才能使用，否则房间保持 1.0，座位数不超过 {@link Define#MAX_SEAT_KEYS}。
+     *
+     * @param compact 所有成员都支持 2.0/3.0 时为 true，座位多时使用分片格式
+     */
+    public static String getAttrVersionForSeatSize(int seatSize, boolean compact) {
+        if (!compact) {
+            return VALUE_ATTR_VERSION;
+        }
+        return seatSize > Define.MAX_SEAT_KEYS ? VALUE_ATTR_VERSION_SHARDED : VALUE_ATTR_VERSION_COMPACT;
+    }
+
+    public static boolean isShardedVersion(String attrVersion) {
+        return VALUE_ATTR_VERSION_SHARDED.equals(attrVersion);
+    }
+
+    public static int getShardCount(int seatSize) {
+        return (seatSize + Define.SEATS_PER_SHARD - 1) / Define.SEATS_PER_SHARD;
+    }
+
+    /**
+     * @return 保存这个座位的群属性 key
+     */
+    public static String getSeatAttrKey(int index, String attrVersion) {
+        return isShardedVersion(attrVersion) ? KEY_SEAT_SHARD + index / Define.SEATS_PER_SHARD : KEY_SEAT + index;
+    }
+
+    /**
+     * 从群属性中读取单个座位的原始值，不存在时返回 null
+     */
+    public static String getSeatRawFromAttr(Map<String, String> map, int index, String attrVersion) {
+        String value = map.get(getSeatAttrKey(index, attrVersion));
+        if (value == null || !isShardedVersion(attrVersion)) {
+            return value;
+        }
+        // 只找到这个座位所在的一段，不拆分整个分片
+        int start = 0;
+        for (int i = index % Define.SEATS_PER_SHARD; i > 0; i--) {
+            int end = value.indexOf(Define.SHARD_SEPARATOR, start);
+            if (end < 0) {
+                return "";
+            }
+            start = end + 1;
+        }
+        int end = value.indexOf(Define.SHARD_SEPARATOR, start);
+        return value.substring(start, end < 0 ? value.length() : end);
+    }
+
+    /**
+     * 把一个分片内的座位原始值拼成属性值
+     *
+     * @param raws 所有座位的原始值
+     */
+    public static String encodeSeatShard(String[] raws, int shard) {
+        int           from = shard * Define.SEATS_PER_SHARD;
+        int           to   = Math.min(from + Define.SEATS_PER_SHARD, raws.length);
+        StringBuilder sb   = new StringBuilder((to - from) * 8);
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                sb.append(Define.SHARD_SEPARATOR);
+            }
+            if (raws[i] != null) {
+                sb.append(raws[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 拆分一个分片，结果写入 out[offset, offset + count)，分片里缺少的座位填 ""
+     */
+    public static void splitSeatShard(String value, String[] out, int offset, int count) {
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            if (value == null || start > value.length()) {
+                out[offset + i] = "";
+                continue;
+            }
+            int end = value.indexOf(Define.SHARD_SEPARATOR, start);
+            if (end < 0) {
+                end = value.length();
+            }
+            out[offset + i] = value.substring(start, end);
+            start = end + 1;
+        }
+    }
+
+    /**
+     * 读取房间属性中的协议版本，老房间没有该字段时按 1.0 处理
+     */
+    public static String getAttrVersion(Map<String, String> map) {
+        String version = map.get(KEY_ATTR_VERSION);
+        return version == null || version.isEmpty() ? VALUE_ATTR_VERSION : version;
+    }
+
+    /**
+     * 房间里的成员是否都能解析批量消息
+     * <p>
+     * 只有确认所有成员都支持时才会使用 2.0/3.0 的座位格式建房，这些客户端同样支持批量消息；
+     * 1.0 的房间里可能有旧客户端，它们会丢弃批量消息，里面的自定义消息需要逐条发送。
+     */
+    public static boolean isBatchMsgSupported(String attrVersion) {
+        return !VALUE_ATTR_VERSION.equals(attrVersion);
+    }
+
+    /**
+     * 按房间协议版本编码单个座位
+     * <p>
+     * 1.0：完整 JSON
+     * 2.0：首字符为 '0' + (status << 1 | mute)，其余部分为 userId，例如 "3user_a"；
+     * 带修改版本时首字符为 'A' + (status << 1 | mute)，后面是 36 进制的版本号和 '.'，例如 "Da.user_a"
+     * 3.0：单个座位与 2.0 相同，多个座位拼在一个分片里
+     */
+    public static String encodeSeatInfo(TXSeatInfo info, String attrVersion) {
+        if (!VALUE_ATTR_VERSION_COMPACT.equals(attrVersion) && !isShardedVersion(attrVersion)) {
+            return IMCodec.toJson(info);
+        }
+        int           flags = (info.status << 1) | (info.mute ? 1 : 0);
+        StringBuilder sb    = new StringBuilder(8 + (info.user == null ? 0 : info.user.length()));
+        if (info.version > 0) {
+            sb.append((char) ('A' + flags)).append(Integer.toString(info.version, 36)).append('.');
+        } else {
+            sb.append((char) ('0' + flags));
+        }
+        if (info.status == TXSeatInfo.STATUS_USED && info.user != null) {
+            sb.append(info.user);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解码单个座位，根据首字符自动识别 JSON(1.0) 或紧凑格式(2.0)，兼容新老版本混用的房间
+     *
+     * @return 解析失败返回 null
+     */
+    public static TXSeatInfo decodeSeatInfo(String value) {
+        if (value == null || value.isEmpty()) {
+            return new TXSeatInfo();
+        }
+        char first = value.charAt(0);
+        if (first == '{') {
+            try {
+                return IMCodec.seatInfoFromJson(value);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        int     maxFlags  = (TXSeatInfo.STATUS_CLOSE << 1) | 1;
+        boolean versioned = first >= 'A' && first <= 'A' + maxFlags;
+        int     flags     = versioned ? first - 'A' : first - '0';
+        if (flags < 0 || flags > maxFlags) {
+            return null;
+        }
+        TXSeatInfo info = new TXSeatInfo();
+        info.status = flags >> 1;
+        info.mute = (flags & 1) != 0;
+        int userStart = 1;
+        if (versioned) {
+            int dot = value.indexOf('.', 1);
+            if (dot < 0) {
+                return null;
+            }
+            try {
+                info.version = Integer.parseInt(value.substring(1, dot), 36);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            userStart = dot + 1;
+        }
+        info.user = value.length() > userStart ? value.substring(userStart) : "";
+        return info;
+    }
+
     public static TXRoomInfo getRoomInfoFromAttr(Map<String, String> map) {
         TXRoomInfo TXRoomInfo;
-        Gson       gson = new Gson();
         String     json = map.get(KEY_ROOM_INFO);
-        if (TextUtils.isEmpty(json)) {
+        if (json == null || json.isEmpty()) {
             return null;
         }
         try {
-            TXRoomInfo = gson.fromJson(json, TXRoomInfo.class);
+            TXRoomInfo = IMCodec.roomInfoFromJson(json);
         } catch (Exception e) {
             TRTCLogger.e(TAG, "parse room info json error! " + json);
             TXRoomInfo = null;
@@ -100,20 +352,25 @@ public class IMProtocol {
     }
 
     public static List<TXSeatInfo> getSeatListFromAttr(Map<String, String> map, int seatSize) {
-        Gson             gson        = new Gson();
-        List<TXSeatInfo> txSeatInfoList = new ArrayList<>();
+        String[] raws = new String[seatSize];
+        if (isShardedVersion(getAttrVersion(map))) {
+            // 每个分片只拆分一次
+            for (int shard = 0; shard < getShardCount(seatSize); shard++) {
+                int from = shard * Define.SEATS_PER_SHARD;
+                splitSeatShard(map.get(KEY_SEAT_SHARD + shard), raws, from, Math.min(Define.SEATS_PER_SHARD, seatSize - from));
+            }
+        } else {
+            for (int i = 0; i < seatSize; i++) {
+                raws[i] = map.get(KEY_SEAT + i);
+            }
+        }
+        List<TXSeatInfo> txSeatInfoList = new ArrayList<>(seatSize);
         for (int i = 0; i < seatSize; i++) {
-            String     json = map.get(KEY_SEAT + i);
-            TXSeatInfo txSeatInfo;
-            if (TextUtils.isEmpty(json)) {
+            String     value      = raws[i];
+            TXSeatInfo txSeatInfo = decodeSeatInfo(value);
+            if (txSeatInfo == null) {
+                TRTCLogger.e(TAG, "parse seat info error! " + value);
                 txSeatInfo = new TXSeatInfo();
-            } else {
-                try {
-                    txSeatInfo = gson.fromJson(json, TXSeatInfo.class);
-                } catch (Exception e) {
-                    TRTCLogger.e(TAG, "parse seat info json error! " + json);
-                    txSeatInfo = new TXSeatInfo();
-                }
             }
             txSeatInfoList.add(txSeatInfo);
         }
@@ -121,19 +378,17 @@ public class IMProtocol {
     }
 
     public static String getInvitationMsg(String roomId, String cmd, String content) {
-        Gson         gson = new Gson();
         TXInviteData data = new TXInviteData();
         data.roomId = roomId;
         data.command = cmd;
         data.message = content;
-        return gson.toJson(data, TXInviteData.class);
+        return IMCodec.toJson(data);
     }
 
     public static TXInviteData parseInvitationMsg(String json) {
-        Gson         gson = new Gson();
         TXInviteData data;
         try {
-            data = gson.fromJson(json, TXInviteData.class);
+            data = IMCodec.inviteDataFromJson(json);
         } catch (Exception e) {
             return null;
         }
@@ -156,17 +411,197 @@ public class IMProtocol {
         try {
             jsonObject.put(KEY_ATTR_VERSION, VALUE_ATTR_VERSION);
             jsonObject.put(KEY_CMD_ACTION, CODE_ROOM_CUSTOM_MSG);
-            jsonObject.put("command", cmd);
-            jsonObject.put("message", msg);
+            jsonObject.put(KEY_CUS_MSG_CMD, cmd);
+            jsonObject.put(KEY_CUS_MSG_BODY, msg);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return jsonObject.toString();
+    }
+
+    public static String getCusMsgBatchJsonStr(List<CusMsg> msgList) {
+        JSONObject jsonObject = new JSONObject();
+        try {
+            jsonObject.put(KEY_ATTR_VERSION, VALUE_ATTR_VERSION);
+            jsonObject.put(KEY_CMD_ACTION, CODE_ROOM_CUSTOM_MSG_BATCH);
+            JSONArray jsonArray = new JSONArray();
+            for (CusMsg cusMsg : msgList) {
+                JSONObject item = new JSONObject();
+                item.put(KEY_CUS_MSG_CMD, cusMsg.cmd);
+                item.put(KEY_CUS_MSG_BODY, cusMsg.message);
+                jsonArray.put(item);
+            }
+            jsonObject.put(KEY_CUS_MSG_LIST, jsonArray);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return jsonObject.toString();
+    }
+
+    public static String getCounterMsgJsonStr(Map<String, Long> counters) {
+        JSONObject jsonObject = new JSONObject();
+        try {
+            jsonObject.put(KEY_CMD_VERSION, VALUE_CMD_VERSION);
+            jsonObject.put(KEY_CMD_ACTION, CODE_ROOM_COUNTER);
+            JSONObject counterObject = new JSONObject();
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                counterObject.put(entry.getKey(), entry.getValue());
+            }
+            jsonObject.put(KEY_COUNTERS, counterObject);
         } catch (JSONException e) {
             e.printStackTrace();
         }
         return jsonObject.toString();
     }
 
-    public static Pair<String, String> parseCusMsg(JSONObject jsonObject) {
-        String cmd     = jsonObject.optString("command");
-        String message = jsonObject.optString("message");
-        return new Pair<>(cmd, message);
+    /**
+     * 从 UTF-8 字节流式解析计数聚合消息，忽略非正数的计数
+     *
+     * @return 解析失败返回 null
+     */
+    public static Map<String, Long> parseCounterMsg(byte[] data) {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        JsonReader        reader   = newJsonReader(data);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!KEY_COUNTERS.equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String type = reader.nextName();
+                    if (reader.peek() != JsonToken.NUMBER) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    long count = reader.nextLong();
+                    if (count > 0) {
+                        counters.put(type, count);
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+            return counters;
+        } catch (Exception e) {
+            TRTCLogger.e(TAG, "parse counter msg error! " + e.getMessage());
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    public static byte[] getRoomEventFrame(int action, byte[] payload) {
+        int    length = payload == null ? 0 : payload.length;
+        byte[] frame  = new byte[Define.EVENT_FRAME_HEADER_SIZE + length];
+        frame[0] = Define.EVENT_FRAME_MAGIC_0;
+        frame[1] = Define.EVENT_FRAME_MAGIC_1;
+        frame[2] = Define.EVENT_FRAME_VERSION;
+        frame[3] = (byte) (action >> 8);
+        frame[4] = (byte) action;
+        if (length > 0) {
+            System.arraycopy(payload, 0, frame, Define.EVENT_FRAME_HEADER_SIZE, length);
+        }
+        return frame;
+    }
+
+    /**
+     * JSON 文本不会以 0 字节开头，所以可以和 JSON 格式的消息共用一个通道
+     */
+    public static boolean isRoomEventFrame(byte[] data) {
+        return data != null && data.length >= Define.EVENT_FRAME_HEADER_SIZE
+                && data[0] == Define.EVENT_FRAME_MAGIC_0 && data[1] == Define.EVENT_FRAME_MAGIC_1;
+    }
+
+    /**
+     * @return 房间事件的 action，版本不支持时返回 -1
+     */
+    public static int getRoomEventAction(byte[] frame) {
+        if (frame[2] != Define.EVENT_FRAME_VERSION) {
+            return -1;
+        }
+        return ((frame[3] & 0xFF) << 8) | (frame[4] & 0xFF);
+    }
+
+    /**
+     * 从 UTF-8 字节流式解析单条自定义消息的 command / message
+     *
+     * @return 解析失败返回 null
+     */
+    public static CusMsg parseCusMsg(byte[] data) {
+        JsonReader reader = newJsonReader(data);
+        try {
+            return readCusMsg(reader);
+        } catch (Exception e) {
+            TRTCLogger.e(TAG, "parse custom msg error! " + e.getMessage());
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * 从 UTF-8 字节流式解析批量自定义消息
+     *
+     * @return 解析失败返回 null
+     */
+    public static List<CusMsg> parseCusMsgBatch(byte[] data) {
+        List<CusMsg> msgList = new ArrayList<>();
+        JsonReader   reader  = newJsonReader(data);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (KEY_CUS_MSG_LIST.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        msgList.add(readCusMsg(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return msgList;
+        } catch (Exception e) {
+            TRTCLogger.e(TAG, "parse custom msg batch error! " + e.getMessage());
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static CusMsg readCusMsg(JsonReader reader) throws IOException {
+        String cmd     = "";
+        String message = "";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() != JsonToken.STRING) {
+                reader.skipValue();
+            } else if (KEY_CUS_MSG_CMD.equals(name)) {
+                cmd = reader.nextString();
+            } else if (KEY_CUS_MSG_BODY.equals(name)) {
+                message = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new CusMsg(cmd, message);
+    }
+
+    private static JsonReader newJsonReader(byte[] data) {
+        return new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), UTF_8));
+    }
+
+    private static void closeQuietly(JsonReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // ignore
+        }
     }
 }
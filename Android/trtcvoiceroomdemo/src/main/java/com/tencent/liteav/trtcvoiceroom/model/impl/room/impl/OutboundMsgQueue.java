@@ -0,0 +1,264 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 群消息发送队列
+ * <p>
+ * 文本消息、自定义消息和房间事件按调用顺序排队，用令牌桶限制发送频率，避免触发 IM 的频率限制。
+ * 打开合并后，有积压时连续的自定义消息会合并成一条批量消息发送；队列满了直接回调失败并计数。
+ * 旧客户端不能解析批量消息，默认不合并，见 {@link IMProtocol#isBatchMsgSupported}。
+ * 所有方法都需要在创建时指定的 looper 线程调用。
+ */
+public class OutboundMsgQueue {
+    private static final String TAG = "OutboundMsgQueue";
+
+    public static final int CODE_QUEUE_FULL = -2;
+
+    private static final int DEFAULT_RATE      = 5;
+    private static final int DEFAULT_BURST     = 10;
+    private static final int DEFAULT_MAX_DEPTH = 100;
+    // 单条批量消息最多合并的条数和 UTF-8 字节数，IM 自定义消息有大小限制
+    private static final int MAX_BATCH_COUNT   = 20;
+    private static final int MAX_BATCH_BYTES   = 6 * 1024;
+    // 每条消息在批量消息里的 JSON key、引号等额外开销
+    private static final int BATCH_ITEM_BYTES  = 32;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public interface Sender {
+        void sendText(String text, TXCallback callback);
+
+        void sendCustom(byte[] data, TXCallback callback);
+    }
+
+    private static class Item {
+        final boolean    isCustom;
+        final String     text;
+        final String     cmd;
+        final String     message;
+        // 已经编码好的房间事件帧或计数消息，不参与合并
+        final byte[]     frame;
+        final TXCallback callback;
+        // 合并到批量消息时占用的字节数，中文等字符按 UTF-8 编码后计算
+        final int        size;
+
+        Item(boolean isCustom, String text, String cmd, String message, byte[] frame, TXCallback callback) {
+            this.isCustom = isCustom;
+            this.text = text;
+            this.cmd = cmd;
+            this.message = message;
+            this.frame = frame;
+            this.callback = callback;
+            this.size = isCustom ? utf8Length(cmd) + utf8Length(message) + BATCH_ITEM_BYTES : 0;
+        }
+
+        private static int utf8Length(String str) {
+            return str == null ? 0 : str.getBytes(UTF_8).length;
+        }
+    }
+
+    private final Sender           mSender;
+    private       Handler          mHandler;
+    private final LinkedList<Item> mQueue;
+    private final Runnable         mDrainRunnable;
+    private       boolean          mDrainScheduled;
+    private       boolean          mBatchEnabled;
+    private       int              mRate;
+    private       int              mBurst;
+    private       int              mMaxDepth;
+    private       double           mTokens;
+    private       long             mLastRefillTime;
+    private       long             mSentCount;
+    private       long             mBatchedCount;
+    private       long             mDropCount;
+
+    public OutboundMsgQueue(Sender sender, Handler handler) {
+        mSender = sender;
+        mHandler = handler;
+        mQueue = new LinkedList<>();
+        mRate = DEFAULT_RATE;
+        mBurst = DEFAULT_BURST;
+        mMaxDepth = DEFAULT_MAX_DEPTH;
+        mTokens = mBurst;
+        mLastRefillTime = SystemClock.elapsedRealtime();
+        mDrainRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mDrainScheduled = false;
+                drain();
+            }
+        };
+    }
+
+    public void setHandler(Handler handler) {
+        mHandler.removeCallbacks(mDrainRunnable);
+        mHandler = handler;
+        if (mDrainScheduled) {
+            mHandler.post(mDrainRunnable);
+        }
+    }
+
+    /**
+     * @param rate  每秒最多发送的消息条数
+     * @param burst 允许瞬间发送的最大条数
+     */
+    public void setRate(int rate, int burst) {
+        refill();
+        mRate = Math.max(rate, 1);
+        mBurst = Math.max(burst, 1);
+        mTokens = Math.min(mTokens, mBurst);
+    }
+
+    /**
+     * @param enable 有积压时是否合并自定义消息，只有房间里所有成员都能解析批量消息时才能打开
+     */
+    public void setBatchEnabled(boolean enable) {
+        mBatchEnabled = enable;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        mMaxDepth = Math.max(maxDepth, 1);
+    }
+
+    public void sendText(String text, TXCallback callback) {
+        enqueue(new Item(false, text, null, null, null, callback));
+    }
+
+    public void sendCustom(String cmd, String message, TXCallback callback) {
+        enqueue(new Item(true, null, cmd, message, null, callback));
+    }
+
+    public void sendFrame(byte[] frame, TXCallback callback) {
+        enqueue(new Item(false, null, null, null, frame, callback));
+    }
+
+    /**
+     * 丢弃所有未发送的消息，并回调失败，退房时调用
+     */
+    public void clear(int code, String msg) {
+        mHandler.removeCallbacks(mDrainRunnable);
+        mDrainScheduled = false;
+        List<Item> itemList = new ArrayList<>(mQueue);
+        mQueue.clear();
+        for (Item item : itemList) {
+            if (item.callback != null) {
+                item.callback.onCallback(code, msg);
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return mQueue.size();
+    }
+
+    public long getSentCount() {
+        return mSentCount;
+    }
+
+    public long getBatchedCount() {
+        return mBatchedCount;
+    }
+
+    public long getDropCount() {
+        return mDropCount;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboundMsgQueue{" +
+                "depth=" + mQueue.size() +
+                ", sent=" + mSentCount +
+                ", batched=" + mBatchedCount +
+                ", drop=" + mDropCount +
+                '}';
+    }
+
+    private void enqueue(Item item) {
+        if (mQueue.size() >= mMaxDepth) {
+            mDropCount++;
+            TRTCLogger.e(TAG, "send queue is full, drop msg. " + this);
+            if (item.callback != null) {
+                item.callback.onCallback(CODE_QUEUE_FULL, "send queue is full.");
+            }
+            return;
+        }
+        mQueue.add(item);
+        if (!mDrainScheduled) {
+            drain();
+        }
+    }
+
+    private void refill() {
+        long now = SystemClock.elapsedRealtime();
+        mTokens = Math.min(mBurst, mTokens + (now - mLastRefillTime) * mRate / 1000.0);
+        mLastRefillTime = now;
+    }
+
+    private void drain() {
+        refill();
+        while (!mQueue.isEmpty() && mTokens >= 1) {
+            mTokens -= 1;
+            Item item = mQueue.poll();
+            if (item.frame != null) {
+                mSentCount++;
+                mSender.sendCustom(item.frame, item.callback);
+            } else if (!item.isCustom) {
+                mSentCount++;
+                mSender.sendText(item.text, item.callback);
+            } else if (!mBatchEnabled || mQueue.isEmpty() || !mQueue.peek().isCustom) {
+                mSentCount++;
+                mSender.sendCustom(IMProtocol.getCusMsgJsonStr(item.cmd, item.message).getBytes(UTF_8), item.callback);
+            } else {
+                sendBatch(item);
+            }
+        }
+        if (!mQueue.isEmpty() && !mDrainScheduled) {
+            mDrainScheduled = true;
+            long delay = (long) Math.ceil((1 - mTokens) * 1000 / mRate);
+            mHandler.postDelayed(mDrainRunnable, Math.max(delay, 1));
+        }
+    }
+
+    /**
+     * 有积压时把队首连续的自定义消息合并成一条发送
+     */
+    private void sendBatch(Item first) {
+        final List<Item>        batch   = new ArrayList<>();
+        List<IMProtocol.CusMsg> msgList = new ArrayList<>();
+        int                     bytes   = first.size;
+        batch.add(first);
+        msgList.add(new IMProtocol.CusMsg(first.cmd, first.message));
+        while (batch.size() < MAX_BATCH_COUNT && !mQueue.isEmpty() && mQueue.peek().isCustom
+                && bytes + mQueue.peek().size <= MAX_BATCH_BYTES) {
+            Item item = mQueue.poll();
+            bytes += item.size;
+            batch.add(item);
+            msgList.add(new IMProtocol.CusMsg(item.cmd, item.message));
+        }
+        mSentCount++;
+        mBatchedCount += batch.size();
+        String data = batch.size() == 1
+                ? IMProtocol.getCusMsgJsonStr(first.cmd, first.message)
+                : IMProtocol.getCusMsgBatchJsonStr(msgList);
+        mSender.sendCustom(data.getBytes(UTF_8), new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                for (Item item : batch) {
+                    if (item.callback != null) {
+                        item.callback.onCallback(code, msg);
+                    }
+                }
+            }
+        });
+    }
+}
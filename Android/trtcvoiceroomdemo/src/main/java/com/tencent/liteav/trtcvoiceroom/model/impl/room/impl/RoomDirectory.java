@@ -0,0 +1,278 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 房间列表的资料缓存
+ * <p>
+ * 按 roomId 保存 getGroupsInfo 拿到的房间资料和拉取时间。拉取房间列表时，刷新间隔内拉取过的房间直接使用缓存，
+ * 只有新出现的和超过刷新间隔的房间需要再查询 IM；上一次的房间列表可以在网络请求前先展示。
+ * 缓存只保留最近一次房间列表里的房间。设置了 Context 时同时写入 SharedPreferences，进程重启后仍然可用。
+ * 所有方法都需要在房间线程调用。
+ */
+public class RoomDirectory {
+    private static final String TAG = "RoomDirectory";
+
+    private static final String PREFS_NAME                  = "trtc_voice_room_directory";
+    private static final String KEY_DIRECTORY               = "directory";
+    private static final long   DEFAULT_REFRESH_INTERVAL_MS = 30 * 1000;
+
+    private static class Entry {
+        final TXRoomInfo roomInfo;
+        // 拉取时的 System.currentTimeMillis()，持久化后跨进程仍然有效
+        final long       fetchTime;
+
+        Entry(TXRoomInfo roomInfo, long fetchTime) {
+            this.roomInfo = roomInfo;
+            this.fetchTime = fetchTime;
+        }
+    }
+
+    private final Map<String, Entry> mEntries;
+    // 最近一次拉取的房间列表，按服务端返回的顺序
+    private       List<String>       mLastRoomIds;
+    private       SharedPreferences  mPrefs;
+    private       boolean            mLoaded;
+    private       long               mRefreshIntervalMs;
+
+    public RoomDirectory() {
+        this(DEFAULT_REFRESH_INTERVAL_MS);
+    }
+
+    public RoomDirectory(long refreshIntervalMs) {
+        mRefreshIntervalMs = refreshIntervalMs;
+        mEntries = new HashMap<>();
+        mLastRoomIds = new ArrayList<>();
+    }
+
+    /**
+     * 设置后缓存写入 SharedPreferences，不设置时只保存在内存中
+     */
+    public void setContext(Context context) {
+        mPrefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mLoaded = false;
+    }
+
+    /**
+     * @param refreshIntervalMs 房间资料在这段时间内不再重新拉取，0 表示每次都拉取
+     */
+    public void setRefreshInterval(long refreshIntervalMs) {
+        mRefreshIntervalMs = refreshIntervalMs;
+    }
+
+    /**
+     * @return roomIds 中没有缓存或者超过刷新间隔、需要向 IM 查询的房间
+     */
+    public List<String> getStaleRoomIds(List<String> roomIds) {
+        load();
+        long         now      = System.currentTimeMillis();
+        List<String> staleIds = new ArrayList<>();
+        for (String roomId : roomIds) {
+            Entry entry = mEntries.get(roomId);
+            if (entry == null || now - entry.fetchTime >= mRefreshIntervalMs) {
+                staleIds.add(roomId);
+            }
+        }
+        return staleIds;
+    }
+
+    /**
+     * 保存一次房间列表的拉取结果
+     *
+     * @param roomIds      完整的房间列表，不在列表里的房间从缓存中删除
+     * @param fetchedIds   这次向 IM 查询的房间
+     * @param fetchedRooms IM 返回的房间资料，查询了但没有返回的房间已经解散
+     */
+    public void update(List<String> roomIds, List<String> fetchedIds, List<TXRoomInfo> fetchedRooms) {
+        load();
+        long now = System.currentTimeMillis();
+        for (String roomId : fetchedIds) {
+            mEntries.remove(roomId);
+        }
+        for (TXRoomInfo roomInfo : fetchedRooms) {
+            mEntries.put(roomInfo.roomId, new Entry(roomInfo, now));
+        }
+        mEntries.keySet().retainAll(roomIds);
+        mLastRoomIds = new ArrayList<>(roomIds);
+        save();
+    }
+
+    /**
+     * @return 按 roomIds 的顺序返回有缓存的房间资料，不检查刷新间隔
+     */
+    public List<TXRoomInfo> get(List<String> roomIds) {
+        load();
+        List<TXRoomInfo> list = new ArrayList<>(roomIds.size());
+        for (String roomId : roomIds) {
+            Entry entry = mEntries.get(roomId);
+            if (entry != null) {
+                list.add(entry.roomInfo);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return 最近一次房间列表里有缓存的房间资料，可能已经过期
+     */
+    public List<TXRoomInfo> getLastList() {
+        load();
+        return get(mLastRoomIds);
+    }
+
+    /**
+     * 房间解散时删除
+     */
+    public void remove(String roomId) {
+        load();
+        if (mEntries.remove(roomId) != null) {
+            mLastRoomIds.remove(roomId);
+            save();
+        }
+    }
+
+    public void clear() {
+        mEntries.clear();
+        mLastRoomIds.clear();
+        if (mPrefs != null) {
+            mPrefs.edit().clear().apply();
+        }
+    }
+
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (mPrefs == null) {
+            return;
+        }
+        String json = mPrefs.getString(KEY_DIRECTORY, null);
+        if (json == null) {
+            return;
+        }
+        try {
+            decode(json, mLastRoomIds, mEntries);
+        } catch (Exception e) {
+            TRTCLogger.e(TAG, "parse room directory error! " + e.getMessage());
+            mLastRoomIds.clear();
+            mEntries.clear();
+        }
+    }
+
+    private void save() {
+        if (mPrefs == null) {
+            return;
+        }
+        String json = encode(mLastRoomIds, mEntries);
+        if (json != null) {
+            mPrefs.edit().putString(KEY_DIRECTORY, json).apply();
+        }
+    }
+
+    private static String encode(List<String> roomIds, Map<String, Entry> entries) {
+        try {
+            StringWriter stringWriter = new StringWriter();
+            JsonWriter   writer       = new JsonWriter(stringWriter);
+            writer.beginObject();
+            writer.name("list").beginArray();
+            for (String roomId : roomIds) {
+                writer.value(roomId);
+            }
+            writer.endArray();
+            writer.name("rooms").beginArray();
+            for (Entry entry : entries.values()) {
+                TXRoomInfo roomInfo = entry.roomInfo;
+                writer.beginObject();
+                writer.name("id").value(roomInfo.roomId);
+                writer.name("time").value(entry.fetchTime);
+                writer.name("name").value(roomInfo.roomName);
+                writer.name("cover").value(roomInfo.cover);
+                writer.name("ownerId").value(roomInfo.ownerId);
+                writer.name("ownerName").value(roomInfo.ownerName);
+                writer.name("memberCount").value(roomInfo.memberCount);
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.close();
+            return stringWriter.toString();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void decode(String json, List<String> roomIds, Map<String, Entry> entries) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("list".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    roomIds.add(reader.nextString());
+                }
+                reader.endArray();
+            } else if ("rooms".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Entry entry = decodeEntry(reader);
+                    if (entry.roomInfo.roomId != null) {
+                        entries.put(entry.roomInfo.roomId, entry);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static Entry decodeEntry(JsonReader reader) throws IOException {
+        TXRoomInfo roomInfo  = new TXRoomInfo();
+        long       fetchTime = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            if ("id".equals(name)) {
+                roomInfo.roomId = reader.nextString();
+            } else if ("time".equals(name)) {
+                fetchTime = reader.nextLong();
+            } else if ("name".equals(name)) {
+                roomInfo.roomName = reader.nextString();
+            } else if ("cover".equals(name)) {
+                roomInfo.cover = reader.nextString();
+            } else if ("ownerId".equals(name)) {
+                roomInfo.ownerId = reader.nextString();
+            } else if ("ownerName".equals(name)) {
+                roomInfo.ownerName = reader.nextString();
+            } else if ("memberCount".equals(name)) {
+                roomInfo.memberCount = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Entry(roomInfo, fetchTime);
+    }
+}
@@ -0,0 +1,249 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 房间快照缓存（LRU + 过期时间）
+ * <p>
+ * 按 roomId 保存最近一次拿到的完整群属性，再次进入同一个房间时可以先用快照渲染房间信息和座位，再等 IM 返回最新的群属性校正。
+ * 设置了 Context 时快照同时写入 SharedPreferences，进程重启后仍然可用，内存中只在用到时才解码。
+ * 所有方法都需要在房间线程调用。
+ */
+public class RoomSnapshotCache {
+    private static final String TAG = "RoomSnapshotCache";
+
+    private static final String PREFS_NAME       = "trtc_voice_room_snapshot";
+    // 按最近使用排列的 roomId，最早的在前
+    private static final String KEY_ROOM_LIST    = "room_list";
+    private static final String KEY_ROOM_PREFIX  = "room_";
+    private static final int    DEFAULT_MAX_SIZE = 20;
+    private static final long   DEFAULT_TTL_MS   = 24 * 60 * 60 * 1000;
+
+    public static class Snapshot {
+        // 不可修改
+        public final Map<String, String> attrMap;
+        // 保存时的 System.currentTimeMillis()，持久化后跨进程仍然有效
+        public final long                saveTime;
+
+        Snapshot(Map<String, String> attrMap, long saveTime) {
+            this.attrMap = attrMap;
+            this.saveTime = saveTime;
+        }
+    }
+
+    // value 为 null 表示快照只在 SharedPreferences 里，还没有解码
+    private final LinkedHashMap<String, Snapshot> mCache;
+    private       SharedPreferences               mPrefs;
+    // SharedPreferences 里的 roomId 列表是否已经读到 mCache
+    private       boolean                         mIndexLoaded;
+    private       int                             mMaxSize;
+    private       long                            mTtlMs;
+
+    public RoomSnapshotCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL_MS);
+    }
+
+    public RoomSnapshotCache(int maxSize, long ttlMs) {
+        mMaxSize = maxSize;
+        mTtlMs = ttlMs;
+        mCache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * 设置后快照写入 SharedPreferences，不设置时只保存在内存中
+     */
+    public void setContext(Context context) {
+        mPrefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mIndexLoaded = false;
+    }
+
+    public void setTtl(long ttlMs) {
+        mTtlMs = ttlMs;
+    }
+
+    /**
+     * @return 命中且未过期时返回快照，否则返回 null
+     */
+    public Snapshot get(String roomId) {
+        loadIndex();
+        if (!mCache.containsKey(roomId)) {
+            return null;
+        }
+        Snapshot snapshot = mCache.get(roomId);
+        if (snapshot == null && mPrefs != null) {
+            snapshot = decode(mPrefs.getString(KEY_ROOM_PREFIX + roomId, null));
+            if (snapshot != null) {
+                mCache.put(roomId, snapshot);
+            }
+        }
+        if (snapshot == null || System.currentTimeMillis() - snapshot.saveTime > mTtlMs) {
+            remove(roomId);
+            return null;
+        }
+        return snapshot;
+    }
+
+    public void put(String roomId, Map<String, String> attrMap) {
+        if (roomId == null || attrMap == null || attrMap.isEmpty()) {
+            return;
+        }
+        loadIndex();
+        Snapshot snapshot = new Snapshot(Collections.unmodifiableMap(new HashMap<>(attrMap)), System.currentTimeMillis());
+        mCache.put(roomId, snapshot);
+        List<String> evictList = new ArrayList<>();
+        Iterator<String> iterator = mCache.keySet().iterator();
+        while (mCache.size() - evictList.size() > mMaxSize && iterator.hasNext()) {
+            evictList.add(iterator.next());
+        }
+        for (String evictRoomId : evictList) {
+            mCache.remove(evictRoomId);
+        }
+        if (mPrefs != null) {
+            SharedPreferences.Editor editor = mPrefs.edit();
+            for (String evictRoomId : evictList) {
+                editor.remove(KEY_ROOM_PREFIX + evictRoomId);
+            }
+            editor.putString(KEY_ROOM_PREFIX + roomId, encode(snapshot));
+            editor.putString(KEY_ROOM_LIST, encodeRoomList());
+            editor.apply();
+        }
+    }
+
+    /**
+     * 房间已经解散或者不存在时删除快照
+     */
+    public void remove(String roomId) {
+        loadIndex();
+        if (!mCache.containsKey(roomId)) {
+            return;
+        }
+        mCache.remove(roomId);
+        if (mPrefs != null) {
+            mPrefs.edit()
+                    .remove(KEY_ROOM_PREFIX + roomId)
+                    .putString(KEY_ROOM_LIST, encodeRoomList())
+                    .apply();
+        }
+    }
+
+    public void clear() {
+        mCache.clear();
+        if (mPrefs != null) {
+            mPrefs.edit().clear().apply();
+        }
+    }
+
+    public int size() {
+        loadIndex();
+        return mCache.size();
+    }
+
+    private void loadIndex() {
+        if (mIndexLoaded) {
+            return;
+        }
+        mIndexLoaded = true;
+        if (mPrefs == null) {
+            return;
+        }
+        String json = mPrefs.getString(KEY_ROOM_LIST, null);
+        if (json == null) {
+            return;
+        }
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String roomId = reader.nextString();
+                if (!mCache.containsKey(roomId)) {
+                    mCache.put(roomId, null);
+                }
+            }
+            reader.endArray();
+        } catch (Exception e) {
+            TRTCLogger.e(TAG, "parse room list error! " + e.getMessage());
+        }
+    }
+
+    private String encodeRoomList() {
+        try {
+            StringWriter stringWriter = new StringWriter();
+            JsonWriter   writer       = new JsonWriter(stringWriter);
+            writer.beginArray();
+            for (String roomId : mCache.keySet()) {
+                writer.value(roomId);
+            }
+            writer.endArray();
+            writer.close();
+            return stringWriter.toString();
+        } catch (IOException e) {
+            return "[]";
+        }
+    }
+
+    static String encode(Snapshot snapshot) {
+        try {
+            StringWriter stringWriter = new StringWriter();
+            JsonWriter   writer       = new JsonWriter(stringWriter);
+            writer.beginObject();
+            writer.name("time").value(snapshot.saveTime);
+            writer.name("attrs").beginObject();
+            for (Map.Entry<String, String> entry : snapshot.attrMap.entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+            writer.endObject();
+            writer.endObject();
+            writer.close();
+            return stringWriter.toString();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static Snapshot decode(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            JsonReader          reader   = new JsonReader(new StringReader(json));
+            long                saveTime = 0;
+            Map<String, String> attrMap  = new HashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("time".equals(name)) {
+                    saveTime = reader.nextLong();
+                } else if ("attrs".equals(name)) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        attrMap.put(reader.nextName(), reader.nextString());
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new Snapshot(Collections.unmodifiableMap(attrMap), saveTime);
+        } catch (Exception e) {
+            TRTCLogger.e(TAG, "parse room snapshot error! " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+
+/**
+ * 一次抢麦的胜负判定
+ * <p>
+ * IM 群属性没有 compare-and-set，同时抢同一个座位时后落地的写入会覆盖先落地的。每个人写入的值是自己的 userId
+ * 加上抢麦前读到的版本号加一，同一轮抢麦的写入版本号都大于抢麦前读到的版本号，userId 加版本号可以区分每个人的写入。
+ * 按群属性变化回显的先后判断：回显里第一个本轮的写入获胜；输了但自己的写入落地在获胜者之后时，
+ * 需要把座位写回被自己覆盖的值。
+ * <p>
+ * 判定是尽力而为的：它依赖 IM 把一个群的属性变化按服务端的写入顺序推送给每个成员（包括写入者自己）。
+ * 推送乱序或丢失时，两边可能都判定为获胜或者都判定为失败；写入成功后一直等不到回显时由 TXRoomService 回读群属性判断。
+ * 只在房间线程使用。
+ */
+class SeatClaim {
+    static final int RESULT_PENDING = 0;
+    static final int RESULT_WON     = 1;
+    static final int RESULT_LOST    = 2;
+
+    final int        index;
+    final String     roomId;
+    final String     attrVersion;
+    // 以下由 TXRoomService 使用：还没有回调结果时 callback 不为 null，timeout 为等待回显的超时任务
+    TXCallback       callback;
+    Runnable         timeout;
+
+    private final TXSeatInfo mClaimInfo;
+    private final int        mBaseVersion;
+    // 回显里这个座位最新的值
+    private       TXSeatInfo mLastSeat;
+    // 回显里第一个本轮的写入
+    private       TXSeatInfo mFirstClaim;
+    // 自己的写入回显前座位上的值，也就是被自己覆盖的值
+    private       TXSeatInfo mOverwritten;
+    private       boolean    mEchoed;
+    private       boolean    mWritten;
+
+    /**
+     * @param current 抢麦前读到的座位
+     */
+    SeatClaim(int index, String roomId, String attrVersion, TXSeatInfo current, String userId, TXCallback callback) {
+        this.index = index;
+        this.roomId = roomId;
+        this.attrVersion = attrVersion;
+        this.callback = callback;
+        mBaseVersion = current.version;
+        mLastSeat = current;
+        mClaimInfo = new TXSeatInfo();
+        mClaimInfo.status = TXSeatInfo.STATUS_USED;
+        mClaimInfo.mute = current.mute;
+        mClaimInfo.user = userId;
+        mClaimInfo.version = current.version + 1;
+    }
+
+    /**
+     * @return 需要写入的座位
+     */
+    TXSeatInfo getClaimInfo() {
+        return mClaimInfo;
+    }
+
+    /**
+     * 收到一次群属性变化，seat 为其中这个座位的值，没有变化时忽略
+     */
+    void onSeatChanged(TXSeatInfo seat) {
+        if (isSameSeat(seat, mLastSeat)) {
+            return;
+        }
+        TXSeatInfo previous = mLastSeat;
+        mLastSeat = seat;
+        if (mFirstClaim == null && seat.status == TXSeatInfo.STATUS_USED && seat.version > mBaseVersion) {
+            mFirstClaim = seat;
+        }
+        if (!mEchoed && isClaimedBy(seat, mClaimInfo)) {
+            mEchoed = true;
+            mOverwritten = previous;
+        }
+    }
+
+    /**
+     * 写入已经成功返回
+     */
+    void onWritten() {
+        mWritten = true;
+    }
+
+    boolean isWritten() {
+        return mWritten;
+    }
+
+    /**
+     * @return 是否已经收到自己写入的回显
+     */
+    boolean isEchoed() {
+        return mEchoed;
+    }
+
+    int getResult() {
+        if (mFirstClaim == null) {
+            return RESULT_PENDING;
+        }
+        return isClaimedBy(mFirstClaim, mClaimInfo) ? RESULT_WON : RESULT_LOST;
+    }
+
+    /**
+     * @return 输了、自己的写入覆盖了获胜者并且座位上仍然是自己的写入时，返回需要写回的值，否则返回 null
+     */
+    TXSeatInfo getUndoInfo() {
+        if (getResult() != RESULT_LOST || !mEchoed || mOverwritten == null || !isClaimedBy(mLastSeat, mClaimInfo)) {
+            return null;
+        }
+        TXSeatInfo undoInfo = new TXSeatInfo();
+        undoInfo.status = mOverwritten.status;
+        undoInfo.mute = mOverwritten.mute;
+        undoInfo.user = mOverwritten.user;
+        // 写回的版本号不能低于自己写入的，否则会被当成乱序推送里的旧值丢弃
+        undoInfo.version = Math.max(mOverwritten.version, mClaimInfo.version);
+        return undoInfo;
+    }
+
+    static boolean isClaimedBy(TXSeatInfo seat, TXSeatInfo claimInfo) {
+        return seat != null && seat.status == TXSeatInfo.STATUS_USED
+                && claimInfo.user.equals(seat.user) && seat.version == claimInfo.version;
+    }
+
+    private static boolean isSameSeat(TXSeatInfo a, TXSeatInfo b) {
+        if (a.status != b.status || a.mute != b.mute || a.version != b.version) {
+            return false;
+        }
+        return a.user == null ? b.user == null : a.user.equals(b.user);
+    }
+}
@@ -0,0 +1,627 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_SEAT;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.KEY_SEAT_SHARD;
+import static com.tencent.liteav.trtcvoiceroom.model.impl.room.impl.IMProtocol.Define.SEATS_PER_SHARD;
+
+/**
+ * 座位状态机
+ * <p>
+ * 记录每个座位上一次的原始字符串，群属性变化时只解析原始值发生变化的座位，
+ * 同一次遍历中记下变化的座位，再通过 {@link #dispatchChanges(SeatChangeListener)} 把 上麦/下麦/封麦/禁言 回调出去。
+ * 分片格式下先比较每个 seatsN 分片，只拆分发生变化的分片。
+ * <p>
+ * 分片格式下修改一个座位需要写入整个分片，分片内其他座位取自己还没落地的写入、写入前读到的分片或群属性里的值，见 {@link #encodeSeats}。
+ * 别人同时写入同一个分片时可能把自己已经落地的座位改回写入前的值，这样的座位通过 {@link #takeRevertedSeats()} 取出后重新写入。
+ * <p>
+ * 乐观模式下，本地发起的修改先通过 {@link #applyLocal} 覆盖到对外的座位列表上，并带一个待确认的版本号；
+ * 之后以群属性为准：收到相同的属性值或修改成功时确认，修改失败时回滚到群属性里的值。
+ * <p>
+ * 2.0/3.0 的房间里座位每次修改版本号加一，IM 的推送乱序时，版本号比已经收到的低的座位值会被忽略，所有成员最终收敛到最新的值。
+ */
+public class SeatStateEngine {
+    private static final String TAG = "SeatStateEngine";
+
+    // 分片写入被别人覆盖后，同一个值最多重新写入的次数
+    private static final int MAX_SHARD_RETRY = 3;
+
+    public interface SeatChangeListener {
+        void onSeatTake(int index, String userId);
+
+        void onSeatLeave(int index, String userId);
+
+        void onSeatClose(int index, boolean isClose);
+
+        void onSeatMute(int index, boolean mute);
+    }
+
+    private String           mAttrVersion;
+    private boolean          mSharded;
+    // 2.0/3.0 的座位每次修改都会增加版本号，可以用来丢弃乱序推送里的旧值；1.0 的房间里可能有不写版本号的旧客户端
+    private boolean          mVersioned;
+    private String[]         mRawValues;
+    private String[]         mSeatKeys;
+    // 分片格式下每个分片的 key 和上一次的原始值
+    private String[]         mShardKeys;
+    private String[]         mShardRaws;
+    // 自己已经写出、还没在群属性里看到的座位值，拼分片时用它代替群属性里的值，避免覆盖自己前一次写入
+    private String[]         mInflightRaw;
+    // 分片格式下自己最近写入的座位值和写入前的值，群属性从写入的值变回写入前的值时说明被别人的分片写入覆盖了
+    private String[]         mWrittenRaw;
+    private String[]         mWrittenPrevRaw;
+    private int[]            mRetryCount;
+    private int[]            mRevertedIndex;
+    private int              mRevertedCount;
+    private List<TXSeatInfo> mSeatInfoList;
+    // 上一次 apply 中发生变化的座位及其旧值
+    private int[]            mChangedIndex;
+    private TXSeatInfo[]     mChangedOldInfo;
+    private int              mChangedCount;
+    // 群属性里的座位值，乐观修改回滚时恢复到这里
+    private TXSeatInfo[]     mConfirmedInfo;
+    // 每个座位群属性变化的次数
+    private int[]            mEchoCount;
+    // 每个座位自己写入过的最大版本号
+    private int[]            mMaxVersion;
+    // 每个座位待确认的本地修改，版本号为 0 表示没有
+    private long[]           mPendingVersion;
+    private String[]         mPendingRaw;
+    private int[]            mPendingEchoCount;
+    private long             mNextVersion;
+
+    public SeatStateEngine() {
+        mRawValues = new String[0];
+        mSeatKeys = new String[0];
+        mShardKeys = new String[0];
+        mChangedIndex = new int[0];
+        mChangedOldInfo = new TXSeatInfo[0];
+        mSeatInfoList = new ArrayList<>();
+        initKeys(0, IMProtocol.Define.VALUE_ATTR_VERSION);
+    }
+
+    /**
+     * 使用本地座位列表初始化（创建房间时），原始值按初始化群属性时写入的值计算
+     */
+    public void reset(List<TXSeatInfo> seatInfoList, String attrVersion) {
+        int size = seatInfoList == null ? 0 : seatInfoList.size();
+        initKeys(size, attrVersion);
+        mSeatInfoList = new ArrayList<>(size);
+        if (seatInfoList != null) {
+            mSeatInfoList.addAll(seatInfoList);
+            seatInfoList.toArray(mConfirmedInfo);
+            for (int i = 0; i < size; i++) {
+                mRawValues[i] = IMProtocol.encodeSeatInfo(mConfirmedInfo[i], attrVersion);
+            }
+            for (int shard = 0; shard < mShardKeys.length; shard++) {
+                mShardRaws[shard] = IMProtocol.encodeSeatShard(mRawValues, shard);
+            }
+        }
+    }
+
+    /**
+     * 使用群属性初始化（进入房间时），座位格式跟随房间的协议版本
+     */
+    public List<TXSeatInfo> reset(Map<String, String> attrMap, int seatSize) {
+        initKeys(seatSize, IMProtocol.getAttrVersion(attrMap));
+        mSeatInfoList = new ArrayList<>(seatSize);
+        if (mSharded) {
+            for (int shard = 0; shard < mShardKeys.length; shard++) {
+                String value = attrMap.get(mShardKeys[shard]);
+                mShardRaws[shard] = value == null ? "" : value;
+                int from = shard * SEATS_PER_SHARD;
+                IMProtocol.splitSeatShard(value, mRawValues, from, Math.min(SEATS_PER_SHARD, seatSize - from));
+            }
+        } else {
+            for (int i = 0; i < seatSize; i++) {
+                String raw = attrMap.get(mSeatKeys[i]);
+                mRawValues[i] = raw == null ? "" : raw;
+            }
+        }
+        for (int i = 0; i < seatSize; i++) {
+            mConfirmedInfo[i] = decode(mRawValues[i]);
+            mSeatInfoList.add(mConfirmedInfo[i]);
+        }
+        return mSeatInfoList;
+    }
+
+    public String getAttrVersion() {
+        return mAttrVersion;
+    }
+
+    public boolean isSharded() {
+        return mSharded;
+    }
+
+    public List<TXSeatInfo> getSeatInfoList() {
+        return mSeatInfoList;
+    }
+
+    /**
+     * 处理一次群属性变化，只解析原始值变化了的座位
+     *
+     * @return 有座位发生变化时返回新的座位列表，否则返回 null
+     */
+    public List<TXSeatInfo> apply(Map<String, String> attrMap) {
+        mChangedCount = 0;
+        List<TXSeatInfo> newList = null;
+        if (mSharded) {
+            for (int shard = 0; shard < mShardKeys.length; shard++) {
+                String value = attrMap.get(mShardKeys[shard]);
+                if (value == null) {
+                    value = "";
+                }
+                if (value.equals(mShardRaws[shard])) {
+                    continue;
+                }
+                mShardRaws[shard] = value;
+                newList = applyShard(newList, shard, value);
+            }
+        } else {
+            for (int i = 0; i < mSeatKeys.length; i++) {
+                String raw = attrMap.get(mSeatKeys[i]);
+                newList = applySeatRaw(newList, i, raw == null ? "" : raw);
+            }
+        }
+        if (newList != null) {
+            mSeatInfoList = newList;
+        }
+        return newList;
+    }
+
+    public HashMap<String, String> encodeSeats(int[] indexes, TXSeatInfo[] infos, String[] raws) {
+        return encodeSeats(indexes, infos, raws, null);
+    }
+
+    /**
+     * 生成修改这些座位需要写入的群属性
+     * <p>
+     * 分片格式下写入的是整个分片，分片内的其他座位依次取自己还没落地的写入、shardAttrMap 里的值、群属性里的值，不带其他座位的乐观修改。
+     * IM 没有 compare-and-set，不同的人同时修改同一分片的不同座位时，后写入的仍然会覆盖先写入的：
+     * 写入前先读取分片可以缩小这个窗口；之后群属性里自己写入的座位变回写入前的值时，通过 {@link #takeRevertedSeats()} 取出重新写入。
+     *
+     * @param raws         输出每个座位编码后的值，用于 {@link #applyLocal}
+     * @param shardAttrMap 写入前刚读到的分片，可以为 null
+     */
+    public HashMap<String, String> encodeSeats(int[] indexes, TXSeatInfo[] infos, String[] raws, Map<String, String> shardAttrMap) {
+        HashMap<String, String> map    = new HashMap<>();
+        String[]                latest = mSharded ? getLatestRaws(shardAttrMap) : null;
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            raws[i] = IMProtocol.encodeSeatInfo(infos[i], mAttrVersion);
+            if (index < mInflightRaw.length) {
+                mMaxVersion[index] = Math.max(mMaxVersion[index], infos[i].version);
+                mInflightRaw[index] = raws[i];
+                if (mSharded) {
+                    guardWrite(index, latest[index], raws[i]);
+                    latest[index] = raws[i];
+                }
+            }
+            if (!mSharded) {
+                map.put(KEY_SEAT + index, raws[i]);
+            }
+        }
+        if (!mSharded) {
+            return map;
+        }
+        for (int index : indexes) {
+            int shard = index / SEATS_PER_SHARD;
+            if (shard < mShardKeys.length && !map.containsKey(mShardKeys[shard])) {
+                map.put(mShardKeys[shard], IMProtocol.encodeSeatShard(latest, shard));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @return 修改这个座位时写入的版本号，比收到的和自己写入过的版本号都大；同一个座位连续修改、前一次还没有回显时也不会重复
+     */
+    public int nextVersion(int index) {
+        if (index < 0 || index >= mConfirmedInfo.length) {
+            return 1;
+        }
+        return Math.max(mConfirmedInfo[index].version, mMaxVersion[index]) + 1;
+    }
+
+    /**
+     * @return 上一次 {@link #apply(Map)} 中被别人的分片写入改回写入前的值、需要重新写入的座位，取出后清空
+     */
+    public int[] takeRevertedSeats() {
+        int[] reverted = Arrays.copyOf(mRevertedIndex, mRevertedCount);
+        mRevertedCount = 0;
+        return reverted;
+    }
+
+    /**
+     * @return 自己最近一次写入这个座位的值，用于重新写入
+     */
+    public TXSeatInfo getWrittenSeat(int index) {
+        return decode(mWrittenRaw[index]);
+    }
+
+    /**
+     * 写入群属性失败时调用，之后拼分片不再使用这次写入的值
+     */
+    public void onWriteFailed(int[] indexes, String[] raws) {
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            if (index < mInflightRaw.length && equals(mInflightRaw[index], raws[i])) {
+                mInflightRaw[index] = null;
+            }
+            if (index < mWrittenRaw.length && equals(mWrittenRaw[index], raws[i])) {
+                clearWritten(index);
+            }
+        }
+    }
+
+    /**
+     * 乐观地修改一个座位，变化通过 {@link #dispatchChanges(SeatChangeListener)} 回调
+     *
+     * @param raw 写入群属性的座位值，用于和之后收到的群属性比较
+     * @return 本次修改的版本号，修改结果通过 {@link #confirmLocal} 或 {@link #rollbackLocal} 带回
+     */
+    public long applyLocal(int index, TXSeatInfo info, String raw) {
+        return applyLocal(new int[]{index}, new TXSeatInfo[]{info}, new String[]{raw});
+    }
+
+    /**
+     * 乐观地同时修改多个座位，所有座位共用一个版本号，变化在同一次 {@link #dispatchChanges(SeatChangeListener)} 中回调
+     *
+     * @param indexes 座位号，不能重复
+     */
+    public long applyLocal(int[] indexes, TXSeatInfo[] infos, String[] raws) {
+        mChangedCount = 0;
+        long             version = ++mNextVersion;
+        List<TXSeatInfo> newList = null;
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            mPendingVersion[index] = version;
+            mPendingRaw[index] = raws[i];
+            mPendingEchoCount[index] = mEchoCount[index];
+            newList = recordChange(newList, index, infos[i]);
+        }
+        if (newList != null) {
+            mSeatInfoList = newList;
+        }
+        return version;
+    }
+
+    /**
+     * 本地修改成功
+     *
+     * @return 对外的座位列表发生变化时返回新的列表，否则返回 null
+     */
+    public List<TXSeatInfo> confirmLocal(int index, long version) {
+        return confirmLocal(new int[]{index}, version);
+    }
+
+    public List<TXSeatInfo> confirmLocal(int[] indexes, long version) {
+        mChangedCount = 0;
+        List<TXSeatInfo> newList = null;
+        for (int index : indexes) {
+            if (!isPending(index, version)) {
+                continue;
+            }
+            boolean echoed = mEchoCount[index] != mPendingEchoCount[index];
+            if (!echoed) {
+                // 修改之后群属性没有变过，本地的值就是最新的
+                mRawValues[index] = mPendingRaw[index];
+                mConfirmedInfo[index] = mSeatInfoList.get(index);
+                clearPending(index);
+                continue;
+            }
+            // 期间有其他人修改了这个座位，无法判断先后，以收到的群属性为准
+            clearPending(index);
+            newList = restoreConfirmed(newList, index);
+        }
+        if (newList != null) {
+            mSeatInfoList = newList;
+        }
+        return newList;
+    }
+
+    /**
+     * 本地修改失败，回滚到群属性里的值，对外的值有变化时通过 {@link #dispatchChanges(SeatChangeListener)} 回调
+     *
+     * @return 这次修改还没有被之后的修改或群属性覆盖、发生了回滚时返回 true
+     */
+    public boolean rollbackLocal(int index, long version) {
+        return rollbackLocal(new int[]{index}, version).length > 0;
+    }
+
+    /**
+     * @return 发生了回滚的座位号
+     */
+    public int[] rollbackLocal(int[] indexes, long version) {
+        mChangedCount = 0;
+        int[]            rollbackIndexes = new int[indexes.length];
+        int              rollbackCount   = 0;
+        List<TXSeatInfo> newList         = null;
+        for (int index : indexes) {
+            if (!isPending(index, version)) {
+                continue;
+            }
+            clearPending(index);
+            newList = restoreConfirmed(newList, index);
+            rollbackIndexes[rollbackCount++] = index;
+        }
+        if (newList != null) {
+            mSeatInfoList = newList;
+        }
+        return Arrays.copyOf(rollbackIndexes, rollbackCount);
+    }
+
+    /**
+     * @return 上一次操作是否有座位发生变化
+     */
+    public boolean hasChanges() {
+        return mChangedCount > 0;
+    }
+
+    /**
+     * @return 上一次操作中发生变化的座位数
+     */
+    public int getChangeCount() {
+        return mChangedCount;
+    }
+
+    public boolean hasPending(int index) {
+        return index >= 0 && index < mPendingVersion.length && mPendingVersion[index] != 0;
+    }
+
+    /**
+     * 回调上一次 {@link #apply(Map)} 产生的座位变化
+     */
+    public void dispatchChanges(SeatChangeListener listener) {
+        for (int i = 0; i < mChangedCount; i++) {
+            int index = mChangedIndex[i];
+            dispatch(index, mChangedOldInfo[i], mSeatInfoList.get(index), listener);
+            mChangedOldInfo[i] = null;
+        }
+        mChangedCount = 0;
+    }
+
+    /**
+     * 直接在分片字符串上比较每个座位，只为变化了的座位创建子串
+     */
+    private List<TXSeatInfo> applyShard(List<TXSeatInfo> newList, int shard, String value) {
+        int from   = shard * SEATS_PER_SHARD;
+        int count  = Math.min(SEATS_PER_SHARD, mRawValues.length - from);
+        int length = value.length();
+        int start  = 0;
+        for (int i = from; i < from + count; i++) {
+            // 分片里缺少的座位按 "" 处理
+            boolean missing = start > length;
+            int     end     = missing ? start : value.indexOf(IMProtocol.Define.SHARD_SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+            String  old  = mRawValues[i];
+            boolean same = missing
+                    ? old == null || old.isEmpty()
+                    : old != null && old.length() == end - start && value.regionMatches(start, old, 0, end - start);
+            if (!same) {
+                newList = applySeatRaw(newList, i, missing ? "" : value.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return newList;
+    }
+
+    private List<TXSeatInfo> applySeatRaw(List<TXSeatInfo> newList, int i, String raw) {
+        if (raw.equals(mRawValues[i])) {
+            return newList;
+        }
+        if (mWrittenRaw[i] != null) {
+            checkReverted(i, mRawValues[i], raw);
+        }
+        TXSeatInfo info = decode(raw);
+        if (mVersioned && info.version < mConfirmedInfo[i].version) {
+            // 推送乱序时可能先收到新值再收到旧值，版本号更低的是旧值，忽略
+            return newList;
+        }
+        mRawValues[i] = raw;
+        mConfirmedInfo[i] = info;
+        mEchoCount[i]++;
+        // 群属性已经变化，不管是不是自己的写入，之后都以群属性为准
+        mInflightRaw[i] = null;
+        if (mPendingVersion[i] != 0) {
+            if (!raw.equals(mPendingRaw[i])) {
+                // 本地修改还没有结果，先保持本地的值
+                return newList;
+            }
+            // 本地修改已经生效，对外的值不需要变化
+            clearPending(i);
+            if (isSameSeat(mSeatInfoList.get(i), mConfirmedInfo[i])) {
+                return newList;
+            }
+        }
+        return recordChange(newList, i, mConfirmedInfo[i]);
+    }
+
+    /**
+     * 分片内每个座位最新的值：自己还没落地的写入优先，其次是写入前读到的分片，最后是群属性里的值
+     */
+    private String[] getLatestRaws(Map<String, String> shardAttrMap) {
+        String[] latest = Arrays.copyOf(mRawValues, mRawValues.length);
+        if (shardAttrMap != null) {
+            for (int shard = 0; shard < mShardKeys.length; shard++) {
+                String value = shardAttrMap.get(mShardKeys[shard]);
+                if (value != null) {
+                    int from = shard * SEATS_PER_SHARD;
+                    IMProtocol.splitSeatShard(value, latest, from, Math.min(SEATS_PER_SHARD, latest.length - from));
+                }
+            }
+        }
+        for (int i = 0; i < latest.length; i++) {
+            if (mInflightRaw[i] != null) {
+                latest[i] = mInflightRaw[i];
+            }
+        }
+        return latest;
+    }
+
+    private void guardWrite(int index, String prevRaw, String raw) {
+        if (!raw.equals(mWrittenRaw[index])) {
+            // 新的写入，重新计算重试次数
+            mRetryCount[index] = 0;
+        }
+        if (raw.equals(prevRaw)) {
+            clearWritten(index);
+            return;
+        }
+        mWrittenRaw[index] = raw;
+        mWrittenPrevRaw[index] = prevRaw == null ? "" : prevRaw;
+    }
+
+    private void checkReverted(int index, String oldRaw, String raw) {
+        if (raw.equals(mWrittenRaw[index])) {
+            // 自己写入的回显，继续观察
+            return;
+        }
+        if (mWrittenRaw[index].equals(oldRaw) && raw.equals(mWrittenPrevRaw[index])) {
+            if (mRetryCount[index] < MAX_SHARD_RETRY) {
+                mRetryCount[index]++;
+                addReverted(index);
+                return;
+            }
+            TRTCLogger.e(TAG, "seat {} reverted {} times by concurrent shard writes, give up", index, mRetryCount[index]);
+        }
+        // 别人修改了这个座位，以群属性为准
+        clearWritten(index);
+    }
+
+    private void addReverted(int index) {
+        for (int i = 0; i < mRevertedCount; i++) {
+            if (mRevertedIndex[i] == index) {
+                return;
+            }
+        }
+        mRevertedIndex[mRevertedCount++] = index;
+    }
+
+    private void clearWritten(int index) {
+        mWrittenRaw[index] = null;
+        mWrittenPrevRaw[index] = null;
+    }
+
+    private List<TXSeatInfo> restoreConfirmed(List<TXSeatInfo> newList, int index) {
+        TXSeatInfo current = newList == null ? mSeatInfoList.get(index) : newList.get(index);
+        if (isSameSeat(current, mConfirmedInfo[index])) {
+            return newList;
+        }
+        return recordChange(newList, index, mConfirmedInfo[index]);
+    }
+
+    private List<TXSeatInfo> recordChange(List<TXSeatInfo> newList, int index, TXSeatInfo info) {
+        if (newList == null) {
+            // 对外回调过的列表不再修改，变化时复制一份
+            newList = new ArrayList<>(mSeatInfoList);
+        }
+        mChangedIndex[mChangedCount] = index;
+        mChangedOldInfo[mChangedCount] = newList.set(index, info);
+        mChangedCount++;
+        return newList;
+    }
+
+    private boolean isPending(int index, long version) {
+        return index >= 0 && index < mPendingVersion.length && mPendingVersion[index] == version;
+    }
+
+    private void clearPending(int index) {
+        mPendingVersion[index] = 0;
+        mPendingRaw[index] = null;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static boolean isSameSeat(TXSeatInfo a, TXSeatInfo b) {
+        return a.status == b.status && a.mute == b.mute && equals(a.user, b.user);
+    }
+
+    private void dispatch(int index, TXSeatInfo oldInfo, TXSeatInfo newInfo, SeatChangeListener listener) {
+        if (oldInfo.status == TXSeatInfo.STATUS_CLOSE && newInfo.status == TXSeatInfo.STATUS_UNUSED) {
+            listener.onSeatClose(index, false);
+        } else if (oldInfo.status == TXSeatInfo.STATUS_USED && newInfo.status == TXSeatInfo.STATUS_USED
+                && !equals(oldInfo.user, newInfo.user)) {
+            // 同时抢麦时后写入的人会直接覆盖前一个人
+            listener.onSeatLeave(index, oldInfo.user);
+            listener.onSeatTake(index, newInfo.user);
+        } else if (oldInfo.status != newInfo.status) {
+            switch (newInfo.status) {
+                case TXSeatInfo.STATUS_UNUSED:
+                    listener.onSeatLeave(index, oldInfo.user);
+                    break;
+                case TXSeatInfo.STATUS_USED:
+                    listener.onSeatTake(index, newInfo.user);
+                    break;
+                case TXSeatInfo.STATUS_CLOSE:
+                    listener.onSeatClose(index, true);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (oldInfo.mute != newInfo.mute) {
+            listener.onSeatMute(index, newInfo.mute);
+        }
+    }
+
+    private void initKeys(int seatSize, String attrVersion) {
+        mAttrVersion = attrVersion;
+        mSharded = IMProtocol.isShardedVersion(attrVersion);
+        mVersioned = !IMProtocol.Define.VALUE_ATTR_VERSION.equals(attrVersion);
+        mRawValues = new String[seatSize];
+        mInflightRaw = new String[seatSize];
+        mWrittenRaw = new String[seatSize];
+        mWrittenPrevRaw = new String[seatSize];
+        mRetryCount = new int[seatSize];
+        mRevertedIndex = new int[seatSize];
+        mRevertedCount = 0;
+        mChangedIndex = new int[seatSize];
+        mChangedOldInfo = new TXSeatInfo[seatSize];
+        mChangedCount = 0;
+        mConfirmedInfo = new TXSeatInfo[seatSize];
+        mEchoCount = new int[seatSize];
+        mMaxVersion = new int[seatSize];
+        mPendingVersion = new long[seatSize];
+        mPendingRaw = new String[seatSize];
+        mPendingEchoCount = new int[seatSize];
+        if (mSeatKeys.length != seatSize) {
+            mSeatKeys = new String[seatSize];
+            for (int i = 0; i < seatSize; i++) {
+                mSeatKeys[i] = KEY_SEAT + i;
+            }
+        }
+        int shardCount = mSharded ? IMProtocol.getShardCount(seatSize) : 0;
+        mShardRaws = new String[shardCount];
+        if (mShardKeys.length != shardCount) {
+            mShardKeys = new String[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                mShardKeys[i] = KEY_SEAT_SHARD + i;
+            }
+        }
+    }
+
+    private TXSeatInfo decode(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return new TXSeatInfo();
+        }
+        TXSeatInfo info = IMProtocol.decodeSeatInfo(raw);
+        if (info == null) {
+            TRTCLogger.e(TAG, "parse seat info error! {}", raw);
+            info = new TXSeatInfo();
+        }
+        return info;
+    }
+}
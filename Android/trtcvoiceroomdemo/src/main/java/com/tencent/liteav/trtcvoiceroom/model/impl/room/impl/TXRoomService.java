@@ -1,63 +1,93 @@
 package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
-import android.util.Pair;
-
-import com.tencent.imsdk.v2.V2TIMCallback;
-import com.tencent.imsdk.v2.V2TIMGroupInfo;
-import com.tencent.imsdk.v2.V2TIMGroupInfoResult;
-import com.tencent.imsdk.v2.V2TIMGroupListener;
-import com.tencent.imsdk.v2.V2TIMGroupMemberFullInfo;
-import com.tencent.imsdk.v2.V2TIMGroupMemberInfo;
-import com.tencent.imsdk.v2.V2TIMGroupMemberInfoResult;
-import com.tencent.imsdk.v2.V2TIMManager;
-import com.tencent.imsdk.v2.V2TIMMessage;
-import com.tencent.imsdk.v2.V2TIMSDKConfig;
-import com.tencent.imsdk.v2.V2TIMSDKListener;
-import com.tencent.imsdk.v2.V2TIMSignalingListener;
-import com.tencent.imsdk.v2.V2TIMSimpleMsgListener;
-import com.tencent.imsdk.v2.V2TIMUserFullInfo;
-import com.tencent.imsdk.v2.V2TIMValueCallback;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.RoomMetrics;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TRTCLogger;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXInviteData;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomEventHandler;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfoListCallback;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatChange;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
 import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserListCallback;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserPageCallback;
 import com.tencent.liteav.trtcvoiceroom.model.impl.room.ITXRoomServiceDelegate;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-public class TXRoomService extends V2TIMSDKListener {
+public class TXRoomService {
     private static final String TAG = "TXRoomService";
 
-    private static final int CODE_ERROR = -1;
+    private static final int CODE_ERROR          = -1;
+    // 同时抢麦时座位被别人抢到
+    public static final  int CODE_SEAT_LOST_RACE = -3;
+    // 抢麦写入成功后等待群属性回显的时间，超时后回读群属性判断
+    private static final int CLAIM_ECHO_TIMEOUT  = 3000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     private static TXRoomService          sInstance;
-    private        Context                mContext;
     private        ITXRoomServiceDelegate mDelegate;
-    private        boolean                mIsInitIMSDK;
     private        boolean                mIsLogin;
     private        boolean                mIsEnterRoom;
 
-    private String                  mRoomId;
+    // sendInvitation 在调用方线程读取，其他地方只在房间线程读写
+    private volatile String         mRoomId;
     private String                  mSelfUserId;
     private String                  mOwnerUserId;
+    // 最近一次 createRoom 自己创建的群，撤销创建房间时只解散这个群
+    private String                  mCreatedGroupId;
     private TXRoomInfo              mTXRoomInfo;
-    private VoiceRoomSimpleListener mSimpleListener;
     private List<TXSeatInfo>        mTXSeatInfoList;
     private String                  mSelfUserName;
-    private VoiceRoomGroupListener  mGroupListener;
-    private VoiceRoomSignalListener mSignalListener;
+    // 登录、群组、群属性、群消息和信令，默认使用 IM SDK，sendInvitation 在调用方线程读取
+    private volatile IMBackend      mIMBackend;
+    private V2TIMBackend            mV2TIMBackend;
+    private VoiceRoomIMListener     mIMListener;
+    // 当前房间座位属性使用的协议版本，写座位时需要与房间保持一致
+    private String                  mAttrVersion;
+    private SeatStateEngine         mSeatStateEngine;
+    private SeatStateEngine.SeatChangeListener mSeatChangeListener;
+    private SeatBatchCollector                 mSeatBatchCollector;
+    // 上下麦时合并查询用户资料
+    private UserInfoResolver        mUserInfoResolver;
+    // IM 的回调都切到这个线程处理，默认是主线程
+    private Handler                 mRoomHandler;
+    // 文本消息和自定义消息的发送队列
+    private OutboundMsgQueue        mOutboundMsgQueue;
+    // 按 action 分发群自定义消息
+    private CustomMsgDispatcher<TXUserInfo> mCustomMsgDispatcher;
+    // 点赞、礼物等计数的聚合发送和累计
+    private CounterAggregator       mCounterAggregator;
+    // 座位修改是否先在本地生效
+    private boolean                 mOptimisticSeat;
+    // 新建的房间是否使用 2.0/3.0 座位格式，只有所有成员都支持时才能打开
+    private boolean                 mCompactSeatAttr;
+    // 正在抢的座位，同一个座位同时只发起一次
+    private Set<Integer>            mClaimingSeats;
+    // 已经写入、等待回显判定的抢麦
+    private Map<Integer, SeatClaim> mSeatClaims;
+    // 进房时是否先用上次的快照渲染
+    private boolean                 mSnapshotEnabled;
+    private RoomSnapshotCache       mSnapshotCache;
+    // 当前房间最新的完整群属性，退房时保存为快照
+    private Map<String, String>     mLastAttrMap;
+    // 房间列表的资料缓存
+    private RoomDirectory           mRoomDirectory;
 
     public static synchronized TXRoomService getInstance() {
         if (sInstance == null) {
@@ -71,35 +101,319 @@ public class TXRoomService extends V2TIMSDKListener {
         mOwnerUserId = "";
         mRoomId = "";
         mTXRoomInfo = null;
-        mSimpleListener = new VoiceRoomSimpleListener();
-        mGroupListener = new VoiceRoomGroupListener();
-        mSignalListener = new VoiceRoomSignalListener();
+        mAttrVersion = IMProtocol.Define.VALUE_ATTR_VERSION;
+        mV2TIMBackend = new V2TIMBackend();
+        mIMBackend = mV2TIMBackend;
+        mIMListener = new VoiceRoomIMListener();
+        mSeatStateEngine = new SeatStateEngine();
+        mClaimingSeats = new HashSet<>();
+        mSeatClaims = new HashMap<>();
+        mSnapshotCache = new RoomSnapshotCache();
+        mRoomDirectory = new RoomDirectory();
+        mRoomHandler = new Handler(Looper.getMainLooper());
+        mUserInfoResolver = createUserInfoResolver(mRoomHandler);
+        mOutboundMsgQueue = new OutboundMsgQueue(new OutboundMsgQueue.Sender() {
+            @Override
+            public void sendText(String text, TXCallback callback) {
+                sendGroupTextMsg(text, callback);
+            }
+
+            @Override
+            public void sendCustom(byte[] data, TXCallback callback) {
+                sendGroupMsg(data, callback);
+            }
+        }, mRoomHandler);
+        mCustomMsgDispatcher = createCustomMsgDispatcher();
+        mCounterAggregator = new CounterAggregator(new CounterAggregator.Sender() {
+            @Override
+            public void sendCounters(Map<String, Long> counters, TXCallback callback) {
+                mOutboundMsgQueue.sendFrame(IMProtocol.getCounterMsgJsonStr(counters).getBytes(UTF_8), callback);
+            }
+        }, mRoomHandler);
+        mCounterAggregator.setListener(new CounterAggregator.Listener() {
+            @Override
+            public void onCountersSent(Map<String, Long> counters) {
+                // IM 不会把自己发的群消息回调给自己，发送成功后直接计入累计值
+                onRecvCounters(counters, getSelfUserInfo());
+            }
+        });
+        mSeatBatchCollector = new SeatBatchCollector();
+        mSeatChangeListener = new SeatStateEngine.SeatChangeListener() {
+            @Override
+            public void onSeatTake(int index, String userId) {
+                TXRoomService.this.onSeatTake(index, userId);
+            }
+
+            @Override
+            public void onSeatLeave(int index, String userId) {
+                TXRoomService.this.onSeatLeave(index, userId);
+            }
+
+            @Override
+            public void onSeatClose(int index, boolean isClose) {
+                TXRoomService.this.onSeatClose(index, isClose);
+            }
+
+            @Override
+            public void onSeatMute(int index, boolean mute) {
+                TXRoomService.this.onSeatMute(index, mute);
+            }
+        };
     }
 
     public void init(Context context) {
-        mContext = context;
+        mV2TIMBackend.setContext(context);
+        if (context != null) {
+            mSnapshotCache.setContext(context);
+            mRoomDirectory.setContext(context);
+        }
     }
 
     public void setDelegate(ITXRoomServiceDelegate delegate) {
         mDelegate = delegate;
     }
 
+    /**
+     * 替换 IM 的实现，例如压测时使用内存中模拟的 IM 服务，需要在登录前设置
+     */
+    public void setIMBackend(IMBackend backend) {
+        mIMBackend = backend;
+    }
+
+    /**
+     * 设置处理 IM 回调的线程，需要与调用 TXRoomService 的线程一致
+     */
+    public void setRoomHandler(Handler handler) {
+        mUserInfoResolver.clear();
+        mRoomHandler = handler;
+        mUserInfoResolver = createUserInfoResolver(handler);
+        mOutboundMsgQueue.setHandler(handler);
+        mCounterAggregator.setHandler(handler);
+    }
+
+    /**
+     * 设置文本消息和自定义消息的发送频率
+     *
+     * @param rate  每秒最多发送的消息条数
+     * @param burst 允许瞬间发送的最大条数
+     */
+    public void setMsgSendRate(int rate, int burst) {
+        mOutboundMsgQueue.setRate(rate, burst);
+    }
+
+    public OutboundMsgQueue getOutboundMsgQueue() {
+        return mOutboundMsgQueue;
+    }
+
+    /**
+     * 累加一个计数，本地合并后按周期发送
+     */
+    public void increaseRoomCounter(String type, int count) {
+        if (!isEnterRoom()) {
+            TRTCLogger.e(TAG, "increase room counter fail, not enter room yet.");
+            return;
+        }
+        mCounterAggregator.increase(type, count);
+    }
+
+    /**
+     * @param enable 座位修改是否先在本地生效，修改失败时回滚并回调 onSeatRollback
+     */
+    public void setOptimisticSeat(boolean enable) {
+        mOptimisticSeat = enable;
+    }
+
+    /**
+     * @param enable 之后新建的房间是否使用 2.0/3.0 座位格式，见 {@link IMProtocol#getAttrVersionForSeatSize}
+     */
+    public void setCompactSeatAttr(boolean enable) {
+        mCompactSeatAttr = enable;
+    }
+
+    /**
+     * @param intervalMs 计数聚合消息的发送周期，0 表示不聚合
+     */
+    public void setCounterFlushInterval(int intervalMs) {
+        mCounterAggregator.setFlushInterval(intervalMs);
+    }
+
+    /**
+     * @param enable 进房时是否先用上次保存的房间快照回调房间信息和座位列表，IM 返回最新的群属性后再校正
+     */
+    public void setRoomSnapshotEnabled(boolean enable) {
+        mSnapshotEnabled = enable;
+    }
+
+    public RoomSnapshotCache getSnapshotCache() {
+        return mSnapshotCache;
+    }
+
+    public RoomDirectory getRoomDirectory() {
+        return mRoomDirectory;
+    }
+
+    public void flushRoomCounters() {
+        mCounterAggregator.flush();
+    }
+
+    public CounterAggregator getCounterAggregator() {
+        return mCounterAggregator;
+    }
+
+    private void onRecvCounters(Map<String, Long> counters, TXUserInfo userInfo) {
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            long total = mCounterAggregator.merge(entry.getKey(), entry.getValue());
+            if (mDelegate != null) {
+                mDelegate.onRoomCounterChange(mRoomId, entry.getKey(), total, entry.getValue(), userInfo);
+            }
+        }
+    }
+
+    private TXUserInfo getSelfUserInfo() {
+        TXUserInfo cached   = UserInfoCache.getInstance().get(mSelfUserId);
+        TXUserInfo userInfo = new TXUserInfo();
+        userInfo.userId = mSelfUserId;
+        userInfo.userName = mSelfUserName;
+        userInfo.avatarURL = cached == null ? null : cached.avatarURL;
+        return userInfo;
+    }
+
+    private CustomMsgDispatcher<TXUserInfo> createCustomMsgDispatcher() {
+        CustomMsgDispatcher<TXUserInfo> dispatcher = new CustomMsgDispatcher<>();
+        dispatcher.register(IMProtocol.Define.CODE_ROOM_CUSTOM_MSG, new CustomMsgDispatcher.ActionHandler<TXUserInfo>() {
+            @Override
+            public void onAction(byte[] data, TXUserInfo sender) {
+                IMProtocol.CusMsg cusMsg = IMProtocol.parseCusMsg(data);
+                if (mDelegate != null && cusMsg != null) {
+                    mDelegate.onRoomRecvRoomCustomMsg(mRoomId, cusMsg.cmd, cusMsg.message, sender);
+                }
+            }
+        });
+        dispatcher.register(IMProtocol.Define.CODE_ROOM_CUSTOM_MSG_BATCH, new CustomMsgDispatcher.ActionHandler<TXUserInfo>() {
+            @Override
+            public void onAction(byte[] data, TXUserInfo sender) {
+                List<IMProtocol.CusMsg> cusMsgList = IMProtocol.parseCusMsgBatch(data);
+                if (mDelegate == null || cusMsgList == null) {
+                    return;
+                }
+                for (IMProtocol.CusMsg cusMsg : cusMsgList) {
+                    mDelegate.onRoomRecvRoomCustomMsg(mRoomId, cusMsg.cmd, cusMsg.message, sender);
+                }
+            }
+        });
+        dispatcher.register(IMProtocol.Define.CODE_ROOM_COUNTER, new CustomMsgDispatcher.ActionHandler<TXUserInfo>() {
+            @Override
+            public void onAction(byte[] data, TXUserInfo sender) {
+                Map<String, Long> counters = IMProtocol.parseCounterMsg(data);
+                if (counters != null && !counters.isEmpty()) {
+                    onRecvCounters(counters, sender);
+                }
+            }
+        });
+        dispatcher.register(IMProtocol.Define.CODE_ROOM_DESTROY, new CustomMsgDispatcher.ActionHandler<TXUserInfo>() {
+            @Override
+            public void onAction(byte[] data, TXUserInfo sender) {
+                exitRoom(null);
+                // 房间已经销毁，exitRoom 保存的快照不再需要
+                mSnapshotCache.remove(mRoomId);
+                mRoomDirectory.remove(mRoomId);
+                cleanStatus();
+                if (mDelegate != null) {
+                    mDelegate.onRoomDestroy(mRoomId);
+                }
+            }
+        });
+        return dispatcher;
+    }
+
+    private UserInfoResolver createUserInfoResolver(Handler handler) {
+        return new UserInfoResolver(new UserInfoResolver.Fetcher() {
+            @Override
+            public void fetch(List<String> userIdList, TXUserListCallback callback) {
+                getUserInfo(userIdList, callback);
+            }
+        }, handler);
+    }
+
+    private void runOnRoomThread(Runnable runnable) {
+        Handler handler = mRoomHandler;
+        if (Looper.myLooper() != handler.getLooper()) {
+            handler.post(RoomMetrics.queued("im", runnable));
+        } else {
+            runnable.run();
+        }
+    }
+
+    /**
+     * 把 IM 回调切到房间线程，同时记录 IM 往返耗时
+     *
+     * @param name 调用的 IM 接口，用于耗时统计
+     */
+    private IMBackend.Callback onRoomThread(final String name, final IMBackend.Callback callback) {
+        final long startNs = RoomMetrics.start();
+        return new IMBackend.Callback() {
+            @Override
+            public void onError(final int code, final String desc) {
+                RoomMetrics.end(RoomMetrics.STAGE_IM_ROUND_TRIP, name, startNs);
+                runOnRoomThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onError(code, desc);
+                    }
+                });
+            }
+
+            @Override
+            public void onSuccess() {
+                RoomMetrics.end(RoomMetrics.STAGE_IM_ROUND_TRIP, name, startNs);
+                runOnRoomThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSuccess();
+                    }
+                });
+            }
+        };
+    }
+
+    private <T> IMBackend.ValueCallback<T> onRoomThread(final String name, final IMBackend.ValueCallback<T> callback) {
+        final long startNs = RoomMetrics.start();
+        return new IMBackend.ValueCallback<T>() {
+            @Override
+            public void onError(final int code, final String desc) {
+                RoomMetrics.end(RoomMetrics.STAGE_IM_ROUND_TRIP, name, startNs);
+                runOnRoomThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onError(code, desc);
+                    }
+                });
+            }
+
+            @Override
+            public void onSuccess(final T t) {
+                RoomMetrics.end(RoomMetrics.STAGE_IM_ROUND_TRIP, name, startNs);
+                runOnRoomThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSuccess(t);
+                    }
+                });
+            }
+        };
+    }
+
     public void login(int sdkAppId, final String userId, String userSig, final TXCallback callback) {
         // 未初始化 IM 先初始化 IM
-        if (!mIsInitIMSDK) {
-            V2TIMSDKConfig config = new V2TIMSDKConfig();
-            mIsInitIMSDK = V2TIMManager.getInstance().initSDK(mContext, sdkAppId, config, this);
-            if (!mIsInitIMSDK) {
-                TRTCLogger.e(TAG, "init im sdk error.");
-                if (callback != null) {
-                    callback.onCallback(CODE_ERROR, "init im sdk error.");
-                }
-                return;
+        if (!mIMBackend.initSDK(sdkAppId)) {
+            TRTCLogger.e(TAG, "init im sdk error.");
+            if (callback != null) {
+                callback.onCallback(CODE_ERROR, "init im sdk error.");
             }
+            return;
         }
-        mIsInitIMSDK = true;
         // 登陆到 IM
-        String loginedUserId = V2TIMManager.getInstance().getLoginUser();
+        String loginedUserId = mIMBackend.getLoginUser();
         if (loginedUserId != null && loginedUserId.equals(userId)) {
             // 已经登录过了
             mIsLogin = true;
@@ -117,7 +431,7 @@ public class TXRoomService extends V2TIMSDKListener {
             }
             return;
         }
-        V2TIMManager.getInstance().login(userId, userSig, new V2TIMCallback() {
+        mIMBackend.login(userId, userSig, onRoomThread("login", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "login im fail, code:" + i + " msg:" + s);
@@ -136,35 +450,35 @@ public class TXRoomService extends V2TIMSDKListener {
                     callback.onCallback(0, "login im success.");
                 }
             }
-        });
+        }));
     }
 
     private void initIMListener() {
-        V2TIMManager.getInstance().setGroupListener(mGroupListener);
-        V2TIMManager.getSignalingManager().addSignalingListener(mSignalListener);
-        V2TIMManager.getInstance().addSimpleMsgListener(mSimpleListener);
+        mIMBackend.setListener(mIMListener);
     }
 
     private void unInitImListener() {
-        V2TIMManager.getInstance().setGroupListener(null);
-        V2TIMManager.getSignalingManager().removeSignalingListener(mSignalListener);
-        V2TIMManager.getInstance().removeSimpleMsgListener(mSimpleListener);
+        mIMBackend.setListener(null);
     }
 
     private void getSelfInfo() {
         List<String> userIds = new ArrayList<>();
         userIds.add(mSelfUserId);
-        V2TIMManager.getInstance().getUsersInfo(userIds, new V2TIMValueCallback<List<V2TIMUserFullInfo>>() {
+        mIMBackend.getUsersInfo(userIds, onRoomThread("getUsersInfo", new IMBackend.ValueCallback<List<TXUserInfo>>() {
             @Override
             public void onError(int i, String s) {
 
             }
 
             @Override
-            public void onSuccess(List<V2TIMUserFullInfo> v2TIMUserFullInfos) {
-                mSelfUserName = v2TIMUserFullInfos.get(0).getNickName();
+            public void onSuccess(List<TXUserInfo> userInfoList) {
+                if (userInfoList.isEmpty()) {
+                    return;
+                }
+                mSelfUserName = userInfoList.get(0).userName;
+                UserInfoCache.getInstance().put(mSelfUserId, mSelfUserName, userInfoList.get(0).avatarURL);
             }
-        });
+        }));
     }
 
     public void logout(final TXCallback callback) {
@@ -182,7 +496,7 @@ public class TXRoomService extends V2TIMSDKListener {
             }
             return;
         }
-        V2TIMManager.getInstance().logout(new V2TIMCallback() {
+        mIMBackend.logout(onRoomThread("logout", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "logout fail, code:" + i + " msg:" + s);
@@ -200,7 +514,7 @@ public class TXRoomService extends V2TIMSDKListener {
                     callback.onCallback(0, "login im success.");
                 }
             }
-        });
+        }));
     }
 
     public void setSelfProfile(final String userName, final String avatarUrl, final TXCallback callback) {
@@ -212,10 +526,7 @@ public class TXRoomService extends V2TIMSDKListener {
             return;
         }
         mSelfUserName = userName;
-        V2TIMUserFullInfo v2TIMUserFullInfo = new V2TIMUserFullInfo();
-        v2TIMUserFullInfo.setNickname(userName);
-        v2TIMUserFullInfo.setFaceUrl(avatarUrl);
-        V2TIMManager.getInstance().setSelfInfo(v2TIMUserFullInfo, new V2TIMCallback() {
+        mIMBackend.setSelfInfo(userName, avatarUrl, onRoomThread("setSelfInfo", new IMBackend.Callback() {
             @Override
             public void onError(int code, String desc) {
                 TRTCLogger.e(TAG, "set profile code:" + code + " msg:" + desc);
@@ -227,11 +538,12 @@ public class TXRoomService extends V2TIMSDKListener {
             @Override
             public void onSuccess() {
                 TRTCLogger.i(TAG, "set profile success.");
+                UserInfoCache.getInstance().put(mSelfUserId, userName, avatarUrl);
                 if (callback != null) {
                     callback.onCallback(0, "set profile success.");
                 }
             }
-        });
+        }));
     }
 
     public void createRoom(final String roomId, final String roomName, final String coverUrl, boolean needRequest, final List<TXSeatInfo> TXSeatInfoList, final TXCallback callback) {
@@ -250,10 +562,21 @@ public class TXRoomService extends V2TIMSDKListener {
             }
             return;
         }
-        final V2TIMManager manager = V2TIMManager.getInstance();
+        int maxSeatSize = (mCompactSeatAttr ? IMProtocol.Define.MAX_SEAT_SIZE : IMProtocol.Define.MAX_SEAT_KEYS);
+        if (TXSeatInfoList.size() > maxSeatSize) {
+            TRTCLogger.e(TAG, "seat size " + TXSeatInfoList.size() + " exceeds " + maxSeatSize);
+            if (callback != null) {
+                callback.onCallback(CODE_ERROR, "seat size exceeds " + maxSeatSize);
+            }
+            return;
+        }
         mRoomId = roomId;
         mOwnerUserId = mSelfUserId;
         mTXSeatInfoList = TXSeatInfoList;
+        // 默认使用旧客户端也能解析的 1.0，打开后座位多时使用分片格式，避免超过 IM 群属性个数的限制
+        mAttrVersion = IMProtocol.getAttrVersionForSeatSize(TXSeatInfoList.size(), mCompactSeatAttr);
+        mOutboundMsgQueue.setBatchEnabled(IMProtocol.isBatchMsgSupported(mAttrVersion));
+        mSeatStateEngine.reset(TXSeatInfoList, mAttrVersion);
         mTXRoomInfo = new TXRoomInfo();
         mTXRoomInfo.ownerId = mSelfUserId;
         mTXRoomInfo.ownerName = mSelfUserName;
@@ -261,7 +584,7 @@ public class TXRoomService extends V2TIMSDKListener {
         mTXRoomInfo.cover = coverUrl;
         mTXRoomInfo.seatSize = TXSeatInfoList.size();
         mTXRoomInfo.needRequest = needRequest ? 1 : 0;
-        manager.createGroup(V2TIMManager.GROUP_TYPE_AVCHATROOM, roomId, roomName, new V2TIMValueCallback<String>() {
+        mIMBackend.createGroup(roomId, roomName, onRoomThread("createGroup", new IMBackend.ValueCallback<String>() {
             @Override
             public void onError(final int code, String s) {
                 TRTCLogger.e(TAG, "createRoom error " + code);
@@ -277,11 +600,11 @@ public class TXRoomService extends V2TIMSDKListener {
                     msg = "The number of group members exceeds the limit, please refer to it, please purchase the relevant packages, more details:https://cloud.tencent.com/document/product/269/11673";
                 }
                 //特殊处理
-                if (code == 10025 || code == 10021) {
+                if (code == IMBackend.ERR_GROUP_OWNED_BY_SELF || code == IMBackend.ERR_GROUP_ID_IN_USE) {
                     // 10025 表明群主是自己，那么认为创建房间成功
                     // 群组 ID 已被其他人使用，此时走进房逻辑
                     setGroupInfo(roomId, roomName, coverUrl, mSelfUserName);
-                    manager.joinGroup(roomId, "", new V2TIMCallback() {
+                    mIMBackend.joinGroup(roomId, onRoomThread("joinGroup", new IMBackend.Callback() {
                         @Override
                         public void onError(int code, String msg) {
                             TRTCLogger.e(TAG, "group has been created.join group failed, code:" + code + " msg:" + msg);
@@ -292,10 +615,14 @@ public class TXRoomService extends V2TIMSDKListener {
 
                         @Override
                         public void onSuccess() {
+                            if (!roomId.equals(mRoomId)) {
+                                onCreateCanceled(roomId, false, callback);
+                                return;
+                            }
                             TRTCLogger.i(TAG, "group has been created.join group success.");
                             onCreateSuccess(callback);
                         }
-                    });
+                    }));
                 } else {
                     TRTCLogger.e(TAG, "create room fail, code:" + code + " msg:" + msg);
                     if (callback != null) {
@@ -306,10 +633,98 @@ public class TXRoomService extends V2TIMSDKListener {
 
             @Override
             public void onSuccess(String s) {
+                if (!roomId.equals(mRoomId)) {
+                    onCreateCanceled(roomId, true, callback);
+                    return;
+                }
+                mCreatedGroupId = roomId;
                 setGroupInfo(roomId, roomName, coverUrl, mSelfUserName);
                 onCreateSuccess(callback);
             }
-        });
+        }));
+    }
+
+    /**
+     * 建群返回前已经退出或者换了房间：撤销这次建群，不影响当前房间
+     */
+    private void onCreateCanceled(String roomId, boolean created, TXCallback callback) {
+        TRTCLogger.w(TAG, "room changed during create room " + roomId + ", rollback");
+        if (created) {
+            dismissGroupQuietly(roomId);
+        } else {
+            quitGroupQuietly(roomId);
+        }
+        if (callback != null) {
+            callback.onCallback(CODE_ERROR, "room changed, create room " + roomId + " canceled.");
+        }
+    }
+
+    /**
+     * @return roomId 是否由最近一次 createRoom 自己创建，而不是已经存在的群
+     */
+    public boolean isGroupCreated(String roomId) {
+        return roomId.equals(mCreatedGroupId);
+    }
+
+    /**
+     * 撤销一次成功的 createRoom：只解散这次 createRoom 自己创建的群，群已经存在时只退群。
+     * 不走 {@link #destroyRoom} 的逻辑解散，不会清空别人的群属性或者广播解散消息；roomId 已经不是当前房间时不影响当前房间。
+     *
+     * @param created 建群时 {@link #isGroupCreated} 的结果
+     */
+    public void rollbackCreateRoom(String roomId, boolean created) {
+        if (!created) {
+            rollbackEnterRoom(roomId);
+            return;
+        }
+        TRTCLogger.i(TAG, "rollback create room " + roomId);
+        if (roomId.equals(mRoomId)) {
+            unInitImListener();
+            cleanStatus();
+        }
+        mSnapshotCache.remove(roomId);
+        mRoomDirectory.remove(roomId);
+        dismissGroupQuietly(roomId);
+    }
+
+    /**
+     * 撤销一次成功的 enterRoom：roomId 仍然是当前房间时清空房间状态并退群，已经进入其他房间时只退出 roomId 的群
+     */
+    public void rollbackEnterRoom(String roomId) {
+        TRTCLogger.i(TAG, "rollback enter room " + roomId);
+        if (roomId.equals(mRoomId)) {
+            unInitImListener();
+            cleanStatus();
+        }
+        quitGroupQuietly(roomId);
+    }
+
+    private void dismissGroupQuietly(final String roomId) {
+        mIMBackend.dismissGroup(roomId, onRoomThread("dismissGroup", new IMBackend.Callback() {
+            @Override
+            public void onError(int code, String msg) {
+                TRTCLogger.e(TAG, "dismiss group " + roomId + " fail, code:" + code + " msg:" + msg);
+            }
+
+            @Override
+            public void onSuccess() {
+                TRTCLogger.i(TAG, "dismiss group " + roomId + " success.");
+            }
+        }));
+    }
+
+    private void quitGroupQuietly(final String roomId) {
+        mIMBackend.quitGroup(roomId, onRoomThread("quitGroup", new IMBackend.Callback() {
+            @Override
+            public void onError(int code, String msg) {
+                TRTCLogger.e(TAG, "quit group " + roomId + " fail, code:" + code + " msg:" + msg);
+            }
+
+            @Override
+            public void onSuccess() {
+                TRTCLogger.i(TAG, "quit group " + roomId + " success.");
+            }
+        }));
     }
 
     /**
@@ -321,12 +736,7 @@ public class TXRoomService extends V2TIMSDKListener {
      * @param userName
      */
     private void setGroupInfo(String roomId, String roomName, String coverUrl, String userName) {
-        V2TIMGroupInfo groupInfo = new V2TIMGroupInfo();
-        groupInfo.setGroupID(roomId);
-        groupInfo.setGroupName(roomName);
-        groupInfo.setFaceUrl(coverUrl);
-        groupInfo.setIntroduction(userName);
-        V2TIMManager.getGroupManager().setGroupInfo(groupInfo, new V2TIMCallback() {
+        mIMBackend.setGroupInfo(roomId, roomName, coverUrl, userName, onRoomThread("setGroupInfo", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.w(TAG, "set group info error:" + i + " msg:" + s);
@@ -336,14 +746,14 @@ public class TXRoomService extends V2TIMSDKListener {
             public void onSuccess() {
                 TRTCLogger.i(TAG, "set group info success");
             }
-        });
+        }));
     }
 
     private void onCreateSuccess(final TXCallback callback) {
         // 创建房间成功
         initIMListener();
         // 创建房间需要初始化座位
-        V2TIMManager.getGroupManager().initGroupAttributes(mRoomId, IMProtocol.getInitRoomMap(mTXRoomInfo, mTXSeatInfoList), new V2TIMCallback() {
+        mIMBackend.initGroupAttributes(mRoomId, IMProtocol.getInitRoomMap(mTXRoomInfo, mTXSeatInfoList, mAttrVersion), onRoomThread("initGroupAttributes", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.i(TAG, "init room info and seat failed. code:" + i);
@@ -360,7 +770,7 @@ public class TXRoomService extends V2TIMSDKListener {
                     callback.onCallback(0, "init room info and seat success");
                 }
             }
-        });
+        }));
     }
 
     public void destroyRoom(final TXCallback callback) {
@@ -371,12 +781,14 @@ public class TXRoomService extends V2TIMSDKListener {
             }
             return;
         }
-        V2TIMManager.getInstance().dismissGroup(mRoomId, new V2TIMCallback() {
+        mIMBackend.dismissGroup(mRoomId, onRoomThread("dismissGroup", new IMBackend.Callback() {
             @Override
             public void onError(int code, String msg) {
-                if (code == 10007) {
+                if (code == IMBackend.ERR_PERMISSION_DENIED) {
                     //权限不足
                     TRTCLogger.i(TAG, "you're not real owner, start logic destroy.");
+                    mSnapshotCache.remove(mRoomId);
+                    mRoomDirectory.remove(mRoomId);
                     //清空群属性
                     cleanGroupAttr();
                     sendGroupMsg(IMProtocol.getRoomDestroyMsg(), callback);
@@ -388,28 +800,37 @@ public class TXRoomService extends V2TIMSDKListener {
             @Override
             public void onSuccess() {
                 TRTCLogger.i(TAG, "you're real owner, destroy success.");
+                mSnapshotCache.remove(mRoomId);
+                mRoomDirectory.remove(mRoomId);
                 unInitImListener();
                 cleanStatus();
                 if (callback != null) {
                     callback.onCallback(0, "destroy success.");
                 }
             }
-        });
+        }));
     }
 
     private void cleanGroupAttr() {
-        V2TIMManager.getGroupManager().deleteGroupAttributes(mRoomId, null, null);
+        mIMBackend.deleteGroupAttributes(mRoomId, null, null);
     }
 
     public void enterRoom(final String roomId, final TXCallback callback) {
         cleanStatus();
         mRoomId = roomId;
-        V2TIMManager.getInstance().joinGroup(roomId, "", new V2TIMCallback() {
+        final RoomSnapshotCache.Snapshot snapshot = mSnapshotEnabled ? mSnapshotCache.get(roomId) : null;
+        if (snapshot != null) {
+            notifySnapshot(roomId, snapshot.attrMap);
+        }
+        mIMBackend.joinGroup(roomId, onRoomThread("joinGroup", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
-                if (i == 10013) {
+                if (i == IMBackend.ERR_ALREADY_MEMBER) {
                     onSuccess();
                 } else {
+                    if (i == IMBackend.ERR_GROUP_NOT_FOUND) {
+                        mSnapshotCache.remove(roomId);
+                    }
                     TRTCLogger.e(TAG, "join group error, enter room fail. code:" + i + " msg:" + s);
                     if (callback != null) {
                         callback.onCallback(-1, "join group error, enter room fail. code:" + i + " msg:" + s);
@@ -419,7 +840,11 @@ public class TXRoomService extends V2TIMSDKListener {
 
             @Override
             public void onSuccess() {
-                V2TIMManager.getGroupManager().getGroupAttributes(roomId, null, new V2TIMValueCallback<Map<String, String>>() {
+                if (!roomId.equals(mRoomId)) {
+                    onEnterCanceled(roomId, callback);
+                    return;
+                }
+                mIMBackend.getGroupAttributes(roomId, null, onRoomThread("getGroupAttributes", new IMBackend.ValueCallback<Map<String, String>>() {
                     @Override
                     public void onError(int i, String s) {
                         TRTCLogger.e(TAG, "get group attrs error, enter room fail. code:" + i + " msg:" + s);
@@ -430,24 +855,35 @@ public class TXRoomService extends V2TIMSDKListener {
 
                     @Override
                     public void onSuccess(Map<String, String> attrMap) {
+                        if (!roomId.equals(mRoomId)) {
+                            onEnterCanceled(roomId, callback);
+                            return;
+                        }
                         initIMListener();
                         //开始解析room info
                         mTXRoomInfo = IMProtocol.getRoomInfoFromAttr(attrMap);
                         if (mTXRoomInfo == null) {
+                            mSnapshotCache.remove(roomId);
                             TRTCLogger.e(TAG, "group room info is empty, enter room fail.");
                             if (callback != null) {
                                 callback.onCallback(-1, "group room info is empty, enter room fail.");
                             }
                             return;
                         }
-                        // 解析seat info
-                        mTXSeatInfoList = IMProtocol.getSeatListFromAttr(attrMap, mTXRoomInfo.seatSize);
+                        // 解析seat info，座位格式跟随房间的协议版本
+                        mAttrVersion = IMProtocol.getAttrVersion(attrMap);
+                        mOutboundMsgQueue.setBatchEnabled(IMProtocol.isBatchMsgSupported(mAttrVersion));
+                        mTXSeatInfoList = mSeatStateEngine.reset(attrMap, mTXRoomInfo.seatSize);
                         mTXRoomInfo.roomId = roomId;
                         TRTCLogger.i(TAG, "enter room success: " + mRoomId);
                         mIsEnterRoom = true;
                         mOwnerUserId = mTXRoomInfo.ownerId;
-                        // 回调给上层
-                        if (mDelegate != null) {
+                        mLastAttrMap = attrMap;
+                        if (mSnapshotEnabled) {
+                            mSnapshotCache.put(roomId, attrMap);
+                        }
+                        // 回调给上层，与快照相同时上层已经渲染过，不再重复回调
+                        if (mDelegate != null && (snapshot == null || !snapshot.attrMap.equals(attrMap))) {
                             mDelegate.onRoomInfoChange(mTXRoomInfo);
                             mDelegate.onSeatInfoListChange(mTXSeatInfoList);
                         }
@@ -455,9 +891,20 @@ public class TXRoomService extends V2TIMSDKListener {
                             callback.onCallback(0, "enter room success.");
                         }
                     }
-                });
+                }));
             }
-        });
+        }));
+    }
+
+    /**
+     * 进群返回前已经退出或者换了房间：退出这个群，不影响当前房间
+     */
+    private void onEnterCanceled(String roomId, TXCallback callback) {
+        TRTCLogger.w(TAG, "room changed during enter room " + roomId + ", quit group");
+        quitGroupQuietly(roomId);
+        if (callback != null) {
+            callback.onCallback(CODE_ERROR, "room changed, enter room " + roomId + " canceled.");
+        }
     }
 
     public void exitRoom(final TXCallback callback) {
@@ -468,7 +915,10 @@ public class TXRoomService extends V2TIMSDKListener {
             }
             return;
         }
-        V2TIMManager.getInstance().quitGroup(mRoomId, new V2TIMCallback() {
+        if (mSnapshotEnabled && mLastAttrMap != null) {
+            mSnapshotCache.put(mRoomId, mLastAttrMap);
+        }
+        mIMBackend.quitGroup(mRoomId, onRoomThread("quitGroup", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "exit room fail, code:" + i + " msg:" + s);
@@ -488,7 +938,7 @@ public class TXRoomService extends V2TIMSDKListener {
                     callback.onCallback(0, "exit room success.");
                 }
             }
-        });
+        }));
     }
 
     public void takeSeat(int index, TXCallback callback) {
@@ -507,13 +957,7 @@ public class TXRoomService extends V2TIMSDKListener {
             }
             return;
         }
-        // 修改属性列表
-        TXSeatInfo changeInfo = new TXSeatInfo();
-        changeInfo.status = TXSeatInfo.STATUS_USED;
-        changeInfo.mute = info.mute;
-        changeInfo.user = mSelfUserId;
-        HashMap<String, String> map = IMProtocol.getSeatInfoJsonStr(index, changeInfo);
-        modifyGroupAttrs(map, callback);
+        claimSeat(index, mSelfUserId, callback);
     }
 
     public void leaveSeat(int index, TXCallback callback) {
@@ -537,8 +981,8 @@ public class TXRoomService extends V2TIMSDKListener {
         changeInfo.status = TXSeatInfo.STATUS_UNUSED;
         changeInfo.mute = info.mute;
         changeInfo.user = "";
-        HashMap<String, String> map = IMProtocol.getSeatInfoJsonStr(index, changeInfo);
-        modifyGroupAttrs(map, callback);
+        changeInfo.version = mSeatStateEngine.nextVersion(index);
+        modifySeat(index, changeInfo, callback);
     }
 
     public void pickSeat(int index, String userId, TXCallback callback) {
@@ -565,13 +1009,7 @@ public class TXRoomService extends V2TIMSDKListener {
             return;
         }
 
-
-        TXSeatInfo changeInfo = new TXSeatInfo();
-        changeInfo.status = TXSeatInfo.STATUS_USED;
-        changeInfo.mute = info.mute;
-        changeInfo.user = userId;
-        HashMap<String, String> map = IMProtocol.getSeatInfoJsonStr(index, changeInfo);
-        modifyGroupAttrs(map, callback);
+        claimSeat(index, userId, callback);
     }
 
     public void kickSeat(int index, TXCallback callback) {
@@ -596,8 +1034,8 @@ public class TXRoomService extends V2TIMSDKListener {
         changeInfo.status = TXSeatInfo.STATUS_UNUSED;
         changeInfo.mute = info.mute;
         changeInfo.user = "";
-        HashMap<String, String> map = IMProtocol.getSeatInfoJsonStr(index, changeInfo);
-        modifyGroupAttrs(map, callback);
+        changeInfo.version = mSeatStateEngine.nextVersion(index);
+        modifySeat(index, changeInfo, callback);
     }
 
     public void muteSeat(int index, boolean mute, TXCallback callback) {
@@ -615,8 +1053,8 @@ public class TXRoomService extends V2TIMSDKListener {
         changeInfo.status = info.status;
         changeInfo.mute = mute;
         changeInfo.user = info.user;
-        HashMap<String, String> map = IMProtocol.getSeatInfoJsonStr(index, changeInfo);
-        modifyGroupAttrs(map, callback);
+        changeInfo.version = mSeatStateEngine.nextVersion(index);
+        modifySeat(index, changeInfo, callback);
     }
 
     public void closeSeat(int index, boolean isClose, TXCallback callback) {
@@ -639,28 +1077,454 @@ public class TXRoomService extends V2TIMSDKListener {
         changeInfo.status = changeStatus;
         changeInfo.mute = info.mute;
         changeInfo.user = "";
-        HashMap<String, String> map = IMProtocol.getSeatInfoJsonStr(index, changeInfo);
-        modifyGroupAttrs(map, callback);
+        changeInfo.version = mSeatStateEngine.nextVersion(index);
+        modifySeat(index, changeInfo, callback);
     }
 
-    private void modifyGroupAttrs(HashMap<String, String> map, final TXCallback callback) {
-        V2TIMManager.getGroupManager().setGroupAttributes(mRoomId, map, new V2TIMCallback() {
+    /**
+     * 抢麦：先读取最新的座位再写入，写入的值为自己的 userId 和读到的版本号加一。
+     * 胜负由 {@link SeatClaim} 按群属性变化回显的先后判断，回显里第一个本轮的写入获胜，失败时返回 {@link #CODE_SEAT_LOST_RACE}；
+     * 失败方的写入落地在获胜者之后时，把座位写回获胜者的值。写入成功后 {@link #CLAIM_ECHO_TIMEOUT} 内没有判定出结果时，
+     * 回读一次群属性，座位上是自己写入的用户和版本才算成功。判定依赖 IM 按写入顺序推送群属性变化，是尽力而为的。
+     */
+    private void claimSeat(final int index, final String userId, final TXCallback callback) {
+        if (mClaimingSeats.contains(index)) {
+            if (callback != null) {
+                callback.onCallback(CODE_ERROR, "seat " + index + " is being claimed");
+            }
+            return;
+        }
+        mClaimingSeats.add(index);
+        final String       roomId      = mRoomId;
+        final String       attrVersion = mAttrVersion;
+        final List<String> keyList     = Collections.singletonList(IMProtocol.getSeatAttrKey(index, attrVersion));
+        final TXCallback claimCallback = new TXCallback() {
             @Override
-            public void onError(int i, String s) {
-                TRTCLogger.e(TAG, "modify group attrs error, code:" + i + " " + s);
+            public void onCallback(int code, String msg) {
+                if (code == CODE_SEAT_LOST_RACE) {
+                    TRTCLogger.e(TAG, userId + " " + msg);
+                }
                 if (callback != null) {
-                    callback.onCallback(i, s);
+                    callback.onCallback(code, msg);
+                }
+            }
+        };
+        mIMBackend.getGroupAttributes(roomId, keyList, onRoomThread("getGroupAttributes", new IMBackend.ValueCallback<Map<String, String>>() {
+            @Override
+            public void onError(int code, String msg) {
+                if (roomId.equals(mRoomId)) {
+                    mClaimingSeats.remove(index);
                 }
+                claimCallback.onCallback(code, msg);
             }
 
             @Override
-            public void onSuccess() {
-                TRTCLogger.i(TAG, "modify group attrs success");
-                if (callback != null) {
-                    callback.onCallback(0, "modify group attrs success");
+            public void onSuccess(Map<String, String> attrMap) {
+                if (!roomId.equals(mRoomId)) {
+                    claimCallback.onCallback(CODE_ERROR, "room exited.");
+                    return;
+                }
+                TXSeatInfo current = IMProtocol.decodeSeatInfo(IMProtocol.getSeatRawFromAttr(attrMap, index, attrVersion));
+                if (current == null) {
+                    current = new TXSeatInfo();
+                }
+                if (current.status == TXSeatInfo.STATUS_CLOSE) {
+                    mClaimingSeats.remove(index);
+                    claimCallback.onCallback(CODE_ERROR, "seat is close");
+                    return;
+                }
+                if (current.status == TXSeatInfo.STATUS_USED) {
+                    mClaimingSeats.remove(index);
+                    claimCallback.onCallback(CODE_SEAT_LOST_RACE, "seat " + index + " is taken by " + current.user);
+                    return;
                 }
+                final SeatClaim claim = new SeatClaim(index, roomId, attrVersion, current, userId, claimCallback);
+                mSeatClaims.put(index, claim);
+                modifySeat(index, claim.getClaimInfo(), new TXCallback() {
+                    @Override
+                    public void onCallback(int code, String msg) {
+                        if (mSeatClaims.get(index) != claim) {
+                            // 已经退房或者已经判定完成
+                            return;
+                        }
+                        if (code != 0) {
+                            reportSeatClaim(claim, code, msg);
+                            finishSeatClaim(claim);
+                            return;
+                        }
+                        claim.onWritten();
+                        claim.timeout = new Runnable() {
+                            @Override
+                            public void run() {
+                                onSeatClaimTimeout(claim);
+                            }
+                        };
+                        mRoomHandler.postDelayed(claim.timeout, CLAIM_ECHO_TIMEOUT);
+                        updateSeatClaim(claim);
+                    }
+                });
             }
-        });
+        }));
+    }
+
+    /**
+     * 收到群属性变化时，在更新座位之前按回显的先后推进正在进行的抢麦
+     */
+    private void checkSeatClaims(Map<String, String> attrMap) {
+        if (mSeatClaims.isEmpty()) {
+            return;
+        }
+        for (SeatClaim claim : new ArrayList<>(mSeatClaims.values())) {
+            TXSeatInfo seat = IMProtocol.decodeSeatInfo(IMProtocol.getSeatRawFromAttr(attrMap, claim.index, claim.attrVersion));
+            if (seat == null) {
+                continue;
+            }
+            claim.onSeatChanged(seat);
+            updateSeatClaim(claim);
+        }
+    }
+
+    private void updateSeatClaim(SeatClaim claim) {
+        int result = claim.getResult();
+        if (result == SeatClaim.RESULT_PENDING) {
+            return;
+        }
+        if (result == SeatClaim.RESULT_WON) {
+            reportSeatClaim(claim, 0, "claim seat success");
+            finishSeatClaim(claim);
+            return;
+        }
+        reportSeatClaim(claim, CODE_SEAT_LOST_RACE, "lost the race for seat " + claim.index);
+        TXSeatInfo undoInfo = claim.getUndoInfo();
+        if (undoInfo != null) {
+            // 自己的写入覆盖了获胜者，写回去
+            TRTCLogger.w(TAG, "claim of seat {} landed after the winner, restore {}", claim.index, undoInfo.user);
+            finishSeatClaim(claim);
+            modifySeat(claim.index, undoInfo, null);
+        } else if (claim.isEchoed()) {
+            // 自己的写入已经被覆盖
+            finishSeatClaim(claim);
+        }
+        // 否则继续等待自己写入的回显，直到写入失败或者超时
+    }
+
+    private void onSeatClaimTimeout(final SeatClaim claim) {
+        if (mSeatClaims.get(claim.index) != claim) {
+            return;
+        }
+        claim.timeout = null;
+        if (claim.getResult() == SeatClaim.RESULT_LOST) {
+            // 一直没有收到自己写入的回显，不再撤销
+            finishSeatClaim(claim);
+            return;
+        }
+        TRTCLogger.w(TAG, "no echo for claim of seat {}, read back", claim.index);
+        List<String> keyList = Collections.singletonList(IMProtocol.getSeatAttrKey(claim.index, claim.attrVersion));
+        mIMBackend.getGroupAttributes(claim.roomId, keyList, onRoomThread("getGroupAttributes", new IMBackend.ValueCallback<Map<String, String>>() {
+            @Override
+            public void onError(int code, String msg) {
+                reportSeatClaim(claim, code, msg);
+                finishSeatClaim(claim);
+            }
+
+            @Override
+            public void onSuccess(Map<String, String> attrMap) {
+                TXSeatInfo current = IMProtocol.decodeSeatInfo(IMProtocol.getSeatRawFromAttr(attrMap, claim.index, claim.attrVersion));
+                if (SeatClaim.isClaimedBy(current, claim.getClaimInfo())) {
+                    reportSeatClaim(claim, 0, "claim seat success");
+                } else {
+                    reportSeatClaim(claim, CODE_SEAT_LOST_RACE, "lost the race for seat " + claim.index);
+                }
+                finishSeatClaim(claim);
+            }
+        }));
+    }
+
+    /**
+     * 回调抢麦结果，每次抢麦只回调一次
+     */
+    private void reportSeatClaim(SeatClaim claim, int code, String msg) {
+        TXCallback callback = claim.callback;
+        if (callback == null) {
+            return;
+        }
+        claim.callback = null;
+        callback.onCallback(code, msg);
+    }
+
+    private void finishSeatClaim(SeatClaim claim) {
+        if (claim.timeout != null) {
+            mRoomHandler.removeCallbacks(claim.timeout);
+            claim.timeout = null;
+        }
+        if (mSeatClaims.get(claim.index) == claim) {
+            mSeatClaims.remove(claim.index);
+            mClaimingSeats.remove(claim.index);
+        }
+    }
+
+    /**
+     * 房主一次修改多个座位：按顺序把修改合并到每个座位上，所有座位在同一次 setGroupAttributes 中写入，
+     * 其他人只会收到一次群属性变化。不支持上麦，上麦需要走 {@link #claimSeat} 检测同时抢麦。
+     */
+    public void modifySeats(List<TXSeatChange> changeList, TXCallback callback) {
+        if (!isOwner()) {
+            TRTCLogger.e(TAG, "only owner could modify seats");
+            if (callback != null) {
+                callback.onCallback(CODE_ERROR, "only owner could modify seats");
+            }
+            return;
+        }
+        if (mTXSeatInfoList == null || changeList == null) {
+            TRTCLogger.e(TAG, "seat info list is empty");
+            if (callback != null) {
+                callback.onCallback(CODE_ERROR, "seat info list is empty or change list is null");
+            }
+            return;
+        }
+        int          seatSize = mTXSeatInfoList.size();
+        TXSeatInfo[] newInfos = new TXSeatInfo[seatSize];
+        for (TXSeatChange change : changeList) {
+            if (change == null || change.index < 0 || change.index >= seatSize) {
+                TRTCLogger.e(TAG, "modify seats index error: " + change);
+                if (callback != null) {
+                    callback.onCallback(CODE_ERROR, "seat index error: " + change);
+                }
+                return;
+            }
+            TXSeatInfo info = newInfos[change.index];
+            if (info == null) {
+                TXSeatInfo current = mTXSeatInfoList.get(change.index);
+                info = new TXSeatInfo();
+                info.status = current.status;
+                info.mute = current.mute;
+                info.user = current.user;
+                info.version = current.version;
+                newInfos[change.index] = info;
+            }
+            switch (change.type) {
+                case TXSeatChange.TYPE_LEAVE:
+                    if (info.status == TXSeatInfo.STATUS_USED) {
+                        info.status = TXSeatInfo.STATUS_UNUSED;
+                        info.user = "";
+                    }
+                    break;
+                case TXSeatChange.TYPE_CLOSE:
+                    if (change.value) {
+                        info.status = TXSeatInfo.STATUS_CLOSE;
+                        info.user = "";
+                    } else if (info.status == TXSeatInfo.STATUS_CLOSE) {
+                        info.status = TXSeatInfo.STATUS_UNUSED;
+                    }
+                    break;
+                case TXSeatChange.TYPE_MUTE:
+                    info.mute = change.value;
+                    break;
+                default:
+                    TRTCLogger.e(TAG, "modify seats not support change: " + change);
+                    if (callback != null) {
+                        callback.onCallback(CODE_ERROR, "not support change type: " + change.type);
+                    }
+                    return;
+            }
+        }
+        // 只写入真正有变化的座位
+        int[]        indexes = new int[seatSize];
+        TXSeatInfo[] infos   = new TXSeatInfo[seatSize];
+        int          count   = 0;
+        for (int i = 0; i < seatSize; i++) {
+            TXSeatInfo info = newInfos[i];
+            if (info == null || isSameSeat(info, mTXSeatInfoList.get(i))) {
+                continue;
+            }
+            info.version = mSeatStateEngine.nextVersion(i);
+            indexes[count] = i;
+            infos[count] = info;
+            count++;
+        }
+        if (count == 0) {
+            if (callback != null) {
+                callback.onCallback(0, "seats not changed");
+            }
+            return;
+        }
+        modifySeats(Arrays.copyOf(indexes, count), Arrays.copyOf(infos, count), callback);
+    }
+
+    /**
+     * 修改一个座位，乐观模式下先在本地生效，再以群属性为准确认或回滚
+     */
+    private void modifySeat(int index, TXSeatInfo changeInfo, TXCallback callback) {
+        modifySeats(new int[]{index}, new TXSeatInfo[]{changeInfo}, callback);
+    }
+
+    private void modifySeats(final int[] indexes, final TXSeatInfo[] changeInfos, final TXCallback callback) {
+        final String roomId  = mRoomId;
+        long         version = 0;
+        if (mOptimisticSeat) {
+            String[] raws = new String[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                raws[i] = IMProtocol.encodeSeatInfo(changeInfos[i], mSeatStateEngine.getAttrVersion());
+            }
+            version = mSeatStateEngine.applyLocal(indexes, changeInfos, raws);
+            notifySeatChanges(mSeatStateEngine.getSeatInfoList());
+        }
+        if (!mSeatStateEngine.isSharded()) {
+            writeSeats(roomId, indexes, changeInfos, null, version, callback);
+            return;
+        }
+        // 分片格式下写入的是整个分片，先读取最新的分片，避免用本地过期的值覆盖别人刚修改的座位
+        final long localVersion = version;
+        Set<String> keySet = new HashSet<>();
+        for (int index : indexes) {
+            keySet.add(IMProtocol.getSeatAttrKey(index, mSeatStateEngine.getAttrVersion()));
+        }
+        mIMBackend.getGroupAttributes(roomId, new ArrayList<>(keySet), onRoomThread("getGroupAttributes", new IMBackend.ValueCallback<Map<String, String>>() {
+            @Override
+            public void onError(int code, String msg) {
+                if (!roomId.equals(mRoomId)) {
+                    if (callback != null) {
+                        callback.onCallback(CODE_ERROR, "room exited.");
+                    }
+                    return;
+                }
+                TRTCLogger.w(TAG, "read seat shards fail, write with local values. code:{} msg:{}", code, msg);
+                writeSeats(roomId, indexes, changeInfos, null, localVersion, callback);
+            }
+
+            @Override
+            public void onSuccess(Map<String, String> attrMap) {
+                if (!roomId.equals(mRoomId)) {
+                    if (callback != null) {
+                        callback.onCallback(CODE_ERROR, "room exited.");
+                    }
+                    return;
+                }
+                writeSeats(roomId, indexes, changeInfos, attrMap, localVersion, callback);
+            }
+        }));
+    }
+
+    /**
+     * @param shardAttrMap 写入前读到的分片，见 {@link SeatStateEngine#encodeSeats(int[], TXSeatInfo[], String[], Map)}
+     * @param version      乐观修改的版本号，0 表示没有先在本地生效
+     */
+    private void writeSeats(final String roomId, final int[] indexes, TXSeatInfo[] changeInfos, Map<String, String> shardAttrMap,
+                            final long version, final TXCallback callback) {
+        final String[]          raws = new String[indexes.length];
+        HashMap<String, String> map  = mSeatStateEngine.encodeSeats(indexes, changeInfos, raws, shardAttrMap);
+        modifyGroupAttrs(map, new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                if (roomId.equals(mRoomId)) {
+                    if (code != 0) {
+                        mSeatStateEngine.onWriteFailed(indexes, raws);
+                    }
+                    if (version != 0) {
+                        onLocalSeatsResult(indexes, version, code, msg);
+                    }
+                }
+                if (callback != null) {
+                    callback.onCallback(code, msg);
+                }
+            }
+        });
+    }
+
+    private void onLocalSeatsResult(int[] indexes, long version, int code, String msg) {
+        if (code == 0) {
+            List<TXSeatInfo> seatInfoList = mSeatStateEngine.confirmLocal(indexes, version);
+            if (seatInfoList != null) {
+                notifySeatChanges(seatInfoList);
+            }
+            return;
+        }
+        int[] rollbackIndexes = mSeatStateEngine.rollbackLocal(indexes, version);
+        if (rollbackIndexes.length > 0) {
+            TRTCLogger.e(TAG, "rollback seats " + Arrays.toString(rollbackIndexes) + ", code:" + code + " msg:" + msg);
+            if (mSeatStateEngine.hasChanges()) {
+                notifySeatChanges(mSeatStateEngine.getSeatInfoList());
+            }
+            if (mDelegate != null) {
+                for (int index : rollbackIndexes) {
+                    mDelegate.onSeatRollback(index, code, msg);
+                }
+            }
+        }
+    }
+
+    /**
+     * 自己写入的座位被别人同时写入同一个分片改回了写入前的值，重新写入
+     */
+    private void rewriteRevertedSeats() {
+        int[] reverted = mSeatStateEngine.takeRevertedSeats();
+        if (reverted.length == 0) {
+            return;
+        }
+        TXSeatInfo[] infos = new TXSeatInfo[reverted.length];
+        for (int i = 0; i < reverted.length; i++) {
+            infos[i] = mSeatStateEngine.getWrittenSeat(reverted[i]);
+        }
+        TRTCLogger.w(TAG, "seats {} reverted by a concurrent shard write, rewrite", Arrays.toString(reverted));
+        modifySeats(reverted, infos, null);
+    }
+
+    /**
+     * 一次群属性变化只改了一个座位时逐个回调，改了多个座位时合并成一次 onSeatBatchChange
+     */
+    private void notifySeatChanges(List<TXSeatInfo> seatInfoList) {
+        mTXSeatInfoList = seatInfoList;
+        if (mDelegate != null) {
+            mDelegate.onSeatInfoListChange(seatInfoList);
+        }
+        if (mSeatStateEngine.getChangeCount() > 1) {
+            mSeatStateEngine.dispatchChanges(mSeatBatchCollector);
+            onSeatBatchChange(mSeatBatchCollector.takeChanges());
+        } else {
+            mSeatStateEngine.dispatchChanges(mSeatChangeListener);
+        }
+    }
+
+    /**
+     * 用快照回调房间信息和座位列表，只用于渲染，不修改房间状态
+     */
+    private void notifySnapshot(String roomId, Map<String, String> attrMap) {
+        TXRoomInfo roomInfo = IMProtocol.getRoomInfoFromAttr(attrMap);
+        if (roomInfo == null) {
+            mSnapshotCache.remove(roomId);
+            return;
+        }
+        roomInfo.roomId = roomId;
+        List<TXSeatInfo> seatInfoList = IMProtocol.getSeatListFromAttr(attrMap, roomInfo.seatSize);
+        TRTCLogger.i(TAG, "render room from snapshot: {}", roomId);
+        if (mDelegate != null) {
+            mDelegate.onRoomInfoChange(roomInfo);
+            mDelegate.onSeatInfoListChange(seatInfoList);
+        }
+    }
+
+    private static boolean isSameSeat(TXSeatInfo a, TXSeatInfo b) {
+        return a.status == b.status && a.mute == b.mute && TextUtils.equals(a.user, b.user);
+    }
+
+    private void modifyGroupAttrs(HashMap<String, String> map, final TXCallback callback) {
+        mIMBackend.setGroupAttributes(mRoomId, map, onRoomThread("setGroupAttributes", new IMBackend.Callback() {
+            @Override
+            public void onError(int i, String s) {
+                TRTCLogger.e(TAG, "modify group attrs error, code:" + i + " " + s);
+                if (callback != null) {
+                    callback.onCallback(i, s);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                TRTCLogger.i(TAG, "modify group attrs success");
+                if (callback != null) {
+                    callback.onCallback(0, "modify group attrs success");
+                }
+            }
+        }));
     }
 
     public void handleAnchorEnter(String userId) {
@@ -684,8 +1548,26 @@ public class TXRoomService extends V2TIMSDKListener {
             }
             return;
         }
-        TRTCLogger.i(TAG, "get user info list " + userList);
-        V2TIMManager.getInstance().getUsersInfo(userList, new V2TIMValueCallback<List<V2TIMUserFullInfo>>() {
+        // 先查缓存，只有未命中的用户才去 IM 拉取
+        final UserInfoCache           cache    = UserInfoCache.getInstance();
+        final Map<String, TXUserInfo> hitMap   = new HashMap<>();
+        List<String>                  missList = new ArrayList<>();
+        for (String userId : userList) {
+            TXUserInfo cacheInfo = cache.get(userId);
+            if (cacheInfo != null) {
+                hitMap.put(userId, cacheInfo);
+            } else if (!missList.contains(userId)) {
+                missList.add(userId);
+            }
+        }
+        if (missList.isEmpty()) {
+            if (callback != null) {
+                callback.onCallback(0, "success", orderUserInfoList(userList, hitMap));
+            }
+            return;
+        }
+        TRTCLogger.i(TAG, "get user info list {}", new ArrayList<>(missList));
+        mIMBackend.getUsersInfo(missList, onRoomThread("getUsersInfo", new IMBackend.ValueCallback<List<TXUserInfo>>() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "get user info list fail, code:" + i);
@@ -695,22 +1577,27 @@ public class TXRoomService extends V2TIMSDKListener {
             }
 
             @Override
-            public void onSuccess(List<V2TIMUserFullInfo> v2TIMUserFullInfos) {
-                List<TXUserInfo> list = new ArrayList<>();
-                if (v2TIMUserFullInfos != null && v2TIMUserFullInfos.size() != 0) {
-                    for (int i = 0; i < v2TIMUserFullInfos.size(); i++) {
-                        TXUserInfo userInfo = new TXUserInfo();
-                        userInfo.userName = v2TIMUserFullInfos.get(i).getNickName();
-                        userInfo.userId = v2TIMUserFullInfos.get(i).getUserID();
-                        userInfo.avatarURL = v2TIMUserFullInfos.get(i).getFaceUrl();
-                        list.add(userInfo);
-                    }
+            public void onSuccess(List<TXUserInfo> userInfoList) {
+                for (TXUserInfo userInfo : userInfoList) {
+                    cache.put(userInfo);
+                    hitMap.put(userInfo.userId, userInfo);
                 }
                 if (callback != null) {
-                    callback.onCallback(0, "success", list);
+                    callback.onCallback(0, "success", orderUserInfoList(userList, hitMap));
                 }
             }
-        });
+        }));
+    }
+
+    private List<TXUserInfo> orderUserInfoList(List<String> userList, Map<String, TXUserInfo> userInfoMap) {
+        List<TXUserInfo> list = new ArrayList<>(userList.size());
+        for (String userId : userList) {
+            TXUserInfo userInfo = userInfoMap.get(userId);
+            if (userInfo != null) {
+                list.add(userInfo);
+            }
+        }
+        return list;
     }
 
     public void sendRoomTextMsg(final String msg, final TXCallback callback) {
@@ -721,8 +1608,11 @@ public class TXRoomService extends V2TIMSDKListener {
             }
             return;
         }
+        mOutboundMsgQueue.sendText(msg, callback);
+    }
 
-        V2TIMManager.getInstance().sendGroupTextMessage(msg, mRoomId, V2TIMMessage.V2TIM_PRIORITY_NORMAL, new V2TIMValueCallback<V2TIMMessage>() {
+    private void sendGroupTextMsg(final String msg, final TXCallback callback) {
+        mIMBackend.sendGroupTextMessage(mRoomId, msg, onRoomThread("sendGroupTextMessage", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "sendGroupTextMessage error " + i + " msg:" + msg);
@@ -732,12 +1622,12 @@ public class TXRoomService extends V2TIMSDKListener {
             }
 
             @Override
-            public void onSuccess(V2TIMMessage v2TIMMessage) {
+            public void onSuccess() {
                 if (callback != null) {
                     callback.onCallback(0, "send group message success.");
                 }
             }
-        });
+        }));
 
     }
 
@@ -749,11 +1639,60 @@ public class TXRoomService extends V2TIMSDKListener {
             }
             return;
         }
-        sendGroupMsg(IMProtocol.getCusMsgJsonStr(cmd, message), callback);
+        mOutboundMsgQueue.sendCustom(cmd, message, callback);
+    }
+
+    /**
+     * 注册业务的房间事件，收到对应 action 的事件帧时在房间线程回调 handler
+     *
+     * @param code 取值范围 [{@link IMProtocol.Define#CODE_ROOM_EVENT_MIN}, {@link IMProtocol.Define#CODE_ROOM_EVENT_MAX}]
+     * @return code 超出范围时返回 false
+     */
+    public boolean registerRoomEvent(int code, final TXRoomEventHandler handler) {
+        if (code < IMProtocol.Define.CODE_ROOM_EVENT_MIN || code > IMProtocol.Define.CODE_ROOM_EVENT_MAX) {
+            TRTCLogger.e(TAG, "register room event fail, code out of range: " + code);
+            return false;
+        }
+        return mCustomMsgDispatcher.register(code, new CustomMsgDispatcher.ActionHandler<TXUserInfo>() {
+            @Override
+            public void onAction(byte[] data, TXUserInfo sender) {
+                // JSON 消息里的 action 也可能落在这个范围，只处理事件帧
+                if (!IMProtocol.isRoomEventFrame(data)) {
+                    return;
+                }
+                int offset = IMProtocol.Define.EVENT_FRAME_HEADER_SIZE;
+                handler.onRoomEvent(IMProtocol.getRoomEventAction(data), data, offset, data.length - offset, sender);
+            }
+        });
+    }
+
+    public void unregisterRoomEvent(int code) {
+        if (code >= IMProtocol.Define.CODE_ROOM_EVENT_MIN) {
+            mCustomMsgDispatcher.unregister(code);
+        }
+    }
+
+    public boolean isRoomEventRegistered(int code) {
+        return code >= IMProtocol.Define.CODE_ROOM_EVENT_MIN && mCustomMsgDispatcher.isRegistered(code);
+    }
+
+    public void sendRoomEvent(int code, byte[] payload, final TXCallback callback) {
+        if (!isEnterRoom()) {
+            TRTCLogger.e(TAG, "send room event fail, not enter room yet.");
+            if (callback != null) {
+                callback.onCallback(-1, "send room event fail, not enter room yet.");
+            }
+            return;
+        }
+        mOutboundMsgQueue.sendFrame(IMProtocol.getRoomEventFrame(code, payload), callback);
     }
 
     public void sendGroupMsg(String data, final TXCallback callback) {
-        V2TIMManager.getInstance().sendGroupCustomMessage(data.getBytes(), mRoomId, V2TIMMessage.V2TIM_PRIORITY_NORMAL, new V2TIMValueCallback<V2TIMMessage>() {
+        sendGroupMsg(data.getBytes(UTF_8), callback);
+    }
+
+    public void sendGroupMsg(byte[] data, final TXCallback callback) {
+        mIMBackend.sendGroupCustomMessage(mRoomId, data, onRoomThread("sendGroupCustomMessage", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "sendGroupMsg error " + i + " msg:" + s);
@@ -763,12 +1702,12 @@ public class TXRoomService extends V2TIMSDKListener {
             }
 
             @Override
-            public void onSuccess(V2TIMMessage v2TIMMessage) {
+            public void onSuccess() {
                 if (callback != null) {
                     callback.onCallback(0, "send group message success.");
                 }
             }
-        });
+        }));
     }
 
     public boolean isLogin() {
@@ -788,81 +1727,150 @@ public class TXRoomService extends V2TIMSDKListener {
     }
 
     private void cleanStatus() {
+        mUserInfoResolver.clear();
+        mCounterAggregator.clear();
+        for (SeatClaim claim : new ArrayList<>(mSeatClaims.values())) {
+            finishSeatClaim(claim);
+            reportSeatClaim(claim, CODE_ERROR, "room exited.");
+        }
+        mClaimingSeats.clear();
+        mLastAttrMap = null;
+        mOutboundMsgQueue.clear(CODE_ERROR, "room exited.");
         mIsEnterRoom = false;
+        mCreatedGroupId = null;
         mRoomId = "";
         mOwnerUserId = "";
     }
 
     private void onSeatTake(final int index, final String user) {
-        TRTCLogger.i(TAG, "onSeatTake " + index + " userInfo:" + user);
-        List<String> userIdList = new ArrayList<>();
-        userIdList.add(user);
-        getUserInfo(userIdList, new TXUserListCallback() {
+        TRTCLogger.i(TAG, "onSeatTake {} userInfo:{}", index, user);
+        mUserInfoResolver.resolve(user, new UserInfoResolver.ResolveCallback() {
             @Override
-            public void onCallback(int code, String msg, List<TXUserInfo> list) {
-                if (code == 0) {
-                    if (mDelegate != null) {
-                        mDelegate.onSeatTake(index, list.get(0));
-                    }
-                } else {
+            public void onResolved(int code, TXUserInfo userInfo) {
+                if (code != 0) {
                     // 获取失败了
                     TRTCLogger.e(TAG, "onSeatTake get user info error!");
-                    if (mDelegate != null) {
-                        TXUserInfo userInfo = new TXUserInfo();
-                        userInfo.userId = user;
-                        mDelegate.onSeatTake(index, userInfo);
-                    }
+                }
+                if (mDelegate != null) {
+                    mDelegate.onSeatTake(index, userInfo);
                 }
             }
         });
     }
 
     private void onSeatClose(int index, boolean isClose) {
-        TRTCLogger.i(TAG, "onSeatClose " + index);
+        TRTCLogger.i(TAG, "onSeatClose {}", index);
         if (mDelegate != null) {
             mDelegate.onSeatClose(index, isClose);
         }
     }
 
     private void onSeatLeave(final int index, final String user) {
-        TRTCLogger.i(TAG, "onSeatLeave " + index + " userInfo:" + user);
-        List<String> userIdList = new ArrayList<>();
-        userIdList.add(user);
-        getUserInfo(userIdList, new TXUserListCallback() {
+        TRTCLogger.i(TAG, "onSeatLeave {} userInfo:{}", index, user);
+        mUserInfoResolver.resolve(user, new UserInfoResolver.ResolveCallback() {
             @Override
-            public void onCallback(int code, String msg, List<TXUserInfo> list) {
-                if (code == 0) {
-                    if (mDelegate != null) {
-                        mDelegate.onSeatLeave(index, list.get(0));
-                    }
-                } else {
+            public void onResolved(int code, TXUserInfo userInfo) {
+                if (code != 0) {
                     // 获取失败了
-                    TRTCLogger.e(TAG, "onSeatTake get user info error!");
-                    if (mDelegate != null) {
-                        TXUserInfo userInfo = new TXUserInfo();
-                        userInfo.userId = user;
-                        mDelegate.onSeatLeave(index, userInfo);
-                    }
+                    TRTCLogger.e(TAG, "onSeatLeave get user info error!");
+                }
+                if (mDelegate != null) {
+                    mDelegate.onSeatLeave(index, userInfo);
                 }
             }
         });
     }
 
     private void onSeatMute(int index, boolean mute) {
-        TRTCLogger.i(TAG, "onSeatMute " + index + " mute:" + mute);
+        TRTCLogger.i(TAG, "onSeatMute {} mute:{}", index, mute);
         if (mDelegate != null) {
             mDelegate.onSeatMute(index, mute);
         }
     }
 
+    private void onSeatBatchChange(final List<TXSeatChange> changeList) {
+        TRTCLogger.i(TAG, "onSeatBatchChange {}", new ArrayList<>(changeList));
+        // 上麦/下麦的用户资料全部查到后再一起回调；缓存命中时 resolve 会同步回调，所以要先数完再查询
+        final int[] remain = new int[]{0};
+        for (TXSeatChange change : changeList) {
+            if (isUserChange(change)) {
+                remain[0]++;
+            }
+        }
+        if (remain[0] == 0) {
+            if (mDelegate != null) {
+                mDelegate.onSeatBatchChange(changeList);
+            }
+            return;
+        }
+        for (final TXSeatChange change : changeList) {
+            if (!isUserChange(change)) {
+                continue;
+            }
+            mUserInfoResolver.resolve(change.user, new UserInfoResolver.ResolveCallback() {
+                @Override
+                public void onResolved(int code, TXUserInfo userInfo) {
+                    if (code != 0) {
+                        TRTCLogger.e(TAG, "onSeatBatchChange get user info error!");
+                    }
+                    change.userInfo = userInfo;
+                    if (--remain[0] == 0 && mDelegate != null) {
+                        mDelegate.onSeatBatchChange(changeList);
+                    }
+                }
+            });
+        }
+    }
+
+    private static boolean isUserChange(TXSeatChange change) {
+        return change.type == TXSeatChange.TYPE_TAKE || change.type == TXSeatChange.TYPE_LEAVE;
+    }
+
+    /**
+     * 把一次群属性变化产生的座位变化收集成列表
+     */
+    private static class SeatBatchCollector implements SeatStateEngine.SeatChangeListener {
+        private List<TXSeatChange> mChangeList = new ArrayList<>();
+
+        @Override
+        public void onSeatTake(int index, String userId) {
+            mChangeList.add(new TXSeatChange(index, TXSeatChange.TYPE_TAKE, true, userId));
+        }
+
+        @Override
+        public void onSeatLeave(int index, String userId) {
+            mChangeList.add(new TXSeatChange(index, TXSeatChange.TYPE_LEAVE, true, userId));
+        }
+
+        @Override
+        public void onSeatClose(int index, boolean isClose) {
+            mChangeList.add(new TXSeatChange(index, TXSeatChange.TYPE_CLOSE, isClose, null));
+        }
+
+        @Override
+        public void onSeatMute(int index, boolean mute) {
+            mChangeList.add(new TXSeatChange(index, TXSeatChange.TYPE_MUTE, mute, null));
+        }
+
+        List<TXSeatChange> takeChanges() {
+            List<TXSeatChange> changeList = mChangeList;
+            mChangeList = new ArrayList<>();
+            return changeList;
+        }
+    }
+
     public void destroy() {
 
     }
 
+    /**
+     * 可以在任意线程调用，只读取 volatile 的 mRoomId 和 mIMBackend，IM SDK 的 invite 本身是线程安全的。
+     * 邀请 id 由 IM SDK 生成后同步返回，callback 在房间线程回调
+     */
     public String sendInvitation(String cmd, String userId, String content, final TXCallback callback) {
         String json = IMProtocol.getInvitationMsg(mRoomId, cmd, content);
         TRTCLogger.i(TAG, "send " + userId + " json:" + json);
-        return V2TIMManager.getSignalingManager().invite(userId, json, 0, new V2TIMCallback() {
+        return mIMBackend.invite(userId, json, 0, onRoomThread("invite", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "sendInvitation error " + i);
@@ -878,12 +1886,12 @@ public class TXRoomService extends V2TIMSDKListener {
                     callback.onCallback(0, "send invitation success");
                 }
             }
-        });
+        }));
     }
 
     public void acceptInvitation(String id, final TXCallback callback) {
         TRTCLogger.i(TAG, "acceptInvitation " + id);
-        V2TIMManager.getSignalingManager().accept(id, null, new V2TIMCallback() {
+        mIMBackend.accept(id, null, onRoomThread("accept", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "acceptInvitation error " + i);
@@ -899,12 +1907,12 @@ public class TXRoomService extends V2TIMSDKListener {
                     callback.onCallback(0, "send invitation success");
                 }
             }
-        });
+        }));
     }
 
     public void rejectInvitation(String id, final TXCallback callback) {
         TRTCLogger.i(TAG, "rejectInvitation " + id);
-        V2TIMManager.getSignalingManager().reject(id, null, new V2TIMCallback() {
+        mIMBackend.reject(id, null, onRoomThread("reject", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "rejectInvitation error " + i);
@@ -919,12 +1927,12 @@ public class TXRoomService extends V2TIMSDKListener {
                     callback.onCallback(0, "send invitation success");
                 }
             }
-        });
+        }));
     }
 
     public void cancelInvitation(String id, final TXCallback callback) {
         TRTCLogger.i(TAG, "cancelInvitation " + id);
-        V2TIMManager.getSignalingManager().cancel(id, null, new V2TIMCallback() {
+        mIMBackend.cancel(id, null, onRoomThread("cancel", new IMBackend.Callback() {
             @Override
             public void onError(int i, String s) {
                 TRTCLogger.e(TAG, "cancelInvitation error " + i);
@@ -940,279 +1948,262 @@ public class TXRoomService extends V2TIMSDKListener {
                     callback.onCallback(0, "send invitation success");
                 }
             }
-        });
+        }));
     }
 
     public void getAudienceList(final TXUserListCallback txUserListCallback) {
-        V2TIMManager.getGroupManager().getGroupMemberList(mRoomId, V2TIMGroupMemberFullInfo.V2TIM_GROUP_MEMBER_FILTER_COMMON, 0, new V2TIMValueCallback<V2TIMGroupMemberInfoResult>() {
+        getAudienceListPage(0, new TXUserPageCallback() {
             @Override
-            public void onError(int i, String s) {
+            public void onCallback(int code, String msg, List<TXUserInfo> list, long nextSeq) {
                 if (txUserListCallback != null) {
-                    txUserListCallback.onCallback(i, s, new ArrayList<TXUserInfo>());
+                    txUserListCallback.onCallback(code, msg, list);
+                }
+            }
+        });
+    }
+
+    /**
+     * 拉取一页群成员
+     *
+     * @param nextSeq  分页游标，第一页传 0
+     * @param callback 回调中的 nextSeq 为 0 表示已经拉取完毕
+     */
+    public void getAudienceListPage(long nextSeq, final TXUserPageCallback callback) {
+        mIMBackend.getGroupMemberList(mRoomId, nextSeq, onRoomThread("getGroupMemberList", new IMBackend.ValueCallback<IMBackend.MemberPage>() {
+            @Override
+            public void onError(int i, String s) {
+                if (callback != null) {
+                    callback.onCallback(i, s, new ArrayList<TXUserInfo>(), 0);
                 }
             }
 
             @Override
-            public void onSuccess(V2TIMGroupMemberInfoResult v2TIMGroupMemberInfoResult) {
-                List<TXUserInfo> userInfos = new ArrayList<>();
-                if (v2TIMGroupMemberInfoResult.getMemberInfoList() != null) {
-                    for (V2TIMGroupMemberFullInfo info : v2TIMGroupMemberInfoResult.getMemberInfoList()) {
-                        TXUserInfo userInfo = new TXUserInfo();
-                        userInfo.userId = info.getUserID();
-                        userInfo.userName = info.getNickName();
-                        userInfo.avatarURL = info.getFaceUrl();
-                        userInfos.add(userInfo);
-                    }
+            public void onSuccess(IMBackend.MemberPage page) {
+                for (TXUserInfo userInfo : page.memberList) {
+                    UserInfoCache.getInstance().merge(userInfo);
                 }
-                if (txUserListCallback != null) {
-                    txUserListCallback.onCallback(0, "", userInfos);
+                if (callback != null) {
+                    callback.onCallback(0, "", page.memberList, page.nextSeq);
                 }
             }
-        });
+        }));
     }
 
+    /**
+     * 获取房间资料，刷新间隔内拉取过的房间直接使用 {@link RoomDirectory} 的缓存，只向 IM 查询新出现的和过期的房间
+     * <p>
+     * 查询失败时回调错误码，列表为已有缓存的房间资料。
+     */
     public void getRoomInfoList(final List<String> roomIds, final TXRoomInfoListCallback callback) {
+        final List<String> staleIds = mRoomDirectory.getStaleRoomIds(roomIds);
+        TRTCLogger.i(TAG, "get room info list, total:{} fetch:{}", roomIds.size(), staleIds.size());
+        if (staleIds.isEmpty()) {
+            mRoomDirectory.update(roomIds, staleIds, new ArrayList<TXRoomInfo>());
+            if (callback != null) {
+                callback.onCallback(0, "", mRoomDirectory.get(roomIds));
+            }
+            return;
+        }
         // TODO: 2020-06-10 由于IM的问题，所以这里只能从groupInfo里面查找
-        V2TIMManager.getGroupManager().getGroupsInfo(roomIds, new V2TIMValueCallback<List<V2TIMGroupInfoResult>>() {
+        mIMBackend.getGroupsInfo(staleIds, onRoomThread("getGroupsInfo", new IMBackend.ValueCallback<List<TXRoomInfo>>() {
             @Override
             public void onError(int i, String s) {
                 if (callback != null) {
-                    callback.onCallback(i, s, new ArrayList<TXRoomInfo>());
+                    callback.onCallback(i, s, mRoomDirectory.get(roomIds));
                 }
             }
 
             @Override
-            public void onSuccess(List<V2TIMGroupInfoResult> v2TIMGroupInfoResults) {
-                List<TXRoomInfo>            txRoomInfos        = new ArrayList<>();
-                Map<String, V2TIMGroupInfo> groupInfoResultMap = new HashMap<>();
-                // 注意 IM 返回的顺序可能不对，所以需要重新排序
-                if (v2TIMGroupInfoResults != null) {
-                    for (V2TIMGroupInfoResult result : v2TIMGroupInfoResults) {
-                        V2TIMGroupInfo groupInfo = result.getGroupInfo();
-                        // 防止为空
-                        if (groupInfo == null) {
-                            continue;
-                        }
-                        groupInfoResultMap.put(groupInfo.getGroupID(), groupInfo);
-                    }
-                    for (String roomId : roomIds) {
-                        V2TIMGroupInfo groupInfo = groupInfoResultMap.get(roomId);
-                        if (groupInfo == null) {
-                            continue;
-                        }
-                        TXRoomInfo txRoomInfo = new TXRoomInfo();
-                        txRoomInfo.roomId = groupInfo.getGroupID();
-                        txRoomInfo.cover = groupInfo.getFaceUrl();
-                        txRoomInfo.memberCount = groupInfo.getMemberCount();
-                        txRoomInfo.ownerId = groupInfo.getOwner();
-                        txRoomInfo.roomName = groupInfo.getGroupName();
-                        txRoomInfo.ownerName = groupInfo.getIntroduction();
-                        txRoomInfos.add(txRoomInfo);
-                    }
-                }
+            public void onSuccess(List<TXRoomInfo> roomInfoList) {
+                mRoomDirectory.update(roomIds, staleIds, roomInfoList);
+                // 注意 IM 返回的顺序可能不对，按 roomIds 的顺序从缓存中取
                 if (callback != null) {
-                    callback.onCallback(0, "", txRoomInfos);
+                    callback.onCallback(0, "", mRoomDirectory.get(roomIds));
                 }
             }
 
-        });
+        }));
     }
 
-    private class VoiceRoomSimpleListener extends V2TIMSimpleMsgListener {
-        @Override
-        public void onRecvGroupTextMessage(String msgID, String groupID, V2TIMGroupMemberInfo sender, String text) {
-            TRTCLogger.i(TAG, "im get text msg group:" + groupID + " userid :" + sender.getUserID() + " text:" + text);
-            if (!groupID.equals(mRoomId)) {
-                return;
-            }
-            TXUserInfo userInfo = new TXUserInfo();
-            userInfo.userId = sender.getUserID();
-            userInfo.avatarURL = sender.getFaceUrl();
-            userInfo.userName = sender.getNickName();
-            if (mDelegate != null) {
-                mDelegate.onRoomRecvRoomTextMsg(mRoomId, text, userInfo);
-            }
-        }
+    /**
+     * @return 最近一次 {@link #getRoomInfoList} 的结果，不发起网络请求，资料可能已经过期
+     */
+    public List<TXRoomInfo> getCachedRoomInfoList() {
+        return mRoomDirectory.getLastList();
+    }
 
+    private class VoiceRoomIMListener implements IMBackend.Listener {
         @Override
-        public void onRecvGroupCustomMessage(String msgID, String groupID, V2TIMGroupMemberInfo sender, byte[] customData) {
-            if (!groupID.equals(mRoomId)) {
-                return;
-            }
-            String customStr = new String(customData);
-            if (!TextUtils.isEmpty(customStr)) {
-                // 一定会有自定义消息的头
-                try {
-                    JSONObject jsonObject = new JSONObject(customStr);
-                    String     version    = jsonObject.getString(IMProtocol.Define.KEY_ATTR_VERSION);
-                    if (!version.equals(IMProtocol.Define.VALUE_ATTR_VERSION)) {
-                        TRTCLogger.e(TAG, "protocol version is not match, ignore msg.");
+        public void onRecvGroupTextMessage(final String groupID, final TXUserInfo sender, final String text) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    TRTCLogger.i(TAG, "im get text msg group:{} userid:{} text:{}", groupID, sender.userId, text);
+                    if (!groupID.equals(mRoomId)) {
+                        return;
                     }
-                    int action = jsonObject.getInt(IMProtocol.Define.KEY_CMD_ACTION);
-
-                    switch (action) {
-                        case IMProtocol.Define.CODE_UNKNOWN:
-                            // ignore
-                            break;
-                        case IMProtocol.Define.CODE_ROOM_CUSTOM_MSG:
-                            Pair<String, String> cusPair = IMProtocol.parseCusMsg(jsonObject);
-                            TXUserInfo userInfo = new TXUserInfo();
-                            userInfo.userId = sender.getUserID();
-                            userInfo.avatarURL = sender.getFaceUrl();
-                            userInfo.userName = sender.getNickName();
-                            if (mDelegate != null && cusPair != null) {
-                                mDelegate.onRoomRecvRoomCustomMsg(mRoomId, cusPair.first, cusPair.second, userInfo);
-                            }
-                            break;
-                        case IMProtocol.Define.CODE_ROOM_DESTROY:
-                            exitRoom(null);
-                            cleanStatus();
-                            if (mDelegate != null) {
-                                mDelegate.onRoomDestroy(mRoomId);
-                            }
-                            break;
-                        default:
-                            break;
+                    UserInfoCache.getInstance().merge(sender);
+                    if (mDelegate != null) {
+                        mDelegate.onRoomRecvRoomTextMsg(mRoomId, text, sender);
                     }
-                } catch (JSONException e) {
-                    // ignore 无需关注的消息
                 }
-            }
+            });
         }
-    }
 
-    private class VoiceRoomGroupListener extends V2TIMGroupListener {
         @Override
-        public void onMemberEnter(String groupID, List<V2TIMGroupMemberInfo> memberList) {
-            if (!groupID.equals(mRoomId)) {
-                return;
-            }
-            if (mDelegate != null && memberList != null) {
-                for (V2TIMGroupMemberInfo member : memberList) {
-                    TXUserInfo userInfo = new TXUserInfo();
-                    userInfo.userId = member.getUserID();
-                    userInfo.userName = member.getNickName();
-                    userInfo.avatarURL = member.getFaceUrl();
-                    mDelegate.onRoomAudienceEnter(userInfo);
+        public void onRecvGroupCustomMessage(final String groupID, final TXUserInfo sender, final byte[] customData) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (!groupID.equals(mRoomId)) {
+                        return;
+                    }
+                    UserInfoCache.getInstance().merge(sender);
+                    // 非本协议的消息在扫描头部时直接忽略
+                    mCustomMsgDispatcher.dispatch(customData, sender);
                 }
-            }
+            });
         }
 
         @Override
-        public void onMemberLeave(String groupID, V2TIMGroupMemberInfo member) {
-            if (!groupID.equals(mRoomId)) {
-                return;
-            }
-            if (mDelegate != null) {
-                TXUserInfo userInfo = new TXUserInfo();
-                userInfo.userId = member.getUserID();
-                userInfo.userName = member.getNickName();
-                userInfo.avatarURL = member.getFaceUrl();
-                mDelegate.onRoomAudienceLeave(userInfo);
-            }
+        public void onMemberEnter(final String groupID, final List<TXUserInfo> memberList) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (!groupID.equals(mRoomId)) {
+                        return;
+                    }
+                    if (mDelegate != null && memberList != null) {
+                        for (TXUserInfo member : memberList) {
+                            UserInfoCache.getInstance().merge(member);
+                            mDelegate.onRoomAudienceEnter(member);
+                        }
+                    }
+                }
+            });
         }
 
         @Override
-        public void onGroupDismissed(String groupID, V2TIMGroupMemberInfo opUser) {
-            // 解散逻辑
-            if (!groupID.equals(mRoomId)) {
-                return;
-            }
-            cleanStatus();
-            if (mDelegate != null) {
-                mDelegate.onRoomDestroy(mRoomId);
-            }
+        public void onMemberLeave(final String groupID, final TXUserInfo member) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (!groupID.equals(mRoomId)) {
+                        return;
+                    }
+                    if (mDelegate != null) {
+                        mDelegate.onRoomAudienceLeave(member);
+                    }
+                }
+            });
         }
 
         @Override
-        public void onGroupAttributeChanged(String groupID, Map<String, String> groupAttributeMap) {
-            TRTCLogger.e(TAG, "onGroupAttributeChanged :" + groupAttributeMap);
-            if (!groupID.equals(mRoomId)) {
-                return;
-            }
-            if (mTXRoomInfo == null) {
-                TRTCLogger.e(TAG, "group attr changed, but room info is empty!");
-                return;
-            }
-            List<TXSeatInfo>       txSeatInfoList    = IMProtocol.getSeatListFromAttr(groupAttributeMap, mTXRoomInfo.seatSize);
-            final List<TXSeatInfo> oldTXSeatInfoList = mTXSeatInfoList;
-            mTXSeatInfoList = txSeatInfoList;
-            if (mDelegate != null) {
-                mDelegate.onSeatInfoListChange(txSeatInfoList);
-            }
-            try {
-                for (int i = 0; i < mTXRoomInfo.seatSize; i++) {
-                    TXSeatInfo oldInfo = oldTXSeatInfoList.get(i);
-                    TXSeatInfo newInfo = txSeatInfoList.get(i);
-                    if (oldInfo.status == TXSeatInfo.STATUS_CLOSE && newInfo.status == TXSeatInfo.STATUS_UNUSED) {
-                        onSeatClose(i, false);
-                    } else if (oldInfo.status != newInfo.status) {
-                        switch (newInfo.status) {
-                            case TXSeatInfo.STATUS_UNUSED:
-                                onSeatLeave(i, oldInfo.user);
-                                break;
-                            case TXSeatInfo.STATUS_USED:
-                                onSeatTake(i, newInfo.user);
-                                break;
-                            case TXSeatInfo.STATUS_CLOSE:
-                                onSeatClose(i, true);
-                                break;
-                        }
+        public void onGroupDismissed(final String groupID) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    // 解散逻辑
+                    if (!groupID.equals(mRoomId)) {
+                        return;
                     }
-                    if (oldInfo.mute != newInfo.mute) {
-                        onSeatMute(i, newInfo.mute);
+                    mSnapshotCache.remove(groupID);
+                    mRoomDirectory.remove(groupID);
+                    cleanStatus();
+                    if (mDelegate != null) {
+                        mDelegate.onRoomDestroy(mRoomId);
                     }
                 }
-            } catch (Exception e) {
-                TRTCLogger.e(TAG, "group attr changed, seat compare error:" + e.getCause());
-            }
+            });
         }
-    }
 
-    private class VoiceRoomSignalListener extends V2TIMSignalingListener {
         @Override
-        public void onReceiveNewInvitation(String inviteID, String inviter, String groupId, List<String> inviteeList, String data) {
-            TRTCLogger.i(TAG, "recv new invitation: " + inviteID + " from " + inviter);
-            if (mDelegate != null) {
-                TXInviteData txInviteData = IMProtocol.parseInvitationMsg(data);
-                if (txInviteData == null) {
-                    TRTCLogger.e(TAG, "parse data error");
-                    return;
-                }
-                if (!mRoomId.equals(txInviteData.roomId)) {
-                    TRTCLogger.e(TAG, "roomId is not right");
-                    return;
+        public void onGroupAttributeChanged(final String groupID, final Map<String, String> groupAttributeMap) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (TRTCLogger.isLoggable(TAG, TRTCLogger.LEVEL_DEBUG)) {
+                        // 日志在后台线程格式化，传入副本
+                        TRTCLogger.d(TAG, "onGroupAttributeChanged: {}", new HashMap<>(groupAttributeMap));
+                    }
+                    if (!groupID.equals(mRoomId)) {
+                        return;
+                    }
+                    if (mTXRoomInfo == null) {
+                        TRTCLogger.e(TAG, "group attr changed, but room info is empty!");
+                        return;
+                    }
+                    mLastAttrMap = groupAttributeMap;
+                    // 只解析发生变化的座位
+                    List<TXSeatInfo> txSeatInfoList = mSeatStateEngine.apply(groupAttributeMap);
+                    if (txSeatInfoList != null) {
+                        notifySeatChanges(txSeatInfoList);
+                    }
+                    checkSeatClaims(groupAttributeMap);
+                    rewriteRevertedSeats();
                 }
-                mDelegate.onReceiveNewInvitation(inviteID, inviter, txInviteData.command, txInviteData.message);
-            }
+            });
         }
 
         @Override
-        public void onInviteeAccepted(String inviteID, String invitee, String data) {
-            TRTCLogger.i(TAG, "recv accept invitation: " + inviteID + " from " + invitee);
-            if (mDelegate != null) {
-                mDelegate.onInviteeAccepted(inviteID, invitee);
-            }
+        public void onReceiveNewInvitation(final String inviteID, final String inviter, final String groupId, final List<String> inviteeList, final String data) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    TRTCLogger.i(TAG, "recv new invitation: " + inviteID + " from " + inviter);
+                    if (mDelegate != null) {
+                        TXInviteData txInviteData = IMProtocol.parseInvitationMsg(data);
+                        if (txInviteData == null) {
+                            TRTCLogger.e(TAG, "parse data error");
+                            return;
+                        }
+                        if (!mRoomId.equals(txInviteData.roomId)) {
+                            TRTCLogger.e(TAG, "roomId is not right");
+                            return;
+                        }
+                        mDelegate.onReceiveNewInvitation(inviteID, inviter, txInviteData.command, txInviteData.message);
+                    }
+                }
+            });
         }
 
         @Override
-        public void onInviteeRejected(String inviteID, String invitee, String data) {
-            TRTCLogger.i(TAG, "recv reject invitation: " + inviteID + " from " + invitee);
-            if (mDelegate != null) {
-                mDelegate.onInviteeRejected(inviteID, invitee);
-            }
+        public void onInviteeAccepted(final String inviteID, final String invitee, final String data) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    TRTCLogger.i(TAG, "recv accept invitation: " + inviteID + " from " + invitee);
+                    if (mDelegate != null) {
+                        mDelegate.onInviteeAccepted(inviteID, invitee);
+                    }
+                }
+            });
         }
 
         @Override
-        public void onInvitationCancelled(String inviteID, String inviter, String data) {
-            TRTCLogger.i(TAG, "recv cancel invitation: " + inviteID + " from " + inviter);
-            if (mDelegate != null) {
-                mDelegate.onInvitationCancelled(inviteID, inviter);
-            }
+        public void onInviteeRejected(final String inviteID, final String invitee, final String data) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    TRTCLogger.i(TAG, "recv reject invitation: " + inviteID + " from " + invitee);
+                    if (mDelegate != null) {
+                        mDelegate.onInviteeRejected(inviteID, invitee);
+                    }
+                }
+            });
         }
 
         @Override
-        public void onInvitationTimeout(String inviteID, List<String> inviteeList) {
+        public void onInvitationCancelled(final String inviteID, final String inviter, final String data) {
+            runOnRoomThread(new Runnable() {
+                @Override
+                public void run() {
+                    TRTCLogger.i(TAG, "recv cancel invitation: " + inviteID + " from " + inviter);
+                    if (mDelegate != null) {
+                        mDelegate.onInvitationCancelled(inviteID, inviter);
+                    }
+                }
+            });
         }
     }
 }
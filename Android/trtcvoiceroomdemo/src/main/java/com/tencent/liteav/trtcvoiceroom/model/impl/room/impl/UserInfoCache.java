@@ -0,0 +1,175 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 用户资料缓存（LRU + 过期时间）
+ * <p>
+ * 进房成员、消息发送者、getUsersInfo 的结果都会写入缓存，查询时只有未命中的 userId 才需要走网络。
+ * 缓存里保存的是副本，get 返回的也是副本，调用方修改返回值不影响缓存。
+ */
+public class UserInfoCache {
+    private static final int  DEFAULT_MAX_SIZE = 500;
+    private static final long DEFAULT_TTL_MS   = 5 * 60 * 1000;
+
+    private static UserInfoCache sInstance;
+
+    private static class Entry {
+        final TXUserInfo userInfo;
+        final long       expireTime;
+
+        Entry(TXUserInfo userInfo, long expireTime) {
+            this.userInfo = userInfo;
+            this.expireTime = expireTime;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> mCache;
+    private       int                          mMaxSize;
+    private       long                         mTtlMs;
+    private       long                         mHitCount;
+    private       long                         mMissCount;
+
+    public static synchronized UserInfoCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new UserInfoCache(DEFAULT_MAX_SIZE, DEFAULT_TTL_MS);
+        }
+        return sInstance;
+    }
+
+    public UserInfoCache(int maxSize, long ttlMs) {
+        mMaxSize = maxSize;
+        mTtlMs = ttlMs;
+        mCache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    public synchronized void setMaxSize(int maxSize) {
+        mMaxSize = maxSize;
+        while (mCache.size() > mMaxSize) {
+            String eldest = mCache.keySet().iterator().next();
+            mCache.remove(eldest);
+        }
+    }
+
+    public synchronized void setTtl(long ttlMs) {
+        mTtlMs = ttlMs;
+    }
+
+    /**
+     * @return 命中且未过期时返回资料，否则返回 null
+     */
+    public synchronized TXUserInfo get(String userId) {
+        Entry entry = mCache.get(userId);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        if (entry.expireTime < SystemClock.elapsedRealtime()) {
+            mCache.remove(userId);
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return copy(entry.userInfo);
+    }
+
+    /**
+     * 保存完整的用户资料，例如 getUsersInfo 的结果，覆盖已有的缓存
+     */
+    public synchronized void put(TXUserInfo userInfo) {
+        if (userInfo == null || TextUtils.isEmpty(userInfo.userId)) {
+            return;
+        }
+        mCache.put(userInfo.userId, new Entry(copy(userInfo), SystemClock.elapsedRealtime() + mTtlMs));
+    }
+
+    /**
+     * 合并消息发送者、群成员等可能不完整的资料
+     * <p>
+     * 只用非空的昵称和头像更新已有的缓存，不会把完整的资料覆盖成空值；没有缓存时只保存带昵称的资料，
+     * 否则之后的查询会一直拿到空昵称，不再去 IM 拉取。
+     * 合并不延长已有缓存的过期时间，只有 {@link #put(TXUserInfo)} 保存完整资料时才重新计时。
+     */
+    public synchronized void merge(TXUserInfo userInfo) {
+        if (userInfo == null || TextUtils.isEmpty(userInfo.userId)) {
+            return;
+        }
+        Entry entry = mCache.get(userInfo.userId);
+        if (entry == null || entry.expireTime < SystemClock.elapsedRealtime()) {
+            if (!TextUtils.isEmpty(userInfo.userName)) {
+                put(userInfo);
+            }
+            return;
+        }
+        TXUserInfo merged = copy(entry.userInfo);
+        if (!TextUtils.isEmpty(userInfo.userName)) {
+            merged.userName = userInfo.userName;
+        }
+        if (!TextUtils.isEmpty(userInfo.avatarURL)) {
+            merged.avatarURL = userInfo.avatarURL;
+        }
+        mCache.put(merged.userId, new Entry(merged, entry.expireTime));
+    }
+
+    public synchronized void put(String userId, String userName, String avatarURL) {
+        TXUserInfo userInfo = new TXUserInfo();
+        userInfo.userId = userId;
+        userInfo.userName = userName;
+        userInfo.avatarURL = avatarURL;
+        put(userInfo);
+    }
+
+    private static TXUserInfo copy(TXUserInfo userInfo) {
+        TXUserInfo copy = new TXUserInfo();
+        copy.userId = userInfo.userId;
+        copy.userName = userInfo.userName;
+        copy.avatarURL = userInfo.avatarURL;
+        return copy;
+    }
+
+    public synchronized void remove(String userId) {
+        mCache.remove(userId);
+    }
+
+    public synchronized void clear() {
+        mCache.clear();
+    }
+
+    public synchronized int size() {
+        return mCache.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized void resetStats() {
+        mHitCount = 0;
+        mMissCount = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "UserInfoCache{" +
+                "size=" + mCache.size() +
+                ", maxSize=" + mMaxSize +
+                ", hit=" + mHitCount +
+                ", miss=" + mMissCount +
+                '}';
+    }
+}
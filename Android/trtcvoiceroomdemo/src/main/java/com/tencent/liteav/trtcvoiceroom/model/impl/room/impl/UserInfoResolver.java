@@ -0,0 +1,155 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.RoomMetrics;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserListCallback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 合并用户资料查询
+ * <p>
+ * 在一个很短的时间窗口内收集 userId，只发起一次批量查询，再按调用顺序把结果分发给每个请求。
+ * 即使多个批次的结果乱序返回，回调顺序也和 resolve 的调用顺序保持一致。
+ * 所有方法都需要在创建时指定的 looper 线程调用。
+ */
+public class UserInfoResolver {
+    private static final long DEFAULT_WINDOW_MS = 50;
+    // IM 单次批量拉取资料的上限
+    private static final int  MAX_BATCH_SIZE    = 100;
+
+    public interface Fetcher {
+        void fetch(List<String> userIdList, TXUserListCallback callback);
+    }
+
+    public interface ResolveCallback {
+        /**
+         * @param code     0 表示成功，失败时 userInfo 只填充 userId
+         * @param userInfo 用户资料，不为 null
+         */
+        void onResolved(int code, TXUserInfo userInfo);
+    }
+
+    private static class Request {
+        final String          userId;
+        final ResolveCallback callback;
+        final long            startNs;
+        boolean               done;
+        int                   code;
+        TXUserInfo            userInfo;
+
+        Request(String userId, ResolveCallback callback) {
+            this.userId = userId;
+            this.callback = callback;
+            this.startNs = RoomMetrics.start();
+        }
+    }
+
+    private final Fetcher             mFetcher;
+    private final Handler             mHandler;
+    private final long                mWindowMs;
+    // 所有未回调的请求，按调用顺序排列
+    private final LinkedList<Request> mQueue;
+    // 还未发出查询的请求
+    private       List<Request>       mCollecting;
+    private final Runnable            mFlushRunnable;
+
+    public UserInfoResolver(Fetcher fetcher) {
+        this(fetcher, new Handler(Looper.getMainLooper()), DEFAULT_WINDOW_MS);
+    }
+
+    public UserInfoResolver(Fetcher fetcher, Handler handler) {
+        this(fetcher, handler, DEFAULT_WINDOW_MS);
+    }
+
+    public UserInfoResolver(Fetcher fetcher, Handler handler, long windowMs) {
+        mFetcher = fetcher;
+        mHandler = handler;
+        mWindowMs = windowMs;
+        mQueue = new LinkedList<>();
+        mCollecting = new ArrayList<>();
+        mFlushRunnable = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+    }
+
+    public void resolve(String userId, ResolveCallback callback) {
+        Request request = new Request(userId, callback);
+        mQueue.add(request);
+        mCollecting.add(request);
+        if (mCollecting.size() >= MAX_BATCH_SIZE) {
+            mHandler.removeCallbacks(mFlushRunnable);
+            flush();
+        } else if (mCollecting.size() == 1) {
+            mHandler.postDelayed(mFlushRunnable, mWindowMs);
+        }
+    }
+
+    /**
+     * 丢弃所有未完成的请求，退房时调用
+     */
+    public void clear() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        mCollecting = new ArrayList<>();
+        mQueue.clear();
+    }
+
+    private void flush() {
+        if (mCollecting.isEmpty()) {
+            return;
+        }
+        final List<Request> batch = mCollecting;
+        mCollecting = new ArrayList<>();
+        Set<String> userIdSet = new LinkedHashSet<>();
+        for (Request request : batch) {
+            userIdSet.add(request.userId);
+        }
+        mFetcher.fetch(new ArrayList<>(userIdSet), new TXUserListCallback() {
+            @Override
+            public void onCallback(int code, String msg, List<TXUserInfo> list) {
+                onBatchResult(batch, code, list);
+            }
+        });
+    }
+
+    private void onBatchResult(List<Request> batch, int code, List<TXUserInfo> list) {
+        Map<String, TXUserInfo> userInfoMap = new HashMap<>();
+        if (code == 0 && list != null) {
+            for (TXUserInfo info : list) {
+                userInfoMap.put(info.userId, info);
+            }
+        }
+        for (Request request : batch) {
+            TXUserInfo info = userInfoMap.get(request.userId);
+            if (info == null) {
+                info = new TXUserInfo();
+                info.userId = request.userId;
+                request.code = (code == 0 ? -1 : code);
+            } else {
+                request.code = 0;
+            }
+            request.userInfo = info;
+            request.done = true;
+        }
+        // 按调用顺序回调，前面的请求没返回时后面的先等待
+        while (!mQueue.isEmpty() && mQueue.peek().done) {
+            Request request = mQueue.poll();
+            RoomMetrics.end(RoomMetrics.STAGE_PROFILE_LOOKUP, "resolve", request.startNs);
+            if (request.callback != null) {
+                request.callback.onResolved(request.code, request.userInfo);
+            }
+        }
+    }
+}
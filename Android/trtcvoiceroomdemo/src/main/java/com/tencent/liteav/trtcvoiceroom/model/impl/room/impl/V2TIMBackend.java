@@ -0,0 +1,400 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.content.Context;
+
+import com.tencent.imsdk.v2.V2TIMCallback;
+import com.tencent.imsdk.v2.V2TIMGroupInfo;
+import com.tencent.imsdk.v2.V2TIMGroupInfoResult;
+import com.tencent.imsdk.v2.V2TIMGroupListener;
+import com.tencent.imsdk.v2.V2TIMGroupMemberFullInfo;
+import com.tencent.imsdk.v2.V2TIMGroupMemberInfo;
+import com.tencent.imsdk.v2.V2TIMGroupMemberInfoResult;
+import com.tencent.imsdk.v2.V2TIMManager;
+import com.tencent.imsdk.v2.V2TIMMessage;
+import com.tencent.imsdk.v2.V2TIMSDKConfig;
+import com.tencent.imsdk.v2.V2TIMSDKListener;
+import com.tencent.imsdk.v2.V2TIMSignalingListener;
+import com.tencent.imsdk.v2.V2TIMSimpleMsgListener;
+import com.tencent.imsdk.v2.V2TIMUserFullInfo;
+import com.tencent.imsdk.v2.V2TIMValueCallback;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 IM SDK（V2TIMManager）的 {@link IMBackend} 实现，回调在 IM SDK 的回调线程
+ */
+public class V2TIMBackend implements IMBackend {
+    private       Listener          mListener;
+    private final SimpleMsgListener mSimpleListener = new SimpleMsgListener();
+    private final GroupListener     mGroupListener  = new GroupListener();
+    private final SignalListener    mSignalListener = new SignalListener();
+    private       Context           mContext;
+    private       boolean           mIsInitSDK;
+
+    /**
+     * 设置初始化 IM SDK 使用的 Context，需要在 {@link #initSDK(int)} 之前调用
+     */
+    public void setContext(Context context) {
+        mContext = context;
+    }
+
+    @Override
+    public boolean initSDK(int sdkAppId) {
+        if (!mIsInitSDK) {
+            mIsInitSDK = V2TIMManager.getInstance().initSDK(mContext, sdkAppId, new V2TIMSDKConfig(), new V2TIMSDKListener() {
+            });
+        }
+        return mIsInitSDK;
+    }
+
+    @Override
+    public String getLoginUser() {
+        return V2TIMManager.getInstance().getLoginUser();
+    }
+
+    @Override
+    public void login(String userId, String userSig, Callback callback) {
+        V2TIMManager.getInstance().login(userId, userSig, wrap(callback));
+    }
+
+    @Override
+    public void logout(Callback callback) {
+        V2TIMManager.getInstance().logout(wrap(callback));
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        mListener = listener;
+        if (listener != null) {
+            V2TIMManager.getInstance().setGroupListener(mGroupListener);
+            V2TIMManager.getSignalingManager().addSignalingListener(mSignalListener);
+            V2TIMManager.getInstance().addSimpleMsgListener(mSimpleListener);
+        } else {
+            V2TIMManager.getInstance().setGroupListener(null);
+            V2TIMManager.getSignalingManager().removeSignalingListener(mSignalListener);
+            V2TIMManager.getInstance().removeSimpleMsgListener(mSimpleListener);
+        }
+    }
+
+    @Override
+    public void getUsersInfo(List<String> userIdList, final ValueCallback<List<TXUserInfo>> callback) {
+        V2TIMManager.getInstance().getUsersInfo(userIdList, new V2TIMValueCallback<List<V2TIMUserFullInfo>>() {
+            @Override
+            public void onError(int code, String desc) {
+                callback.onError(code, desc);
+            }
+
+            @Override
+            public void onSuccess(List<V2TIMUserFullInfo> v2TIMUserFullInfos) {
+                List<TXUserInfo> list = new ArrayList<>();
+                if (v2TIMUserFullInfos != null) {
+                    for (V2TIMUserFullInfo info : v2TIMUserFullInfos) {
+                        TXUserInfo userInfo = new TXUserInfo();
+                        userInfo.userId = info.getUserID();
+                        userInfo.userName = info.getNickName();
+                        userInfo.avatarURL = info.getFaceUrl();
+                        list.add(userInfo);
+                    }
+                }
+                callback.onSuccess(list);
+            }
+        });
+    }
+
+    @Override
+    public void setSelfInfo(String userName, String avatarUrl, Callback callback) {
+        V2TIMUserFullInfo v2TIMUserFullInfo = new V2TIMUserFullInfo();
+        v2TIMUserFullInfo.setNickname(userName);
+        v2TIMUserFullInfo.setFaceUrl(avatarUrl);
+        V2TIMManager.getInstance().setSelfInfo(v2TIMUserFullInfo, wrap(callback));
+    }
+
+    @Override
+    public void createGroup(String groupId, String groupName, ValueCallback<String> callback) {
+        V2TIMManager.getInstance().createGroup(V2TIMManager.GROUP_TYPE_AVCHATROOM, groupId, groupName, wrap(callback));
+    }
+
+    @Override
+    public void setGroupInfo(String groupId, String groupName, String faceUrl, String introduction, Callback callback) {
+        V2TIMGroupInfo groupInfo = new V2TIMGroupInfo();
+        groupInfo.setGroupID(groupId);
+        groupInfo.setGroupName(groupName);
+        groupInfo.setFaceUrl(faceUrl);
+        groupInfo.setIntroduction(introduction);
+        V2TIMManager.getGroupManager().setGroupInfo(groupInfo, wrap(callback));
+    }
+
+    @Override
+    public void getGroupsInfo(final List<String> groupIdList, final ValueCallback<List<TXRoomInfo>> callback) {
+        V2TIMManager.getGroupManager().getGroupsInfo(groupIdList, new V2TIMValueCallback<List<V2TIMGroupInfoResult>>() {
+            @Override
+            public void onError(int code, String desc) {
+                callback.onError(code, desc);
+            }
+
+            @Override
+            public void onSuccess(List<V2TIMGroupInfoResult> v2TIMGroupInfoResults) {
+                List<TXRoomInfo> txRoomInfos = new ArrayList<>();
+                if (v2TIMGroupInfoResults != null) {
+                    for (V2TIMGroupInfoResult result : v2TIMGroupInfoResults) {
+                        V2TIMGroupInfo groupInfo = result.getGroupInfo();
+                        // 防止为空
+                        if (groupInfo == null) {
+                            continue;
+                        }
+                        TXRoomInfo txRoomInfo = new TXRoomInfo();
+                        txRoomInfo.roomId = groupInfo.getGroupID();
+                        txRoomInfo.cover = groupInfo.getFaceUrl();
+                        txRoomInfo.memberCount = groupInfo.getMemberCount();
+                        txRoomInfo.ownerId = groupInfo.getOwner();
+                        txRoomInfo.roomName = groupInfo.getGroupName();
+                        txRoomInfo.ownerName = groupInfo.getIntroduction();
+                        txRoomInfos.add(txRoomInfo);
+                    }
+                }
+                callback.onSuccess(txRoomInfos);
+            }
+        });
+    }
+
+    @Override
+    public void joinGroup(String groupId, Callback callback) {
+        V2TIMManager.getInstance().joinGroup(groupId, "", wrap(callback));
+    }
+
+    @Override
+    public void quitGroup(String groupId, Callback callback) {
+        V2TIMManager.getInstance().quitGroup(groupId, wrap(callback));
+    }
+
+    @Override
+    public void dismissGroup(String groupId, Callback callback) {
+        V2TIMManager.getInstance().dismissGroup(groupId, wrap(callback));
+    }
+
+    @Override
+    public void initGroupAttributes(String groupId, HashMap<String, String> attrMap, Callback callback) {
+        V2TIMManager.getGroupManager().initGroupAttributes(groupId, attrMap, wrap(callback));
+    }
+
+    @Override
+    public void setGroupAttributes(String groupId, HashMap<String, String> attrMap, Callback callback) {
+        V2TIMManager.getGroupManager().setGroupAttributes(groupId, attrMap, wrap(callback));
+    }
+
+    @Override
+    public void deleteGroupAttributes(String groupId, List<String> keyList, Callback callback) {
+        V2TIMManager.getGroupManager().deleteGroupAttributes(groupId, keyList, wrap(callback));
+    }
+
+    @Override
+    public void getGroupAttributes(String groupId, List<String> keyList, ValueCallback<Map<String, String>> callback) {
+        V2TIMManager.getGroupManager().getGroupAttributes(groupId, keyList, wrap(callback));
+    }
+
+    @Override
+    public void sendGroupTextMessage(String groupId, String text, Callback callback) {
+        V2TIMManager.getInstance().sendGroupTextMessage(text, groupId, V2TIMMessage.V2TIM_PRIORITY_NORMAL, wrapMessage(callback));
+    }
+
+    @Override
+    public void sendGroupCustomMessage(String groupId, byte[] data, Callback callback) {
+        V2TIMManager.getInstance().sendGroupCustomMessage(data, groupId, V2TIMMessage.V2TIM_PRIORITY_NORMAL, wrapMessage(callback));
+    }
+
+    @Override
+    public void getGroupMemberList(String groupId, long nextSeq, final ValueCallback<MemberPage> callback) {
+        V2TIMManager.getGroupManager().getGroupMemberList(groupId, V2TIMGroupMemberFullInfo.V2TIM_GROUP_MEMBER_FILTER_COMMON, nextSeq, new V2TIMValueCallback<V2TIMGroupMemberInfoResult>() {
+            @Override
+            public void onError(int code, String desc) {
+                callback.onError(code, desc);
+            }
+
+            @Override
+            public void onSuccess(V2TIMGroupMemberInfoResult v2TIMGroupMemberInfoResult) {
+                MemberPage page = new MemberPage();
+                page.memberList = new ArrayList<>();
+                if (v2TIMGroupMemberInfoResult.getMemberInfoList() != null) {
+                    for (V2TIMGroupMemberFullInfo info : v2TIMGroupMemberInfoResult.getMemberInfoList()) {
+                        page.memberList.add(toUserInfo(info));
+                    }
+                }
+                page.nextSeq = v2TIMGroupMemberInfoResult.getNextSeq();
+                callback.onSuccess(page);
+            }
+        });
+    }
+
+    @Override
+    public String invite(String invitee, String data, int timeout, Callback callback) {
+        return V2TIMManager.getSignalingManager().invite(invitee, data, timeout, wrap(callback));
+    }
+
+    @Override
+    public void accept(String inviteId, String data, Callback callback) {
+        V2TIMManager.getSignalingManager().accept(inviteId, data, wrap(callback));
+    }
+
+    @Override
+    public void reject(String inviteId, String data, Callback callback) {
+        V2TIMManager.getSignalingManager().reject(inviteId, data, wrap(callback));
+    }
+
+    @Override
+    public void cancel(String inviteId, String data, Callback callback) {
+        V2TIMManager.getSignalingManager().cancel(inviteId, data, wrap(callback));
+    }
+
+    private static TXUserInfo toUserInfo(V2TIMGroupMemberInfo member) {
+        TXUserInfo userInfo = new TXUserInfo();
+        userInfo.userId = member.getUserID();
+        userInfo.userName = member.getNickName();
+        userInfo.avatarURL = member.getFaceUrl();
+        return userInfo;
+    }
+
+    private static V2TIMCallback wrap(final Callback callback) {
+        if (callback == null) {
+            return null;
+        }
+        return new V2TIMCallback() {
+            @Override
+            public void onError(int code, String desc) {
+                callback.onError(code, desc);
+            }
+
+            @Override
+            public void onSuccess() {
+                callback.onSuccess();
+            }
+        };
+    }
+
+    private static <T> V2TIMValueCallback<T> wrap(final ValueCallback<T> callback) {
+        return new V2TIMValueCallback<T>() {
+            @Override
+            public void onError(int code, String desc) {
+                callback.onError(code, desc);
+            }
+
+            @Override
+            public void onSuccess(T t) {
+                callback.onSuccess(t);
+            }
+        };
+    }
+
+    private static V2TIMValueCallback<V2TIMMessage> wrapMessage(final Callback callback) {
+        return new V2TIMValueCallback<V2TIMMessage>() {
+            @Override
+            public void onError(int code, String desc) {
+                callback.onError(code, desc);
+            }
+
+            @Override
+            public void onSuccess(V2TIMMessage v2TIMMessage) {
+                callback.onSuccess();
+            }
+        };
+    }
+
+    private class SimpleMsgListener extends V2TIMSimpleMsgListener {
+        @Override
+        public void onRecvGroupTextMessage(String msgID, String groupID, V2TIMGroupMemberInfo sender, String text) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onRecvGroupTextMessage(groupID, toUserInfo(sender), text);
+            }
+        }
+
+        @Override
+        public void onRecvGroupCustomMessage(String msgID, String groupID, V2TIMGroupMemberInfo sender, byte[] customData) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onRecvGroupCustomMessage(groupID, toUserInfo(sender), customData);
+            }
+        }
+    }
+
+    private class GroupListener extends V2TIMGroupListener {
+        @Override
+        public void onMemberEnter(String groupID, List<V2TIMGroupMemberInfo> memberList) {
+            Listener listener = mListener;
+            if (listener == null || memberList == null) {
+                return;
+            }
+            List<TXUserInfo> userInfoList = new ArrayList<>(memberList.size());
+            for (V2TIMGroupMemberInfo member : memberList) {
+                userInfoList.add(toUserInfo(member));
+            }
+            listener.onMemberEnter(groupID, userInfoList);
+        }
+
+        @Override
+        public void onMemberLeave(String groupID, V2TIMGroupMemberInfo member) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onMemberLeave(groupID, toUserInfo(member));
+            }
+        }
+
+        @Override
+        public void onGroupDismissed(String groupID, V2TIMGroupMemberInfo opUser) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onGroupDismissed(groupID);
+            }
+        }
+
+        @Override
+        public void onGroupAttributeChanged(String groupID, Map<String, String> groupAttributeMap) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onGroupAttributeChanged(groupID, groupAttributeMap);
+            }
+        }
+    }
+
+    private class SignalListener extends V2TIMSignalingListener {
+        @Override
+        public void onReceiveNewInvitation(String inviteID, String inviter, String groupId, List<String> inviteeList, String data) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onReceiveNewInvitation(inviteID, inviter, groupId, inviteeList, data);
+            }
+        }
+
+        @Override
+        public void onInviteeAccepted(String inviteID, String invitee, String data) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onInviteeAccepted(inviteID, invitee, data);
+            }
+        }
+
+        @Override
+        public void onInviteeRejected(String inviteID, String invitee, String data) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onInviteeRejected(inviteID, invitee, data);
+            }
+        }
+
+        @Override
+        public void onInvitationCancelled(String inviteID, String inviter, String data) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onInvitationCancelled(inviteID, inviter, data);
+            }
+        }
+
+        @Override
+        public void onInvitationTimeout(String inviteID, List<String> inviteeList) {
+        }
+    }
+}
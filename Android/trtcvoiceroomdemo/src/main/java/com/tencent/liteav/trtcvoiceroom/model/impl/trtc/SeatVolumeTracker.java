@@ -0,0 +1,170 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.trtc;
+
+import com.tencent.trtc.TRTCCloudDef;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 音量合并与说话状态计算
+ * <p>
+ * TRTC 线程调用 {@link #offer(ArrayList, int)} 写入最新一帧音量，回调线程调用 {@link #drain(Listener)} 取出。
+ * 回调线程来不及处理时，旧的帧直接被新的帧覆盖；说话状态只在越过阈值时回调，方便界面做局部刷新。
+ */
+public class SeatVolumeTracker {
+    // 音量大于这个值认为正在说话
+    public static final int DEFAULT_TALK_VOLUME = 20;
+
+    public interface Listener {
+        void onUserVolumeUpdate(ArrayList<TRTCCloudDef.TRTCVolumeInfo> userVolumes, int totalVolume);
+
+        void onSeatTalkingChange(int index, boolean isTalking);
+    }
+
+    private final Object mLock = new Object();
+
+    private String[]                               mSeatUsers;
+    // 最新一帧计算出的说话状态
+    private boolean[]                              mTalking;
+    // 已经回调出去的说话状态
+    private boolean[]                              mReported;
+    private int[]                                  mChangedIndex;
+    private ArrayList<TRTCCloudDef.TRTCVolumeInfo> mLatestVolumes;
+    private int                                    mLatestTotalVolume;
+    private boolean                                mDrainPending;
+    private int                                    mTalkVolume;
+    private String                                 mSelfUserId;
+    private long                                   mDroppedFrames;
+
+    public SeatVolumeTracker() {
+        mTalkVolume = DEFAULT_TALK_VOLUME;
+        initSeats(0);
+    }
+
+    public void setSelfUserId(String userId) {
+        synchronized (mLock) {
+            mSelfUserId = userId;
+        }
+    }
+
+    public void setTalkVolume(int volume) {
+        synchronized (mLock) {
+            mTalkVolume = volume;
+        }
+    }
+
+    /**
+     * 座位上的用户发生变化时调用，换了人的座位说话状态先置为 false
+     */
+    public void setSeatUsers(List<String> userIdList) {
+        synchronized (mLock) {
+            int size = userIdList.size();
+            if (size != mSeatUsers.length) {
+                initSeats(size);
+            }
+            for (int i = 0; i < size; i++) {
+                String userId = userIdList.get(i);
+                if (userId == null ? mSeatUsers[i] != null : !userId.equals(mSeatUsers[i])) {
+                    mSeatUsers[i] = userId;
+                    mTalking[i] = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入一帧音量
+     *
+     * @return 需要调度一次 {@link #drain(Listener)} 时返回 true，上一次的 drain 还没执行时返回 false
+     */
+    public boolean offer(ArrayList<TRTCCloudDef.TRTCVolumeInfo> userVolumes, int totalVolume) {
+        synchronized (mLock) {
+            for (int i = 0; i < mTalking.length; i++) {
+                mTalking[i] = false;
+            }
+            if (userVolumes != null) {
+                for (TRTCCloudDef.TRTCVolumeInfo info : userVolumes) {
+                    if (info.volume <= mTalkVolume) {
+                        continue;
+                    }
+                    // 本地用户的 userId 为空
+                    String userId = info.userId == null || info.userId.isEmpty() ? mSelfUserId : info.userId;
+                    if (userId == null || userId.isEmpty()) {
+                        continue;
+                    }
+                    for (int i = 0; i < mSeatUsers.length; i++) {
+                        if (userId.equals(mSeatUsers[i])) {
+                            mTalking[i] = true;
+                        }
+                    }
+                }
+            }
+            if (mLatestVolumes != null) {
+                mDroppedFrames++;
+            }
+            mLatestVolumes = userVolumes;
+            mLatestTotalVolume = totalVolume;
+            if (mDrainPending) {
+                return false;
+            }
+            mDrainPending = true;
+            return true;
+        }
+    }
+
+    /**
+     * 回调最新一帧音量，以及上次回调之后说话状态发生变化的座位
+     */
+    public void drain(Listener listener) {
+        ArrayList<TRTCCloudDef.TRTCVolumeInfo> volumes;
+        int                                    totalVolume;
+        int[]                                  changedIndex;
+        boolean[]                              reported;
+        int                                    changedCount = 0;
+        synchronized (mLock) {
+            mDrainPending = false;
+            volumes = mLatestVolumes;
+            totalVolume = mLatestTotalVolume;
+            mLatestVolumes = null;
+            // 座位数变化时数组会重新分配，这里拿到的引用不会再被其他线程修改
+            changedIndex = mChangedIndex;
+            reported = mReported;
+            for (int i = 0; i < mTalking.length; i++) {
+                if (mTalking[i] != mReported[i]) {
+                    mReported[i] = mTalking[i];
+                    mChangedIndex[changedCount++] = i;
+                }
+            }
+        }
+        if (listener == null) {
+            return;
+        }
+        if (volumes != null) {
+            listener.onUserVolumeUpdate(volumes, totalVolume);
+        }
+        for (int i = 0; i < changedCount; i++) {
+            listener.onSeatTalkingChange(changedIndex[i], reported[changedIndex[i]]);
+        }
+    }
+
+    public long getDroppedFrames() {
+        synchronized (mLock) {
+            return mDroppedFrames;
+        }
+    }
+
+    public void reset() {
+        synchronized (mLock) {
+            initSeats(0);
+            mLatestVolumes = null;
+            mDroppedFrames = 0;
+        }
+    }
+
+    private void initSeats(int size) {
+        mSeatUsers = new String[size];
+        mTalking = new boolean[size];
+        mReported = new boolean[size];
+        mChangedIndex = new int[size];
+    }
+}
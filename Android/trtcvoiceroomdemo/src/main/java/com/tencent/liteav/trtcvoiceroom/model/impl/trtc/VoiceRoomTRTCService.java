@@ -19,6 +19,8 @@ import java.util.ArrayList;
 public class VoiceRoomTRTCService extends TRTCCloudListener {
     private static final String TAG           = "VoiceRoomTRTCService";
     private static final long   PLAY_TIME_OUT = 5000;
+    // 默认的音量回调间隔
+    private static final int    DEFAULT_AUDIO_EVALUATION_INTERVAL = 300;
 
     private static VoiceRoomTRTCService sInstance;
 
@@ -32,6 +34,8 @@ public class VoiceRoomTRTCService extends TRTCCloudListener {
     private Handler                      mMainHandler;
     private TXCallback                   mEnterRoomCallback;
     private TXCallback                   mExitRoomCallback;
+    private int                          mAudioEvaluationInterval = DEFAULT_AUDIO_EVALUATION_INTERVAL;
+    private boolean                      mIsAudioEvaluationEnable;
 
     public static synchronized VoiceRoomTRTCService getInstance() {
         if (sInstance == null) {
@@ -47,6 +51,13 @@ public class VoiceRoomTRTCService extends TRTCCloudListener {
         mMainHandler = new Handler(Looper.getMainLooper());
     }
 
+    /**
+     * TRTC 的回调默认在主线程，这里可以指定回调所在的线程
+     */
+    public void setListenerHandler(Handler handler) {
+        mTRTCCloud.setListenerHandler(handler);
+    }
+
     public void setDelegate(VoiceRoomTRTCServiceDelegate delegate) {
         TRTCLogger.i(TAG, "init delegate:" + delegate);
         mDelegate = delegate;
@@ -145,7 +156,7 @@ public class VoiceRoomTRTCService extends TRTCCloudListener {
 
     @Override
     public void onRemoteUserEnterRoom(String userId) {
-        TRTCLogger.i(TAG, "on user enter, user id:" + userId);
+        TRTCLogger.i(TAG, "on user enter, user id:{}", userId);
         if (mDelegate != null) {
             mDelegate.onTRTCAnchorEnter(userId);
         }
@@ -153,7 +164,7 @@ public class VoiceRoomTRTCService extends TRTCCloudListener {
 
     @Override
     public void onRemoteUserLeaveRoom(String userId, int i) {
-        TRTCLogger.i(TAG, "on user exit, user id:" + userId);
+        TRTCLogger.i(TAG, "on user exit, user id:{}", userId);
         if (mDelegate != null) {
             mDelegate.onTRTCAnchorExit(userId);
         }
@@ -161,7 +172,7 @@ public class VoiceRoomTRTCService extends TRTCCloudListener {
 
     @Override
     public void onUserAudioAvailable(String userId, boolean available) {
-        TRTCLogger.i(TAG, "on user audio available, user id:" + userId + " available:" + available);
+        TRTCLogger.i(TAG, "on user audio available, user id:{} available:{}", userId, available);
         if (mDelegate != null) {
             mDelegate.onTRTCAudioAvailable(userId, available);
         }
@@ -243,7 +254,20 @@ public class VoiceRoomTRTCService extends TRTCCloudListener {
     }
 
     public void enableAudioEvaluation(boolean enable) {
-        mTRTCCloud.enableAudioVolumeEvaluation(enable ? 300 : 0);
+        mIsAudioEvaluationEnable = enable;
+        mTRTCCloud.enableAudioVolumeEvaluation(enable ? mAudioEvaluationInterval : 0);
+    }
+
+    /**
+     * 设置音量回调间隔，已经开启音量回调时立即生效
+     *
+     * @param intervalMs 回调间隔，单位毫秒，小于等于 0 时关闭音量回调
+     */
+    public void setAudioEvaluationInterval(int intervalMs) {
+        mAudioEvaluationInterval = Math.max(intervalMs, 0);
+        if (mIsAudioEvaluationEnable && mTRTCCloud != null) {
+            mTRTCCloud.enableAudioVolumeEvaluation(mAudioEvaluationInterval);
+        }
     }
 
     public TXAudioEffectManager getAudioEffectManager() {
@@ -49,6 +49,8 @@ public class VoiceRoomListFragment extends Fragment implements SwipeRefreshLayou
     private RecyclerView       mListRv;
     private TextView           mListviewEmptyTv;
     private ImageView          mCreateRoomBtn;
+    // 已经用网络请求的结果刷新过列表，之后不再用缓存覆盖
+    private boolean            mLoadedFromNetwork;
 
     public static VoiceRoomListFragment newInstance() {
         Bundle                args     = new Bundle();
@@ -62,6 +64,7 @@ public class VoiceRoomListFragment extends Fragment implements SwipeRefreshLayou
                              Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.trtcvoiceroom_fragment_room_list, container, false);
         initView(view);
+        getCachedRoomList();
         getRoomList();
         return view;
     }
@@ -136,7 +139,38 @@ public class VoiceRoomListFragment extends Fragment implements SwipeRefreshLayou
     }
 
     /**
-     * 刷新直播列表
+     * 先展示上次的直播列表，getRoomList 返回后再更新
+     */
+    private void getCachedRoomList() {
+        TRTCVoiceRoom.sharedInstance(getActivity()).getCachedRoomInfoList(new TRTCVoiceRoomCallback.RoomInfoCallback() {
+            @Override
+            public void onCallback(int code, String msg, List<TRTCVoiceRoomDef.RoomInfo> list) {
+                // 没有缓存，或者网络请求已经先返回了
+                if (code != 0 || list == null || list.isEmpty() || mLoadedFromNetwork) {
+                    return;
+                }
+                updateRoomList(list);
+                refreshView();
+            }
+        });
+    }
+
+    private void updateRoomList(List<TRTCVoiceRoomDef.RoomInfo> list) {
+        mRoomEntityList.clear();
+        for (TRTCVoiceRoomDef.RoomInfo roomInfo : list) {
+            RoomEntity entity = new RoomEntity();
+            entity.anchorId = roomInfo.ownerId;
+            entity.anchorName = roomInfo.ownerName;
+            entity.coverUrl = roomInfo.coverUrl;
+            entity.roomId = String.valueOf(roomInfo.roomId);
+            entity.roomName = roomInfo.roomName;
+            entity.audiencesNum = roomInfo.memberCount;
+            mRoomEntityList.add(entity);
+        }
+    }
+
+    /**
+     * 刷新直播列表，刷新间隔内查询过的房间资料直接使用组件内的缓存
      */
     private void getRoomList() {
         mSwipeRefreshLayout.setRefreshing(true);
@@ -158,19 +192,13 @@ public class VoiceRoomListFragment extends Fragment implements SwipeRefreshLayou
                         @Override
                         public void onCallback(int code, String msg, List<TRTCVoiceRoomDef.RoomInfo> list) {
                             if (code == 0) {
-                                mRoomEntityList.clear();
-                                for (TRTCVoiceRoomDef.RoomInfo roomInfo : list) {
-                                    RoomEntity entity = new RoomEntity();
-                                    entity.anchorId = roomInfo.ownerId;
-                                    entity.anchorName = roomInfo.ownerName;
-                                    entity.coverUrl = roomInfo.coverUrl;
-                                    entity.roomId = String.valueOf(roomInfo.roomId);
-                                    entity.roomName = roomInfo.roomName;
-                                    entity.audiencesNum = roomInfo.memberCount;
-                                    mRoomEntityList.add(entity);
-                                }
-                                mRoomListViewAdapter.notifyDataSetChanged();
+                                mLoadedFromNetwork = true;
+                                updateRoomList(list);
                             } else {
+                                // 刷新失败时保留当前的列表，没有列表时才使用组件缓存的房间资料
+                                if (mRoomEntityList.isEmpty() && list != null && !list.isEmpty()) {
+                                    updateRoomList(list);
+                                }
                                 ToastUtils.showLong("组件获取列表失败:" + msg);
                             }
                             mSwipeRefreshLayout.setRefreshing(false);
@@ -178,9 +206,10 @@ public class VoiceRoomListFragment extends Fragment implements SwipeRefreshLayou
                         }
                     });
                 } else {
+                    mLoadedFromNetwork = true;
+                    mRoomEntityList.clear();
                     mSwipeRefreshLayout.setRefreshing(false);
                     refreshView();
-                    mRoomEntityList.clear();
                 }
             }
 
@@ -26,6 +26,7 @@ import java.util.Map;
 
 public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements SelectMemberView.onSelectedCallback {
     public static final int ERROR_ROOM_ID_EXIT = -1301;
+    private static final int AUDIENCE_PAGE_SIZE = 20;
 
     private List<MemberEntity>          mMemberEntityList;
     private Map<String, MemberEntity>   mMemberEntityMap;
@@ -34,9 +35,15 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
     // map for invite audience
     private Map<String, SeatInvitation> mPickSeatInvitationMap;
     private boolean                     mIsEnterRoom;
+    private TRTCVoiceRoomDef.AudiencePager mAudiencePager;
 
     public static void createRoom(Context context, String roomName, String userId,
                                   String userName, String userAvatar, String coverUrl, int audioQuality, boolean needRequest) {
+        createRoom(context, roomName, userId, userName, userAvatar, coverUrl, audioQuality, needRequest, DEFAULT_SEAT_SIZE);
+    }
+
+    public static void createRoom(Context context, String roomName, String userId,
+                                  String userName, String userAvatar, String coverUrl, int audioQuality, boolean needRequest, int seatCount) {
         Intent intent = new Intent(context, VoiceRoomAnchorActivity.class);
         intent.putExtra(VOICEROOM_ROOM_NAME, roomName);
         intent.putExtra(VOICEROOM_USER_ID, userId);
@@ -45,6 +52,7 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
         intent.putExtra(VOICEROOM_AUDIO_QUALITY, audioQuality);
         intent.putExtra(VOICEROOM_ROOM_COVER, coverUrl);
         intent.putExtra(VOICEROOM_NEED_REQUEST, needRequest);
+        intent.putExtra(VOICEROOM_SEAT_COUNT, seatCount);
         context.startActivity(intent);
     }
 
@@ -103,6 +111,10 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
             }
         });
         mTRTCVoiceRoom.setDelegate(null);
+        if (mAudiencePager != null) {
+            mAudiencePager.cancel();
+            mAudiencePager = null;
+        }
     }
 
     /**
@@ -117,6 +129,14 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
         mVoiceRoomSeatAdapter.notifyDataSetChanged();
         mViewSelectMember.setList(mMemberEntityList);
         mViewSelectMember.setOnSelectedCallback(this);
+        mViewSelectMember.setOnLoadMoreListener(new SelectMemberView.OnLoadMoreListener() {
+            @Override
+            public void onLoadMore() {
+                if (mAudiencePager != null && mAudiencePager.hasMore()) {
+                    mAudiencePager.loadNextPage();
+                }
+            }
+        });
         //刷新界面的按钮
         mBtnAudio.setActivated(true);
         mBtnMic.setActivated(true);
@@ -152,7 +172,7 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
         final TRTCVoiceRoomDef.RoomParam roomParam = new TRTCVoiceRoomDef.RoomParam();
         roomParam.roomName = mRoomName;
         roomParam.needRequest = mNeedRequest;
-        roomParam.seatCount = MAX_SEAT_SIZE;
+        roomParam.seatCount = mSeatCount;
         roomParam.coverUrl = mRoomCover;
         //        roomParam.coverUrl = ;
         mTRTCVoiceRoom.createRoom(mRoomId, roomParam, new TRTCVoiceRoomCallback.ActionCallback() {
@@ -170,10 +190,15 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
     }
 
     private void getAudienceList() {
-        mTRTCVoiceRoom.getUserInfoList(null, new TRTCVoiceRoomCallback.UserListCallback() {
+        if (mAudiencePager != null) {
+            mAudiencePager.cancel();
+        }
+        // 分页拉取观众，先展示第一页，滑动到底部再加载下一页
+        mAudiencePager = mTRTCVoiceRoom.getAudienceListPaged(AUDIENCE_PAGE_SIZE, new TRTCVoiceRoomCallback.AudiencePageCallback() {
             @Override
-            public void onCallback(int code, String msg, List<TRTCVoiceRoomDef.UserInfo> list) {
+            public void onPage(int code, String msg, List<TRTCVoiceRoomDef.UserInfo> list, boolean hasMore) {
                 if (code == 0) {
+                    int oldSize = mMemberEntityList.size();
                     for (TRTCVoiceRoomDef.UserInfo userInfo : list) {
                         if (userInfo.userId.equals(mSelfUserId)) {
                             continue;
@@ -188,6 +213,7 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
                             mMemberEntityList.add(memberEntity);
                         }
                     }
+                    mViewSelectMember.notifyItemRangeInserted(oldSize, mMemberEntityList.size() - oldSize);
                 }
             }
         });
@@ -285,9 +311,9 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
         if (!mMemberEntityMap.containsKey(memberEntity.userId)) {
             mMemberEntityMap.put(memberEntity.userId, memberEntity);
             mMemberEntityList.add(memberEntity);
-        }
-        if (mViewSelectMember != null) {
-            mViewSelectMember.notifyDataSetChanged();
+            if (mViewSelectMember != null) {
+                mViewSelectMember.notifyItemRangeInserted(mMemberEntityList.size() - 1, 1);
+            }
         }
     }
 
@@ -296,34 +322,50 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
         super.onAudienceExit(userInfo);
         MemberEntity entity = mMemberEntityMap.remove(userInfo.userId);
         if (entity != null) {
-            mMemberEntityList.remove(entity);
-        }
-        if (mViewSelectMember != null) {
-            mViewSelectMember.notifyDataSetChanged();
+            int position = mMemberEntityList.indexOf(entity);
+            if (position >= 0) {
+                mMemberEntityList.remove(position);
+                if (mViewSelectMember != null) {
+                    mViewSelectMember.notifyItemRemoved(position);
+                }
+            }
         }
     }
 
     @Override
     public void onAnchorEnterSeat(int index, TRTCVoiceRoomDef.UserInfo user) {
         super.onAnchorEnterSeat(index, user);
-        MemberEntity entity = mMemberEntityMap.get(user.userId);
-        if (entity != null) {
-            entity.type = MemberEntity.TYPE_IN_SEAT;
-        }
-        if (mViewSelectMember != null) {
-            mViewSelectMember.notifyDataSetChanged();
-        }
+        updateMemberType(user.userId, MemberEntity.TYPE_IN_SEAT);
     }
 
     @Override
     public void onAnchorLeaveSeat(int index, TRTCVoiceRoomDef.UserInfo user) {
         super.onAnchorLeaveSeat(index, user);
-        MemberEntity entity = mMemberEntityMap.get(user.userId);
-        if (entity != null) {
-            entity.type = MemberEntity.TYPE_IDEL;
+        updateMemberType(user.userId, MemberEntity.TYPE_IDEL);
+    }
+
+    @Override
+    public void onSeatBatchChange(List<TRTCVoiceRoomDef.SeatChange> changeList) {
+        super.onSeatBatchChange(changeList);
+        for (TRTCVoiceRoomDef.SeatChange change : changeList) {
+            if (change.userInfo == null) {
+                continue;
+            }
+            if (change.type == TRTCVoiceRoomDef.SeatChange.TYPE_TAKE) {
+                updateMemberType(change.userInfo.userId, MemberEntity.TYPE_IN_SEAT);
+            } else if (change.type == TRTCVoiceRoomDef.SeatChange.TYPE_LEAVE) {
+                updateMemberType(change.userInfo.userId, MemberEntity.TYPE_IDEL);
+            }
         }
-        if (mViewSelectMember != null) {
-            mViewSelectMember.notifyDataSetChanged();
+    }
+
+    private void updateMemberType(String userId, int type) {
+        MemberEntity entity = mMemberEntityMap.get(userId);
+        if (entity != null) {
+            entity.type = type;
+            if (mViewSelectMember != null) {
+                mViewSelectMember.notifyItemTypeChanged(entity);
+            }
         }
     }
 
@@ -342,7 +384,10 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
                 public void onCallback(int code, String msg) {
                     if (code == 0) {
                         entity.type = MsgEntity.TYPE_AGREED;
-                        mMsgListAdapter.notifyDataSetChanged();
+                        int index = mMsgEntityList.indexOfInvite(entity.invitedId);
+                        if (index >= 0) {
+                            notifyMsgTypeChanged(index);
+                        }
                     } else {
                         ToastUtils.showShort(getString(R.string.trtcvoiceroom_accept_failed, code));
                     }
@@ -369,14 +414,12 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
         msgEntity.type = MsgEntity.TYPE_WAIT_AGREE;
         int seatIndex = Integer.parseInt(content);
         msgEntity.content = getString(R.string.trtcvoiceroom_request_seat, seatIndex);
-        mMsgEntityList.add(msgEntity);
+        addMsgEntity(msgEntity);
         if (memberEntity != null) {
             memberEntity.type = MemberEntity.TYPE_WAIT_AGREE;
+            mViewSelectMember.notifyItemTypeChanged(memberEntity);
         }
         mTakeSeatInvitationMap.put(inviter, inviteId);
-        mViewSelectMember.notifyDataSetChanged();
-        mMsgListAdapter.notifyDataSetChanged();
-        mRvImMsg.smoothScrollToPosition(mMsgListAdapter.getItemCount());
     }
 
     /**
@@ -400,38 +443,36 @@ public class VoiceRoomAnchorActivity extends VoiceRoomBaseActivity implements Se
             if (inviteId == null) {
                 ToastUtils.showLong(R.string.trtcvoiceroom_req_exp);
                 memberEntity.type = MemberEntity.TYPE_IDEL;
-                mViewSelectMember.notifyDataSetChanged();
+                mViewSelectMember.notifyItemTypeChanged(memberEntity);
                 return;
             }
             mTRTCVoiceRoom.acceptInvitation(inviteId, new TRTCVoiceRoomCallback.ActionCallback() {
                 @Override
                 public void onCallback(int code, String msg) {
                     if (code == 0) {
-                        for (MsgEntity msgEntity : mMsgEntityList) {
-                            if (msgEntity.userId != null && msgEntity.userId.equals(memberEntity.userId)) {
+                        for (int position : mMsgEntityList.indexOfUserInvites(memberEntity.userId)) {
+                            MsgEntity msgEntity = mMsgEntityList.get(position);
+                            if (msgEntity.type != MsgEntity.TYPE_AGREED) {
                                 msgEntity.type = MsgEntity.TYPE_AGREED;
-                                break;
+                                notifyMsgTypeChanged(position);
                             }
                         }
-                        mMsgListAdapter.notifyDataSetChanged();
                     } else {
                         ToastUtils.showShort(R.string.trtcvoiceroom_accept_failed, code);
                         memberEntity.type = MemberEntity.TYPE_IDEL;
-                        mViewSelectMember.notifyDataSetChanged();
+                        mViewSelectMember.notifyItemTypeChanged(memberEntity);
                     }
                 }
             });
             // 这里也清空一下msg list里面对应的观众信息
-            for (MsgEntity msgEntity : mMsgEntityList) {
-                if (msgEntity.userId == null) {
-                    continue;
-                }
-                if (msgEntity.userId.equals(memberEntity.userId)) {
+            for (int position : mMsgEntityList.indexOfUserInvites(memberEntity.userId)) {
+                MsgEntity msgEntity = mMsgEntityList.get(position);
+                mTakeSeatInvitationMap.remove(msgEntity.invitedId);
+                if (msgEntity.type != MsgEntity.TYPE_AGREED) {
                     msgEntity.type = MsgEntity.TYPE_AGREED;
-                    mTakeSeatInvitationMap.remove(msgEntity.invitedId);
+                    notifyMsgTypeChanged(position);
                 }
             }
-            mMsgListAdapter.notifyDataSetChanged();
             return;
         }
 
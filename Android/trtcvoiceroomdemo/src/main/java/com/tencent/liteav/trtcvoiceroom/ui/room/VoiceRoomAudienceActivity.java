@@ -201,8 +201,8 @@ public class VoiceRoomAudienceActivity extends VoiceRoomBaseActivity {
             mTRTCVoiceRoom.enterSeat(changeSeatIndexToModelIndex(itemPos), new TRTCVoiceRoomCallback.ActionCallback() {
                 @Override
                 public void onCallback(int code, String msg) {
-                    if (code == 0) {
-
+                    if (code == TRTCVoiceRoomDef.ERR_SEAT_LOST_RACE) {
+                        ToastUtils.showShort(R.string.trtcvoiceroom_seat_lost_race);
                     }
                 }
             });
@@ -273,8 +273,8 @@ public class VoiceRoomAudienceActivity extends VoiceRoomBaseActivity {
                 mTRTCVoiceRoom.enterSeat(changeSeatIndexToModelIndex(seatIndex), new TRTCVoiceRoomCallback.ActionCallback() {
                     @Override
                     public void onCallback(int code, String msg) {
-                        if (code == 0) {
-
+                        if (code == TRTCVoiceRoomDef.ERR_SEAT_LOST_RACE) {
+                            ToastUtils.showShort(R.string.trtcvoiceroom_seat_lost_race);
                         }
                     }
                 });
@@ -291,9 +291,7 @@ public class VoiceRoomAudienceActivity extends VoiceRoomBaseActivity {
     public void onAnchorEnterSeat(int index, TRTCVoiceRoomDef.UserInfo user) {
         super.onAnchorEnterSeat(index, user);
         if (user.userId.equals(mSelfUserId)) {
-            mCurrentRole = TRTCCloudDef.TRTCRoleAnchor;
-            mSelfSeatIndex = index;
-            refreshView();
+            updateSelfSeat(TRTCCloudDef.TRTCRoleAnchor, index);
         }
     }
 
@@ -301,12 +299,31 @@ public class VoiceRoomAudienceActivity extends VoiceRoomBaseActivity {
     public void onAnchorLeaveSeat(int index, TRTCVoiceRoomDef.UserInfo user) {
         super.onAnchorLeaveSeat(index, user);
         if (user.userId.equals(mSelfUserId)) {
-            mCurrentRole = TRTCCloudDef.TRTCRoleAudience;
-            mSelfSeatIndex = -1;
-            refreshView();
+            updateSelfSeat(TRTCCloudDef.TRTCRoleAudience, -1);
         }
     }
 
+    @Override
+    public void onSeatBatchChange(List<TRTCVoiceRoomDef.SeatChange> changeList) {
+        super.onSeatBatchChange(changeList);
+        for (TRTCVoiceRoomDef.SeatChange change : changeList) {
+            if (change.userInfo == null || !change.userInfo.userId.equals(mSelfUserId)) {
+                continue;
+            }
+            if (change.type == TRTCVoiceRoomDef.SeatChange.TYPE_TAKE) {
+                updateSelfSeat(TRTCCloudDef.TRTCRoleAnchor, change.index);
+            } else if (change.type == TRTCVoiceRoomDef.SeatChange.TYPE_LEAVE) {
+                updateSelfSeat(TRTCCloudDef.TRTCRoleAudience, -1);
+            }
+        }
+    }
+
+    private void updateSelfSeat(int role, int seatIndex) {
+        mCurrentRole = role;
+        mSelfSeatIndex = seatIndex;
+        refreshView();
+    }
+
     @Override
     public void onRoomDestroy(String roomId) {
         super.onRoomDestroy(roomId);
@@ -30,11 +30,13 @@ import com.tencent.liteav.trtcvoiceroom.ui.widget.InputTextMsgDialog;
 import com.tencent.liteav.trtcvoiceroom.ui.widget.SelectMemberView;
 import com.tencent.liteav.trtcvoiceroom.ui.widget.msg.MsgEntity;
 import com.tencent.liteav.trtcvoiceroom.ui.widget.msg.MsgListAdapter;
+import com.tencent.liteav.trtcvoiceroom.ui.widget.msg.MsgStore;
 import com.tencent.trtc.TRTCCloudDef;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,7 +50,7 @@ import static com.tencent.liteav.trtcvoiceroom.model.TRTCVoiceRoomDef.SeatInfo.S
 public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoomSeatAdapter.OnItemClickListener, TRTCVoiceRoomDelegate, InputTextMsgDialog.OnTextSendListener, MsgListAdapter.OnItemClickListener {
     protected static final String TAG = VoiceRoomBaseActivity.class.getName();
 
-    protected static final int    MAX_SEAT_SIZE           = 7;
+    protected static final int    DEFAULT_SEAT_SIZE       = 7;
     protected static final String VOICEROOM_ROOM_ID       = "room_id";
     protected static final String VOICEROOM_ROOM_NAME     = "room_name";
     protected static final String VOICEROOM_USER_NAME     = "user_name";
@@ -80,6 +82,8 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
     protected AppCompatImageButton      mBtnAudio;
     protected SelectMemberView          mViewSelectMember;
     protected InputTextMsgDialog        mInputTextMsgDialog;
+    protected GridLayoutManager         mSeatLayoutManager;
+    protected int                       mSeatCount;
     protected int                       mRoomId;
     protected String                    mRoomName;
     protected String                    mUserName;
@@ -88,7 +92,7 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
     protected String                    mMainSeatUserId;
     protected boolean                   mNeedRequest;
     protected int                       mAudioQuality;
-    protected List<MsgEntity>           mMsgEntityList;
+    protected MsgStore                  mMsgEntityList;
     protected MsgListAdapter            mMsgListAdapter;
     protected ConfirmDialogFragment     mConfirmDialogFragment;
 
@@ -171,7 +175,7 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
         mUserAvatar = intent.getStringExtra(VOICEROOM_USER_AVATAR);
         mRoomCover = intent.getStringExtra(VOICEROOM_ROOM_COVER);
         mAudioQuality = intent.getIntExtra(VOICEROOM_AUDIO_QUALITY, TRTCCloudDef.TRTC_AUDIO_QUALITY_DEFAULT);
-        //        mSeatCount = intent.getIntExtra(VOICEROOM_SEAT_COUNT);
+        mSeatCount = intent.getIntExtra(VOICEROOM_SEAT_COUNT, DEFAULT_SEAT_SIZE);
         mTRTCVoiceRoom = TRTCVoiceRoom.sharedInstance(this);
         mTRTCVoiceRoom.setDelegate(this);
     }
@@ -190,10 +194,10 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
         mBtnAudio = (AppCompatImageButton) findViewById(R.id.btn_audio);
         mViewSelectMember = new SelectMemberView(this);
         mConfirmDialogFragment = new ConfirmDialogFragment();
-        GridLayoutManager gridLayoutManager = new GridLayoutManager(this, 3);
+        mSeatLayoutManager = new GridLayoutManager(this, 3);
         mInputTextMsgDialog = new InputTextMsgDialog(this, R.style.TRTCVoiceRoomInputDialog);
         mInputTextMsgDialog.setmOnTextSendListener(this);
-        mMsgEntityList = new ArrayList<>();
+        mMsgEntityList = new MsgStore();
         mToolbar.setNavigationOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -206,12 +210,39 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
         mRvImMsg.setAdapter(mMsgListAdapter);
 
         mVoiceRoomSeatEntityList = new ArrayList<>();
-        for (int i = 0; i < MAX_SEAT_SIZE - 1; i++) {
-            mVoiceRoomSeatEntityList.add(new VoiceRoomSeatEntity());
-        }
         mVoiceRoomSeatAdapter = new VoiceRoomSeatAdapter(this, mVoiceRoomSeatEntityList, this);
-        mRvSeat.setLayoutManager(gridLayoutManager);
+        mRvSeat.setLayoutManager(mSeatLayoutManager);
         mRvSeat.setAdapter(mVoiceRoomSeatAdapter);
+        // 先按默认座位数占位，进房后按房间实际的座位数调整
+        resizeSeatList(DEFAULT_SEAT_SIZE);
+    }
+
+    /**
+     * 按房间的座位数调整座位区域，第一个座位是房主，不在列表里
+     */
+    protected void resizeSeatList(int seatCount) {
+        int size    = Math.max(seatCount - 1, 0);
+        int oldSize = mVoiceRoomSeatEntityList.size();
+        if (size == oldSize) {
+            return;
+        }
+        if (size > oldSize) {
+            for (int i = oldSize; i < size; i++) {
+                mVoiceRoomSeatEntityList.add(new VoiceRoomSeatEntity());
+            }
+            mVoiceRoomSeatAdapter.notifyItemRangeInserted(oldSize, size - oldSize);
+        } else {
+            mVoiceRoomSeatEntityList.subList(size, oldSize).clear();
+            mVoiceRoomSeatAdapter.notifyItemRangeRemoved(size, oldSize - size);
+        }
+        // 座位多时每行多放几个，座位区域超过最大高度后在区域内滚动
+        if (size <= 6) {
+            mSeatLayoutManager.setSpanCount(3);
+        } else if (size <= 20) {
+            mSeatLayoutManager.setSpanCount(4);
+        } else {
+            mSeatLayoutManager.setSpanCount(5);
+        }
     }
 
     /**
@@ -270,24 +301,38 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                if (mMsgEntityList.size() > 1000) {
-                    while (mMsgEntityList.size() > 900) {
-                        mMsgEntityList.remove(0);
-                    }
-                }
-                mMsgEntityList.add(entity);
-                mMsgListAdapter.notifyDataSetChanged();
-                mRvImMsg.smoothScrollToPosition(mMsgListAdapter.getItemCount());
+                addMsgEntity(entity);
             }
         });
     }
 
+    /**
+     * 追加一条消息，超过容量时最早的消息会被挤掉，只刷新变化的部分
+     */
+    protected void addMsgEntity(MsgEntity entity) {
+        if (mMsgEntityList.add(entity)) {
+            mMsgListAdapter.notifyItemRemoved(0);
+        }
+        mMsgListAdapter.notifyItemInserted(mMsgEntityList.size() - 1);
+        mRvImMsg.smoothScrollToPosition(mMsgListAdapter.getItemCount());
+    }
+
+    /**
+     * 消息的状态变化时调用，只刷新同意按钮
+     */
+    protected void notifyMsgTypeChanged(int position) {
+        mMsgListAdapter.notifyItemChanged(position, MsgListAdapter.PAYLOAD_TYPE);
+    }
+
     public void resetSeatView() {
         mSeatUserSet.clear();
-        for (VoiceRoomSeatEntity entity : mVoiceRoomSeatEntityList) {
-            entity.isUsed = false;
+        for (int i = 0; i < mVoiceRoomSeatEntityList.size(); i++) {
+            VoiceRoomSeatEntity entity = mVoiceRoomSeatEntityList.get(i);
+            if (entity.isUsed) {
+                entity.isUsed = false;
+                mVoiceRoomSeatAdapter.notifyItemChanged(i);
+            }
         }
-        mVoiceRoomSeatAdapter.notifyDataSetChanged();
     }
 
     /**
@@ -329,6 +374,7 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
     @Override
     public void onSeatListChange(final List<TRTCVoiceRoomDef.SeatInfo> seatInfoList) {
         //先刷一遍界面
+        resizeSeatList(seatInfoList.size());
         final List<String> userids = new ArrayList<>();
         for (int i = 0; i < seatInfoList.size(); i++) {
             TRTCVoiceRoomDef.SeatInfo newSeatInfo = seatInfoList.get(i);
@@ -337,17 +383,33 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
                 if (mMainSeatUserId == null || !mMainSeatUserId.equals(newSeatInfo.userId)) {
                     //主播上线啦
                     mMainSeatUserId = newSeatInfo.userId;
-                    userids.add(newSeatInfo.userId);
-                    mTvName.setText(R.string.trtcvoiceroom_fetching_host_info);
+                    // 缓存里有主播资料时直接显示，不用等网络
+                    TRTCVoiceRoomDef.UserInfo cachedInfo = mTRTCVoiceRoom.getCachedUserInfo(newSeatInfo.userId);
+                    if (cachedInfo != null && newSeatInfo.status == STATUS_USED) {
+                        showHostInfo(cachedInfo);
+                    } else {
+                        userids.add(newSeatInfo.userId);
+                        mTvName.setText(R.string.trtcvoiceroom_fetching_host_info);
+                    }
                 }
                 continue;
             }
             // 接下来是座位区域的列表
             VoiceRoomSeatEntity oldSeatEntity = mVoiceRoomSeatEntityList.get(i - 1);
-            if (newSeatInfo.userId != null && !newSeatInfo.userId.equals(oldSeatEntity.userId)) {
+            boolean             oldUsed       = oldSeatEntity.isUsed;
+            boolean             oldClose      = oldSeatEntity.isClose;
+            boolean             oldMute       = oldSeatEntity.isMute;
+            boolean             userChanged   = !TextUtils.equals(newSeatInfo.userId, oldSeatEntity.userId);
+            if (newSeatInfo.userId != null && userChanged) {
                 //userId相同，可以不用重新获取信息了
-                //但是如果有新的userId进来，那么应该去拿一下主播的详细信息
-                userids.add(newSeatInfo.userId);
+                //但是如果有新的userId进来，那么应该去拿一下主播的详细信息，缓存里有的直接使用
+                TRTCVoiceRoomDef.UserInfo cachedInfo = mTRTCVoiceRoom.getCachedUserInfo(newSeatInfo.userId);
+                if (cachedInfo != null) {
+                    oldSeatEntity.userName = cachedInfo.userName;
+                    oldSeatEntity.userAvatar = cachedInfo.userAvatar;
+                } else {
+                    userids.add(newSeatInfo.userId);
+                }
             }
             oldSeatEntity.userId = newSeatInfo.userId;
             // 座位的状态更新一下
@@ -368,9 +430,17 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
                     break;
             }
             oldSeatEntity.isMute = newSeatInfo.mute;
+            // 只刷新变化了的座位，只有禁言状态变化时不需要重新加载头像
+            if (userChanged || oldUsed != oldSeatEntity.isUsed || oldClose != oldSeatEntity.isClose) {
+                mVoiceRoomSeatAdapter.notifyItemChanged(i - 1);
+            } else if (oldMute != oldSeatEntity.isMute) {
+                mVoiceRoomSeatAdapter.notifyItemChanged(i - 1, VoiceRoomSeatAdapter.PAYLOAD_MUTE);
+            }
         }
-        mVoiceRoomSeatAdapter.notifyDataSetChanged();
 
+        if (userids.isEmpty()) {
+            return;
+        }
         //所有的userId拿到手，开始去搜索详细信息了
         mTRTCVoiceRoom.getUserInfoList(userids, new TRTCVoiceRoomCallback.UserListCallback() {
             @Override
@@ -390,33 +460,39 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
                     if (i == 0) {
                         if (newSeatInfo.status == STATUS_USED) {
                             //主播上线啦
-                            if (!TextUtils.isEmpty(userInfo.userAvatar)) {
-                                Picasso.get().load(userInfo.userAvatar).into(mImgHead);
-                            } else {
-                                mImgHead.setImageResource(R.drawable.trtcvoiceroom_ic_head);
-                            }
-                            if (TextUtils.isEmpty(userInfo.userName)) {
-                                mTvName.setText(userInfo.userId);
-                            } else {
-                                mTvName.setText(userInfo.userName);
-                            }
+                            showHostInfo(userInfo);
                         } else {
                             mTvName.setText(R.string.trtcvoiceroom_host_offline);
                         }
-                    } else {
+                    } else if (i - 1 < mVoiceRoomSeatEntityList.size()) {
                         // 接下来是座位区域的列表
                         VoiceRoomSeatEntity seatEntity = mVoiceRoomSeatEntityList.get(i - 1);
-                        if (userInfo.userId.equals(seatEntity.userId)) {
+                        if (userInfo.userId.equals(seatEntity.userId)
+                                && (!TextUtils.equals(seatEntity.userName, userInfo.userName)
+                                || !TextUtils.equals(seatEntity.userAvatar, userInfo.userAvatar))) {
                             seatEntity.userName = userInfo.userName;
                             seatEntity.userAvatar = userInfo.userAvatar;
+                            mVoiceRoomSeatAdapter.notifyItemChanged(i - 1);
                         }
                     }
                 }
-                mVoiceRoomSeatAdapter.notifyDataSetChanged();
             }
         });
     }
 
+    private void showHostInfo(TRTCVoiceRoomDef.UserInfo userInfo) {
+        if (!TextUtils.isEmpty(userInfo.userAvatar)) {
+            Picasso.get().load(userInfo.userAvatar).into(mImgHead);
+        } else {
+            mImgHead.setImageResource(R.drawable.trtcvoiceroom_ic_head);
+        }
+        if (TextUtils.isEmpty(userInfo.userName)) {
+            mTvName.setText(userInfo.userId);
+        } else {
+            mTvName.setText(userInfo.userName);
+        }
+    }
+
     @Override
     public void onAnchorEnterSeat(int index, TRTCVoiceRoomDef.UserInfo user) {
         if (index != 0) {
@@ -449,6 +525,21 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
         showNotifyMsg(isClose ? lockSeatStr : unlockSeatStr);
     }
 
+    @Override
+    public void onSeatBatchChange(List<TRTCVoiceRoomDef.SeatChange> changeList) {
+        // 一次改了多个座位时只提示一条，座位列表已经在 onSeatListChange 中刷新
+        Set<Integer> indexSet = new HashSet<>();
+        for (TRTCVoiceRoomDef.SeatChange change : changeList) {
+            indexSet.add(change.index);
+        }
+        showNotifyMsg(getString(R.string.trtcvoiceroom_seat_batch_change, indexSet.size()));
+    }
+
+    @Override
+    public void onSeatRollback(int index, int code, String message) {
+        showNotifyMsg(getString(R.string.trtcvoiceroom_seat_rollback, index));
+    }
+
     @Override
     public void onAudienceEnter(TRTCVoiceRoomDef.UserInfo userInfo) {
         showNotifyMsg(getString(R.string.trtcvoiceroom_enter_room_hint, userInfo.userName));
@@ -461,31 +552,24 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
 
     @Override
     public void onUserVolumeUpdate(ArrayList<TRTCCloudDef.TRTCVolumeInfo> userVolumes, int totalVolume) {
-        Map<String, Integer> volumeMap = new HashMap<>();
-        for (TRTCCloudDef.TRTCVolumeInfo info : userVolumes) {
-            if (info.userId != null) {
-                volumeMap.put(info.userId, info.volume);
-            }
+        // 说话状态由 onSeatTalkingChange 更新
+    }
+
+    @Override
+    public void onSeatTalkingChange(int index, boolean isTalking) {
+        // 底层的第一个座位是主播
+        if (index == 0) {
+            mImgHead.setBorderColor(getResources().getColor(isTalking ? R.color.trtcvoiceroom_color_head_talk : R.color.trtcvoiceroom_color_head_not_talk));
+            return;
         }
-        for (VoiceRoomSeatEntity entity : mVoiceRoomSeatEntityList) {
-            if (entity.isUsed && volumeMap.get(entity.userId) != null) {
-                int volume = volumeMap.get(entity.userId);
-                if (volume > 20) {
-                    entity.isTalk = true;
-                } else {
-                    entity.isTalk = false;
-                }
-            } else {
-                entity.isTalk = false;
-            }
+        int position = index - 1;
+        if (position >= mVoiceRoomSeatEntityList.size()) {
+            return;
         }
-        mVoiceRoomSeatAdapter.notifyDataSetChanged();
-        // main seat anchor
-        Integer mainSeatVol = volumeMap.get(mMainSeatUserId);
-        if (mainSeatVol != null && mainSeatVol > 20) {
-            mImgHead.setBorderColor(getResources().getColor(R.color.trtcvoiceroom_color_head_talk));
-        } else {
-            mImgHead.setBorderColor(getResources().getColor(R.color.trtcvoiceroom_color_head_not_talk));
+        VoiceRoomSeatEntity entity = mVoiceRoomSeatEntityList.get(position);
+        if (entity.isTalk != isTalking) {
+            entity.isTalk = isTalking;
+            mVoiceRoomSeatAdapter.notifyItemChanged(position, VoiceRoomSeatAdapter.PAYLOAD_TALK);
         }
     }
 
@@ -504,6 +588,11 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
 
     }
 
+    @Override
+    public void onRoomCounterChange(String type, long total, long increment, TRTCVoiceRoomDef.UserInfo userInfo) {
+
+    }
+
     @Override
     public void onReceiveNewInvitation(String id, String inviter, String cmd, String content) {
 
@@ -537,8 +626,6 @@ public class VoiceRoomBaseActivity extends AppCompatActivity implements VoiceRoo
         MsgEntity msgEntity = new MsgEntity();
         msgEntity.type = MsgEntity.TYPE_NORMAL;
         msgEntity.content = msg;
-        mMsgEntityList.add(msgEntity);
-        mMsgListAdapter.notifyDataSetChanged();
-        mRvImMsg.smoothScrollToPosition(mMsgListAdapter.getItemCount());
+        addMsgEntity(msgEntity);
     }
 }
\ No newline at end of file
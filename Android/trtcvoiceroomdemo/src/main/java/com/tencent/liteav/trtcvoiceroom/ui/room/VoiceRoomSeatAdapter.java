@@ -22,6 +22,10 @@ public class VoiceRoomSeatAdapter extends
         RecyclerView.Adapter<VoiceRoomSeatAdapter.ViewHolder> {
     private static final String TAG = VoiceRoomSeatAdapter.class.getSimpleName();
 
+    // 局部刷新用的 payload，只更新对应的控件，不重新加载头像
+    public static final String PAYLOAD_TALK = "talk";
+    public static final String PAYLOAD_MUTE = "mute";
+
     private Context                   context;
     private List<VoiceRoomSeatEntity> list;
     private OnItemClickListener       onItemClickListener;
@@ -53,6 +57,25 @@ public class VoiceRoomSeatAdapter extends
         holder.bind(context, item, onItemClickListener);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        VoiceRoomSeatEntity item = list.get(position);
+        for (Object payload : payloads) {
+            if (PAYLOAD_TALK.equals(payload)) {
+                holder.bindTalk(context, item);
+            } else if (PAYLOAD_MUTE.equals(payload)) {
+                holder.bindMute(context, item);
+            } else {
+                holder.bind(context, item, onItemClickListener);
+                return;
+            }
+        }
+    }
+
 
     @Override
     public int getItemCount() {
@@ -108,11 +131,25 @@ public class VoiceRoomSeatAdapter extends
                 } else {
                     mTvName.setText("Loading");
                 }
-                if (model.isTalk) {
-                    mImgHead.setBorderColor(context.getResources().getColor(R.color.trtcvoiceroom_color_head_talk));
-                } else {
-                    mImgHead.setBorderColor(context.getResources().getColor(R.color.trtcvoiceroom_color_head_not_talk));
-                }
+                bindTalk(context, model);
+            }
+            bindMute(context, model);
+        }
+
+        public void bindTalk(Context context, VoiceRoomSeatEntity model) {
+            if (model.isClose || !model.isUsed) {
+                return;
+            }
+            if (model.isTalk) {
+                mImgHead.setBorderColor(context.getResources().getColor(R.color.trtcvoiceroom_color_head_talk));
+            } else {
+                mImgHead.setBorderColor(context.getResources().getColor(R.color.trtcvoiceroom_color_head_not_talk));
+            }
+        }
+
+        public void bindMute(Context context, VoiceRoomSeatEntity model) {
+            if (model.isClose) {
+                return;
             }
             if (model.isMute) {
                 mFrameLayoutHeadImg.setForeground(context.getResources().getDrawable(R.drawable.trtcvoiceroom_ic_head_mute));
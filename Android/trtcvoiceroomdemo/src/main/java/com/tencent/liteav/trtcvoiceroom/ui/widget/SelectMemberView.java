@@ -35,6 +35,7 @@ public class SelectMemberView extends BottomSheetDialog {
     private TextView           mPusherTagTv;
     private TextView           mTextCancel;
     private int                mSeatIndex;
+    private OnLoadMoreListener mOnLoadMoreListener;
 
     public SelectMemberView(@NonNull Context context) {
         super(context);
@@ -56,6 +57,19 @@ public class SelectMemberView extends BottomSheetDialog {
             mPusherListRv.setLayoutManager(new LinearLayoutManager(mContext));
             mPusherListRv.addItemDecoration(new SpaceDecoration(dp2px(mContext, 15),
                     1));
+            mPusherListRv.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                    // 滑动到接近底部时加载下一页
+                    if (dy <= 0 || mOnLoadMoreListener == null || mListAdapter == null) {
+                        return;
+                    }
+                    LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                    if (layoutManager.findLastVisibleItemPosition() >= mListAdapter.getItemCount() - 3) {
+                        mOnLoadMoreListener.onLoadMore();
+                    }
+                }
+            });
         }
         mTextCancel.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -78,6 +92,10 @@ public class SelectMemberView extends BottomSheetDialog {
         mOnSelectedCallback = onSelectedCallback;
     }
 
+    public void setOnLoadMoreListener(OnLoadMoreListener onLoadMoreListener) {
+        mOnLoadMoreListener = onLoadMoreListener;
+    }
+
     public void refreshView() {
         mPusherTagTv.setText("正在加载中...");
     }
@@ -88,6 +106,31 @@ public class SelectMemberView extends BottomSheetDialog {
         }
     }
 
+    public void notifyItemRangeInserted(int positionStart, int itemCount) {
+        if (mListAdapter != null && itemCount > 0) {
+            mListAdapter.notifyItemRangeInserted(positionStart, itemCount);
+        }
+    }
+
+    public void notifyItemRemoved(int position) {
+        if (mListAdapter != null && position >= 0) {
+            mListAdapter.notifyItemRemoved(position);
+        }
+    }
+
+    /**
+     * 成员的状态变化时调用，只刷新邀请按钮
+     */
+    public void notifyItemTypeChanged(MemberEntity memberEntity) {
+        if (mListAdapter == null || mMemberEntityList == null) {
+            return;
+        }
+        int position = mMemberEntityList.indexOf(memberEntity);
+        if (position >= 0) {
+            mListAdapter.notifyItemChanged(position, ListAdapter.PAYLOAD_TYPE);
+        }
+    }
+
     public void setSeatIndex(int seatIndex) {
         mSeatIndex = seatIndex;
     }
@@ -108,6 +151,10 @@ public class SelectMemberView extends BottomSheetDialog {
         }
     }
 
+    public interface OnLoadMoreListener {
+        void onLoadMore();
+    }
+
     public interface onSelectedCallback {
         void onSelected(int seatIndex, MemberEntity memberEntity);
 
@@ -116,6 +163,8 @@ public class SelectMemberView extends BottomSheetDialog {
 
     public static class ListAdapter extends
             RecyclerView.Adapter<ListAdapter.ViewHolder> {
+        public static final String PAYLOAD_TYPE = "type";
+
         private Context             context;
         private List<MemberEntity>  list;
         private OnItemClickListener onItemClickListener;
@@ -143,6 +192,15 @@ public class SelectMemberView extends BottomSheetDialog {
             holder.bind(item, onItemClickListener);
         }
 
+        @Override
+        public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+            if (payloads.size() == 1 && PAYLOAD_TYPE.equals(payloads.get(0))) {
+                holder.bindType(list.get(position));
+            } else {
+                super.onBindViewHolder(holder, position, payloads);
+            }
+        }
+
         @Override
         public int getItemCount() {
             return list.size();
@@ -174,17 +232,7 @@ public class SelectMemberView extends BottomSheetDialog {
                 if (model == null) {
                     return;
                 }
-                if (model.type == MemberEntity.TYPE_IDEL) {
-                    mButtonInvite.setVisibility(View.VISIBLE);
-                    mButtonInvite.setText(R.string.trtcvoiceroom_invite_hint);
-                    mButtonInvite.setBackgroundColor(context.getResources().getColor(R.color.trtcvoiceroom_color_text_blue));
-                } else if (model.type == MemberEntity.TYPE_WAIT_AGREE) {
-                    mButtonInvite.setVisibility(View.VISIBLE);
-                    mButtonInvite.setText("同意");
-                    mButtonInvite.setBackgroundColor(context.getResources().getColor(R.color.trtcvoiceroom_color_text_red));
-                } else {
-                    mButtonInvite.setVisibility(View.INVISIBLE);
-                }
+                bindType(model);
                 if (TextUtils.isEmpty(model.userName)) {
                     mUserNameTv.setText(model.userId);
                 } else {
@@ -204,6 +252,23 @@ public class SelectMemberView extends BottomSheetDialog {
                     }
                 });
             }
+
+            public void bindType(MemberEntity model) {
+                if (model == null) {
+                    return;
+                }
+                if (model.type == MemberEntity.TYPE_IDEL) {
+                    mButtonInvite.setVisibility(View.VISIBLE);
+                    mButtonInvite.setText(R.string.trtcvoiceroom_invite_hint);
+                    mButtonInvite.setBackgroundColor(context.getResources().getColor(R.color.trtcvoiceroom_color_text_blue));
+                } else if (model.type == MemberEntity.TYPE_WAIT_AGREE) {
+                    mButtonInvite.setVisibility(View.VISIBLE);
+                    mButtonInvite.setText("同意");
+                    mButtonInvite.setBackgroundColor(context.getResources().getColor(R.color.trtcvoiceroom_color_text_red));
+                } else {
+                    mButtonInvite.setVisibility(View.INVISIBLE);
+                }
+            }
         }
     }
 }
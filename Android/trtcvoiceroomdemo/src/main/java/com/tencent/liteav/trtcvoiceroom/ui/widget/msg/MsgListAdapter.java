@@ -17,11 +17,14 @@ public class MsgListAdapter extends
 
     private static final String TAG = MsgListAdapter.class.getSimpleName();
 
+    // 只刷新同意按钮的状态
+    public static final String PAYLOAD_TYPE = "type";
+
     private Context             context;
-    private List<MsgEntity>     mList;
+    private MsgStore            mList;
     private OnItemClickListener mOnItemClickListener;
 
-    public MsgListAdapter(Context context, List<MsgEntity> list,
+    public MsgListAdapter(Context context, MsgStore list,
                           OnItemClickListener onItemClickListener) {
         this.context = context;
         this.mList = list;
@@ -43,6 +46,15 @@ public class MsgListAdapter extends
         holder.bind(item, mOnItemClickListener);
     }
 
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.size() == 1 && PAYLOAD_TYPE.equals(payloads.get(0))) {
+            holder.bindType(mList.get(position));
+        } else {
+            super.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
     @Override
     public int getItemCount() {
         return mList.size();
@@ -74,6 +86,18 @@ public class MsgListAdapter extends
             } else {
                 mTvMsgContent.setText(model.content);
             }
+            bindType(model);
+            mBtnMsgAgree.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    if (listener != null) {
+                        listener.onAgreeClick(getLayoutPosition());
+                    }
+                }
+            });
+        }
+
+        public void bindType(MsgEntity model) {
             if (model.type == MsgEntity.TYPE_AGREED) {
                 mBtnMsgAgree.setVisibility(View.GONE);
                 mBtnMsgAgree.setEnabled(false);
@@ -84,14 +108,6 @@ public class MsgListAdapter extends
             } else {
                 mBtnMsgAgree.setVisibility(View.GONE);
             }
-            mBtnMsgAgree.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    if (listener != null) {
-                        listener.onAgreeClick(getLayoutPosition());
-                    }
-                }
-            });
         }
     }
 
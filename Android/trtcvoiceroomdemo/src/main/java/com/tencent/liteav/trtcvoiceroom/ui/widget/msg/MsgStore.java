@@ -0,0 +1,140 @@
+package com.tencent.liteav.trtcvoiceroom.ui.widget.msg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 固定容量的消息列表（环形缓冲区）
+ * <p>
+ * 满了之后新消息会挤掉最早的一条；上麦申请消息按 invitedId 和 userId 建立索引，更新申请状态时不需要遍历整个列表。
+ * 只能在主线程使用。
+ */
+public class MsgStore {
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final MsgEntity[] mSlots;
+    // 最早一条消息所在的槽位
+    private       int         mHead;
+    private       int         mSize;
+    // 最早一条消息的序号，每条消息的序号 = 加入时的总条数，位置 = 序号 - mFirstSeq
+    private       long        mFirstSeq;
+
+    private final Map<String, Long>       mInviteIndex;
+    private final Map<String, List<Long>> mUserInviteIndex;
+
+    public MsgStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MsgStore(int capacity) {
+        mSlots = new MsgEntity[capacity];
+        mInviteIndex = new HashMap<>();
+        mUserInviteIndex = new HashMap<>();
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mSlots.length;
+    }
+
+    public MsgEntity get(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("position: " + position + ", size: " + mSize);
+        }
+        return mSlots[(mHead + position) % mSlots.length];
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @return 容量已满、最早的一条消息被挤掉时返回 true
+     */
+    public boolean add(MsgEntity entity) {
+        boolean evicted = false;
+        if (mSize == mSlots.length) {
+            evictFirst();
+            evicted = true;
+        }
+        long seq = mFirstSeq + mSize;
+        mSlots[(mHead + mSize) % mSlots.length] = entity;
+        mSize++;
+        if (entity.invitedId != null) {
+            mInviteIndex.put(entity.invitedId, seq);
+            if (entity.userId != null) {
+                List<Long> seqList = mUserInviteIndex.get(entity.userId);
+                if (seqList == null) {
+                    seqList = new ArrayList<>(1);
+                    mUserInviteIndex.put(entity.userId, seqList);
+                }
+                seqList.add(seq);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return 申请消息所在的位置，不存在或已经被挤掉时返回 -1
+     */
+    public int indexOfInvite(String invitedId) {
+        if (invitedId == null) {
+            return -1;
+        }
+        Long seq = mInviteIndex.get(invitedId);
+        return seq == null ? -1 : (int) (seq - mFirstSeq);
+    }
+
+    /**
+     * @return 该用户所有申请消息的位置，从早到晚排列
+     */
+    public List<Integer> indexOfUserInvites(String userId) {
+        List<Integer> positionList = new ArrayList<>();
+        List<Long>    seqList      = userId == null ? null : mUserInviteIndex.get(userId);
+        if (seqList != null) {
+            for (Long seq : seqList) {
+                positionList.add((int) (seq - mFirstSeq));
+            }
+        }
+        return positionList;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mSlots.length; i++) {
+            mSlots[i] = null;
+        }
+        mFirstSeq += mSize;
+        mHead = 0;
+        mSize = 0;
+        mInviteIndex.clear();
+        mUserInviteIndex.clear();
+    }
+
+    private void evictFirst() {
+        MsgEntity entity = mSlots[mHead];
+        mSlots[mHead] = null;
+        mHead = (mHead + 1) % mSlots.length;
+        mSize--;
+        long seq = mFirstSeq++;
+        if (entity == null || entity.invitedId == null) {
+            return;
+        }
+        Long inviteSeq = mInviteIndex.get(entity.invitedId);
+        if (inviteSeq != null && inviteSeq == seq) {
+            mInviteIndex.remove(entity.invitedId);
+        }
+        List<Long> seqList = entity.userId == null ? null : mUserInviteIndex.get(entity.userId);
+        if (seqList != null) {
+            // 最早的消息一定在列表的最前面
+            if (!seqList.isEmpty() && seqList.get(0) == seq) {
+                seqList.remove(0);
+            }
+            if (seqList.isEmpty()) {
+                mUserInviteIndex.remove(entity.userId);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class RoomJoinOrchestratorTest {
+    private FakeLeg              mIMLeg;
+    private FakeLeg              mTRTCLeg;
+    private List<Integer>        mResults;
+    private RoomJoinOrchestrator mJoin;
+
+    @Before
+    public void setUp() {
+        mIMLeg = new FakeLeg();
+        mTRTCLeg = new FakeLeg();
+        mResults = new ArrayList<>();
+        mJoin = new RoomJoinOrchestrator("enter room test", mIMLeg, mTRTCLeg);
+        mJoin.start(new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                mResults.add(code);
+            }
+        });
+    }
+
+    @Test
+    public void succeedsAfterBothLegs() {
+        mIMLeg.finish(0);
+        assertEquals(0, mResults.size());
+        mTRTCLeg.finish(0);
+        assertResults(0);
+        assertRollbacks(0, 0);
+    }
+
+    @Test
+    public void failureRollsBackSucceededLeg() {
+        mTRTCLeg.finish(0);
+        mIMLeg.finish(-1);
+        assertResults(-1);
+        assertRollbacks(0, 1);
+    }
+
+    @Test
+    public void failureRollsBackLegThatSucceedsLater() {
+        mIMLeg.finish(-1);
+        assertResults(-1);
+        assertRollbacks(0, 0);
+
+        mTRTCLeg.finish(0);
+        assertResults(-1);
+        assertRollbacks(0, 1);
+    }
+
+    @Test
+    public void cancelRollsBackSucceededAndPendingLegs() {
+        mIMLeg.finish(0);
+        mJoin.cancel();
+        assertResults(RoomJoinOrchestrator.CODE_CANCELED);
+        assertRollbacks(1, 0);
+
+        // 还没返回的一路之后成功时撤销，失败时不用处理
+        mTRTCLeg.finish(0);
+        assertRollbacks(1, 1);
+        assertResults(RoomJoinOrchestrator.CODE_CANCELED);
+    }
+
+    @Test
+    public void cancelIgnoresLateFailure() {
+        mJoin.cancel();
+        mIMLeg.finish(-1);
+        mTRTCLeg.finish(-100);
+        assertResults(RoomJoinOrchestrator.CODE_CANCELED);
+        assertRollbacks(0, 0);
+    }
+
+    @Test
+    public void cancelAfterFinishDoesNothing() {
+        mIMLeg.finish(0);
+        mTRTCLeg.finish(0);
+        mJoin.cancel();
+        assertResults(0);
+        assertRollbacks(0, 0);
+
+        setUp();
+        mTRTCLeg.finish(0);
+        mIMLeg.finish(-1);
+        mJoin.cancel();
+        assertResults(-1);
+        assertRollbacks(0, 1);
+    }
+
+    @Test
+    public void synchronousIMFailureSkipsTRTC() {
+        mIMLeg = new FakeLeg();
+        mIMLeg.syncCode = -1;
+        mTRTCLeg = new FakeLeg();
+        mResults.clear();
+        new RoomJoinOrchestrator("enter room test", mIMLeg, mTRTCLeg).start(new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                mResults.add(code);
+            }
+        });
+        assertResults(-1);
+        assertNull(mTRTCLeg.callback);
+        assertFalse(mTRTCLeg.started);
+    }
+
+    private void assertResults(Integer... codes) {
+        assertEquals(Arrays.asList(codes), mResults);
+    }
+
+    private void assertRollbacks(int im, int trtc) {
+        assertEquals("im rollbacks", im, mIMLeg.rollbackCount);
+        assertEquals("trtc rollbacks", trtc, mTRTCLeg.rollbackCount);
+    }
+
+    private static class FakeLeg implements RoomJoinOrchestrator.Leg {
+        // 不为 null 时在 start 中同步返回
+        Integer    syncCode;
+        boolean    started;
+        TXCallback callback;
+        int        rollbackCount;
+
+        @Override
+        public void start(TXCallback callback) {
+            started = true;
+            if (syncCode != null) {
+                callback.onCallback(syncCode, "sync");
+                return;
+            }
+            this.callback = callback;
+        }
+
+        @Override
+        public void rollback() {
+            rollbackCount++;
+        }
+
+        void finish(int code) {
+            callback.onCallback(code, "code " + code);
+        }
+    }
+}
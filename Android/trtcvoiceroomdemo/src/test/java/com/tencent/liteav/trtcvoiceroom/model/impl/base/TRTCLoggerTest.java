@@ -0,0 +1,77 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.base;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TRTCLoggerTest {
+    private static final String TAG = "TRTCLoggerTest";
+
+    private static final Object BAD_ARG = new Object() {
+        @Override
+        public String toString() {
+            throw new ConcurrentModificationException();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        TRTCLogger.setLevel(TRTCLogger.LEVEL_DEBUG);
+        TRTCLogger.setOutputLevel(TRTCLogger.LEVEL_DEBUG);
+    }
+
+    @After
+    public void tearDown() {
+        TRTCLogger.flush();
+    }
+
+    @Test
+    public void formatsPlaceholdersInOrder() {
+        TRTCLogger.i(TAG, "a:{} b:{} c:{}", 1, "two", null);
+        List<String> logs = TRTCLogger.getRecentLogs(1);
+        assertEquals(1, logs.size());
+        assertTrue(logs.get(0), logs.get(0).endsWith("I/" + TAG + ": a:1 b:two c:null"));
+    }
+
+    @Test
+    public void throwingToStringOnlyAffectsItsEntry() {
+        TRTCLogger.d(TAG, "bad {} arg", BAD_ARG);
+        TRTCLogger.i(TAG, "after {}", "bad");
+        List<String> logs = TRTCLogger.getRecentLogs(2);
+        assertEquals(2, logs.size());
+        assertTrue(logs.get(0), logs.get(0).contains("bad [") && logs.get(0).contains("ConcurrentModificationException"));
+        assertTrue(logs.get(1), logs.get(1).endsWith("after bad"));
+    }
+
+    @Test
+    public void flushKeepsDrainingAfterBadEntries() {
+        for (int i = 0; i < 10; i++) {
+            TRTCLogger.e(TAG, "bad {}", BAD_ARG);
+        }
+        TRTCLogger.flush();
+        TRTCLogger.i(TAG, "still {}", "alive");
+        TRTCLogger.flush();
+        List<String> logs = TRTCLogger.getRecentLogs(1);
+        assertTrue(logs.get(0), logs.get(0).endsWith("still alive"));
+    }
+
+    @Test
+    public void levelFilterSkipsLogging() {
+        TRTCLogger.setLevel(TAG, TRTCLogger.LEVEL_WARN);
+        try {
+            // 先写一条不会被过滤的日志，不依赖其他用例留下的日志
+            TRTCLogger.w(TAG, "kept");
+            TRTCLogger.i(TAG, "filtered");
+            String newest = TRTCLogger.getRecentLogs(1).get(0);
+            assertTrue(newest, newest.endsWith("W/" + TAG + ": kept"));
+        } finally {
+            TRTCLogger.setLevel(TAG, TRTCLogger.LEVEL_DEBUG);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class CounterAggregatorTest {
+    private List<Map<String, Long>> mSent;
+    private List<TXCallback>        mCallbacks;
+    private Map<String, Long>       mConfirmed;
+    private CounterAggregator       mAggregator;
+
+    @Before
+    public void setUp() {
+        mSent = new ArrayList<>();
+        mCallbacks = new ArrayList<>();
+        mConfirmed = new HashMap<>();
+        mAggregator = new CounterAggregator(new CounterAggregator.Sender() {
+            @Override
+            public void sendCounters(Map<String, Long> counters, TXCallback callback) {
+                mSent.add(new HashMap<>(counters));
+                mCallbacks.add(callback);
+            }
+        }, new Handler(Looper.getMainLooper()));
+        mAggregator.setListener(new CounterAggregator.Listener() {
+            @Override
+            public void onCountersSent(Map<String, Long> counters) {
+                for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                    Long total = mConfirmed.get(entry.getKey());
+                    mConfirmed.put(entry.getKey(), (total == null ? 0 : total) + entry.getValue());
+                }
+            }
+        });
+        mAggregator.setFlushInterval(1000);
+    }
+
+    @Test
+    public void mergesIncreasesWithinInterval() {
+        mAggregator.increase("like", 1);
+        mAggregator.increase("like", 2);
+        mAggregator.increase("gift", 5);
+        assertTrue(mSent.isEmpty());
+
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+
+        assertEquals(1, mSent.size());
+        assertEquals(3L, (long) mSent.get(0).get("like"));
+        assertEquals(5L, (long) mSent.get(0).get("gift"));
+    }
+
+    @Test
+    public void failedSendIsRetriedWithNewIncreases() {
+        mAggregator.increase("like", 3);
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+        mAggregator.increase("like", 2);
+        mCallbacks.get(0).onCallback(-1, "network error");
+        assertTrue(mConfirmed.isEmpty());
+
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+
+        assertEquals(2, mSent.size());
+        assertEquals(5L, (long) mSent.get(1).get("like"));
+        mCallbacks.get(1).onCallback(0, "");
+        assertEquals(5L, (long) mConfirmed.get("like"));
+    }
+
+    @Test
+    public void synchronousFailureIsRetriedNextPeriod() {
+        mAggregator = new CounterAggregator(new CounterAggregator.Sender() {
+            @Override
+            public void sendCounters(Map<String, Long> counters, TXCallback callback) {
+                mSent.add(new HashMap<>(counters));
+                callback.onCallback(-1, "not login");
+            }
+        }, new Handler(Looper.getMainLooper()));
+        mAggregator.setFlushInterval(1000);
+        mAggregator.increase("like", 1);
+
+        mAggregator.flush();
+        assertEquals(1, mSent.size());
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+
+        assertEquals(2, mSent.size());
+        assertEquals(1L, (long) mSent.get(1).get("like"));
+    }
+
+    @Test
+    public void callbacksBeforeClearAreIgnored() {
+        mAggregator.increase("like", 3);
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+        mAggregator.clear();
+
+        mCallbacks.get(0).onCallback(-1, "room exited");
+        ShadowLooper.idleMainLooper(5, TimeUnit.SECONDS);
+
+        assertEquals(1, mSent.size());
+        mCallbacks.get(0).onCallback(0, "");
+        assertTrue(mConfirmed.isEmpty());
+    }
+
+    @Test
+    public void splitsManyTypesIntoSeveralMessages() {
+        for (int i = 0; i < 120; i++) {
+            mAggregator.increase("gift_" + i, 1);
+        }
+        mAggregator.flush();
+
+        assertEquals(3, mSent.size());
+        assertEquals(50, mSent.get(0).size());
+        assertEquals(50, mSent.get(1).size());
+        assertEquals(20, mSent.get(2).size());
+    }
+
+    @Test
+    public void zeroIntervalSendsImmediately() {
+        mAggregator.setFlushInterval(0);
+        mAggregator.increase("like", 1);
+        mAggregator.increase("like", 1);
+
+        assertEquals(2, mSent.size());
+    }
+
+    @Test
+    public void mergeAccumulatesTotals() {
+        assertEquals(3, mAggregator.merge("like", 3));
+        assertEquals(10, mAggregator.merge("like", 7));
+        assertEquals(10, mAggregator.getTotal("like"));
+        mAggregator.clear();
+        assertEquals(0, mAggregator.getTotal("like"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class CustomMsgDispatcherTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private CustomMsgDispatcher<String> mDispatcher;
+    private List<String>                mReceived;
+
+    @Before
+    public void setUp() {
+        mDispatcher = new CustomMsgDispatcher<>();
+        mReceived = new ArrayList<>();
+        register(IMProtocol.Define.CODE_ROOM_DESTROY);
+        register(IMProtocol.Define.CODE_ROOM_CUSTOM_MSG);
+        register(IMProtocol.Define.CODE_ROOM_CUSTOM_MSG_BATCH);
+        register(IMProtocol.Define.CODE_ROOM_COUNTER);
+        register(1000);
+        register(4095);
+    }
+
+    @Test
+    public void dispatchesJsonByAction() {
+        assertTrue(mDispatcher.dispatch(IMProtocol.getCusMsgJsonStr("cmd", "hello").getBytes(UTF_8), "alice"));
+        assertTrue(mDispatcher.dispatch(IMProtocol.getRoomDestroyMsg().getBytes(UTF_8), "owner"));
+
+        assertEquals(2, mReceived.size());
+        assertEquals("301:alice", mReceived.get(0));
+        assertEquals("200:owner", mReceived.get(1));
+    }
+
+    @Test
+    public void skipsNestedValuesBeforeAction() {
+        String json = " { \"data\" : {\"action\": 200, \"list\": [1, \"}\", {\"a\": null}]}, \"version\":\"1.0\", \"action\" : 301 } ";
+        assertEquals(IMProtocol.Define.CODE_ROOM_CUSTOM_MSG, mDispatcher.peekAction(json.getBytes(UTF_8)));
+    }
+
+    @Test
+    public void ignoresMessagesOutsideTheProtocol() {
+        assertInvalid("");
+        assertInvalid("hello");
+        assertInvalid("{\"action\":301}");
+        assertInvalid("{\"version\":\"1.0\"}");
+        assertInvalid("{\"version\":\"1.0\",\"action\":301");
+        assertInvalid("{\"version\":\"1.0\",\"action\":12345678901}");
+        assertInvalid("[{\"version\":\"1.0\",\"action\":301}]");
+        assertTrue(mReceived.isEmpty());
+    }
+
+    @Test
+    public void dispatchesRoomEventFrames() {
+        assertTrue(mDispatcher.dispatch(IMProtocol.getRoomEventFrame(1000, new byte[]{1}), "alice"));
+        assertTrue(mDispatcher.dispatch(IMProtocol.getRoomEventFrame(4095, new byte[0]), "bob"));
+
+        assertEquals(2, mReceived.size());
+        assertEquals("1000:alice", mReceived.get(0));
+        assertEquals("4095:bob", mReceived.get(1));
+    }
+
+    @Test
+    public void framesCannotCarryBuiltInActions() {
+        int[] builtIn = {
+                IMProtocol.Define.CODE_ROOM_DESTROY,
+                IMProtocol.Define.CODE_ROOM_CUSTOM_MSG,
+                IMProtocol.Define.CODE_ROOM_CUSTOM_MSG_BATCH,
+                IMProtocol.Define.CODE_ROOM_COUNTER,
+                999,
+                4096,
+                0xFFFF
+        };
+        for (int action : builtIn) {
+            byte[] frame = IMProtocol.getRoomEventFrame(1000, new byte[0]);
+            frame[3] = (byte) (action >> 8);
+            frame[4] = (byte) action;
+            assertEquals(CustomMsgDispatcher.ACTION_INVALID, mDispatcher.peekAction(frame));
+            assertFalse(mDispatcher.dispatch(frame, "mallory"));
+        }
+        assertTrue(mReceived.isEmpty());
+    }
+
+    @Test
+    public void jsonCannotCarryRoomEventActions() {
+        assertInvalid("{\"version\":\"1.0\",\"action\":1000}");
+        assertTrue(mReceived.isEmpty());
+    }
+
+    @Test
+    public void ignoresFramesOfOtherVersions() {
+        byte[] frame = IMProtocol.getRoomEventFrame(1000, new byte[0]);
+        frame[2] = (byte) (IMProtocol.Define.EVENT_FRAME_VERSION + 1);
+        assertFalse(mDispatcher.dispatch(frame, "alice"));
+    }
+
+    @Test
+    public void unregisteredActionsAreNotDispatched() {
+        mDispatcher.unregister(1000);
+        assertFalse(mDispatcher.dispatch(IMProtocol.getRoomEventFrame(1000, new byte[0]), "alice"));
+        assertFalse(mDispatcher.dispatch(IMProtocol.getRoomEventFrame(2000, new byte[0]), "alice"));
+        assertFalse(mDispatcher.register(CustomMsgDispatcher.ACTION_MAX + 1, handler(0)));
+        assertTrue(mReceived.isEmpty());
+    }
+
+    private void assertInvalid(String data) {
+        byte[] bytes = data.getBytes(UTF_8);
+        assertEquals(data, CustomMsgDispatcher.ACTION_INVALID, mDispatcher.peekAction(bytes));
+        assertFalse(data, mDispatcher.dispatch(bytes, "mallory"));
+    }
+
+    private void register(int action) {
+        assertTrue(mDispatcher.register(action, handler(action)));
+    }
+
+    private CustomMsgDispatcher.ActionHandler<String> handler(final int action) {
+        return new CustomMsgDispatcher.ActionHandler<String>() {
+            @Override
+            public void onAction(byte[] data, String sender) {
+                mReceived.add(action + ":" + sender);
+            }
+        };
+    }
+}
@@ -0,0 +1,848 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * 内存中模拟的 IM 服务，用于在普通 JVM 上压测抢麦、群消息扇出等场景，也可以通过 {@link TXRoomService#setIMBackend} 驱动 TXRoomService
+ * <p>
+ * 每个 {@link Client} 是一个登录的用户，实现了 {@link IMBackend}。请求、响应和推送都放进一个虚拟时钟的事件队列：
+ * 每一跳的延迟为 latency 加上 [0, jitter] 的随机值，并且有 reorderRate 的概率再额外延迟 reorderDelay，让后发的包先到。
+ * 服务端按请求到达的先后处理，同时抢同一个座位时谁先到谁先写。
+ * 没有线程，所有回调都在调用 {@link #runUntilIdle()} / {@link #advance(long)} 的线程执行，
+ * 相同的随机种子和相同的调用顺序得到完全相同的事件顺序。
+ * 群属性的个数和大小限制与 IM 一致。
+ */
+public class FakeIMServer {
+    // 群属性个数或大小超出限制
+    public static final int ERR_ATTR_LIMIT       = 10004;
+    // 邀请不存在或已经处理过
+    public static final int ERR_INVITE_INVALID   = 8010;
+    // 登录的 userId 与客户端不一致
+    public static final int ERR_USER_SIG_INVALID = 70003;
+
+    public static final int MAX_ATTR_COUNT      = 16;
+    public static final int MAX_ATTR_VALUE_SIZE = 4 * 1024;
+    public static final int MAX_ATTR_TOTAL_SIZE = 16 * 1024;
+    public static final int MEMBER_PAGE_SIZE    = 100;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static class Event implements Comparable<Event> {
+        final long     time;
+        final long     seq;
+        final Runnable task;
+
+        Event(long time, long seq, Runnable task) {
+            this.time = time;
+            this.seq = seq;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            if (time != o.time) {
+                return time < o.time ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+
+    private static class Group {
+        final String                        groupId;
+        final String                        owner;
+        final LinkedHashMap<String, Client> members = new LinkedHashMap<>();
+        final HashMap<String, String>       attrs   = new HashMap<>();
+        String                              groupName;
+        String                              faceUrl;
+        String                              introduction;
+
+        Group(String groupId, String owner, String groupName) {
+            this.groupId = groupId;
+            this.owner = owner;
+            this.groupName = groupName;
+        }
+    }
+
+    private static class Invitation {
+        final String inviter;
+        final String invitee;
+
+        Invitation(String inviter, String invitee) {
+            this.inviter = inviter;
+            this.invitee = invitee;
+        }
+    }
+
+    private final Random                  mRandom;
+    private final PriorityQueue<Event>    mEventQueue  = new PriorityQueue<>();
+    private final Map<String, Client>     mClients     = new HashMap<>();
+    private final Map<String, Group>      mGroups      = new HashMap<>();
+    private final Map<String, Invitation> mInvitations = new HashMap<>();
+    private long                          mNow;
+    private long                          mEventSeq;
+    private long                          mInviteSeq;
+    private int                           mLatencyMs;
+    private int                           mJitterMs;
+    private double                        mReorderRate;
+    private int                           mReorderDelayMs;
+    private long                          mRequestCount;
+    private long                          mPushCount;
+
+    public FakeIMServer(long seed) {
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * @param latencyMs 每一跳的固定延迟
+     * @param jitterMs  每一跳额外的随机延迟上限
+     */
+    public void setLatency(int latencyMs, int jitterMs) {
+        mLatencyMs = latencyMs;
+        mJitterMs = jitterMs;
+    }
+
+    /**
+     * @param rate    每一跳被额外延迟的概率，取值 [0, 1]
+     * @param delayMs 额外延迟的时间，大于 latency + jitter 时必然被后发的包超过
+     */
+    public void setReorder(double rate, int delayMs) {
+        mReorderRate = rate;
+        mReorderDelayMs = delayMs;
+    }
+
+    public Client createClient(String userId, String userName) {
+        Client client = new Client(userId, userName);
+        mClients.put(userId, client);
+        return client;
+    }
+
+    public Client getClient(String userId) {
+        return mClients.get(userId);
+    }
+
+    /**
+     * 虚拟时钟的当前时间，单位毫秒
+     */
+    public long now() {
+        return mNow;
+    }
+
+    /**
+     * 在虚拟时钟上延迟执行，用于模拟客户端自己的定时器
+     */
+    public void post(long delayMs, Runnable task) {
+        mEventQueue.add(new Event(mNow + Math.max(0, delayMs), mEventSeq++, task));
+    }
+
+    /**
+     * 执行队列里的所有事件，包括执行过程中新产生的事件
+     *
+     * @return 执行的事件数
+     */
+    public int runUntilIdle() {
+        int count = 0;
+        Event event;
+        while ((event = mEventQueue.poll()) != null) {
+            mNow = event.time;
+            event.task.run();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 虚拟时钟前进 timeMs，执行期间到期的事件
+     *
+     * @return 执行的事件数
+     */
+    public int advance(long timeMs) {
+        long  deadline = mNow + timeMs;
+        int   count    = 0;
+        Event event;
+        while ((event = mEventQueue.peek()) != null && event.time <= deadline) {
+            mEventQueue.poll();
+            mNow = event.time;
+            event.task.run();
+            count++;
+        }
+        mNow = deadline;
+        return count;
+    }
+
+    public int getPendingEventCount() {
+        return mEventQueue.size();
+    }
+
+    public long getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * @return 已经送达客户端的推送数，群消息和群属性变化按接收人计数
+     */
+    public long getPushCount() {
+        return mPushCount;
+    }
+
+    /**
+     * 直接读取服务端的群属性，用于校验压测结果
+     */
+    public Map<String, String> getGroupAttributes(String groupId) {
+        Group group = mGroups.get(groupId);
+        return group == null ? null : new HashMap<>(group.attrs);
+    }
+
+    public int getMemberCount(String groupId) {
+        Group group = mGroups.get(groupId);
+        return group == null ? 0 : group.members.size();
+    }
+
+    private long hopDelay() {
+        long delay = mLatencyMs;
+        if (mJitterMs > 0) {
+            delay += mRandom.nextInt(mJitterMs + 1);
+        }
+        if (mReorderRate > 0 && mRandom.nextDouble() < mReorderRate) {
+            delay += mReorderDelayMs;
+        }
+        return delay;
+    }
+
+    /**
+     * 请求经过一跳后在服务端执行
+     */
+    private void request(Runnable task) {
+        mRequestCount++;
+        post(hopDelay(), task);
+    }
+
+    private void respond(final IMBackend.Callback callback, final int code, final String desc) {
+        if (callback == null) {
+            return;
+        }
+        post(hopDelay(), new Runnable() {
+            @Override
+            public void run() {
+                if (code == 0) {
+                    callback.onSuccess();
+                } else {
+                    callback.onError(code, desc);
+                }
+            }
+        });
+    }
+
+    private <T> void respondValue(final IMBackend.ValueCallback<T> callback, final T value) {
+        if (callback == null) {
+            return;
+        }
+        post(hopDelay(), new Runnable() {
+            @Override
+            public void run() {
+                callback.onSuccess(value);
+            }
+        });
+    }
+
+    private <T> void respondError(final IMBackend.ValueCallback<T> callback, final int code, final String desc) {
+        if (callback == null) {
+            return;
+        }
+        post(hopDelay(), new Runnable() {
+            @Override
+            public void run() {
+                callback.onError(code, desc);
+            }
+        });
+    }
+
+    private interface Push {
+        void deliver(IMBackend.Listener listener);
+    }
+
+    /**
+     * 没有设置监听的客户端不会收到推送，压测时只发请求的客户端不占用事件队列；
+     * 送达时再读取一次监听，送达前取消监听的客户端也收不到
+     */
+    private void push(final Client client, final Push push) {
+        if (client.mListener == null) {
+            return;
+        }
+        post(hopDelay(), new Runnable() {
+            @Override
+            public void run() {
+                IMBackend.Listener listener = client.mListener;
+                if (listener != null) {
+                    mPushCount++;
+                    push.deliver(listener);
+                }
+            }
+        });
+    }
+
+    private void pushToMembers(Group group, Client except, Push push) {
+        for (Client member : group.members.values()) {
+            if (member != except) {
+                push(member, push);
+            }
+        }
+    }
+
+    private void pushAttrChanged(final Group group) {
+        // 所有人共用一份快照，推送的是变化后完整的群属性
+        final Map<String, String> snapshot = Collections.unmodifiableMap(new HashMap<>(group.attrs));
+        pushToMembers(group, null, new Push() {
+            @Override
+            public void deliver(IMBackend.Listener listener) {
+                listener.onGroupAttributeChanged(group.groupId, snapshot);
+            }
+        });
+    }
+
+    /**
+     * @return 超出限制时返回错误描述，否则返回 null
+     */
+    private static String checkAttrLimit(Map<String, String> attrs) {
+        if (attrs.size() > MAX_ATTR_COUNT) {
+            return "attr count " + attrs.size() + " exceeds " + MAX_ATTR_COUNT;
+        }
+        int total = 0;
+        for (Map.Entry<String, String> entry : attrs.entrySet()) {
+            int size = entry.getKey().getBytes(UTF_8).length + (entry.getValue() == null ? 0 : entry.getValue().getBytes(UTF_8).length);
+            if (size > MAX_ATTR_VALUE_SIZE) {
+                return "attr " + entry.getKey() + " size " + size + " exceeds " + MAX_ATTR_VALUE_SIZE;
+            }
+            total += size;
+        }
+        if (total > MAX_ATTR_TOTAL_SIZE) {
+            return "attr total size " + total + " exceeds " + MAX_ATTR_TOTAL_SIZE;
+        }
+        return null;
+    }
+
+    private static TXUserInfo copyUserInfo(TXUserInfo userInfo) {
+        TXUserInfo copy = new TXUserInfo();
+        copy.userId = userInfo.userId;
+        copy.userName = userInfo.userName;
+        copy.avatarURL = userInfo.avatarURL;
+        return copy;
+    }
+
+    /**
+     * 一个登录到模拟 IM 服务的用户
+     * <p>
+     * 创建后就可以直接发请求，{@link #login} 只用于 TXRoomService 的登录流程，只能以创建时的 userId 登录。
+     */
+    public class Client implements IMBackend {
+        private final TXUserInfo mUserInfo;
+        private       Listener   mListener;
+        private       boolean    mLoggedIn;
+
+        Client(String userId, String userName) {
+            mUserInfo = new TXUserInfo();
+            mUserInfo.userId = userId;
+            mUserInfo.userName = userName;
+        }
+
+        public String getUserId() {
+            return mUserInfo.userId;
+        }
+
+        public FakeIMServer getServer() {
+            return FakeIMServer.this;
+        }
+
+        @Override
+        public boolean initSDK(int sdkAppId) {
+            return true;
+        }
+
+        @Override
+        public String getLoginUser() {
+            return mLoggedIn ? mUserInfo.userId : null;
+        }
+
+        @Override
+        public void login(final String userId, String userSig, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mUserInfo.userId.equals(userId)) {
+                        respond(callback, ERR_USER_SIG_INVALID, "user sig does not match " + userId);
+                        return;
+                    }
+                    mLoggedIn = true;
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void logout(final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    mLoggedIn = false;
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void setListener(Listener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void getUsersInfo(final List<String> userIdList, final ValueCallback<List<TXUserInfo>> callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    List<TXUserInfo> list = new ArrayList<>(userIdList.size());
+                    for (String userId : userIdList) {
+                        Client client = mClients.get(userId);
+                        if (client != null) {
+                            list.add(copyUserInfo(client.mUserInfo));
+                        }
+                    }
+                    respondValue(callback, list);
+                }
+            });
+        }
+
+        @Override
+        public void setSelfInfo(final String userName, final String avatarUrl, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    mUserInfo.userName = userName;
+                    mUserInfo.avatarURL = avatarUrl;
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void createGroup(final String groupId, final String groupName, final ValueCallback<String> callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = mGroups.get(groupId);
+                    if (group != null) {
+                        if (group.owner.equals(getUserId())) {
+                            respondError(callback, ERR_GROUP_OWNED_BY_SELF, "group id has been used by yourself");
+                        } else {
+                            respondError(callback, ERR_GROUP_ID_IN_USE, "group id has been used");
+                        }
+                        return;
+                    }
+                    group = new Group(groupId, getUserId(), groupName);
+                    group.members.put(getUserId(), Client.this);
+                    mGroups.put(groupId, group);
+                    respondValue(callback, groupId);
+                }
+            });
+        }
+
+        @Override
+        public void setGroupInfo(final String groupId, final String groupName, final String faceUrl, final String introduction, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = mGroups.get(groupId);
+                    if (group == null) {
+                        respond(callback, ERR_GROUP_NOT_FOUND, "group not found");
+                        return;
+                    }
+                    if (!group.owner.equals(getUserId())) {
+                        respond(callback, ERR_PERMISSION_DENIED, "only owner could set group info");
+                        return;
+                    }
+                    group.groupName = groupName;
+                    group.faceUrl = faceUrl;
+                    group.introduction = introduction;
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void getGroupsInfo(final List<String> groupIdList, final ValueCallback<List<TXRoomInfo>> callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    List<TXRoomInfo> list = new ArrayList<>(groupIdList.size());
+                    for (String groupId : groupIdList) {
+                        Group group = mGroups.get(groupId);
+                        if (group == null) {
+                            continue;
+                        }
+                        TXRoomInfo roomInfo = new TXRoomInfo();
+                        roomInfo.roomId = group.groupId;
+                        roomInfo.roomName = group.groupName;
+                        roomInfo.cover = group.faceUrl;
+                        roomInfo.ownerId = group.owner;
+                        roomInfo.ownerName = group.introduction;
+                        roomInfo.memberCount = group.members.size();
+                        list.add(roomInfo);
+                    }
+                    respondValue(callback, list);
+                }
+            });
+        }
+
+        @Override
+        public void joinGroup(final String groupId, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = mGroups.get(groupId);
+                    if (group == null) {
+                        respond(callback, ERR_GROUP_NOT_FOUND, "group not found");
+                        return;
+                    }
+                    if (group.members.containsKey(getUserId())) {
+                        respond(callback, ERR_ALREADY_MEMBER, "already group member");
+                        return;
+                    }
+                    final List<TXUserInfo> memberList = Collections.singletonList(copyUserInfo(mUserInfo));
+                    pushToMembers(group, null, new Push() {
+                        @Override
+                        public void deliver(Listener listener) {
+                            listener.onMemberEnter(groupId, memberList);
+                        }
+                    });
+                    group.members.put(getUserId(), Client.this);
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void quitGroup(final String groupId, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = mGroups.get(groupId);
+                    if (group == null) {
+                        respond(callback, ERR_GROUP_NOT_FOUND, "group not found");
+                        return;
+                    }
+                    if (group.members.remove(getUserId()) == null) {
+                        respond(callback, ERR_PERMISSION_DENIED, "not group member");
+                        return;
+                    }
+                    final TXUserInfo member = copyUserInfo(mUserInfo);
+                    pushToMembers(group, null, new Push() {
+                        @Override
+                        public void deliver(Listener listener) {
+                            listener.onMemberLeave(groupId, member);
+                        }
+                    });
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void dismissGroup(final String groupId, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = mGroups.get(groupId);
+                    if (group == null) {
+                        respond(callback, ERR_GROUP_NOT_FOUND, "group not found");
+                        return;
+                    }
+                    if (!group.owner.equals(getUserId())) {
+                        respond(callback, ERR_PERMISSION_DENIED, "only owner could dismiss group");
+                        return;
+                    }
+                    mGroups.remove(groupId);
+                    pushToMembers(group, Client.this, new Push() {
+                        @Override
+                        public void deliver(Listener listener) {
+                            listener.onGroupDismissed(groupId);
+                        }
+                    });
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void initGroupAttributes(final String groupId, HashMap<String, String> attrMap, final Callback callback) {
+            final HashMap<String, String> attrs = new HashMap<>(attrMap);
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = getJoinedGroup(groupId, callback);
+                    if (group == null) {
+                        return;
+                    }
+                    String error = checkAttrLimit(attrs);
+                    if (error != null) {
+                        respond(callback, ERR_ATTR_LIMIT, error);
+                        return;
+                    }
+                    group.attrs.clear();
+                    group.attrs.putAll(attrs);
+                    pushAttrChanged(group);
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void setGroupAttributes(final String groupId, HashMap<String, String> attrMap, final Callback callback) {
+            final HashMap<String, String> attrs = new HashMap<>(attrMap);
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = getJoinedGroup(groupId, callback);
+                    if (group == null) {
+                        return;
+                    }
+                    HashMap<String, String> merged = new HashMap<>(group.attrs);
+                    merged.putAll(attrs);
+                    String error = checkAttrLimit(merged);
+                    if (error != null) {
+                        respond(callback, ERR_ATTR_LIMIT, error);
+                        return;
+                    }
+                    group.attrs.putAll(attrs);
+                    pushAttrChanged(group);
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void deleteGroupAttributes(final String groupId, final List<String> keyList, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = getJoinedGroup(groupId, callback);
+                    if (group == null) {
+                        return;
+                    }
+                    if (keyList == null) {
+                        group.attrs.clear();
+                    } else {
+                        for (String key : keyList) {
+                            group.attrs.remove(key);
+                        }
+                    }
+                    pushAttrChanged(group);
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void getGroupAttributes(final String groupId, final List<String> keyList, final ValueCallback<Map<String, String>> callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = mGroups.get(groupId);
+                    if (group == null || !group.members.containsKey(getUserId())) {
+                        respondError(callback, group == null ? ERR_GROUP_NOT_FOUND : ERR_PERMISSION_DENIED, "not group member");
+                        return;
+                    }
+                    Map<String, String> attrs;
+                    if (keyList == null) {
+                        attrs = new HashMap<>(group.attrs);
+                    } else {
+                        attrs = new HashMap<>();
+                        for (String key : keyList) {
+                            String value = group.attrs.get(key);
+                            if (value != null) {
+                                attrs.put(key, value);
+                            }
+                        }
+                    }
+                    respondValue(callback, attrs);
+                }
+            });
+        }
+
+        @Override
+        public void sendGroupTextMessage(final String groupId, final String text, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = getJoinedGroup(groupId, callback);
+                    if (group == null) {
+                        return;
+                    }
+                    final TXUserInfo sender = copyUserInfo(mUserInfo);
+                    pushToMembers(group, Client.this, new Push() {
+                        @Override
+                        public void deliver(Listener listener) {
+                            listener.onRecvGroupTextMessage(groupId, sender, text);
+                        }
+                    });
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void sendGroupCustomMessage(final String groupId, final byte[] data, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = getJoinedGroup(groupId, callback);
+                    if (group == null) {
+                        return;
+                    }
+                    final TXUserInfo sender = copyUserInfo(mUserInfo);
+                    pushToMembers(group, Client.this, new Push() {
+                        @Override
+                        public void deliver(Listener listener) {
+                            listener.onRecvGroupCustomMessage(groupId, sender, data);
+                        }
+                    });
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void getGroupMemberList(final String groupId, final long nextSeq, final ValueCallback<MemberPage> callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Group group = mGroups.get(groupId);
+                    if (group == null) {
+                        respondError(callback, ERR_GROUP_NOT_FOUND, "group not found");
+                        return;
+                    }
+                    List<Client> members = new ArrayList<>(group.members.values());
+                    int          from    = (int) Math.min(nextSeq, members.size());
+                    int          to      = Math.min(from + MEMBER_PAGE_SIZE, members.size());
+                    MemberPage   page    = new MemberPage();
+                    page.memberList = new ArrayList<>(to - from);
+                    for (int i = from; i < to; i++) {
+                        page.memberList.add(copyUserInfo(members.get(i).mUserInfo));
+                    }
+                    page.nextSeq = to < members.size() ? to : 0;
+                    respondValue(callback, page);
+                }
+            });
+        }
+
+        @Override
+        public String invite(final String invitee, final String data, int timeout, final Callback callback) {
+            final String inviteId = "invite_" + (++mInviteSeq);
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    mInvitations.put(inviteId, new Invitation(getUserId(), invitee));
+                    Client client = mClients.get(invitee);
+                    if (client != null) {
+                        final List<String> inviteeList = Collections.singletonList(invitee);
+                        push(client, new Push() {
+                            @Override
+                            public void deliver(Listener listener) {
+                                listener.onReceiveNewInvitation(inviteId, getUserId(), null, inviteeList, data);
+                            }
+                        });
+                    }
+                    respond(callback, 0, "");
+                }
+            });
+            return inviteId;
+        }
+
+        @Override
+        public void accept(String inviteId, String data, Callback callback) {
+            reply(inviteId, data, true, callback);
+        }
+
+        @Override
+        public void reject(String inviteId, String data, Callback callback) {
+            reply(inviteId, data, false, callback);
+        }
+
+        private void reply(final String inviteId, final String data, final boolean accept, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Invitation invitation = mInvitations.get(inviteId);
+                    if (invitation == null || !invitation.invitee.equals(getUserId())) {
+                        respond(callback, ERR_INVITE_INVALID, "invitation not found");
+                        return;
+                    }
+                    mInvitations.remove(inviteId);
+                    Client inviter = mClients.get(invitation.inviter);
+                    if (inviter != null) {
+                        push(inviter, new Push() {
+                            @Override
+                            public void deliver(Listener listener) {
+                                if (accept) {
+                                    listener.onInviteeAccepted(inviteId, getUserId(), data);
+                                } else {
+                                    listener.onInviteeRejected(inviteId, getUserId(), data);
+                                }
+                            }
+                        });
+                    }
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        @Override
+        public void cancel(final String inviteId, final String data, final Callback callback) {
+            request(new Runnable() {
+                @Override
+                public void run() {
+                    Invitation invitation = mInvitations.get(inviteId);
+                    if (invitation == null || !invitation.inviter.equals(getUserId())) {
+                        respond(callback, ERR_INVITE_INVALID, "invitation not found");
+                        return;
+                    }
+                    mInvitations.remove(inviteId);
+                    Client invitee = mClients.get(invitation.invitee);
+                    if (invitee != null) {
+                        push(invitee, new Push() {
+                            @Override
+                            public void deliver(Listener listener) {
+                                listener.onInvitationCancelled(inviteId, getUserId(), data);
+                            }
+                        });
+                    }
+                    respond(callback, 0, "");
+                }
+            });
+        }
+
+        /**
+         * @return 群不存在或不是群成员时回调错误并返回 null
+         */
+        private Group getJoinedGroup(String groupId, Callback callback) {
+            Group group = mGroups.get(groupId);
+            if (group == null) {
+                respond(callback, ERR_GROUP_NOT_FOUND, "group not found");
+                return null;
+            }
+            if (!group.members.containsKey(getUserId())) {
+                respond(callback, ERR_PERMISSION_DENIED, "not group member");
+                return null;
+            }
+            return group;
+        }
+    }
+}
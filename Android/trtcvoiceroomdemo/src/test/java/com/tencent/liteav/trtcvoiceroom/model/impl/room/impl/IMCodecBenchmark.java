@@ -0,0 +1,189 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.google.gson.Gson;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXInviteData;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * IMCodec 与原来每次 new Gson() 的编解码对比
+ * <p>
+ * 在普通 JVM 上运行 main：./gradlew :trtcvoiceroomdemo:runBenchmark -Pbenchmark=IMCodecBenchmark，
+ * 按 JMH 的方式先预热再测量，输出每个用例的吞吐（ops/ms）和每次操作的分配字节数。运行前会先校验两条路径的输出一致。
+ * 不同版本的 Gson 反射开销差别很大，runBenchmark 使用的是模块依赖的 Gson 2.3.1。
+ */
+public class IMCodecBenchmark {
+    private static final int WARMUP_ITERATIONS      = 5;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_TIME_MS     = 500;
+
+    interface Op {
+        Object run();
+    }
+
+    private static Object sBlackhole;
+
+    public static void main(String[] args) {
+        final TXSeatInfo seatInfo = new TXSeatInfo();
+        seatInfo.status = TXSeatInfo.STATUS_USED;
+        seatInfo.mute = true;
+        seatInfo.user = "user_123456";
+        final TXRoomInfo roomInfo = new TXRoomInfo();
+        roomInfo.ownerId = "owner_123456";
+        roomInfo.ownerName = "owner<name>";
+        roomInfo.roomName = "voice room & friends";
+        roomInfo.cover = "https://example.com/cover.png";
+        roomInfo.seatSize = 9;
+        roomInfo.needRequest = 1;
+        final TXInviteData inviteData = new TXInviteData();
+        inviteData.roomId = "12345678";
+        inviteData.command = "1";
+        inviteData.message = "3";
+
+        final String seatJson   = new Gson().toJson(seatInfo, TXSeatInfo.class);
+        final String roomJson   = new Gson().toJson(roomInfo, TXRoomInfo.class);
+        final String inviteJson = new Gson().toJson(inviteData, TXInviteData.class);
+        verify("seat", seatJson, IMCodec.toJson(seatInfo));
+        verify("room", roomJson, IMCodec.toJson(roomInfo));
+        verify("invite", inviteJson, IMCodec.toJson(inviteData));
+        verify("seat decode", seatJson, IMCodec.toJson(IMCodec.seatInfoFromJson(seatJson)));
+        verify("room decode", roomJson, IMCodec.toJson(IMCodec.roomInfoFromJson(roomJson)));
+        verify("invite decode", inviteJson, IMCodec.toJson(IMCodec.inviteDataFromJson(inviteJson)));
+
+        final Gson sharedReflective = new Gson();
+        System.out.println(String.format(Locale.US, "%-34s %14s %14s", "Benchmark", "ops/ms", "B/op"));
+        bench("seat.encode       new Gson()", new Op() {
+            @Override
+            public Object run() {
+                return new Gson().toJson(seatInfo, TXSeatInfo.class);
+            }
+        });
+        bench("seat.encode       shared Gson", new Op() {
+            @Override
+            public Object run() {
+                return sharedReflective.toJson(seatInfo, TXSeatInfo.class);
+            }
+        });
+        bench("seat.encode       IMCodec", new Op() {
+            @Override
+            public Object run() {
+                return IMCodec.toJson(seatInfo);
+            }
+        });
+        bench("seat.decode       new Gson()", new Op() {
+            @Override
+            public Object run() {
+                return new Gson().fromJson(seatJson, TXSeatInfo.class);
+            }
+        });
+        bench("seat.decode       shared Gson", new Op() {
+            @Override
+            public Object run() {
+                return sharedReflective.fromJson(seatJson, TXSeatInfo.class);
+            }
+        });
+        bench("seat.decode       IMCodec", new Op() {
+            @Override
+            public Object run() {
+                return IMCodec.seatInfoFromJson(seatJson);
+            }
+        });
+        bench("room.encode       new Gson()", new Op() {
+            @Override
+            public Object run() {
+                return new Gson().toJson(roomInfo, TXRoomInfo.class);
+            }
+        });
+        bench("room.encode       IMCodec", new Op() {
+            @Override
+            public Object run() {
+                return IMCodec.toJson(roomInfo);
+            }
+        });
+        bench("room.decode       new Gson()", new Op() {
+            @Override
+            public Object run() {
+                return new Gson().fromJson(roomJson, TXRoomInfo.class);
+            }
+        });
+        bench("room.decode       IMCodec", new Op() {
+            @Override
+            public Object run() {
+                return IMCodec.roomInfoFromJson(roomJson);
+            }
+        });
+        bench("invite.encode     new Gson()", new Op() {
+            @Override
+            public Object run() {
+                return new Gson().toJson(inviteData, TXInviteData.class);
+            }
+        });
+        bench("invite.encode     IMCodec", new Op() {
+            @Override
+            public Object run() {
+                return IMCodec.toJson(inviteData);
+            }
+        });
+        bench("invite.decode     new Gson()", new Op() {
+            @Override
+            public Object run() {
+                return new Gson().fromJson(inviteJson, TXInviteData.class);
+            }
+        });
+        bench("invite.decode     IMCodec", new Op() {
+            @Override
+            public Object run() {
+                return IMCodec.inviteDataFromJson(inviteJson);
+            }
+        });
+    }
+
+    private static void verify(String name, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " mismatch, expected: " + expected + " actual: " + actual);
+        }
+    }
+
+    private static void bench(String name, Op op) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(op);
+        }
+        double totalOps      = 0;
+        double totalMs       = 0;
+        double totalAllocate = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long   allocateBefore = allocatedBytes();
+            long   start          = System.nanoTime();
+            long   ops            = runIteration(op);
+            double elapsedMs      = (System.nanoTime() - start) / 1e6;
+            totalOps += ops;
+            totalMs += elapsedMs;
+            totalAllocate += allocatedBytes() - allocateBefore;
+        }
+        System.out.println(String.format(Locale.US, "%-34s %14.1f %14.1f", name, totalOps / totalMs, totalAllocate / totalOps));
+    }
+
+    private static long runIteration(Op op) {
+        long ops      = 0;
+        long deadline = System.nanoTime() + ITERATION_TIME_MS * 1000000L;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 100; i++) {
+                sBlackhole = op.run();
+            }
+            ops += 100;
+        }
+        return ops;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,162 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class OutboundMsgQueueTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private List<byte[]>     mSent;
+    private List<Integer>    mResults;
+    private OutboundMsgQueue mQueue;
+
+    @Before
+    public void setUp() {
+        mSent = new ArrayList<>();
+        mResults = new ArrayList<>();
+        mQueue = new OutboundMsgQueue(new OutboundMsgQueue.Sender() {
+            @Override
+            public void sendText(String text, TXCallback callback) {
+                mSent.add(text.getBytes(UTF_8));
+                if (callback != null) {
+                    callback.onCallback(0, "");
+                }
+            }
+
+            @Override
+            public void sendCustom(byte[] data, TXCallback callback) {
+                mSent.add(data);
+                if (callback != null) {
+                    callback.onCallback(0, "");
+                }
+            }
+        }, new Handler(Looper.getMainLooper()));
+        mQueue.setRate(1, 1);
+    }
+
+    @Test
+    public void backlogIsSentOneByOneByDefault() {
+        sendCustom("cmd", "a");
+        sendCustom("cmd", "b");
+        sendCustom("cmd", "c");
+        assertEquals(1, mSent.size());
+
+        ShadowLooper.idleMainLooper(2, TimeUnit.SECONDS);
+
+        assertEquals(3, mSent.size());
+        assertEquals("a", IMProtocol.parseCusMsg(mSent.get(0)).message);
+        assertEquals("b", IMProtocol.parseCusMsg(mSent.get(1)).message);
+        assertEquals("c", IMProtocol.parseCusMsg(mSent.get(2)).message);
+        assertEquals(3, mResults.size());
+    }
+
+    @Test
+    public void backlogIsBatchedWhenEnabled() {
+        mQueue.setBatchEnabled(true);
+        sendCustom("cmd", "a");
+        sendCustom("cmd", "b");
+        sendCustom("cmd", "c");
+
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+
+        assertEquals(2, mSent.size());
+        List<IMProtocol.CusMsg> batch = IMProtocol.parseCusMsgBatch(mSent.get(1));
+        assertNotNull(batch);
+        assertEquals(2, batch.size());
+        assertEquals("b", batch.get(0).message);
+        assertEquals("c", batch.get(1).message);
+        // 批量消息里的每条消息都单独回调
+        assertEquals(3, mResults.size());
+    }
+
+    @Test
+    public void batchBudgetCountsUtf8Bytes() {
+        mQueue.setBatchEnabled(true);
+        // 每条 2000 个中文字符，按字符数合并时两条才 4000，按 UTF-8 是 6000 字节，两条超过 6KB 的上限
+        String message = repeat('中', 2000);
+        sendCustom("cmd", "first");
+        sendCustom("cmd", message);
+        sendCustom("cmd", message);
+
+        ShadowLooper.idleMainLooper(2, TimeUnit.SECONDS);
+
+        assertEquals(3, mSent.size());
+        assertEquals(message, IMProtocol.parseCusMsg(mSent.get(1)).message);
+        assertEquals(message, IMProtocol.parseCusMsg(mSent.get(2)).message);
+    }
+
+    @Test
+    public void framesAreNotBatched() {
+        mQueue.setBatchEnabled(true);
+        byte[] frame = IMProtocol.getRoomEventFrame(1000, new byte[]{1, 2});
+        sendCustom("cmd", "a");
+        mQueue.sendFrame(frame, null);
+        sendCustom("cmd", "b");
+
+        ShadowLooper.idleMainLooper(2, TimeUnit.SECONDS);
+
+        assertEquals(3, mSent.size());
+        assertArrayEquals(frame, mSent.get(1));
+        assertEquals("b", IMProtocol.parseCusMsg(mSent.get(2)).message);
+    }
+
+    @Test
+    public void fullQueueFailsImmediately() {
+        mQueue.setMaxDepth(1);
+        sendCustom("cmd", "a");
+        sendCustom("cmd", "b");
+        sendCustom("cmd", "c");
+
+        assertEquals(1, mSent.size());
+        assertEquals(2, mResults.size());
+        assertEquals(OutboundMsgQueue.CODE_QUEUE_FULL, (int) mResults.get(1));
+        assertEquals(1, mQueue.getDropCount());
+    }
+
+    @Test
+    public void clearFailsPendingMessages() {
+        sendCustom("cmd", "a");
+        sendCustom("cmd", "b");
+        mQueue.clear(-1, "room exited.");
+
+        ShadowLooper.idleMainLooper(2, TimeUnit.SECONDS);
+
+        assertEquals(1, mSent.size());
+        assertEquals(-1, (int) mResults.get(1));
+    }
+
+    private void sendCustom(String cmd, String message) {
+        mQueue.sendCustom(cmd, message, new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                mResults.add(code);
+            }
+        });
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
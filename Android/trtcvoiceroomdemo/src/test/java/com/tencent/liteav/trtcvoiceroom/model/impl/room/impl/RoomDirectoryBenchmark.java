@@ -0,0 +1,122 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 房间列表每次全量查询与使用 {@link RoomDirectory} 的对比
+ * <p>
+ * 大厅里有一批房间，每次刷新之间随机解散一些房间、再创建同样数量的新房间。
+ * 全量查询时每次刷新都用完整的房间列表调用 getGroupsInfo；使用 RoomDirectory 时按 TXRoomService.getRoomInfoList 的逻辑只查询新的和过期的房间，
+ * 进入页面时先展示上一次的列表。刷新都在一个刷新间隔内完成，刷新间隔为 0 时退化为全量查询。
+ * 在普通 JVM 上直接运行 main，输出：
+ * 每次刷新平均查询的房间数，拿到最新列表和第一次展示列表的虚拟时间 p50（ms），以及第一次展示的列表里平均有几个已经解散的房间。
+ */
+public class RoomDirectoryBenchmark {
+    private static final long SEED          = 20201017L;
+    private static final int  LATENCY_MS    = 30;
+    private static final int  JITTER_MS     = 20;
+    private static final int  ROOM_COUNT    = 100;
+    private static final int  REFRESH_COUNT = 200;
+    // 每次刷新之间解散和新建的房间数
+    private static final int  CHURN_COUNT   = 3;
+
+    public static void main(String[] args) {
+        System.out.println(String.format(Locale.US, "%-22s %8s %10s %10s %10s",
+                "Scenario", "ids", "fresh50", "paint50", "dismissed"));
+        run("full query", null);
+        run("directory, 30s", new RoomDirectory());
+        run("directory, interval 0", new RoomDirectory(0));
+    }
+
+    private static void run(String name, final RoomDirectory directory) {
+        final FakeIMServer server = new FakeIMServer(SEED);
+        server.setLatency(LATENCY_MS, JITTER_MS);
+        Random random = new Random(SEED);
+
+        // 服务端的房间列表和房主
+        List<String>                     roomIds = new ArrayList<>();
+        Map<String, FakeIMServer.Client> owners  = new HashMap<>();
+        int                              nextId  = 0;
+        for (; nextId < ROOM_COUNT; nextId++) {
+            createRoom(server, roomIds, owners, nextId);
+        }
+        server.runUntilIdle();
+
+        FakeIMServer.Client visitor      = server.createClient("visitor", "visitor");
+        long[]              freshTimes   = new long[REFRESH_COUNT];
+        long[]              paintTimes   = new long[REFRESH_COUNT];
+        long                fetchedCount = 0;
+        long                staleCount   = 0;
+        for (int i = 0; i < REFRESH_COUNT; i++) {
+            for (int j = 0; j < CHURN_COUNT; j++) {
+                String roomId = roomIds.remove(random.nextInt(roomIds.size()));
+                owners.remove(roomId).dismissGroup(roomId, null);
+                createRoom(server, roomIds, owners, nextId++);
+            }
+            server.runUntilIdle();
+
+            long startTime = server.now();
+            paintTimes[i] = -1;
+            if (directory != null) {
+                List<TXRoomInfo> cached = directory.getLastList();
+                if (!cached.isEmpty()) {
+                    paintTimes[i] = 0;
+                    for (TXRoomInfo roomInfo : cached) {
+                        if (!owners.containsKey(roomInfo.roomId)) {
+                            staleCount++;
+                        }
+                    }
+                }
+            }
+            final List<String> requestIds = new ArrayList<>(roomIds);
+            final List<String> fetchIds   = (directory == null ? requestIds : directory.getStaleRoomIds(requestIds));
+            final long[]       finish     = new long[]{-1};
+            fetchedCount += fetchIds.size();
+            if (fetchIds.isEmpty()) {
+                directory.update(requestIds, fetchIds, new ArrayList<TXRoomInfo>());
+                finish[0] = server.now();
+            } else {
+                visitor.getGroupsInfo(fetchIds, new IMBackend.ValueCallback<List<TXRoomInfo>>() {
+                    @Override
+                    public void onError(int code, String desc) {
+                        throw new IllegalStateException("get groups info fail: " + desc);
+                    }
+
+                    @Override
+                    public void onSuccess(List<TXRoomInfo> roomInfoList) {
+                        if (directory != null) {
+                            directory.update(requestIds, fetchIds, roomInfoList);
+                        }
+                        finish[0] = server.now();
+                    }
+                });
+                server.runUntilIdle();
+            }
+            freshTimes[i] = finish[0] - startTime;
+            if (paintTimes[i] < 0) {
+                paintTimes[i] = freshTimes[i];
+            }
+        }
+        Arrays.sort(freshTimes);
+        Arrays.sort(paintTimes);
+        System.out.println(String.format(Locale.US, "%-22s %8.1f %10d %10d %10.2f",
+                name, (double) fetchedCount / REFRESH_COUNT, freshTimes[REFRESH_COUNT / 2], paintTimes[REFRESH_COUNT / 2],
+                (double) staleCount / REFRESH_COUNT));
+    }
+
+    private static void createRoom(FakeIMServer server, List<String> roomIds, Map<String, FakeIMServer.Client> owners, int index) {
+        String              roomId = String.valueOf(10000 + index);
+        FakeIMServer.Client owner  = server.createClient("owner_" + index, "owner_" + index);
+        owner.createGroup(roomId, "room_" + index, null);
+        roomIds.add(roomId);
+        owners.put(roomId, owner);
+    }
+}
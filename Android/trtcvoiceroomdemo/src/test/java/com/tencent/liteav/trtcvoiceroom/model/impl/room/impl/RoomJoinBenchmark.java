@@ -0,0 +1,273 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.RoomJoinOrchestrator;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 串行进房与 {@link RoomJoinOrchestrator} 并行进房的对比
+ * <p>
+ * IM 一路在 {@link FakeIMServer} 上按 TXRoomService.enterRoom 的顺序 joinGroup、getGroupAttributes；
+ * TRTC 一路没有模拟服务，用虚拟时钟上的一段随机延迟代替，并按一定比例失败。
+ * 串行为先 IM 后 TRTC，任意一路失败就结束；并行时两路同时开始，失败后撤销另一路。
+ * 在普通 JVM 上直接运行 main，输出：
+ * 成功进房的虚拟时间 p50/p99（ms），失败时回调的虚拟时间 p50（ms），失败次数，以及结束后仍留在 IM 群或 TRTC 房间里的次数（应为 0）。
+ */
+public class RoomJoinBenchmark {
+    private static final long     SEED          = 20201017L;
+    private static final String   ROOM_ID       = "join_room";
+    private static final int      SEAT_SIZE     = 10;
+    private static final int      LATENCY_MS    = 30;
+    private static final int      JITTER_MS     = 20;
+    private static final int      VISITOR_COUNT = 500;
+    // TRTC 进房的耗时为 [TRTC_MIN_MS, TRTC_MAX_MS) 内均匀分布
+    private static final int      TRTC_MIN_MS   = 60;
+    private static final int      TRTC_MAX_MS   = 200;
+    private static final double[] FAIL_RATES    = {0, 0.05};
+
+    public static void main(String[] args) {
+        System.out.println(String.format(Locale.US, "%-10s %6s %10s %10s %10s %8s %8s",
+                "Scenario", "fail", "join50", "join99", "fail50", "fails", "leaked"));
+        for (double failRate : FAIL_RATES) {
+            run(false, failRate);
+            run(true, failRate);
+        }
+    }
+
+    private static void run(boolean parallel, double failRate) {
+        final FakeIMServer server = new FakeIMServer(SEED);
+        server.setLatency(LATENCY_MS, JITTER_MS);
+        final Random random = new Random(SEED);
+
+        FakeIMServer.Client owner = server.createClient("owner", "owner");
+        createRoom(owner);
+        server.runUntilIdle();
+
+        Result result = new Result(parallel ? "parallel" : "serial", failRate, VISITOR_COUNT);
+        for (int i = 0; i < VISITOR_COUNT; i++) {
+            FakeIMServer.Client visitor   = server.createClient("visitor_" + i, "visitor_" + i);
+            Visitor             state     = new Visitor();
+            IMLeg               imLeg     = new IMLeg(visitor, state, random.nextDouble() < failRate);
+            TRTCLeg             trtcLeg   = new TRTCLeg(server, state, TRTC_MIN_MS + random.nextInt(TRTC_MAX_MS - TRTC_MIN_MS),
+                    random.nextDouble() < failRate);
+            long                startTime = server.now();
+            long[]              finish    = new long[]{-1, 0};
+            if (parallel) {
+                joinParallel(server, imLeg, trtcLeg, finish);
+            } else {
+                joinSerial(server, imLeg, trtcLeg, finish);
+            }
+            server.runUntilIdle();
+            result.add(finish[0] - startTime, finish[1] == 0, state.inGroup || state.inTRTC);
+            if (finish[1] == 0) {
+                visitor.quitGroup(ROOM_ID, null);
+                server.runUntilIdle();
+            }
+        }
+        result.print();
+    }
+
+    private static void joinSerial(final FakeIMServer server, final IMLeg imLeg, final TRTCLeg trtcLeg, final long[] finish) {
+        imLeg.start(new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                if (code != 0) {
+                    finish[0] = server.now();
+                    finish[1] = code;
+                    return;
+                }
+                trtcLeg.start(new TXCallback() {
+                    @Override
+                    public void onCallback(int code, String msg) {
+                        if (code != 0) {
+                            imLeg.rollback();
+                        }
+                        finish[0] = server.now();
+                        finish[1] = code;
+                    }
+                });
+            }
+        });
+    }
+
+    private static void joinParallel(final FakeIMServer server, IMLeg imLeg, TRTCLeg trtcLeg, final long[] finish) {
+        new RoomJoinOrchestrator("enter room " + ROOM_ID, imLeg, trtcLeg).start(new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                finish[0] = server.now();
+                finish[1] = code;
+            }
+        });
+    }
+
+    private static class Visitor {
+        boolean inGroup;
+        boolean inTRTC;
+    }
+
+    /**
+     * 与 TXRoomService.enterRoom 相同：进群后拉取群属性，失败时模拟进群失败，经过一次 IM 往返后回调
+     */
+    private static class IMLeg implements RoomJoinOrchestrator.Leg {
+        private final FakeIMServer.Client mClient;
+        private final Visitor             mVisitor;
+        private final boolean             mFail;
+
+        IMLeg(FakeIMServer.Client client, Visitor visitor, boolean fail) {
+            mClient = client;
+            mVisitor = visitor;
+            mFail = fail;
+        }
+
+        @Override
+        public void start(final TXCallback callback) {
+            if (mFail) {
+                mClient.getServer().post(LATENCY_MS, new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onCallback(-1, "join group error, enter room fail.");
+                    }
+                });
+                return;
+            }
+            mClient.joinGroup(ROOM_ID, new IMBackend.Callback() {
+                @Override
+                public void onError(int code, String desc) {
+                    callback.onCallback(code, desc);
+                }
+
+                @Override
+                public void onSuccess() {
+                    mClient.getGroupAttributes(ROOM_ID, null, new IMBackend.ValueCallback<Map<String, String>>() {
+                        @Override
+                        public void onError(int code, String desc) {
+                            callback.onCallback(code, desc);
+                        }
+
+                        @Override
+                        public void onSuccess(Map<String, String> attrMap) {
+                            mVisitor.inGroup = true;
+                            callback.onCallback(0, "enter room success.");
+                        }
+                    });
+                }
+            });
+        }
+
+        @Override
+        public void rollback() {
+            mVisitor.inGroup = false;
+            mClient.quitGroup(ROOM_ID, null);
+        }
+    }
+
+    private static class TRTCLeg implements RoomJoinOrchestrator.Leg {
+        private final FakeIMServer mServer;
+        private final Visitor      mVisitor;
+        private final int          mDelayMs;
+        private final boolean      mFail;
+
+        TRTCLeg(FakeIMServer server, Visitor visitor, int delayMs, boolean fail) {
+            mServer = server;
+            mVisitor = visitor;
+            mDelayMs = delayMs;
+            mFail = fail;
+        }
+
+        @Override
+        public void start(final TXCallback callback) {
+            mServer.post(mDelayMs, new Runnable() {
+                @Override
+                public void run() {
+                    if (mFail) {
+                        callback.onCallback(-100, "enter room fail");
+                        return;
+                    }
+                    mVisitor.inTRTC = true;
+                    callback.onCallback(0, "enter room success.");
+                }
+            });
+        }
+
+        @Override
+        public void rollback() {
+            mVisitor.inTRTC = false;
+        }
+    }
+
+    private static void createRoom(final FakeIMServer.Client owner) {
+        final List<TXSeatInfo> seatList = new ArrayList<>(SEAT_SIZE);
+        for (int i = 0; i < SEAT_SIZE; i++) {
+            seatList.add(new TXSeatInfo());
+        }
+        final TXRoomInfo roomInfo = new TXRoomInfo();
+        roomInfo.ownerId = owner.getUserId();
+        roomInfo.ownerName = owner.getUserId();
+        roomInfo.roomName = ROOM_ID;
+        roomInfo.seatSize = SEAT_SIZE;
+        owner.createGroup(ROOM_ID, ROOM_ID, new IMBackend.ValueCallback<String>() {
+            @Override
+            public void onError(int code, String desc) {
+                throw new IllegalStateException("create room fail: " + desc);
+            }
+
+            @Override
+            public void onSuccess(String groupId) {
+                String attrVersion = IMProtocol.getAttrVersionForSeatSize(SEAT_SIZE, true);
+                owner.initGroupAttributes(ROOM_ID, IMProtocol.getInitRoomMap(roomInfo, seatList, attrVersion), null);
+            }
+        });
+    }
+
+    private static class Result {
+        final String name;
+        final double failRate;
+        final long[] joinTimes;
+        final long[] failTimes;
+        int          joinCount;
+        int          failCount;
+        int          leakedCount;
+
+        Result(String name, double failRate, int capacity) {
+            this.name = name;
+            this.failRate = failRate;
+            joinTimes = new long[capacity];
+            failTimes = new long[capacity];
+        }
+
+        void add(long time, boolean success, boolean leaked) {
+            if (success) {
+                joinTimes[joinCount++] = time;
+            } else {
+                failTimes[failCount++] = time;
+                if (leaked) {
+                    leakedCount++;
+                }
+            }
+        }
+
+        void print() {
+            long[] join = Arrays.copyOf(joinTimes, joinCount);
+            long[] fail = Arrays.copyOf(failTimes, failCount);
+            Arrays.sort(join);
+            Arrays.sort(fail);
+            System.out.println(String.format(Locale.US, "%-10s %5.0f%% %10d %10d %10d %8d %8d",
+                    name, failRate * 100, percentile(join, 50), percentile(join, 99), percentile(fail, 50), failCount, leakedCount));
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) ((sorted.length - 1) * (long) percent / 100)];
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 冷进房与使用快照再次进房的对比
+ * <p>
+ * 在 {@link FakeIMServer} 上按 TXRoomService.enterRoom 的顺序进房：joinGroup、getGroupAttributes、解析房间信息和座位后回调上层。
+ * 冷进房要等这两次 IM 往返后才能渲染；再次进房时先用 {@link RoomSnapshotCache} 的快照渲染，IM 返回后只在群属性变化时再回调一次。
+ * 两次进房之间房主会随机修改座位，用来统计快照过期的比例。
+ * TRTC 进房在 TRTCVoiceRoomImpl.enterRoom 中与 IM 进房同时发起，不等待群属性，听到声音的时间不受快照影响，这里只比较渲染时间。
+ * 在普通 JVM 上直接运行 main，输出：
+ * 首次渲染和拿到最新群属性的虚拟时间 p50/p99（ms），渲染前在本地解码、解析的耗时（us），以及需要再次回调的比例。
+ */
+public class RoomReentryBenchmark {
+    private static final long   SEED          = 20201017L;
+    private static final String ROOM_ID       = "reentry_room";
+    private static final int    LATENCY_MS    = 30;
+    private static final int    JITTER_MS     = 20;
+    private static final int    VISITOR_COUNT = 300;
+    private static final int[]  SEAT_SIZES    = {10, 100};
+    // 两次进房之间房主修改座位的概率
+    private static final double CHANGE_RATE   = 0.3;
+
+    private static Object sBlackhole;
+
+    public static void main(String[] args) {
+        System.out.println(String.format(Locale.US, "%-22s %6s %10s %10s %10s %10s %10s %10s",
+                "Scenario", "seats", "render50", "render99", "ready50", "ready99", "cpu(us)", "rerender"));
+        for (int seatSize : SEAT_SIZES) {
+            // 第一轮预热
+            run(seatSize, false);
+            run(seatSize, true);
+        }
+    }
+
+    private static void run(int seatSize, boolean print) {
+        final FakeIMServer server = new FakeIMServer(SEED);
+        server.setLatency(LATENCY_MS, JITTER_MS);
+        Random random = new Random(SEED);
+
+        final FakeIMServer.Client owner = server.createClient("owner", "owner");
+        createRoom(owner, seatSize);
+        server.runUntilIdle();
+
+        Result cold          = new Result("cold enter", VISITOR_COUNT);
+        Result warmMemory    = new Result("warm enter, memory", VISITOR_COUNT);
+        Result warmPersisted = new Result("warm enter, persisted", VISITOR_COUNT);
+        for (int i = 0; i < VISITOR_COUNT; i++) {
+            FakeIMServer.Client visitor = server.createClient("visitor_" + i, "visitor_" + i);
+            RoomSnapshotCache   cache   = new RoomSnapshotCache();
+            enter(server, visitor, cache, cold);
+            leave(server, visitor);
+            if (random.nextDouble() < CHANGE_RATE) {
+                changeSeat(server, owner, seatSize, random.nextInt(seatSize), "seat_user_" + i);
+            }
+            enter(server, visitor, cache, warmMemory);
+            leave(server, visitor);
+
+            // 模拟进程重启：快照从持久化的 JSON 重新解码
+            RoomSnapshotCache restored = new RoomSnapshotCache();
+            String            encoded  = RoomSnapshotCache.encode(cache.get(ROOM_ID));
+            long              start    = System.nanoTime();
+            restored.put(ROOM_ID, RoomSnapshotCache.decode(encoded).attrMap);
+            long decodeNanos = System.nanoTime() - start;
+            enter(server, visitor, restored, warmPersisted);
+            warmPersisted.cpuNanos[warmPersisted.count - 1] += decodeNanos;
+            leave(server, visitor);
+        }
+        if (print) {
+            cold.print(seatSize);
+            warmMemory.print(seatSize);
+            warmPersisted.print(seatSize);
+        }
+    }
+
+    /**
+     * 与 TXRoomService.enterRoom 相同的进房顺序，渲染时间按模拟服务的虚拟时间计算
+     */
+    private static void enter(final FakeIMServer server, final FakeIMServer.Client client, final RoomSnapshotCache cache, final Result result) {
+        final long   startTime = server.now();
+        final long[] times     = new long[]{-1, -1};
+        final long[] cpuNanos  = new long[1];
+        final RoomSnapshotCache.Snapshot snapshot = cache.get(ROOM_ID);
+        if (snapshot != null) {
+            long start = System.nanoTime();
+            render(snapshot.attrMap);
+            cpuNanos[0] += System.nanoTime() - start;
+            times[0] = 0;
+        }
+        client.joinGroup(ROOM_ID, new IMBackend.Callback() {
+            @Override
+            public void onError(int code, String desc) {
+                throw new IllegalStateException("join fail: " + desc);
+            }
+
+            @Override
+            public void onSuccess() {
+                client.getGroupAttributes(ROOM_ID, null, new IMBackend.ValueCallback<Map<String, String>>() {
+                    @Override
+                    public void onError(int code, String desc) {
+                        throw new IllegalStateException("get attrs fail: " + desc);
+                    }
+
+                    @Override
+                    public void onSuccess(Map<String, String> attrMap) {
+                        times[1] = server.now() - startTime;
+                        if (snapshot == null || !snapshot.attrMap.equals(attrMap)) {
+                            long start = System.nanoTime();
+                            render(attrMap);
+                            if (snapshot == null) {
+                                cpuNanos[0] += System.nanoTime() - start;
+                                times[0] = times[1];
+                            } else {
+                                result.rerenderCount++;
+                            }
+                        }
+                        cache.put(ROOM_ID, attrMap);
+                    }
+                });
+            }
+        });
+        server.runUntilIdle();
+        result.add(times[0], times[1], cpuNanos[0]);
+    }
+
+    private static void render(Map<String, String> attrMap) {
+        TXRoomInfo roomInfo = IMProtocol.getRoomInfoFromAttr(attrMap);
+        sBlackhole = IMProtocol.getSeatListFromAttr(attrMap, roomInfo.seatSize);
+    }
+
+    private static void leave(FakeIMServer server, FakeIMServer.Client client) {
+        client.quitGroup(ROOM_ID, null);
+        server.runUntilIdle();
+    }
+
+    private static void createRoom(final FakeIMServer.Client owner, final int seatSize) {
+        final List<TXSeatInfo> seatList = new ArrayList<>(seatSize);
+        for (int i = 0; i < seatSize; i++) {
+            TXSeatInfo info = new TXSeatInfo();
+            if (i % 2 == 0) {
+                info.status = TXSeatInfo.STATUS_USED;
+                info.user = "seat_user_" + i;
+            }
+            seatList.add(info);
+        }
+        final TXRoomInfo roomInfo = new TXRoomInfo();
+        roomInfo.ownerId = owner.getUserId();
+        roomInfo.ownerName = owner.getUserId();
+        roomInfo.roomName = ROOM_ID;
+        roomInfo.seatSize = seatSize;
+        owner.createGroup(ROOM_ID, ROOM_ID, new IMBackend.ValueCallback<String>() {
+            @Override
+            public void onError(int code, String desc) {
+                throw new IllegalStateException("create room fail: " + desc);
+            }
+
+            @Override
+            public void onSuccess(String groupId) {
+                String attrVersion = IMProtocol.getAttrVersionForSeatSize(seatSize, true);
+                owner.initGroupAttributes(ROOM_ID, IMProtocol.getInitRoomMap(roomInfo, seatList, attrVersion), null);
+            }
+        });
+    }
+
+    private static void changeSeat(FakeIMServer server, FakeIMServer.Client owner, int seatSize, int index, String userId) {
+        Map<String, String> attrMap     = server.getGroupAttributes(ROOM_ID);
+        String              attrVersion = IMProtocol.getAttrVersion(attrMap);
+        List<TXSeatInfo>    seatList    = IMProtocol.getSeatListFromAttr(attrMap, seatSize);
+        TXSeatInfo          info        = seatList.get(index);
+        if (info.status == TXSeatInfo.STATUS_USED) {
+            info.status = TXSeatInfo.STATUS_UNUSED;
+            info.user = "";
+        } else {
+            info.status = TXSeatInfo.STATUS_USED;
+            info.user = userId;
+        }
+        owner.setGroupAttributes(ROOM_ID, IMProtocol.getSeatInfoListJsonStr(seatList, attrVersion), null);
+        server.runUntilIdle();
+    }
+
+    private static class Result {
+        final String name;
+        final long[] renderTimes;
+        final long[] readyTimes;
+        final long[] cpuNanos;
+        int          count;
+        int          rerenderCount;
+
+        Result(String name, int capacity) {
+            this.name = name;
+            renderTimes = new long[capacity];
+            readyTimes = new long[capacity];
+            cpuNanos = new long[capacity];
+        }
+
+        void add(long renderTime, long readyTime, long cpu) {
+            renderTimes[count] = renderTime;
+            readyTimes[count] = readyTime;
+            cpuNanos[count] = cpu;
+            count++;
+        }
+
+        void print(int seatSize) {
+            long[] render = Arrays.copyOf(renderTimes, count);
+            long[] ready  = Arrays.copyOf(readyTimes, count);
+            long[] cpu    = Arrays.copyOf(cpuNanos, count);
+            Arrays.sort(render);
+            Arrays.sort(ready);
+            Arrays.sort(cpu);
+            System.out.println(String.format(Locale.US, "%-22s %6d %10d %10d %10d %10d %10.1f %9.1f%%",
+                    name, seatSize, percentile(render, 50), percentile(render, 99), percentile(ready, 50), percentile(ready, 99),
+                    percentile(cpu, 50) / 1e3, 100.0 * rerenderCount / count));
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            return sorted[(int) ((sorted.length - 1) * (long) percent / 100)];
+        }
+    }
+}
@@ -0,0 +1,631 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.trtc.SeatVolumeTracker;
+import com.tencent.trtc.TRTCCloudDef;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 房间场景压测：在 {@link FakeIMServer} 模拟的 IM 服务上按脚本驱动房间逻辑
+ * <p>
+ * TXRoomService 依赖 Android 的 Handler，这里的 {@link RoomClient} 按 TXRoomService / TRTCVoiceRoomImpl 的方式处理推送：群属性变化交给 SeatStateEngine，
+ * 群自定义消息交给 CustomMsgDispatcher，音量交给 SeatVolumeTracker，最后回调到记录耗时的 delegate。
+ * 场景包括每秒 1000 人进房、房主频繁上下麦、聊天刷屏和音量回调，每个房间有 {@link #OBSERVER_COUNT} 个客户端运行房间逻辑，
+ * 其余客户端只发请求。
+ * 在普通 JVM 上运行：./gradlew :trtcvoiceroomdemo:runBenchmark -Pbenchmark=RoomSimulationBenchmark
+ * 每个场景先预热再测量，输出：
+ * 吞吐（输入事件/ms，只计客户端处理事件的耗时）、从收到事件到回调 delegate 的 p50/p99 延迟、每个输入事件的分配字节数，
+ * 以及所有推送处理完后座位列表与服务端群属性不一致的客户端数。推送会按 {@link #REORDER_RATE} 乱序，
+ * 有客户端没有收敛到服务端的座位时抛出异常。
+ * 模拟服务本身的耗时和分配不计入。
+ */
+public class RoomSimulationBenchmark {
+    private static final int    WARMUP_ITERATIONS      = 2;
+    private static final int    MEASUREMENT_ITERATIONS = 3;
+    private static final long   SEED                   = 20201017L;
+    private static final String ROOM_ID                = "bench_room";
+    // 运行房间逻辑的客户端数，包括房主
+    private static final int    OBSERVER_COUNT         = 50;
+    private static final int    LATENCY_MS             = 30;
+    private static final int    JITTER_MS              = 20;
+    private static final double REORDER_RATE           = 0.01;
+    private static final int    REORDER_DELAY_MS       = 200;
+    private static final int    VOLUME_INTERVAL_MS     = 300;
+    private static final int    ROOM_EVENT_CODE        = IMProtocol.Define.CODE_ROOM_EVENT_MIN + 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static void main(String[] args) {
+        Scenario[] scenarios = {
+                new Scenario("joins 1000/s", 10, 0, false) {
+                    @Override
+                    void script(final Room room) {
+                        // 3 秒内每毫秒进房一人
+                        for (int i = 0; i < 3000; i++) {
+                            final FakeIMServer.Client client = room.server.createClient("join_" + i, "join_" + i);
+                            room.server.post(i, new Runnable() {
+                                @Override
+                                public void run() {
+                                    client.joinGroup(ROOM_ID, null);
+                                }
+                            });
+                        }
+                    }
+                },
+                new Scenario("seat churn 10 seats", 10, 100, false) {
+                    @Override
+                    void script(Room room) {
+                        scriptSeatChurn(room, 2000);
+                    }
+                },
+                new Scenario("seat churn 100 seats", 100, 100, false) {
+                    @Override
+                    void script(Room room) {
+                        scriptSeatChurn(room, 2000);
+                    }
+                },
+                new Scenario("chat storm", 10, 200, false) {
+                    @Override
+                    void script(Room room) {
+                        scriptChatStorm(room, 10000);
+                    }
+                },
+                new Scenario("volume ticks", 10, 10, true) {
+                    @Override
+                    void script(Room room) {
+                        scriptVolumeTicks(room, 30000);
+                    }
+                },
+        };
+        System.out.println(String.format(Locale.US, "%-24s %10s %10s %10s %10s %10s %10s %10s",
+                "Scenario", "events", "callbacks", "ops/ms", "p50(us)", "p99(us)", "B/event", "stale"));
+        for (Scenario scenario : scenarios) {
+            Recorder recorder = new Recorder();
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                runScenario(scenario, recorder);
+            }
+            recorder.reset();
+            for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+                runScenario(scenario, recorder);
+            }
+            recorder.print(scenario.name);
+        }
+    }
+
+    private static void runScenario(Scenario scenario, Recorder recorder) {
+        Room room = new Room(scenario, recorder);
+        recorder.enabled = true;
+        scenario.script(room);
+        room.server.runUntilIdle();
+        recorder.enabled = false;
+        int stale = room.countStaleObservers();
+        recorder.staleClients += stale;
+        if (stale > 0) {
+            throw new IllegalStateException(scenario.name + ": " + stale + " clients did not converge to the server seats");
+        }
+    }
+
+    /**
+     * 房主每 20ms 修改一个随机座位：空座位让一个观众上麦，有人的座位让他下麦
+     */
+    private static void scriptSeatChurn(final Room room, int count) {
+        for (int i = 0; i < count; i++) {
+            room.server.post(i * 20, new Runnable() {
+                @Override
+                public void run() {
+                    int index = room.random.nextInt(room.seatCount);
+                    room.owner.toggleSeat(index, room.loaders.get(room.random.nextInt(room.loaders.size())).getUserId());
+                }
+            });
+        }
+    }
+
+    /**
+     * 每毫秒两条群消息：一半文本，其余是自定义消息、计数消息和房间事件帧
+     */
+    private static void scriptChatStorm(final Room room, int count) {
+        Map<String, Long> counters = new HashMap<>();
+        counters.put("like", 3L);
+        counters.put("gift", 1L);
+        final byte[] customMsg = IMProtocol.getCusMsgJsonStr("danmaku", "hello everyone in the room").getBytes(UTF_8);
+        final byte[] counterMsg = IMProtocol.getCounterMsgJsonStr(counters).getBytes(UTF_8);
+        final byte[] eventFrame = IMProtocol.getRoomEventFrame(ROOM_EVENT_CODE, new byte[16]);
+        for (int i = 0; i < count; i++) {
+            final FakeIMServer.Client sender = room.loaders.get(i % room.loaders.size());
+            final int                 type   = i % 10;
+            final String              text   = "chat message " + i;
+            room.server.post(i / 2, new Runnable() {
+                @Override
+                public void run() {
+                    if (type < 5) {
+                        sender.sendGroupTextMessage(ROOM_ID, text, null);
+                    } else if (type < 8) {
+                        sender.sendGroupCustomMessage(ROOM_ID, customMsg, null);
+                    } else if (type < 9) {
+                        sender.sendGroupCustomMessage(ROOM_ID, counterMsg, null);
+                    } else {
+                        sender.sendGroupCustomMessage(ROOM_ID, eventFrame, null);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 每个客户端按 TRTC 的音量回调间隔收到麦上用户的音量
+     */
+    private static void scriptVolumeTicks(final Room room, int durationMs) {
+        for (final RoomClient observer : room.observers) {
+            // 错开各个客户端的回调时间
+            int offset = room.random.nextInt(VOLUME_INTERVAL_MS);
+            for (int time = offset; time < durationMs; time += VOLUME_INTERVAL_MS) {
+                room.server.post(time, new Runnable() {
+                    @Override
+                    public void run() {
+                        observer.onVolumeTick(room.createVolumes(observer));
+                    }
+                });
+            }
+        }
+    }
+
+    abstract static class Scenario {
+        final String  name;
+        final int     seatCount;
+        // 脚本开始前已经在房间里、只发请求的客户端数
+        final int     loaderCount;
+        // 脚本开始前座位是否坐满
+        final boolean fillSeats;
+
+        Scenario(String name, int seatCount, int loaderCount, boolean fillSeats) {
+            this.name = name;
+            this.seatCount = seatCount;
+            this.loaderCount = loaderCount;
+            this.fillSeats = fillSeats;
+        }
+
+        abstract void script(Room room);
+    }
+
+    /**
+     * 建好的房间：房主建房，其他观察者和只发请求的客户端进房，准备阶段的事件不计入结果
+     */
+    static class Room {
+        final FakeIMServer              server;
+        final Random                    random;
+        final int                       seatCount;
+        final RoomClient                owner;
+        final List<RoomClient>          observers = new ArrayList<>();
+        final List<FakeIMServer.Client> loaders   = new ArrayList<>();
+
+        Room(Scenario scenario, Recorder recorder) {
+            server = new FakeIMServer(SEED);
+            server.setLatency(LATENCY_MS, JITTER_MS);
+            server.setReorder(REORDER_RATE, REORDER_DELAY_MS);
+            random = new Random(SEED);
+            seatCount = scenario.seatCount;
+            for (int i = 0; i < scenario.loaderCount; i++) {
+                loaders.add(server.createClient("load_" + i, "load_" + i));
+            }
+            owner = new RoomClient(server.createClient("owner", "owner"), recorder);
+            owner.create(seatCount, scenario.fillSeats ? loaders : null);
+            server.runUntilIdle();
+            observers.add(owner);
+            for (int i = 1; i < OBSERVER_COUNT; i++) {
+                RoomClient observer = new RoomClient(server.createClient("observer_" + i, "observer_" + i), recorder);
+                observer.enter();
+                observers.add(observer);
+            }
+            server.runUntilIdle();
+            for (FakeIMServer.Client loader : loaders) {
+                loader.joinGroup(ROOM_ID, null);
+            }
+            server.runUntilIdle();
+        }
+
+        /**
+         * 座位列表与服务端最终群属性不一致的观察者数
+         */
+        int countStaleObservers() {
+            List<TXSeatInfo> expected = IMProtocol.getSeatListFromAttr(server.getGroupAttributes(ROOM_ID), seatCount);
+            int              count    = 0;
+            for (RoomClient observer : observers) {
+                for (int i = 0; i < seatCount; i++) {
+                    TXSeatInfo actual = observer.seatList.get(i);
+                    // 空座位的 user 可能是 null 也可能是空字符串
+                    if (actual.status != expected.get(i).status || !nullToEmpty(actual.user).equals(nullToEmpty(expected.get(i).user))) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+        /**
+         * 麦上用户的音量，自己的 userId 为空，与 TRTC 回调一致；在计时之外创建
+         */
+        ArrayList<TRTCCloudDef.TRTCVolumeInfo> createVolumes(RoomClient observer) {
+            ArrayList<TRTCCloudDef.TRTCVolumeInfo> volumes = new ArrayList<>();
+            for (TXSeatInfo seatInfo : observer.seatList) {
+                if (seatInfo.status != TXSeatInfo.STATUS_USED) {
+                    continue;
+                }
+                TRTCCloudDef.TRTCVolumeInfo info = new TRTCCloudDef.TRTCVolumeInfo();
+                info.userId = seatInfo.user.equals(observer.client.getUserId()) ? null : seatInfo.user;
+                info.volume = random.nextInt(100);
+                volumes.add(info);
+            }
+            return volumes;
+        }
+    }
+
+    /**
+     * 一个运行房间逻辑的客户端，推送的处理方式与 TXRoomService / TRTCVoiceRoomImpl 一致
+     */
+    static class RoomClient implements IMBackend.Listener {
+        final FakeIMServer.Client                client;
+        final Recorder                           recorder;
+        final SeatStateEngine                    seatEngine    = new SeatStateEngine();
+        final CustomMsgDispatcher<TXUserInfo>    dispatcher    = new CustomMsgDispatcher<>();
+        final SeatVolumeTracker                  volumeTracker = new SeatVolumeTracker();
+        final Map<String, Long>                  counters      = new HashMap<>();
+        final SeatStateEngine.SeatChangeListener seatListener;
+        final SeatVolumeTracker.Listener         volumeListener;
+        List<TXSeatInfo>                         seatList      = new ArrayList<>();
+
+        RoomClient(FakeIMServer.Client client, final Recorder recorder) {
+            this.client = client;
+            this.recorder = recorder;
+            client.setListener(this);
+            volumeTracker.setSelfUserId(client.getUserId());
+            seatListener = new SeatStateEngine.SeatChangeListener() {
+                @Override
+                public void onSeatTake(int index, String userId) {
+                    recorder.onDelegate();
+                }
+
+                @Override
+                public void onSeatLeave(int index, String userId) {
+                    recorder.onDelegate();
+                }
+
+                @Override
+                public void onSeatClose(int index, boolean isClose) {
+                    recorder.onDelegate();
+                }
+
+                @Override
+                public void onSeatMute(int index, boolean mute) {
+                    recorder.onDelegate();
+                }
+            };
+            volumeListener = new SeatVolumeTracker.Listener() {
+                @Override
+                public void onUserVolumeUpdate(ArrayList<TRTCCloudDef.TRTCVolumeInfo> userVolumes, int totalVolume) {
+                    recorder.onDelegate();
+                }
+
+                @Override
+                public void onSeatTalkingChange(int index, boolean isTalking) {
+                    recorder.onDelegate();
+                }
+            };
+            dispatcher.register(IMProtocol.Define.CODE_ROOM_CUSTOM_MSG, new CustomMsgDispatcher.ActionHandler<TXUserInfo>() {
+                @Override
+                public void onAction(byte[] data, TXUserInfo sender) {
+                    IMProtocol.CusMsg cusMsg = IMProtocol.parseCusMsg(data);
+                    if (cusMsg != null) {
+                        recorder.onDelegate();
+                    }
+                }
+            });
+            dispatcher.register(IMProtocol.Define.CODE_ROOM_COUNTER, new CustomMsgDispatcher.ActionHandler<TXUserInfo>() {
+                @Override
+                public void onAction(byte[] data, TXUserInfo sender) {
+                    Map<String, Long> received = IMProtocol.parseCounterMsg(data);
+                    if (received == null) {
+                        return;
+                    }
+                    for (Map.Entry<String, Long> entry : received.entrySet()) {
+                        Long total = counters.get(entry.getKey());
+                        counters.put(entry.getKey(), (total == null ? 0 : total) + entry.getValue());
+                        recorder.onDelegate();
+                    }
+                }
+            });
+            dispatcher.register(ROOM_EVENT_CODE, new CustomMsgDispatcher.ActionHandler<TXUserInfo>() {
+                @Override
+                public void onAction(byte[] data, TXUserInfo sender) {
+                    if (IMProtocol.isRoomEventFrame(data) && IMProtocol.getRoomEventAction(data) == ROOM_EVENT_CODE) {
+                        recorder.onDelegate();
+                    }
+                }
+            });
+        }
+
+        /**
+         * 建房并初始化座位
+         *
+         * @param seatUsers 不为 null 时按顺序让这些用户坐满座位
+         */
+        void create(int seatCount, List<FakeIMServer.Client> seatUsers) {
+            final List<TXSeatInfo> list = new ArrayList<>(seatCount);
+            for (int i = 0; i < seatCount; i++) {
+                TXSeatInfo info = new TXSeatInfo();
+                if (seatUsers != null && i < seatUsers.size()) {
+                    info.status = TXSeatInfo.STATUS_USED;
+                    info.user = seatUsers.get(i).getUserId();
+                }
+                list.add(info);
+            }
+            final String     attrVersion = IMProtocol.getAttrVersionForSeatSize(seatCount, true);
+            final TXRoomInfo roomInfo    = new TXRoomInfo();
+            roomInfo.ownerId = client.getUserId();
+            roomInfo.ownerName = client.getUserId();
+            roomInfo.roomName = ROOM_ID;
+            roomInfo.seatSize = seatCount;
+            roomInfo.needRequest = 0;
+            client.createGroup(ROOM_ID, ROOM_ID, new IMBackend.ValueCallback<String>() {
+                @Override
+                public void onError(int code, String desc) {
+                    throw new IllegalStateException("create room fail: " + desc);
+                }
+
+                @Override
+                public void onSuccess(String groupId) {
+                    seatEngine.reset(list, attrVersion);
+                    onSeatListChange(list);
+                    client.initGroupAttributes(ROOM_ID, IMProtocol.getInitRoomMap(roomInfo, list, attrVersion), null);
+                }
+            });
+        }
+
+        void enter() {
+            client.joinGroup(ROOM_ID, new IMBackend.Callback() {
+                @Override
+                public void onError(int code, String desc) {
+                    throw new IllegalStateException("enter room fail: " + desc);
+                }
+
+                @Override
+                public void onSuccess() {
+                    client.getGroupAttributes(ROOM_ID, null, new IMBackend.ValueCallback<Map<String, String>>() {
+                        @Override
+                        public void onError(int code, String desc) {
+                            throw new IllegalStateException("get room attrs fail: " + desc);
+                        }
+
+                        @Override
+                        public void onSuccess(Map<String, String> attrMap) {
+                            TXRoomInfo roomInfo = IMProtocol.getRoomInfoFromAttr(attrMap);
+                            onSeatListChange(seatEngine.reset(attrMap, roomInfo.seatSize));
+                        }
+                    });
+                }
+            });
+        }
+
+        /**
+         * 房主修改一个座位：空座位让 userId 上麦，有人的座位让他下麦
+         */
+        void toggleSeat(int index, String userId) {
+            TXSeatInfo current = seatList.get(index);
+            TXSeatInfo info    = new TXSeatInfo();
+            info.mute = current.mute;
+            info.version = seatEngine.nextVersion(index);
+            if (current.status == TXSeatInfo.STATUS_USED) {
+                info.status = TXSeatInfo.STATUS_UNUSED;
+                info.user = "";
+            } else {
+                info.status = TXSeatInfo.STATUS_USED;
+                info.user = userId;
+            }
+            final int[]    indexes = {index};
+            final String[] raws    = new String[1];
+            client.setGroupAttributes(ROOM_ID, seatEngine.encodeSeats(indexes, new TXSeatInfo[]{info}, raws), new IMBackend.Callback() {
+                @Override
+                public void onError(int code, String desc) {
+                    seatEngine.onWriteFailed(indexes, raws);
+                }
+
+                @Override
+                public void onSuccess() {
+                }
+            });
+        }
+
+        void onVolumeTick(ArrayList<TRTCCloudDef.TRTCVolumeInfo> volumes) {
+            recorder.begin();
+            if (volumeTracker.offer(volumes, 0)) {
+                volumeTracker.drain(volumeListener);
+            }
+            recorder.end();
+        }
+
+        /**
+         * 与 TRTCVoiceRoomImpl 一致，座位变化后更新音量跟踪的座位用户
+         */
+        private void onSeatListChange(List<TXSeatInfo> list) {
+            seatList = list;
+            List<String> userIdList = new ArrayList<>(list.size());
+            for (TXSeatInfo info : list) {
+                userIdList.add(info.status == TXSeatInfo.STATUS_USED ? info.user : null);
+            }
+            volumeTracker.setSeatUsers(userIdList);
+        }
+
+        @Override
+        public void onRecvGroupTextMessage(String groupId, TXUserInfo sender, String text) {
+            recorder.begin();
+            if (ROOM_ID.equals(groupId)) {
+                recorder.onDelegate();
+            }
+            recorder.end();
+        }
+
+        @Override
+        public void onRecvGroupCustomMessage(String groupId, TXUserInfo sender, byte[] data) {
+            recorder.begin();
+            if (ROOM_ID.equals(groupId)) {
+                dispatcher.dispatch(data, sender);
+            }
+            recorder.end();
+        }
+
+        @Override
+        public void onMemberEnter(String groupId, List<TXUserInfo> memberList) {
+            recorder.begin();
+            if (ROOM_ID.equals(groupId)) {
+                for (int i = 0; i < memberList.size(); i++) {
+                    recorder.onDelegate();
+                }
+            }
+            recorder.end();
+        }
+
+        @Override
+        public void onMemberLeave(String groupId, TXUserInfo member) {
+            recorder.begin();
+            if (ROOM_ID.equals(groupId)) {
+                recorder.onDelegate();
+            }
+            recorder.end();
+        }
+
+        @Override
+        public void onGroupDismissed(String groupId) {
+        }
+
+        @Override
+        public void onGroupAttributeChanged(String groupId, Map<String, String> attrMap) {
+            recorder.begin();
+            if (ROOM_ID.equals(groupId)) {
+                List<TXSeatInfo> list = seatEngine.apply(attrMap);
+                if (list != null) {
+                    onSeatListChange(list);
+                    // onSeatInfoListChange
+                    recorder.onDelegate();
+                    seatEngine.dispatchChanges(seatListener);
+                }
+            }
+            recorder.end();
+        }
+
+        @Override
+        public void onReceiveNewInvitation(String inviteId, String inviter, String groupId, List<String> inviteeList, String data) {
+        }
+
+        @Override
+        public void onInviteeAccepted(String inviteId, String invitee, String data) {
+        }
+
+        @Override
+        public void onInviteeRejected(String inviteId, String invitee, String data) {
+        }
+
+        @Override
+        public void onInvitationCancelled(String inviteId, String inviter, String data) {
+        }
+    }
+
+    /**
+     * 记录每个输入事件的处理耗时、分配字节数，以及从收到事件到每次回调 delegate 的延迟
+     */
+    static class Recorder {
+        // 一个事件最多记录的回调数，超出的回调只计数
+        private static final int MAX_CALLBACKS_PER_EVENT = 256;
+
+        private static final ThreadMXBean sThreadBean = ManagementFactory.getThreadMXBean();
+
+        boolean enabled;
+        long    events;
+        long    callbacks;
+        long    handleNanos;
+        long    allocatedBytes;
+        long[]  latencies = new long[1 << 16];
+        int     latencyCount;
+        long    eventStart;
+        long    allocateStart;
+        int     staleClients;
+
+        void begin() {
+            if (!enabled) {
+                return;
+            }
+            // 扩容放在计时之外，不计入事件的分配
+            if (latencyCount + MAX_CALLBACKS_PER_EVENT > latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            allocateStart = allocatedBytes();
+            eventStart = System.nanoTime();
+        }
+
+        void onDelegate() {
+            if (!enabled) {
+                return;
+            }
+            callbacks++;
+            if (latencyCount < latencies.length) {
+                latencies[latencyCount++] = System.nanoTime() - eventStart;
+            }
+        }
+
+        void end() {
+            if (!enabled) {
+                return;
+            }
+            handleNanos += System.nanoTime() - eventStart;
+            allocatedBytes += allocatedBytes() - allocateStart;
+            events++;
+        }
+
+        void reset() {
+            events = 0;
+            callbacks = 0;
+            handleNanos = 0;
+            allocatedBytes = 0;
+            latencyCount = 0;
+            staleClients = 0;
+        }
+
+        void print(String name) {
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            System.out.println(String.format(Locale.US, "%-24s %10d %10d %10.1f %10.2f %10.2f %10.1f %10d",
+                    name, events, callbacks, events / (handleNanos / 1e6),
+                    percentile(sorted, 50) / 1e3, percentile(sorted, 99) / 1e3, (double) allocatedBytes / events, staleClients));
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) ((sorted.length - 1) * (long) percent / 100)];
+        }
+
+        private static long allocatedBytes() {
+            if (sThreadBean instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) sThreadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            return 0;
+        }
+    }
+}
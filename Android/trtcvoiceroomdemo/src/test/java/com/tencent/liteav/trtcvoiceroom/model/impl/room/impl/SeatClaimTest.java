@@ -0,0 +1,106 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SeatClaimTest {
+    private static final int BASE_VERSION = 4;
+
+    @Test
+    public void ownEchoFirstWins() {
+        SeatClaim claim = newClaim("alice");
+        assertEquals(SeatClaim.RESULT_PENDING, claim.getResult());
+        assertEquals("alice", claim.getClaimInfo().user);
+        assertEquals(BASE_VERSION + 1, claim.getClaimInfo().version);
+
+        claim.onSeatChanged(used("alice", BASE_VERSION + 1));
+        assertEquals(SeatClaim.RESULT_WON, claim.getResult());
+        assertTrue(claim.isEchoed());
+
+        // 之后被别人覆盖也不改变结果
+        claim.onSeatChanged(used("bob", BASE_VERSION + 1));
+        assertEquals(SeatClaim.RESULT_WON, claim.getResult());
+        assertNull(claim.getUndoInfo());
+    }
+
+    @Test
+    public void loserThatOverwroteWinnerRestoresIt() {
+        SeatClaim claim = newClaim("bob");
+        claim.onSeatChanged(used("alice", BASE_VERSION + 1));
+        assertEquals(SeatClaim.RESULT_LOST, claim.getResult());
+        assertFalse(claim.isEchoed());
+        assertNull(claim.getUndoInfo());
+
+        claim.onSeatChanged(used("bob", BASE_VERSION + 1));
+        assertTrue(claim.isEchoed());
+        TXSeatInfo undoInfo = claim.getUndoInfo();
+        assertEquals(TXSeatInfo.STATUS_USED, undoInfo.status);
+        assertEquals("alice", undoInfo.user);
+        assertEquals(BASE_VERSION + 1, undoInfo.version);
+    }
+
+    @Test
+    public void loserDoesNotRestoreWhenAlreadyOverwritten() {
+        SeatClaim claim = newClaim("bob");
+        claim.onSeatChanged(used("alice", BASE_VERSION + 1));
+        claim.onSeatChanged(used("bob", BASE_VERSION + 1));
+        claim.onSeatChanged(empty(BASE_VERSION + 1));
+        assertEquals(SeatClaim.RESULT_LOST, claim.getResult());
+        assertNull(claim.getUndoInfo());
+    }
+
+    @Test
+    public void ignoresChangesFromBeforeTheClaim() {
+        SeatClaim claim = newClaim("bob");
+        // 抢麦前的旧版本回显和其他群属性的变化
+        claim.onSeatChanged(used("carol", BASE_VERSION));
+        claim.onSeatChanged(empty(BASE_VERSION));
+        claim.onSeatChanged(empty(BASE_VERSION));
+        assertEquals(SeatClaim.RESULT_PENDING, claim.getResult());
+
+        claim.onSeatChanged(used("bob", BASE_VERSION + 1));
+        assertEquals(SeatClaim.RESULT_WON, claim.getResult());
+    }
+
+    @Test
+    public void sameUserWithOtherVersionIsNotOurWrite() {
+        SeatClaim claim = newClaim("bob");
+        claim.onSeatChanged(used("bob", BASE_VERSION + 2));
+        assertEquals(SeatClaim.RESULT_LOST, claim.getResult());
+        assertFalse(claim.isEchoed());
+    }
+
+    @Test
+    public void writtenFlag() {
+        SeatClaim claim = newClaim("bob");
+        assertFalse(claim.isWritten());
+        claim.onWritten();
+        assertTrue(claim.isWritten());
+    }
+
+    private static SeatClaim newClaim(String userId) {
+        return new SeatClaim(3, "1234", "2.0", empty(BASE_VERSION), userId, null);
+    }
+
+    private static TXSeatInfo used(String userId, int version) {
+        TXSeatInfo info = new TXSeatInfo();
+        info.status = TXSeatInfo.STATUS_USED;
+        info.user = userId;
+        info.version = version;
+        return info;
+    }
+
+    private static TXSeatInfo empty(int version) {
+        TXSeatInfo info = new TXSeatInfo();
+        info.status = TXSeatInfo.STATUS_UNUSED;
+        info.user = "";
+        info.version = version;
+        return info;
+    }
+}
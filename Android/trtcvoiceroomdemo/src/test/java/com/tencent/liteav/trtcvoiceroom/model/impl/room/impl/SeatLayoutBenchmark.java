@@ -0,0 +1,211 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 不同座位数下处理一次群属性变化的开销
+ * <p>
+ * 每次操作模拟收到一次 onGroupAttributeChanged，其中一个座位的禁言状态发生变化，对比：
+ * 原来每次完整解析所有 seatN 属性、SeatStateEngine 按 seatN 比较、SeatStateEngine 按 seatsN 分片比较，
+ * 以及分片格式下写一个座位时拼分片的开销。
+ * 在普通 JVM 上直接运行 main，输出每个用例的吞吐（ops/ms）、每次操作的分配字节数和群属性的 key 数、总字节数。
+ */
+public class SeatLayoutBenchmark {
+    private static final int   WARMUP_ITERATIONS      = 3;
+    private static final int   MEASUREMENT_ITERATIONS = 5;
+    private static final long  ITERATION_TIME_MS      = 300;
+    private static final int[] SEAT_SIZES             = {7, 10, 20, 50, 100};
+
+    interface Op {
+        Object run();
+    }
+
+    private static Object sBlackhole;
+
+    private static final SeatStateEngine.SeatChangeListener LISTENER = new SeatStateEngine.SeatChangeListener() {
+        @Override
+        public void onSeatTake(int index, String userId) {
+            sBlackhole = userId;
+        }
+
+        @Override
+        public void onSeatLeave(int index, String userId) {
+            sBlackhole = userId;
+        }
+
+        @Override
+        public void onSeatClose(int index, boolean isClose) {
+            sBlackhole = isClose;
+        }
+
+        @Override
+        public void onSeatMute(int index, boolean mute) {
+            sBlackhole = mute;
+        }
+    };
+
+    public static void main(String[] args) {
+        System.out.println(String.format(Locale.US, "%-28s %6s %12s %12s %6s %8s",
+                "Benchmark", "seats", "ops/ms", "B/op", "keys", "bytes"));
+        for (int seatSize : SEAT_SIZES) {
+            List<TXSeatInfo> seatList = createSeatList(seatSize);
+            final String     compact  = IMProtocol.Define.VALUE_ATTR_VERSION_COMPACT;
+            final String     sharded  = IMProtocol.Define.VALUE_ATTR_VERSION_SHARDED;
+
+            final Map<String, String>[] perSeatMaps = createAttrMaps(seatList, compact);
+            final Map<String, String>[] shardMaps   = createAttrMaps(seatList, sharded);
+            verify(seatList, perSeatMaps, seatSize);
+            verify(seatList, shardMaps, seatSize);
+
+            final int fullSeatSize = seatSize;
+            bench("fullParse   seatN", seatSize, perSeatMaps[0], new Op() {
+                int count;
+
+                @Override
+                public Object run() {
+                    return IMProtocol.getSeatListFromAttr(perSeatMaps[count++ & 1], fullSeatSize);
+                }
+            });
+            bench("engine      seatN", seatSize, perSeatMaps[0], engineOp(perSeatMaps, seatSize));
+            bench("engine      seatsN", seatSize, shardMaps[0], engineOp(shardMaps, seatSize));
+
+            final SeatStateEngine writer = new SeatStateEngine();
+            writer.reset(shardMaps[0], seatSize);
+            final int[]        indexes = {seatSize / 2};
+            final TXSeatInfo[] infos   = {seatList.get(seatSize / 2)};
+            final String[]     raws    = new String[1];
+            bench("encodeSeat  seatsN", seatSize, null, new Op() {
+                @Override
+                public Object run() {
+                    return writer.encodeSeats(indexes, infos, raws);
+                }
+            });
+        }
+    }
+
+    private static Op engineOp(final Map<String, String>[] maps, int seatSize) {
+        final SeatStateEngine engine = new SeatStateEngine();
+        engine.reset(maps[0], seatSize);
+        return new Op() {
+            int count;
+
+            @Override
+            public Object run() {
+                List<TXSeatInfo> list = engine.apply(maps[++count & 1]);
+                engine.dispatchChanges(LISTENER);
+                return list;
+            }
+        };
+    }
+
+    private static List<TXSeatInfo> createSeatList(int seatSize) {
+        List<TXSeatInfo> list = new ArrayList<>(seatSize);
+        for (int i = 0; i < seatSize; i++) {
+            TXSeatInfo info = new TXSeatInfo();
+            // 大部分座位有人，模拟满员的合唱/嘉宾房
+            if (i % 5 != 4) {
+                info.status = TXSeatInfo.STATUS_USED;
+                info.user = "user_" + (100000 + i);
+                info.version = i % 3;
+            }
+            list.add(info);
+        }
+        return list;
+    }
+
+    /**
+     * @return 两份群属性，只有中间一个座位的禁言状态不同
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, String>[] createAttrMaps(List<TXSeatInfo> seatList, String attrVersion) {
+        Map<String, String>[] maps  = new Map[2];
+        int                   index = seatList.size() / 2;
+        for (int i = 0; i < 2; i++) {
+            List<TXSeatInfo> list = new ArrayList<>(seatList);
+            TXSeatInfo       info = new TXSeatInfo();
+            info.status = seatList.get(index).status;
+            info.user = seatList.get(index).user;
+            info.version = seatList.get(index).version;
+            info.mute = i == 1;
+            list.set(index, info);
+            HashMap<String, String> map = IMProtocol.getSeatInfoListJsonStr(list, attrVersion);
+            map.put(IMProtocol.Define.KEY_ATTR_VERSION, attrVersion);
+            maps[i] = map;
+        }
+        return maps;
+    }
+
+    private static void verify(List<TXSeatInfo> expected, Map<String, String>[] maps, int seatSize) {
+        List<TXSeatInfo> actual = IMProtocol.getSeatListFromAttr(maps[0], seatSize);
+        for (int i = 0; i < seatSize; i++) {
+            TXSeatInfo a = expected.get(i);
+            TXSeatInfo b = actual.get(i);
+            if (a.status != b.status || a.mute != b.mute || a.version != b.version
+                    || (a.status == TXSeatInfo.STATUS_USED && !a.user.equals(b.user))) {
+                throw new IllegalStateException("seat " + i + " mismatch, expected: " + a + " actual: " + b);
+            }
+        }
+        SeatStateEngine engine = new SeatStateEngine();
+        engine.reset(maps[0], seatSize);
+        if (engine.apply(maps[1]) == null || engine.getChangeCount() != 1) {
+            throw new IllegalStateException("engine should report exactly one changed seat");
+        }
+    }
+
+    private static void bench(String name, int seatSize, Map<String, String> attrMap, Op op) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(op);
+        }
+        double totalOps      = 0;
+        double totalMs       = 0;
+        double totalAllocate = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long   allocateBefore = allocatedBytes();
+            long   start          = System.nanoTime();
+            long   ops            = runIteration(op);
+            double elapsedMs      = (System.nanoTime() - start) / 1e6;
+            totalOps += ops;
+            totalMs += elapsedMs;
+            totalAllocate += allocatedBytes() - allocateBefore;
+        }
+        int keys  = 0;
+        int bytes = 0;
+        if (attrMap != null) {
+            for (Map.Entry<String, String> entry : attrMap.entrySet()) {
+                keys++;
+                bytes += entry.getKey().length() + entry.getValue().length();
+            }
+        }
+        System.out.println(String.format(Locale.US, "%-28s %6d %12.1f %12.1f %6s %8s", name, seatSize,
+                totalOps / totalMs, totalAllocate / totalOps,
+                attrMap == null ? "-" : String.valueOf(keys), attrMap == null ? "-" : String.valueOf(bytes)));
+    }
+
+    private static long runIteration(Op op) {
+        long ops      = 0;
+        long deadline = System.nanoTime() + ITERATION_TIME_MS * 1000000L;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 100; i++) {
+                sBlackhole = op.run();
+            }
+            ops += 100;
+        }
+        return ops;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
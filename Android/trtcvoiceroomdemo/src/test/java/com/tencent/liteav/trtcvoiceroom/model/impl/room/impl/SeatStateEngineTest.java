@@ -0,0 +1,417 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SeatStateEngineTest {
+    private static final String COMPACT = IMProtocol.Define.VALUE_ATTR_VERSION_COMPACT;
+    private static final String SHARDED = IMProtocol.Define.VALUE_ATTR_VERSION_SHARDED;
+    private static final String SHARD_0 = IMProtocol.Define.KEY_SEAT_SHARD + 0;
+
+    private SeatStateEngine mEngine;
+    private List<String>    mEvents;
+    // 模拟的群属性
+    private Map<String, String> mAttrMap;
+
+    @Before
+    public void setUp() {
+        mEngine = new SeatStateEngine();
+        mEvents = new ArrayList<>();
+        mAttrMap = new HashMap<>();
+    }
+
+    @Test
+    public void applyDispatchesOnlyChangedSeats() {
+        reset(COMPACT, 4);
+
+        putSeat(1, used("alice"), COMPACT);
+        assertSeats(mEngine.apply(mAttrMap), null, "alice", null, null);
+        dispatch();
+        assertEvents("take 1 alice");
+        mEvents.clear();
+
+        // 群属性没有变化时不回调
+        assertNull(mEngine.apply(mAttrMap));
+        dispatch();
+        assertEvents();
+
+        TXSeatInfo muted = used("alice");
+        muted.mute = true;
+        putSeat(1, muted, COMPACT);
+        putSeat(3, closed(), COMPACT);
+        mEngine.apply(mAttrMap);
+        dispatch();
+        assertEvents("mute 1 true", "close 3 true");
+    }
+
+    @Test
+    public void applyReportsHolderChangeAsLeaveAndTake() {
+        reset(COMPACT, 2);
+        putSeat(0, used("alice"), COMPACT);
+        mEngine.apply(mAttrMap);
+        dispatch();
+        mEvents.clear();
+
+        putSeat(0, used("bob"), COMPACT);
+        mEngine.apply(mAttrMap);
+        dispatch();
+
+        assertEvents("leave 0 alice", "take 0 bob");
+    }
+
+    @Test
+    public void applyDecodesBothSeatFormats() {
+        reset(IMProtocol.Define.VALUE_ATTR_VERSION, 2);
+        // 1.0 房间里也可能收到新客户端按照房间版本以外的格式写入的值
+        putSeat(0, used("alice"), IMProtocol.Define.VALUE_ATTR_VERSION);
+        putSeat(1, used("bob"), COMPACT);
+
+        assertSeats(mEngine.apply(mAttrMap), "alice", "bob");
+    }
+
+    @Test
+    public void applyLocalChangesSeatBeforeEcho() {
+        reset(COMPACT, 2);
+        String raw     = IMProtocol.encodeSeatInfo(used("alice"), COMPACT);
+        long   version = mEngine.applyLocal(0, used("alice"), raw);
+        dispatch();
+        assertEvents("take 0 alice");
+        assertTrue(mEngine.hasPending(0));
+
+        // 自己的写入回显时不再重复回调
+        mAttrMap.put(IMProtocol.Define.KEY_SEAT + 0, raw);
+        assertNull(mEngine.apply(mAttrMap));
+        dispatch();
+        assertEvents("take 0 alice");
+        assertFalse(mEngine.hasPending(0));
+        assertFalse(mEngine.rollbackLocal(0, version));
+    }
+
+    @Test
+    public void confirmLocalWithoutEchoKeepsLocalValue() {
+        reset(COMPACT, 2);
+        String raw     = IMProtocol.encodeSeatInfo(used("alice"), COMPACT);
+        long   version = mEngine.applyLocal(0, used("alice"), raw);
+        dispatch();
+
+        assertNull(mEngine.confirmLocal(0, version));
+        assertFalse(mEngine.hasPending(0));
+        assertEquals("alice", mEngine.getSeatInfoList().get(0).user);
+    }
+
+    @Test
+    public void rollbackLocalRestoresConfirmedSeat() {
+        reset(COMPACT, 2);
+        long version = mEngine.applyLocal(1, used("alice"), IMProtocol.encodeSeatInfo(used("alice"), COMPACT));
+        dispatch();
+        mEvents.clear();
+
+        assertTrue(mEngine.rollbackLocal(1, version));
+        dispatch();
+
+        assertEvents("leave 1 alice");
+        assertSeats(mEngine.getSeatInfoList(), null, null);
+    }
+
+    @Test
+    public void rollbackLocalRestoresSeatChangedByOthers() {
+        reset(COMPACT, 2);
+        long version = mEngine.applyLocal(0, used("alice"), IMProtocol.encodeSeatInfo(used("alice"), COMPACT));
+        dispatch();
+        mEvents.clear();
+
+        // 修改还没有结果时别人抢到了座位，本地先保持自己的值
+        putSeat(0, used("bob"), COMPACT);
+        assertNull(mEngine.apply(mAttrMap));
+        dispatch();
+        assertEvents();
+
+        assertTrue(mEngine.rollbackLocal(0, version));
+        dispatch();
+        assertEvents("leave 0 alice", "take 0 bob");
+    }
+
+    @Test
+    public void confirmLocalAfterOtherEchoFollowsAttributes() {
+        reset(COMPACT, 2);
+        long version = mEngine.applyLocal(0, used("alice"), IMProtocol.encodeSeatInfo(used("alice"), COMPACT));
+        dispatch();
+        mEvents.clear();
+        putSeat(0, used("bob"), COMPACT);
+        mEngine.apply(mAttrMap);
+
+        // 写入成功但期间群属性被别人改过，无法判断先后，以群属性为准
+        assertSeats(mEngine.confirmLocal(0, version), "bob", null);
+        dispatch();
+        assertEvents("leave 0 alice", "take 0 bob");
+    }
+
+    @Test
+    public void staleVersionDoesNotRollBackNewerChange() {
+        reset(COMPACT, 2);
+        long first  = mEngine.applyLocal(0, used("alice"), IMProtocol.encodeSeatInfo(used("alice"), COMPACT));
+        long second = mEngine.applyLocal(0, new TXSeatInfo(), IMProtocol.encodeSeatInfo(new TXSeatInfo(), COMPACT));
+
+        assertFalse(mEngine.rollbackLocal(0, first));
+        assertTrue(mEngine.rollbackLocal(0, second));
+    }
+
+    @Test
+    public void batchRollbackReturnsRolledBackSeats() {
+        reset(COMPACT, 3);
+        int[]        indexes = {0, 2};
+        TXSeatInfo[] infos   = {closed(), closed()};
+        String[]     raws    = {IMProtocol.encodeSeatInfo(closed(), COMPACT), IMProtocol.encodeSeatInfo(closed(), COMPACT)};
+        long         version = mEngine.applyLocal(indexes, infos, raws);
+        dispatch();
+        assertEvents("close 0 true", "close 2 true");
+        mEvents.clear();
+
+        // 座位 0 的修改已经回显
+        mAttrMap.put(IMProtocol.Define.KEY_SEAT + 0, raws[0]);
+        mEngine.apply(mAttrMap);
+
+        assertArrayEquals(new int[]{2}, mEngine.rollbackLocal(indexes, version));
+        dispatch();
+        assertEvents("close 2 false");
+    }
+
+    @Test
+    public void shardEncodeKeepsOtherSeatsOfTheShard() {
+        String[] server = resetSharded(12);
+        String[] raws   = new String[1];
+
+        Map<String, String> map = mEngine.encodeSeats(new int[]{1}, new TXSeatInfo[]{used("alice")}, raws);
+        assertEquals(1, map.size());
+        assertShard(map.get(SHARD_0), 1, "alice");
+
+        // 上一次写入还没有回显，拼分片时仍然带上
+        map = mEngine.encodeSeats(new int[]{2}, new TXSeatInfo[]{used("bob")}, raws);
+        assertShard(map.get(SHARD_0), 1, "alice", 2, "bob");
+
+        // 写入前读到的分片里有别人刚修改的座位
+        server[3] = IMProtocol.encodeSeatInfo(used("carol"), SHARDED);
+        Map<String, String> fresh = new HashMap<>();
+        fresh.put(SHARD_0, IMProtocol.encodeSeatShard(server, 0));
+        map = mEngine.encodeSeats(new int[]{4}, new TXSeatInfo[]{used("dave")}, raws, fresh);
+        assertShard(map.get(SHARD_0), 1, "alice", 2, "bob", 3, "carol", 4, "dave");
+
+        // 第二个分片的座位只写第二个分片
+        map = mEngine.encodeSeats(new int[]{11}, new TXSeatInfo[]{closed()}, raws);
+        assertEquals(1, map.size());
+        assertTrue(map.containsKey(IMProtocol.Define.KEY_SEAT_SHARD + 1));
+    }
+
+    @Test
+    public void shardWriteRevertedByOthersIsRetried() {
+        String[] server = resetSharded(12);
+        String[] raws   = new String[1];
+        String   before = server[1];
+        mEngine.encodeSeats(new int[]{1}, new TXSeatInfo[]{used("alice")}, raws);
+        server[1] = raws[0];
+        applyShards(server);
+        assertEquals(0, mEngine.takeRevertedSeats().length);
+
+        for (int retry = 0; retry < 3; retry++) {
+            // 别人用过期的分片修改座位 5，把座位 1 改回了写入前的值
+            server[1] = before;
+            server[5] = IMProtocol.encodeSeatInfo(used("eve" + retry), SHARDED);
+            applyShards(server);
+            assertArrayEquals(new int[]{1}, mEngine.takeRevertedSeats());
+            assertEquals("alice", mEngine.getWrittenSeat(1).user);
+
+            mEngine.encodeSeats(new int[]{1}, new TXSeatInfo[]{mEngine.getWrittenSeat(1)}, raws);
+            server[1] = raws[0];
+            applyShards(server);
+        }
+
+        // 超过重试次数后不再重新写入
+        server[1] = before;
+        applyShards(server);
+        assertEquals(0, mEngine.takeRevertedSeats().length);
+    }
+
+    @Test
+    public void shardSeatChangedByOthersIsNotRetried() {
+        String[] server = resetSharded(12);
+        String[] raws   = new String[1];
+        String   before = server[1];
+        mEngine.encodeSeats(new int[]{1}, new TXSeatInfo[]{used("alice")}, raws);
+        server[1] = raws[0];
+        applyShards(server);
+
+        server[1] = IMProtocol.encodeSeatInfo(used("bob"), SHARDED);
+        applyShards(server);
+        assertEquals(0, mEngine.takeRevertedSeats().length);
+
+        server[1] = before;
+        applyShards(server);
+        assertEquals(0, mEngine.takeRevertedSeats().length);
+    }
+
+    @Test
+    public void failedShardWriteIsNotRetried() {
+        String[] server = resetSharded(12);
+        String[] raws   = new String[1];
+        String   before = server[1];
+        mEngine.encodeSeats(new int[]{1}, new TXSeatInfo[]{used("alice")}, raws);
+        mEngine.onWriteFailed(new int[]{1}, raws);
+
+        server[1] = raws[0];
+        applyShards(server);
+        server[1] = before;
+        applyShards(server);
+        assertEquals(0, mEngine.takeRevertedSeats().length);
+    }
+
+    @Test
+    public void olderVersionFromReorderedPushIsIgnored() {
+        reset(COMPACT, 2);
+        TXSeatInfo take = used("alice");
+        take.version = 1;
+        putSeat(0, take, COMPACT);
+        Map<String, String> stale = new HashMap<>(mAttrMap);
+        TXSeatInfo leave = new TXSeatInfo();
+        leave.version = 2;
+        putSeat(0, leave, COMPACT);
+        mEngine.apply(mAttrMap);
+        dispatch();
+        mEvents.clear();
+
+        // 上麦的推送晚于下麦到达
+        assertNull(mEngine.apply(stale));
+        dispatch();
+        assertEvents();
+        assertSeats(mEngine.getSeatInfoList(), null, null);
+    }
+
+    @Test
+    public void nextVersionCoversUnechoedWrites() {
+        reset(COMPACT, 2);
+        assertEquals(1, mEngine.nextVersion(0));
+
+        TXSeatInfo info = used("alice");
+        info.version = mEngine.nextVersion(0);
+        mEngine.encodeSeats(new int[]{0}, new TXSeatInfo[]{info}, new String[1]);
+        // 还没有回显时再次修改，版本号继续增加
+        assertEquals(2, mEngine.nextVersion(0));
+        assertEquals(1, mEngine.nextVersion(1));
+    }
+
+    /**
+     * @return 服务端每个座位的值，修改后通过 {@link #applyShards} 推送
+     */
+    private String[] resetSharded(int seatSize) {
+        reset(SHARDED, seatSize);
+        String[] server = new String[seatSize];
+        for (int i = 0; i < seatSize; i++) {
+            server[i] = IMProtocol.encodeSeatInfo(new TXSeatInfo(), SHARDED);
+        }
+        return server;
+    }
+
+    private void applyShards(String[] server) {
+        for (int shard = 0; shard < IMProtocol.getShardCount(server.length); shard++) {
+            mAttrMap.put(IMProtocol.Define.KEY_SEAT_SHARD + shard, IMProtocol.encodeSeatShard(server, shard));
+        }
+        mEngine.apply(mAttrMap);
+    }
+
+    /**
+     * @param expected 座位号和用户交替排列，其余座位应为空
+     */
+    private static void assertShard(String value, Object... expected) {
+        String[] raws = new String[IMProtocol.Define.SEATS_PER_SHARD];
+        IMProtocol.splitSeatShard(value, raws, 0, raws.length);
+        String[] users = new String[raws.length];
+        for (int i = 0; i < expected.length; i += 2) {
+            users[(Integer) expected[i]] = (String) expected[i + 1];
+        }
+        for (int i = 0; i < raws.length; i++) {
+            TXSeatInfo info = IMProtocol.decodeSeatInfo(raws[i]);
+            assertEquals("seat " + i, users[i], info.status == TXSeatInfo.STATUS_USED ? info.user : null);
+        }
+    }
+
+    private void reset(String attrVersion, int seatSize) {
+        List<TXSeatInfo> seatList = new ArrayList<>();
+        for (int i = 0; i < seatSize; i++) {
+            seatList.add(new TXSeatInfo());
+        }
+        mEngine.reset(seatList, attrVersion);
+        mAttrMap.clear();
+        mAttrMap.put(IMProtocol.Define.KEY_ATTR_VERSION, attrVersion);
+        for (int i = 0; i < seatSize; i++) {
+            putSeat(i, new TXSeatInfo(), attrVersion);
+        }
+    }
+
+    private void putSeat(int index, TXSeatInfo info, String attrVersion) {
+        mAttrMap.put(IMProtocol.Define.KEY_SEAT + index, IMProtocol.encodeSeatInfo(info, attrVersion));
+    }
+
+    private void dispatch() {
+        mEngine.dispatchChanges(new SeatStateEngine.SeatChangeListener() {
+            @Override
+            public void onSeatTake(int index, String userId) {
+                mEvents.add("take " + index + " " + userId);
+            }
+
+            @Override
+            public void onSeatLeave(int index, String userId) {
+                mEvents.add("leave " + index + " " + userId);
+            }
+
+            @Override
+            public void onSeatClose(int index, boolean isClose) {
+                mEvents.add("close " + index + " " + isClose);
+            }
+
+            @Override
+            public void onSeatMute(int index, boolean mute) {
+                mEvents.add("mute " + index + " " + mute);
+            }
+        });
+    }
+
+    private void assertEvents(String... events) {
+        assertEquals(Arrays.asList(events), mEvents);
+    }
+
+    private static void assertSeats(List<TXSeatInfo> seatList, String... users) {
+        assertEquals(users.length, seatList.size());
+        for (int i = 0; i < users.length; i++) {
+            assertEquals("seat " + i, users[i], seatList.get(i).status == TXSeatInfo.STATUS_USED ? seatList.get(i).user : null);
+        }
+    }
+
+    static TXSeatInfo used(String userId) {
+        TXSeatInfo info = new TXSeatInfo();
+        info.status = TXSeatInfo.STATUS_USED;
+        info.user = userId;
+        return info;
+    }
+
+    static TXSeatInfo closed() {
+        TXSeatInfo info = new TXSeatInfo();
+        info.status = TXSeatInfo.STATUS_CLOSE;
+        return info;
+    }
+}
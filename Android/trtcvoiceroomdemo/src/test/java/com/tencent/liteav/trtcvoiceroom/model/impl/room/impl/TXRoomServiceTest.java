@@ -0,0 +1,288 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXCallback;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXRoomInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatChange;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXSeatInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.room.ITXRoomServiceDelegate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 通过 {@link IMBackend} 把 TXRoomService 接到 {@link FakeIMServer} 上，由另一个客户端修改房间后检查回调
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TXRoomServiceTest {
+    private static final long    SEED      = 20201017L;
+    private static final String  ROOM_ID       = "service_room";
+    private static final String  LARGE_ROOM_ID = "service_large_room";
+    private static final int     SEAT_SIZE     = 4;
+    private static final Charset UTF_8         = Charset.forName("UTF-8");
+
+    private FakeIMServer        mServer;
+    private FakeIMServer.Client mOwner;
+    private TXRoomService       mService;
+    private RecordingDelegate   mDelegate;
+
+    @Before
+    public void setUp() {
+        mServer = new FakeIMServer(SEED);
+        mServer.setLatency(10, 5);
+        mOwner = mServer.createClient("owner", "Owner");
+        mServer.createClient("alice", "Alice");
+        createRoom(ROOM_ID, SEAT_SIZE, IMProtocol.Define.VALUE_ATTR_VERSION);
+
+        mDelegate = new RecordingDelegate();
+        mService = TXRoomService.getInstance();
+        mService.setIMBackend(mServer.createClient("visitor", "Visitor"));
+        mService.setRoomHandler(new Handler(Looper.getMainLooper()));
+        mService.setDelegate(mDelegate);
+        final int[] result = new int[]{Integer.MIN_VALUE};
+        mService.login(0, "visitor", "", new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                result[0] = code;
+            }
+        });
+        settle();
+        assertEquals(0, result[0]);
+        enterRoom(ROOM_ID);
+    }
+
+    @After
+    public void tearDown() {
+        mService.exitRoom(null);
+        settle();
+        mService.logout(null);
+        settle();
+        mService.setDelegate(null);
+    }
+
+    @Test
+    public void enterRoomReadsRoomFromServer() {
+        assertEquals(1, mDelegate.roomInfoList.size());
+        assertEquals("Owner", mDelegate.roomInfoList.get(0).ownerName);
+        assertEquals(SEAT_SIZE, mDelegate.seatListCount);
+        assertEquals(2, mServer.getMemberCount(ROOM_ID));
+    }
+
+    @Test
+    public void seatChangeFromOtherMemberIsDelivered() {
+        mOwner.setGroupAttributes(ROOM_ID, IMProtocol.getSeatInfoJsonStr(1, usedSeat("alice")), null);
+        settle();
+
+        assertEquals(1, mDelegate.seatTakeList.size());
+        assertEquals("1 alice Alice", mDelegate.seatTakeList.get(0));
+    }
+
+    @Test
+    public void customMessageFromOtherMemberIsDelivered() {
+        byte[] data = IMProtocol.getCusMsgJsonStr("gift", "rocket").getBytes(UTF_8);
+        mOwner.sendGroupCustomMessage(ROOM_ID, data, null);
+        settle();
+
+        assertEquals(1, mDelegate.customMsgList.size());
+        assertEquals("owner gift rocket", mDelegate.customMsgList.get(0));
+    }
+
+    @Test
+    public void exitRoomQuitsGroup() {
+        final int[] result = new int[]{Integer.MIN_VALUE};
+        mService.exitRoom(new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                result[0] = code;
+            }
+        });
+        settle();
+
+        assertEquals(0, result[0]);
+        assertEquals(1, mServer.getMemberCount(ROOM_ID));
+        assertFalse(mService.isEnterRoom());
+    }
+
+    @Test
+    public void seatBatchWithCachedProfilesIsDeliveredOnce() {
+        // 一次修改满一批查询的座位数，资料全部命中缓存时查询会同步回调
+        int seatSize = IMProtocol.Define.MAX_SEAT_SIZE;
+        mService.exitRoom(null);
+        settle();
+        createRoom(LARGE_ROOM_ID, seatSize, IMProtocol.Define.VALUE_ATTR_VERSION_SHARDED);
+        enterRoom(LARGE_ROOM_ID);
+
+        List<TXSeatInfo> seatList = new ArrayList<>(seatSize);
+        for (int i = 0; i < seatSize; i++) {
+            TXUserInfo userInfo = new TXUserInfo();
+            userInfo.userId = "user" + i;
+            userInfo.userName = "User" + i;
+            UserInfoCache.getInstance().put(userInfo);
+            seatList.add(usedSeat(userInfo.userId));
+        }
+        mOwner.setGroupAttributes(LARGE_ROOM_ID, IMProtocol.getSeatInfoListJsonStr(seatList, IMProtocol.Define.VALUE_ATTR_VERSION_SHARDED), null);
+        settle();
+
+        assertEquals(1, mDelegate.seatBatchList.size());
+        List<TXSeatChange> changeList = mDelegate.seatBatchList.get(0);
+        assertEquals(seatSize, changeList.size());
+        for (TXSeatChange change : changeList) {
+            assertNotNull(change.userInfo);
+            assertEquals("User" + change.index, change.userInfo.userName);
+        }
+    }
+
+    /**
+     * 交替执行模拟服务和房间线程上的任务，直到两边都没有待执行的任务
+     */
+    private void settle() {
+        for (int i = 0; i < 10; i++) {
+            mServer.runUntilIdle();
+            ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+        }
+    }
+
+    private void enterRoom(String roomId) {
+        final int[] result = new int[]{Integer.MIN_VALUE};
+        mService.enterRoom(roomId, new TXCallback() {
+            @Override
+            public void onCallback(int code, String msg) {
+                result[0] = code;
+            }
+        });
+        settle();
+        assertEquals(0, result[0]);
+    }
+
+    private void createRoom(final String roomId, int seatSize, final String attrVersion) {
+        final List<TXSeatInfo> seatList = new ArrayList<>(seatSize);
+        for (int i = 0; i < seatSize; i++) {
+            seatList.add(new TXSeatInfo());
+        }
+        final TXRoomInfo roomInfo = new TXRoomInfo();
+        roomInfo.ownerId = mOwner.getUserId();
+        roomInfo.ownerName = "Owner";
+        roomInfo.roomName = roomId;
+        roomInfo.seatSize = seatSize;
+        mOwner.createGroup(roomId, roomId, new IMBackend.ValueCallback<String>() {
+            @Override
+            public void onError(int code, String desc) {
+                throw new IllegalStateException("create room fail: " + desc);
+            }
+
+            @Override
+            public void onSuccess(String groupId) {
+                mOwner.initGroupAttributes(roomId, IMProtocol.getInitRoomMap(roomInfo, seatList, attrVersion), null);
+            }
+        });
+        mServer.runUntilIdle();
+    }
+
+    private static TXSeatInfo usedSeat(String userId) {
+        TXSeatInfo info = new TXSeatInfo();
+        info.status = TXSeatInfo.STATUS_USED;
+        info.user = userId;
+        return info;
+    }
+
+    private static class RecordingDelegate implements ITXRoomServiceDelegate {
+        final List<TXRoomInfo>         roomInfoList  = new ArrayList<>();
+        final List<String>             seatTakeList  = new ArrayList<>();
+        final List<String>             customMsgList = new ArrayList<>();
+        final List<List<TXSeatChange>> seatBatchList = new ArrayList<>();
+        int                            seatListCount;
+
+        @Override
+        public void onRoomDestroy(String roomId) {
+        }
+
+        @Override
+        public void onRoomRecvRoomTextMsg(String roomId, String message, TXUserInfo userInfo) {
+        }
+
+        @Override
+        public void onRoomRecvRoomCustomMsg(String roomId, String cmd, String message, TXUserInfo userInfo) {
+            customMsgList.add(userInfo.userId + " " + cmd + " " + message);
+        }
+
+        @Override
+        public void onRoomCounterChange(String roomId, String type, long total, long increment, TXUserInfo userInfo) {
+        }
+
+        @Override
+        public void onRoomInfoChange(TXRoomInfo roomInfo) {
+            roomInfoList.add(roomInfo);
+        }
+
+        @Override
+        public void onSeatInfoListChange(List<TXSeatInfo> seatInfoList) {
+            seatListCount = seatInfoList.size();
+        }
+
+        @Override
+        public void onRoomAudienceEnter(TXUserInfo userInfo) {
+        }
+
+        @Override
+        public void onRoomAudienceLeave(TXUserInfo userInfo) {
+        }
+
+        @Override
+        public void onSeatTake(int index, TXUserInfo userInfo) {
+            seatTakeList.add(index + " " + userInfo.userId + " " + userInfo.userName);
+        }
+
+        @Override
+        public void onSeatClose(int index, boolean isClose) {
+        }
+
+        @Override
+        public void onSeatLeave(int index, TXUserInfo userInfo) {
+        }
+
+        @Override
+        public void onSeatMute(int index, boolean mute) {
+        }
+
+        @Override
+        public void onSeatBatchChange(List<TXSeatChange> changeList) {
+            seatBatchList.add(changeList);
+        }
+
+        @Override
+        public void onSeatRollback(int index, int code, String msg) {
+        }
+
+        @Override
+        public void onReceiveNewInvitation(String id, String inviter, String cmd, String content) {
+        }
+
+        @Override
+        public void onInviteeAccepted(String id, String invitee) {
+        }
+
+        @Override
+        public void onInviteeRejected(String id, String invitee) {
+        }
+
+        @Override
+        public void onInvitationCancelled(String id, String inviter) {
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class UserInfoCacheTest {
+    private UserInfoCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new UserInfoCache(10, 60 * 1000);
+    }
+
+    @Test
+    public void mergeKeepsNonEmptyFields() {
+        mCache.put(userInfo("alice", "Alice", "http://a/avatar.png"));
+        mCache.merge(userInfo("alice", "", null));
+
+        TXUserInfo cached = mCache.get("alice");
+        assertEquals("Alice", cached.userName);
+        assertEquals("http://a/avatar.png", cached.avatarURL);
+    }
+
+    @Test
+    public void mergeUpdatesNonEmptyFields() {
+        mCache.put(userInfo("alice", "Alice", "http://a/avatar.png"));
+        mCache.merge(userInfo("alice", "Alice2", ""));
+
+        TXUserInfo cached = mCache.get("alice");
+        assertEquals("Alice2", cached.userName);
+        assertEquals("http://a/avatar.png", cached.avatarURL);
+    }
+
+    @Test
+    public void mergeSkipsNewEntryWithoutNickname() {
+        mCache.merge(userInfo("bob", null, "http://b/avatar.png"));
+        assertNull(mCache.get("bob"));
+
+        mCache.merge(userInfo("bob", "Bob", null));
+        assertEquals("Bob", mCache.get("bob").userName);
+    }
+
+    @Test
+    public void mergeDoesNotExtendExpiry() {
+        mCache.put(userInfo("alice", "Alice", null));
+        ShadowLooper.idleMainLooper(40, TimeUnit.SECONDS);
+        mCache.merge(userInfo("alice", "Alice2", null));
+        assertEquals("Alice2", mCache.get("alice").userName);
+
+        // 过期时间仍按 put 的时间计算
+        ShadowLooper.idleMainLooper(30, TimeUnit.SECONDS);
+        assertNull(mCache.get("alice"));
+    }
+
+    @Test
+    public void putReplacesEntry() {
+        mCache.put(userInfo("alice", "Alice", "http://a/avatar.png"));
+        mCache.put(userInfo("alice", "Alice", null));
+
+        assertNull(mCache.get("alice").avatarURL);
+    }
+
+    @Test
+    public void getReturnsCopy() {
+        TXUserInfo userInfo = userInfo("alice", "Alice", null);
+        mCache.put(userInfo);
+        userInfo.userName = "changed by caller";
+
+        TXUserInfo cached = mCache.get("alice");
+        assertEquals("Alice", cached.userName);
+        cached.userName = "changed by reader";
+        assertEquals("Alice", mCache.get("alice").userName);
+        assertNotSame(mCache.get("alice"), mCache.get("alice"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        mCache.setMaxSize(2);
+        mCache.put(userInfo("a", "A", null));
+        mCache.put(userInfo("b", "B", null));
+        mCache.get("a");
+        mCache.put(userInfo("c", "C", null));
+
+        assertNull(mCache.get("b"));
+        assertEquals("A", mCache.get("a").userName);
+        assertEquals("C", mCache.get("c").userName);
+    }
+
+    private static TXUserInfo userInfo(String userId, String userName, String avatarURL) {
+        TXUserInfo userInfo = new TXUserInfo();
+        userInfo.userId = userId;
+        userInfo.userName = userName;
+        userInfo.avatarURL = avatarURL;
+        return userInfo;
+    }
+}
@@ -0,0 +1,144 @@
+package com.tencent.liteav.trtcvoiceroom.model.impl.room.impl;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserInfo;
+import com.tencent.liteav.trtcvoiceroom.model.impl.base.TXUserListCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class UserInfoResolverTest {
+    private static final long WINDOW_MS = 50;
+
+    private List<List<String>>       mFetched;
+    private List<TXUserListCallback> mCallbacks;
+    private List<String>             mResolved;
+    private UserInfoResolver         mResolver;
+
+    @Before
+    public void setUp() {
+        mFetched = new ArrayList<>();
+        mCallbacks = new ArrayList<>();
+        mResolved = new ArrayList<>();
+        mResolver = new UserInfoResolver(new UserInfoResolver.Fetcher() {
+            @Override
+            public void fetch(List<String> userIdList, TXUserListCallback callback) {
+                mFetched.add(userIdList);
+                mCallbacks.add(callback);
+            }
+        }, new Handler(Looper.getMainLooper()), WINDOW_MS);
+    }
+
+    @Test
+    public void coalescesRequestsWithinWindow() {
+        resolve("alice");
+        resolve("bob");
+        resolve("alice");
+        assertTrue(mFetched.isEmpty());
+
+        ShadowLooper.idleMainLooper(WINDOW_MS, TimeUnit.MILLISECONDS);
+        assertEquals(1, mFetched.size());
+        assertEquals(Arrays.asList("alice", "bob"), mFetched.get(0));
+
+        reply(0, "alice", "bob");
+        assertEquals(Arrays.asList("0 alice:alice_name", "0 bob:bob_name", "0 alice:alice_name"), mResolved);
+    }
+
+    @Test
+    public void callbacksFollowCallOrderWhenBatchesReturnOutOfOrder() {
+        resolve("alice");
+        ShadowLooper.idleMainLooper(WINDOW_MS, TimeUnit.MILLISECONDS);
+        resolve("bob");
+        ShadowLooper.idleMainLooper(WINDOW_MS, TimeUnit.MILLISECONDS);
+        assertEquals(2, mFetched.size());
+
+        // 第二批先返回，要等第一批
+        reply(1, "bob");
+        assertTrue(mResolved.isEmpty());
+
+        reply(0, "alice");
+        assertEquals(Arrays.asList("0 alice:alice_name", "0 bob:bob_name"), mResolved);
+    }
+
+    @Test
+    public void missingOrFailedUsersResolveWithUserIdOnly() {
+        resolve("alice");
+        resolve("ghost");
+        ShadowLooper.idleMainLooper(WINDOW_MS, TimeUnit.MILLISECONDS);
+        resolve("carol");
+        ShadowLooper.idleMainLooper(WINDOW_MS, TimeUnit.MILLISECONDS);
+
+        reply(0, "alice");
+        mCallbacks.get(1).onCallback(-100, "network error", null);
+        assertEquals(Arrays.asList("0 alice:alice_name", "-1 ghost:null", "-100 carol:null"), mResolved);
+    }
+
+    @Test
+    public void fullBatchIsSentImmediately() {
+        for (int i = 0; i < 100; i++) {
+            resolve("user" + i);
+        }
+        assertEquals(1, mFetched.size());
+        assertEquals(100, mFetched.get(0).size());
+
+        // 之后的请求进入下一批
+        resolve("late");
+        assertEquals(1, mFetched.size());
+        ShadowLooper.idleMainLooper(WINDOW_MS, TimeUnit.MILLISECONDS);
+        assertEquals(Collections.singletonList("late"), mFetched.get(1));
+    }
+
+    @Test
+    public void clearDropsPendingRequests() {
+        resolve("alice");
+        ShadowLooper.idleMainLooper(WINDOW_MS, TimeUnit.MILLISECONDS);
+        resolve("bob");
+        mResolver.clear();
+        ShadowLooper.idleMainLooper(WINDOW_MS, TimeUnit.MILLISECONDS);
+        assertEquals(1, mFetched.size());
+
+        reply(0, "alice");
+        assertTrue(mResolved.isEmpty());
+
+        // 清空后的新请求不受影响
+        resolve("carol");
+        ShadowLooper.idleMainLooper(WINDOW_MS, TimeUnit.MILLISECONDS);
+        reply(1, "carol");
+        assertEquals(Collections.singletonList("0 carol:carol_name"), mResolved);
+    }
+
+    private void resolve(String userId) {
+        mResolver.resolve(userId, new UserInfoResolver.ResolveCallback() {
+            @Override
+            public void onResolved(int code, TXUserInfo userInfo) {
+                mResolved.add(code + " " + userInfo.userId + ":" + userInfo.userName);
+            }
+        });
+    }
+
+    private void reply(int batch, String... userIds) {
+        List<TXUserInfo> list = new ArrayList<>();
+        for (String userId : userIds) {
+            TXUserInfo info = new TXUserInfo();
+            info.userId = userId;
+            info.userName = userId + "_name";
+            list.add(info);
+        }
+        mCallbacks.get(batch).onCallback(0, "success", list);
+    }
+}